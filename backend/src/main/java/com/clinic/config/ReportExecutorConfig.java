@@ -0,0 +1,58 @@
+package com.clinic.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Dedicated, bounded pools for report queries and background report jobs so a
+ * burst of report requests cannot take over the shared async executor or the
+ * whole connection pool.
+ */
+@Configuration
+public class ReportExecutorConfig {
+
+    @Value("${app.report.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.report.queue-capacity:32}")
+    private int queueCapacity;
+
+    /**
+     * Spring Boot only auto-configures the application executor (used by
+     * {@code @Async} and MVC async requests) when no other Executor bean
+     * exists, so it is declared here explicitly with the same settings.
+     */
+    @Bean(name = { "applicationTaskExecutor", "taskExecutor" })
+    @Primary
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean("reportJobExecutor")
+    public ThreadPoolTaskExecutor reportJobExecutor(@Value("${app.report.jobs.workers:2}") int workers,
+            @Value("${app.report.jobs.queue-capacity:20}") int capacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(capacity);
+        executor.setThreadNamePrefix("report-job-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean("reportQueryExecutor")
+    public ThreadPoolTaskExecutor reportQueryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("report-query-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
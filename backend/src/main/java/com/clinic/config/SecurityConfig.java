@@ -1,5 +1,6 @@
 package com.clinic.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -31,6 +32,7 @@ public class SecurityConfig {
             "/api/specialties",
             "/api/specialties/**",
             "/api/appointments/available-slots",
+            "/api/appointments/availability",
             "/api/medicines",
             "/api/payments/vnpay-callback",
 
@@ -89,7 +91,11 @@ public class SecurityConfig {
 
                 // Authorization rules
                 .authorizeHttpRequests(auth -> auth
+                        // Streaming responses (SSE, exports) finish on an async dispatch of a request
+                        // that was already authorized; the stateless JWT context is not re-read there
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(PUBLIC_URLS).permitAll()
+                        .requestMatchers("/actuator/metrics/**").hasRole("ADMIN") // internal pool/cache/breaker state
                         .requestMatchers("/api/chat/**").authenticated() // AI Chatbot needs authentication
                         .anyRequest().authenticated());
 
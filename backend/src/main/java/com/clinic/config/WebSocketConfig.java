@@ -1,31 +1,99 @@
 package com.clinic.config;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+/**
+ * STOMP over WebSocket. With {@code app.websocket.broker.mode=simple} messages
+ * are routed by an in-memory broker, so they only reach clients connected to
+ * this node. With {@code relay} they go through an external STOMP broker
+ * shared by all nodes, and user destinations work across nodes: each node
+ * broadcasts its connected users on {@value #USER_REGISTRY_BROADCAST}, and a
+ * message for a user with no session on this node is broadcast on
+ * {@value #UNRESOLVED_USER_BROADCAST} for the node that has one.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
-@RequiredArgsConstructor
+@Slf4j
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // Clients may only subscribe to their own user destinations and send to
+    // the application, see WebSocketChannelInterceptor
+    public static final String USER_DESTINATION_PREFIX = "/user/";
+    public static final String APPLICATION_DESTINATION_PREFIX = "/app/";
+
+    static final String USER_REGISTRY_BROADCAST = "/topic/simp-user-registry";
+    static final String UNRESOLVED_USER_BROADCAST = "/topic/unresolved-user-destination";
+
     private final com.clinic.security.WebSocketChannelInterceptor channelInterceptor;
+    private final String brokerMode;
+    private final String relayHost;
+    private final int relayPort;
+    private final String relayVirtualHost;
+    private final String clientLogin;
+    private final String clientPasscode;
+    private final String systemLogin;
+    private final String systemPasscode;
+    private final long systemHeartbeatMs;
+
+    public WebSocketConfig(com.clinic.security.WebSocketChannelInterceptor channelInterceptor,
+            @Value("${app.websocket.broker.mode:simple}") String brokerMode,
+            @Value("${app.websocket.broker.relay.host:localhost}") String relayHost,
+            @Value("${app.websocket.broker.relay.port:61613}") int relayPort,
+            @Value("${app.websocket.broker.relay.virtual-host:}") String relayVirtualHost,
+            @Value("${app.websocket.broker.relay.client-login:guest}") String clientLogin,
+            @Value("${app.websocket.broker.relay.client-passcode:guest}") String clientPasscode,
+            @Value("${app.websocket.broker.relay.system-login:guest}") String systemLogin,
+            @Value("${app.websocket.broker.relay.system-passcode:guest}") String systemPasscode,
+            @Value("${app.websocket.broker.relay.system-heartbeat-ms:10000}") long systemHeartbeatMs) {
+        this.channelInterceptor = channelInterceptor;
+        this.brokerMode = brokerMode;
+        this.relayHost = relayHost;
+        this.relayPort = relayPort;
+        this.relayVirtualHost = relayVirtualHost;
+        this.clientLogin = clientLogin;
+        this.clientPasscode = clientPasscode;
+        this.systemLogin = systemLogin;
+        this.systemPasscode = systemPasscode;
+        this.systemHeartbeatMs = systemHeartbeatMs;
+    }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple memory-based message broker
         // /topic: for broadcasting (e.g. system alerts)
         // /queue: for point-to-point (e.g. user notifications)
-        config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            log.info("WebSocket messages relayed through STOMP broker {}:{}", relayHost, relayPort);
+            var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(clientLogin)
+                    .setClientPasscode(clientPasscode)
+                    .setSystemLogin(systemLogin)
+                    .setSystemPasscode(systemPasscode)
+                    .setSystemHeartbeatSendInterval(systemHeartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(systemHeartbeatMs)
+                    .setUserRegistryBroadcast(USER_REGISTRY_BROADCAST)
+                    .setUserDestinationBroadcast(UNRESOLVED_USER_BROADCAST);
+            if (StringUtils.hasText(relayVirtualHost)) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+        } else {
+            // Simple memory-based message broker, single node only
+            config.enableSimpleBroker("/topic", "/queue");
+        }
 
         // Prefix for messages that are bound for methods annotated with @MessageMapping
-        config.setApplicationDestinationPrefixes("/app");
+        config.setApplicationDestinationPrefixes(APPLICATION_DESTINATION_PREFIX);
 
         // For individual user messaging
-        config.setUserDestinationPrefix("/user");
+        config.setUserDestinationPrefix(USER_DESTINATION_PREFIX);
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.clinic.controller;
 import com.clinic.dto.request.AdminUserRequest;
 import com.clinic.dto.response.ApiResponse;
 import com.clinic.dto.response.AppointmentResponse;
+import com.clinic.dto.response.CursorPageResponse;
 import com.clinic.dto.response.DashboardStatsResponse;
 import com.clinic.dto.response.UserResponse;
 import com.clinic.entity.Appointment;
@@ -16,10 +17,12 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -120,36 +123,59 @@ public class AdminController {
                                 .build();
         }
 
+        @GetMapping("/appointments/page")
+        public ApiResponse<CursorPageResponse<AppointmentResponse>> getAppointmentsPage(
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+                        @RequestParam(required = false) UUID doctorId,
+                        @RequestParam(required = false) String status,
+                        @RequestParam(required = false) String cursor,
+                        @RequestParam(required = false) Integer size) {
+                return ApiResponse.<CursorPageResponse<AppointmentResponse>>builder()
+                                .result(adminService.getAppointmentsPage(dateFrom, dateTo, doctorId, status, cursor,
+                                                size))
+                                .build();
+        }
+
         // ════════════════════════════════════════
         // CSV Export
         // ════════════════════════════════════════
 
         @GetMapping("/export/users")
-        public ResponseEntity<byte[]> exportUsers() {
-                byte[] csv = adminService.exportUsersCsv();
-                return ResponseEntity.ok()
-                                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=users.csv")
-                                .contentType(MediaType.parseMediaType("text/csv"))
-                                .body(csv);
+        public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "false") boolean gzip) {
+                return csvResponse("users", gzip, adminService::exportUsersCsv);
         }
 
         @GetMapping("/export/patients")
-        public ResponseEntity<byte[]> exportPatients() {
-                byte[] csv = adminService.exportPatientsCsv();
-                return ResponseEntity.ok()
-                                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=patients.csv")
-                                .contentType(MediaType.parseMediaType("text/csv"))
-                                .body(csv);
+        public ResponseEntity<StreamingResponseBody> exportPatients(
+                        @RequestParam(defaultValue = "false") boolean gzip) {
+                return csvResponse("patients", gzip, adminService::exportPatientsCsv);
         }
 
         @GetMapping("/export/appointments")
-        public ResponseEntity<byte[]> exportAppointments(
+        public ResponseEntity<StreamingResponseBody> exportAppointments(
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
-                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo) {
-                byte[] csv = adminService.exportAppointmentsCsv(dateFrom, dateTo);
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+                        @RequestParam(defaultValue = "false") boolean gzip) {
+                return csvResponse("appointments", gzip,
+                                out -> adminService.exportAppointmentsCsv(dateFrom, dateTo, out));
+        }
+
+        /**
+         * Streams the export on the MVC async executor; with {@code gzip=true} the
+         * CSV is compressed on the fly and served as a .csv.gz download.
+         */
+        private ResponseEntity<StreamingResponseBody> csvResponse(String name, boolean gzip,
+                        StreamingResponseBody export) {
+                StreamingResponseBody body = !gzip ? export : out -> {
+                        GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+                        export.writeTo(compressed);
+                        compressed.finish();
+                };
                 return ResponseEntity.ok()
-                                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=appointments.csv")
-                                .contentType(MediaType.parseMediaType("text/csv"))
-                                .body(csv);
+                                .header(HttpHeaders.CONTENT_DISPOSITION,
+                                                "attachment; filename=" + name + (gzip ? ".csv.gz" : ".csv"))
+                                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : "text/csv"))
+                                .body(body);
         }
 }
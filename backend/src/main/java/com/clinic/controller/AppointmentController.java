@@ -3,12 +3,19 @@ package com.clinic.controller;
 import com.clinic.dto.request.AppointmentCancelRequest;
 import com.clinic.dto.request.AppointmentRequest;
 import com.clinic.dto.request.AppointmentStatusRequest;
+import com.clinic.dto.request.SlotHoldRequest;
 import com.clinic.dto.response.ApiResponse;
 import com.clinic.dto.response.AppointmentResponse;
+import com.clinic.dto.response.CursorPageResponse;
+import com.clinic.dto.response.DoctorAvailabilityResponse;
+import com.clinic.dto.response.SlotHoldResponse;
 import com.clinic.dto.response.TimeSlotResponse;
+import com.clinic.entity.enums.AppointmentStatus;
 import com.clinic.service.AppointmentService;
+import com.clinic.service.AvailabilityService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,6 +29,7 @@ import java.util.UUID;
 public class AppointmentController {
 
         private final AppointmentService appointmentService;
+        private final AvailabilityService availabilityService;
 
         @PostMapping
         @PreAuthorize("hasAnyRole('PATIENT', 'DOCTOR', 'ADMIN')")
@@ -40,6 +48,33 @@ public class AppointmentController {
                                 .build();
         }
 
+        @GetMapping("/availability")
+        public ApiResponse<List<DoctorAvailabilityResponse>> getAvailability(
+                        @RequestParam List<UUID> doctorIds,
+                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+                return ApiResponse.<List<DoctorAvailabilityResponse>>builder()
+                                .result(availabilityService.getAvailability(doctorIds, from, to))
+                                .build();
+        }
+
+        @PostMapping("/holds")
+        @PreAuthorize("hasAnyRole('PATIENT', 'DOCTOR', 'ADMIN')")
+        public ApiResponse<SlotHoldResponse> holdSlot(@Valid @RequestBody SlotHoldRequest request) {
+                return ApiResponse.<SlotHoldResponse>builder()
+                                .result(appointmentService.holdSlot(request))
+                                .build();
+        }
+
+        @DeleteMapping("/holds/{id}")
+        @PreAuthorize("hasAnyRole('PATIENT', 'DOCTOR', 'ADMIN')")
+        public ApiResponse<Void> releaseHold(@PathVariable UUID id) {
+                appointmentService.releaseHold(id);
+                return ApiResponse.<Void>builder()
+                                .message("Slot hold released")
+                                .build();
+        }
+
         @GetMapping("/me")
         @PreAuthorize("hasAnyRole('PATIENT', 'DOCTOR')")
         public ApiResponse<List<AppointmentResponse>> getMyAppointments() {
@@ -48,6 +83,21 @@ public class AppointmentController {
                                 .build();
         }
 
+        @GetMapping("/me/page")
+        @PreAuthorize("hasAnyRole('PATIENT', 'DOCTOR')")
+        public ApiResponse<CursorPageResponse<AppointmentResponse>> getMyAppointmentsPage(
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+                        @RequestParam(required = false) UUID doctorId,
+                        @RequestParam(required = false) AppointmentStatus status,
+                        @RequestParam(required = false) String cursor,
+                        @RequestParam(required = false) Integer size) {
+                return ApiResponse.<CursorPageResponse<AppointmentResponse>>builder()
+                                .result(appointmentService.getMyAppointmentsPage(dateFrom, dateTo, doctorId, status,
+                                                cursor, size))
+                                .build();
+        }
+
         @GetMapping("/{id}")
         @PreAuthorize("hasRole('ADMIN') or @appointmentSecurity.isAuthorized(#id, principal)")
         public ApiResponse<AppointmentResponse> getAppointmentById(@PathVariable UUID id) {
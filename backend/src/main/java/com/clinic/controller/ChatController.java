@@ -5,12 +5,15 @@ import com.clinic.dto.response.ChatResponse;
 import com.clinic.service.ChatService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -28,4 +31,14 @@ public class ChatController {
     public ResponseEntity<ChatResponse> chat(@Valid @RequestBody ChatRequest request) {
         return ResponseEntity.ok(chatService.processChat(request));
     }
+
+    /**
+     * Streaming (SSE): sự kiện {@code token} cho từng đoạn văn bản, {@code function}
+     * khi AI tra cứu dữ liệu, kết thúc bằng {@code done} hoặc {@code error}.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('PATIENT', 'DOCTOR', 'ADMIN')")
+    public Flux<ServerSentEvent<Object>> stream(@Valid @RequestBody ChatRequest request) {
+        return chatService.streamChat(request);
+    }
 }
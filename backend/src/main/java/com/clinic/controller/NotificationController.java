@@ -1,20 +1,18 @@
 package com.clinic.controller;
 
 import com.clinic.dto.response.ApiResponse;
-import com.clinic.entity.Notification;
-import com.clinic.entity.User;
-import com.clinic.repository.NotificationRepository;
-import com.clinic.repository.UserRepository;
+import com.clinic.dto.response.CursorPageResponse;
+import com.clinic.dto.response.NotificationResponse;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.clinic.service.NotificationService;
+import com.clinic.util.SecurityUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.UUID;
@@ -26,56 +24,59 @@ import java.util.UUID;
 @Tag(name = "Notification", description = "Notification Management APIs")
 public class NotificationController {
 
-    private final NotificationRepository notificationRepository;
-    private final UserRepository userRepository;
+    private final NotificationService notificationService;
+    private final SecurityUtils securityUtils;
 
     @GetMapping
     @Operation(summary = "Get user notifications")
-    public ResponseEntity<ApiResponse<Page<Notification>>> getNotifications(
+    public ResponseEntity<ApiResponse<Page<NotificationResponse>>> getNotifications(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
-        User user = getCurrentUser();
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Notification> notifications = notificationRepository.findAllByUserOrderByCreatedAtDesc(user, pageable);
+        Page<NotificationResponse> notifications = notificationService.getNotifications(currentUserId(), page, size);
 
-        return ResponseEntity.ok(ApiResponse.<Page<Notification>>builder()
+        return ResponseEntity.ok(ApiResponse.<Page<NotificationResponse>>builder()
                 .result(notifications)
                 .build());
     }
 
+    @GetMapping("/page")
+    @Operation(summary = "Get user notifications (cursor pagination)",
+            description = "Pass nextCursor from the previous page as cursor to get the next one")
+    public ResponseEntity<ApiResponse<CursorPageResponse<NotificationResponse>>> getNotificationsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        CursorPageResponse<NotificationResponse> page = notificationService.getNotificationsPage(currentUserId(),
+                cursor, size);
+        return ResponseEntity.ok(ApiResponse.<CursorPageResponse<NotificationResponse>>builder()
+                .result(page)
+                .build());
+    }
+
     @GetMapping("/unread-count")
-    @Operation(summary = "Get unread notification count")
+    @Operation(summary = "Get unread notification count",
+            description = "Changes are also pushed on /user/queue/notifications as {event: UNREAD_COUNT, unreadCount}")
     public ResponseEntity<ApiResponse<Long>> getUnreadCount() {
-        User user = getCurrentUser();
-        long count = notificationRepository.countByUserAndIsReadFalse(user);
+        long count = notificationService.getUnreadCount(currentUserId());
         return ResponseEntity.ok(ApiResponse.<Long>builder().result(count).build());
     }
 
     @PatchMapping("/{id}/read")
     @Operation(summary = "Mark notification as read")
     public ResponseEntity<ApiResponse<Void>> markAsRead(@PathVariable UUID id) {
-        notificationRepository.findById(id).ifPresent(notification -> {
-            if (notification.getUser().getId().equals(getCurrentUser().getId())) {
-                notification.setRead(true);
-                notificationRepository.save(notification);
-            }
-        });
+        notificationService.markAsRead(currentUserId(), id);
         return ResponseEntity.ok(ApiResponse.<Void>builder().message("Marked as read").build());
     }
 
     @PatchMapping("/read-all")
     @Operation(summary = "Mark all notifications as read")
     public ResponseEntity<ApiResponse<Void>> markAllAsRead() {
-        User user = getCurrentUser();
-        notificationRepository.markAllAsReadByUserId(user.getId());
+        notificationService.markAllAsRead(currentUserId());
         return ResponseEntity.ok(ApiResponse.<Void>builder().message("Marked all as read").build());
     }
 
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        return userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    private UUID currentUserId() {
+        return securityUtils.getCurrentUserId()
+                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHENTICATED));
     }
 }
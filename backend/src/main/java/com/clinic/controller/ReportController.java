@@ -1,15 +1,29 @@
 package com.clinic.controller;
 
 import com.clinic.dto.response.ApiResponse;
+import com.clinic.dto.response.ReportJobResponse;
 import com.clinic.dto.response.ReportResponse;
+import com.clinic.entity.ReportJob;
+import com.clinic.entity.enums.ReportJobType;
+import com.clinic.service.ReportJobService;
+import com.clinic.service.ReportRollupService;
 import com.clinic.service.ReportService;
+import com.clinic.util.ExcelExporter;
+import com.clinic.util.PdfExporter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/reports")
@@ -17,7 +31,12 @@ import java.time.LocalDate;
 @PreAuthorize("hasRole('ADMIN')")
 public class ReportController {
 
+    private static final MediaType XLSX = MediaType
+            .parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
     private final ReportService reportService;
+    private final ReportRollupService reportRollupService;
+    private final ReportJobService reportJobService;
 
     @GetMapping("/summary")
     public ResponseEntity<ApiResponse<ReportResponse>> getSummaryReport(
@@ -36,8 +55,22 @@ public class ReportController {
                 .build());
     }
 
+    @PostMapping("/rollups/backfill")
+    public ResponseEntity<ApiResponse<Integer>> backfillRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        if (to == null)
+            to = LocalDate.now();
+
+        return ResponseEntity.ok(ApiResponse.<Integer>builder()
+                .message("Rebuilt report rollups")
+                .result(reportRollupService.backfill(from, to))
+                .build());
+    }
+
     @GetMapping("/export/pdf")
-    public ResponseEntity<org.springframework.core.io.Resource> exportPdf(
+    public ResponseEntity<StreamingResponseBody> exportPdf(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
 
@@ -46,23 +79,16 @@ public class ReportController {
         if (to == null)
             to = LocalDate.now();
 
+        // Aggregate before streaming so query errors still map to a JSON error response
         ReportResponse report = reportService.getSummaryReport(from, to);
-        java.io.ByteArrayInputStream bis = com.clinic.util.PdfExporter.exportReportToPdf(report);
-
-        org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
-        headers.add("Content-Disposition", "attachment; filename=report-" + LocalDate.now() + ".pdf");
-
-        return ResponseEntity.ok()
-                .headers(headers)
-                .contentType(org.springframework.http.MediaType.APPLICATION_PDF)
-                .body(new org.springframework.core.io.InputStreamResource(bis));
+        return download("report-" + LocalDate.now() + ".pdf", MediaType.APPLICATION_PDF,
+                out -> PdfExporter.writeReport(report, out));
     }
 
     @GetMapping("/export/excel")
-    public ResponseEntity<org.springframework.core.io.Resource> exportExcel(
+    public ResponseEntity<StreamingResponseBody> exportExcel(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to)
-            throws java.io.IOException {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
 
         if (from == null)
             from = LocalDate.now().minusMonths(1);
@@ -70,15 +96,68 @@ public class ReportController {
             to = LocalDate.now();
 
         ReportResponse report = reportService.getSummaryReport(from, to);
-        java.io.ByteArrayInputStream bis = com.clinic.util.ExcelExporter.exportReportToExcel(report);
+        return download("report-" + LocalDate.now() + ".xlsx", XLSX,
+                out -> ExcelExporter.writeReport(report, out));
+    }
+
+    @GetMapping("/export/appointments/excel")
+    public ResponseEntity<StreamingResponseBody> exportAppointmentsExcel(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        LocalDate end = to != null ? to : LocalDate.now();
+        return download("appointments-" + from + "-" + end + ".xlsx", XLSX,
+                out -> reportService.exportAppointmentsExcel(from, end, out));
+    }
+
+    @GetMapping("/export/payments/excel")
+    public ResponseEntity<StreamingResponseBody> exportPaymentsExcel(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        LocalDate end = to != null ? to : LocalDate.now();
+        return download("payments-" + from + "-" + end + ".xlsx", XLSX,
+                out -> reportService.exportPaymentsExcel(from, end, out));
+    }
+
+    @PostMapping("/jobs")
+    public ResponseEntity<ApiResponse<ReportJobResponse>> submitJob(
+            @RequestParam ReportJobType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
 
-        org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
-        headers.add("Content-Disposition", "attachment; filename=report-" + LocalDate.now() + ".xlsx");
+        if (from == null)
+            from = LocalDate.now().minusMonths(1);
+        if (to == null)
+            to = LocalDate.now();
+
+        return ResponseEntity.accepted().body(ApiResponse.<ReportJobResponse>builder()
+                .message("Report job accepted")
+                .result(reportJobService.submit(type, from, to))
+                .build());
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ApiResponse<ReportJobResponse>> getJob(@PathVariable UUID id) {
+        return ResponseEntity.ok(ApiResponse.<ReportJobResponse>builder()
+                .result(reportJobService.getJob(id))
+                .build());
+    }
+
+    @GetMapping("/jobs/{id}/download")
+    public ResponseEntity<Resource> downloadJob(@PathVariable UUID id) {
+        ReportJob job = reportJobService.getDownloadableJob(id);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + reportJobService.fileName(job))
+                .contentType(MediaType.parseMediaType(job.getJobType().getContentType()))
+                .body(new FileSystemResource(Path.of(job.getFilePath())));
+    }
 
+    private ResponseEntity<StreamingResponseBody> download(String filename, MediaType type,
+            StreamingResponseBody body) {
         return ResponseEntity.ok()
-                .headers(headers)
-                .contentType(org.springframework.http.MediaType
-                        .parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .body(new org.springframework.core.io.InputStreamResource(bis));
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .contentType(type)
+                .body(body);
     }
 }
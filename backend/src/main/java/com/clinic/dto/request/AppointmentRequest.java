@@ -26,4 +26,7 @@ public class AppointmentRequest {
 
     String symptoms;
     String notes;
+
+    // Optional: seat previously reserved through POST /api/appointments/holds
+    UUID holdId;
 }
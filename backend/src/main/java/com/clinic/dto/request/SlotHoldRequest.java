@@ -0,0 +1,24 @@
+package com.clinic.dto.request;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SlotHoldRequest {
+    @NotNull(message = "Doctor ID is required")
+    UUID doctorId;
+
+    @NotNull(message = "Time slot ID is required")
+    Integer timeSlotId;
+
+    @NotNull(message = "Appointment date is required")
+    LocalDate appointmentDate;
+}
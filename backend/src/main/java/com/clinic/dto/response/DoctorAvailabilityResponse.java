@@ -0,0 +1,28 @@
+package com.clinic.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DoctorAvailabilityResponse {
+    UUID doctorId;
+    List<DayAvailability> days;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class DayAvailability {
+        LocalDate date;
+        List<TimeSlotResponse> slots;
+    }
+}
@@ -0,0 +1,28 @@
+package com.clinic.dto.response;
+
+import com.clinic.entity.enums.NotificationType;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Notification as listed to its owner; projected straight from the
+ * notifications table by the listing queries.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class NotificationResponse {
+    UUID id;
+    String title;
+    String message;
+    NotificationType type;
+    boolean read;
+    String relatedEntityType;
+    UUID relatedEntityId;
+    LocalDateTime createdAt;
+}
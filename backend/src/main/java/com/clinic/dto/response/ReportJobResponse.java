@@ -0,0 +1,28 @@
+package com.clinic.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReportJobResponse {
+    UUID id;
+    String type;
+    String status;
+    LocalDate from;
+    LocalDate to;
+    Long fileSize;
+    String downloadUrl;
+    String errorMessage;
+    boolean deduplicated;
+    LocalDateTime createdAt;
+    LocalDateTime finishedAt;
+    LocalDateTime expiresAt;
+}
@@ -0,0 +1,23 @@
+package com.clinic.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SlotHoldResponse {
+    UUID id;
+    UUID doctorId;
+    Integer timeSlotId;
+    LocalDate appointmentDate;
+    LocalTime appointmentTime;
+    LocalDateTime expiresAt;
+}
@@ -0,0 +1,27 @@
+package com.clinic.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Unread notification badge, returned by {@code /api/notifications/unread-count}
+ * and pushed on {@code /user/queue/notifications} whenever it changes. The
+ * {@code event} field tells it apart from the notifications on the same queue,
+ * which never carry it ({@code type} there is the notification type).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UnreadCountResponse {
+    public static final String EVENT = "UNREAD_COUNT";
+
+    @Builder.Default
+    String event = EVENT;
+    long unreadCount;
+
+    public static UnreadCountResponse of(long unreadCount) {
+        return UnreadCountResponse.builder().unreadCount(unreadCount).build();
+    }
+}
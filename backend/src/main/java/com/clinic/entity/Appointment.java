@@ -49,6 +49,10 @@ public class Appointment extends BaseEntity {
     @Column(name = "appointment_time", nullable = false)
     private LocalTime appointmentTime;
 
+    @Column(name = "seat_no", nullable = false)
+    @Builder.Default
+    private Integer seatNo = 1; // 1..TimeSlot.maxPatients
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status", length = 20)
     @Builder.Default
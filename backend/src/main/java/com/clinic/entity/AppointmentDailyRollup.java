@@ -0,0 +1,44 @@
+package com.clinic.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * AppointmentDailyRollup entity - appointments per day, doctor, specialty and status.
+ * Rows are rebuilt per day by the report rollup job.
+ */
+@Entity
+@Table(name = "appointment_daily_rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AppointmentDailyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "doctor_id", nullable = false)
+    private UUID doctorId;
+
+    @Column(name = "specialty_id")
+    private UUID specialtyId;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "appointment_count", nullable = false)
+    private Long appointmentCount;
+
+    @Column(name = "fee_total", nullable = false, precision = 15, scale = 2)
+    private BigDecimal feeTotal;
+}
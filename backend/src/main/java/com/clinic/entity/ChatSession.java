@@ -0,0 +1,34 @@
+package com.clinic.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ChatSession entity - chatbot conversation history of one user, stored as
+ * gzip-compressed JSON turns. Written behind the in-memory session store.
+ */
+@Entity
+@Table(name = "chat_sessions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatSession extends BaseEntity {
+
+    @Column(name = "user_id", nullable = false, unique = true)
+    private UUID userId;
+
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+
+    @Column(name = "turn_count", nullable = false)
+    @Builder.Default
+    private Integer turnCount = 0;
+
+    @Column(name = "last_active_at", nullable = false)
+    private LocalDateTime lastActiveAt;
+}
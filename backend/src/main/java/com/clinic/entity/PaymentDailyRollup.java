@@ -0,0 +1,37 @@
+package com.clinic.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * PaymentDailyRollup entity - payments per day and status.
+ * The day is the paid date, or the creation date while the payment is unpaid.
+ */
+@Entity
+@Table(name = "payment_daily_rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentDailyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "payment_count", nullable = false)
+    private Long paymentCount;
+
+    @Column(name = "amount_total", nullable = false, precision = 15, scale = 2)
+    private BigDecimal amountTotal;
+}
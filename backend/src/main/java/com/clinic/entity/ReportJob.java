@@ -0,0 +1,69 @@
+package com.clinic.entity;
+
+import com.clinic.entity.enums.ReportJobStatus;
+import com.clinic.entity.enums.ReportJobType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ReportJob entity - an export rendered in the background; the finished
+ * artifact lives on local disk until {@code expiresAt}. The node running a
+ * job refreshes {@code heartbeatAt}; jobs whose heartbeat stops are failed as
+ * stale, and {@code version} keeps that node from overwriting the outcome.
+ */
+@Entity
+@Table(name = "report_jobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReportJob extends BaseEntity {
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type", nullable = false, length = 30)
+    private ReportJobType jobType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private ReportJobStatus status = ReportJobStatus.PENDING;
+
+    @Column(name = "date_from", nullable = false)
+    private LocalDate dateFrom;
+
+    @Column(name = "date_to", nullable = false)
+    private LocalDate dateTo;
+
+    @Column(name = "requested_by")
+    private UUID requestedBy;
+
+    @Column(name = "file_path", length = 500)
+    private String filePath;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+}
@@ -0,0 +1,32 @@
+package com.clinic.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * RollupWatermark entity - change time up to which a source table has been
+ * folded into its daily rollup.
+ */
+@Entity
+@Table(name = "rollup_watermarks")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RollupWatermark {
+
+    @Id
+    @Column(name = "name", length = 50)
+    private String name; // APPOINTMENTS, PAYMENTS, USERS
+
+    @Column(name = "last_processed_at", nullable = false)
+    private LocalDateTime lastProcessedAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
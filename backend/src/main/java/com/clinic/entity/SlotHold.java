@@ -0,0 +1,49 @@
+package com.clinic.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.UUID;
+
+/**
+ * SlotHold entity - a short-lived reservation of one seat of a time slot while
+ * the patient completes booking/payment.
+ */
+@Entity
+@Table(name = "slot_holds", uniqueConstraints = @UniqueConstraint(name = "uk_slot_holds_seat", columnNames = {
+        "doctor_id", "hold_date", "hold_time", "seat_no" }))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SlotHold extends BaseEntity {
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "doctor_id", nullable = false)
+    private UUID doctorId;
+
+    @Column(name = "time_slot_id", nullable = false)
+    private Integer timeSlotId;
+
+    @Column(name = "hold_date", nullable = false)
+    private LocalDate holdDate;
+
+    @Column(name = "hold_time", nullable = false)
+    private LocalTime holdTime;
+
+    @Column(name = "seat_no", nullable = false)
+    private Integer seatNo;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public boolean isExpired() {
+        return expiresAt.isBefore(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,32 @@
+package com.clinic.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * UserDailyRollup entity - user registrations per day and role.
+ */
+@Entity
+@Table(name = "user_daily_rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserDailyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "role_name", length = 20)
+    private String roleName;
+
+    @Column(name = "registered_count", nullable = false)
+    private Long registeredCount;
+}
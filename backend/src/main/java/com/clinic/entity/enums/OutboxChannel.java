@@ -0,0 +1,10 @@
+package com.clinic.entity.enums;
+
+/**
+ * Side-effect channels an outbox event fans out to, in delivery order.
+ */
+public enum OutboxChannel {
+    AUDIT,
+    PUSH,
+    EMAIL
+}
@@ -0,0 +1,7 @@
+package com.clinic.entity.enums;
+
+public enum OutboxEventType {
+    APPOINTMENT_CREATED,
+    APPOINTMENT_STATUS_CHANGED,
+    APPOINTMENT_CANCELLED
+}
@@ -0,0 +1,8 @@
+package com.clinic.entity.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    PROCESSING,
+    SENT,
+    FAILED
+}
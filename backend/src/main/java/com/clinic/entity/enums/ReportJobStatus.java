@@ -0,0 +1,9 @@
+package com.clinic.entity.enums;
+
+public enum ReportJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    EXPIRED
+}
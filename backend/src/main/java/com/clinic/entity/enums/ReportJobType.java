@@ -0,0 +1,27 @@
+package com.clinic.entity.enums;
+
+/**
+ * Exports that can be rendered as background report jobs.
+ */
+public enum ReportJobType {
+    SUMMARY_PDF("pdf", "application/pdf"),
+    SUMMARY_EXCEL("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    APPOINTMENTS_EXCEL("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    PAYMENTS_EXCEL("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+    private final String extension;
+    private final String contentType;
+
+    ReportJobType(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
@@ -26,6 +26,27 @@ public enum ErrorCode {
     APPOINTMENT_CANCEL_FORBIDDEN(2003, "Cannot cancel this appointment", HttpStatus.BAD_REQUEST),
     MEDICINE_NOT_FOUND(2004, "Medicine not found", HttpStatus.NOT_FOUND),
     REVIEW_ALREADY_EXISTS(2005, "You have already reviewed this appointment", HttpStatus.BAD_REQUEST),
+    AVAILABILITY_RANGE_INVALID(2006, "Invalid availability range", HttpStatus.BAD_REQUEST),
+    APPOINTMENT_SLOT_BUSY(2007, "This time slot is being booked, please retry", HttpStatus.CONFLICT),
+    SLOT_HOLD_INVALID(2008, "Slot hold is invalid or expired", HttpStatus.BAD_REQUEST),
+    INVALID_CURSOR(2009, "Invalid pagination cursor", HttpStatus.BAD_REQUEST),
+    APPOINTMENT_REOPEN_FORBIDDEN(2010, "A cancelled appointment cannot be reopened, please book again",
+            HttpStatus.BAD_REQUEST),
+
+    // Report errors
+    REPORT_QUERY_TIMEOUT(3001, "Report query timed out", HttpStatus.GATEWAY_TIMEOUT),
+    REPORT_QUERY_FAILED(3002, "Report query failed", HttpStatus.INTERNAL_SERVER_ERROR),
+    REPORT_RANGE_INVALID(3003, "Invalid report date range", HttpStatus.BAD_REQUEST),
+    REPORT_JOB_NOT_FOUND(3004, "Report job not found", HttpStatus.NOT_FOUND),
+    REPORT_JOB_NOT_READY(3005, "Report is not ready for download", HttpStatus.CONFLICT),
+    REPORT_JOB_REJECTED(3006, "Too many report jobs, please retry later", HttpStatus.SERVICE_UNAVAILABLE),
+
+    // Chat errors
+    CHAT_SESSION_BUSY(4001, "Another message in this conversation is still being answered", HttpStatus.CONFLICT),
+    CHAT_RATE_LIMITED(4002, "Bạn gửi tin nhắn quá nhanh, vui lòng thử lại sau giây lát", HttpStatus.TOO_MANY_REQUESTS),
+    AI_BUSY(4003, "Trợ lý AI đang quá tải, vui lòng thử lại sau giây lát", HttpStatus.SERVICE_UNAVAILABLE),
+    AI_UNAVAILABLE(4004, "Trợ lý AI đang tạm gián đoạn. Vui lòng thử lại sau hoặc gọi hotline 0123-456-789",
+            HttpStatus.SERVICE_UNAVAILABLE),
     ;
 
     ErrorCode(int code, String message, HttpStatusCode statusCode) {
@@ -0,0 +1,59 @@
+package com.clinic.repository;
+
+import com.clinic.entity.AppointmentDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AppointmentDailyRollupRepository extends JpaRepository<AppointmentDailyRollup, Long> {
+
+        // ── Incremental refresh ──
+
+        @Query("SELECT DISTINCT a.appointmentDate FROM Appointment a " +
+                        "WHERE a.updatedAt > :since AND a.updatedAt <= :until")
+        List<LocalDate> findChangedDates(@Param("since") LocalDateTime since, @Param("until") LocalDateTime until);
+
+        @Modifying
+        @Query("DELETE FROM AppointmentDailyRollup r WHERE r.statDate IN :dates")
+        int deleteDays(@Param("dates") Collection<LocalDate> dates);
+
+        @Modifying
+        @Query(value = "INSERT INTO appointment_daily_rollups " +
+                        "(stat_date, doctor_id, specialty_id, status, appointment_count, fee_total) " +
+                        "SELECT a.appointment_date, a.doctor_id, a.specialty_id, a.status, COUNT(*), " +
+                        "COALESCE(SUM(d.consultation_fee), 0) " +
+                        "FROM appointments a JOIN doctors d ON d.id = a.doctor_id " +
+                        "WHERE a.appointment_date IN (:dates) " +
+                        "GROUP BY a.appointment_date, a.doctor_id, a.specialty_id, a.status", nativeQuery = true)
+        int insertDays(@Param("dates") Collection<LocalDate> dates);
+
+        // ── Report reads ──
+
+        @Query("SELECT r.status, SUM(r.appointmentCount) FROM AppointmentDailyRollup r " +
+                        "WHERE r.statDate BETWEEN :from AND :to GROUP BY r.status")
+        List<Object[]> sumByStatus(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+        @Query("SELECT r.statDate, SUM(r.appointmentCount) FROM AppointmentDailyRollup r " +
+                        "WHERE r.statDate BETWEEN :from AND :to GROUP BY r.statDate ORDER BY r.statDate")
+        List<Object[]> getTrend(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+        @Query("SELECT s.name, SUM(r.appointmentCount) FROM AppointmentDailyRollup r " +
+                        "JOIN Specialty s ON s.id = r.specialtyId " +
+                        "WHERE r.statDate BETWEEN :from AND :to " +
+                        "GROUP BY s.name ORDER BY SUM(r.appointmentCount) DESC")
+        List<Object[]> sumBySpecialty(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+        @Query("SELECT u.fullName, SUM(r.appointmentCount), SUM(r.feeTotal), d.avgRating " +
+                        "FROM AppointmentDailyRollup r JOIN Doctor d ON d.id = r.doctorId JOIN d.user u " +
+                        "WHERE r.status = 'COMPLETED' AND r.statDate BETWEEN :from AND :to " +
+                        "GROUP BY d.id, u.fullName, d.avgRating")
+        List<Object[]> getDoctorPerformance(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
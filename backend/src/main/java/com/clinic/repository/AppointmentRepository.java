@@ -1,19 +1,25 @@
 package com.clinic.repository;
 
+import com.clinic.dto.response.AppointmentResponse;
 import com.clinic.entity.Appointment;
 import com.clinic.entity.enums.AppointmentStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, UUID> {
@@ -38,6 +44,30 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
                         @Param("date") LocalDate date,
                         @Param("time") LocalTime time);
 
+        @Query("SELECT a.seatNo FROM Appointment a WHERE " +
+                        "a.doctor.id = :doctorId AND " +
+                        "a.appointmentDate = :date AND " +
+                        "a.appointmentTime = :time AND " +
+                        "a.status <> com.clinic.entity.enums.AppointmentStatus.CANCELLED")
+        List<Integer> findActiveSeats(
+                        @Param("doctorId") UUID doctorId,
+                        @Param("date") LocalDate date,
+                        @Param("time") LocalTime time);
+
+        /**
+         * Booked (non-cancelled) appointment counts per doctor, date and time.
+         * Rows: [doctorId, appointmentDate, appointmentTime, count].
+         */
+        @Query("SELECT a.doctor.id, a.appointmentDate, a.appointmentTime, COUNT(a) FROM Appointment a WHERE " +
+                        "a.doctor.id IN :doctorIds AND " +
+                        "a.appointmentDate BETWEEN :from AND :to AND " +
+                        "a.status <> com.clinic.entity.enums.AppointmentStatus.CANCELLED " +
+                        "GROUP BY a.doctor.id, a.appointmentDate, a.appointmentTime")
+        List<Object[]> countBookedSlots(
+                        @Param("doctorIds") Collection<UUID> doctorIds,
+                        @Param("from") LocalDate from,
+                        @Param("to") LocalDate to);
+
         @Query("SELECT COUNT(a) FROM Appointment a WHERE " +
                         "a.doctor.id = :doctorId AND " +
                         "a.appointmentDate = :date AND " +
@@ -54,6 +84,12 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
                         "WHERE a.id = :id")
         Optional<Appointment> findByIdWithUser(@Param("id") UUID id);
 
+        /**
+         * Patient id and doctor id of an appointment, read from its own row.
+         */
+        @Query("SELECT a.patient.id, a.doctor.id FROM Appointment a WHERE a.id = :id")
+        List<Object[]> findOwnerIds(@Param("id") UUID id);
+
         @Query("SELECT DISTINCT a FROM Appointment a " +
                         "JOIN FETCH a.patient p " +
                         "JOIN FETCH p.user " +
@@ -90,6 +126,40 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
         @Query("SELECT s.name, COUNT(a) FROM Appointment a JOIN a.specialty s GROUP BY s.name ORDER BY COUNT(a) DESC")
         List<Object[]> countBySpecialty();
 
+        /**
+         * Dashboard counters in one round trip: [totalUsers, totalDoctors,
+         * totalPatients, todayAppointments, monthAppointments, pendingAppointments,
+         * totalPayments, completedPayments].
+         */
+        @Query(value = "SELECT (SELECT COUNT(*) FROM users), " +
+                        "(SELECT COUNT(*) FROM doctors), " +
+                        "(SELECT COUNT(*) FROM patients), " +
+                        "m.today_count, m.month_count, " +
+                        "(SELECT COUNT(*) FROM appointments WHERE status = 'PENDING'), " +
+                        "p.total_count, p.completed_count " +
+                        "FROM (SELECT COUNT(*) FILTER (WHERE appointment_date = :today " +
+                        "AND status IN ('PENDING', 'CONFIRMED')) AS today_count, " +
+                        "COUNT(*) FILTER (WHERE status <> 'CANCELLED') AS month_count " +
+                        "FROM appointments WHERE appointment_date BETWEEN :monthStart AND :today) m " +
+                        "CROSS JOIN (SELECT COUNT(*) AS total_count, " +
+                        "COUNT(*) FILTER (WHERE status = 'COMPLETED') AS completed_count FROM payments) p",
+                        nativeQuery = true)
+        List<Object[]> getDashboardCounters(@Param("today") LocalDate today, @Param("monthStart") LocalDate monthStart);
+
+        /**
+         * Dashboard breakdowns as rows [kind, key, count]: kind 'MONTH' with key
+         * yyyy-MM for non-cancelled appointments between the dates, and kind
+         * 'SPECIALTY' with the specialty name over all appointments.
+         */
+        @Query(value = "SELECT 'MONTH', to_char(appointment_date, 'YYYY-MM'), COUNT(*) FROM appointments " +
+                        "WHERE appointment_date BETWEEN :from AND :to AND status <> 'CANCELLED' " +
+                        "GROUP BY to_char(appointment_date, 'YYYY-MM') " +
+                        "UNION ALL " +
+                        "SELECT 'SPECIALTY', s.name, COUNT(*) FROM appointments a " +
+                        "JOIN specialties s ON s.id = a.specialty_id GROUP BY s.name " +
+                        "ORDER BY 1, 3 DESC", nativeQuery = true)
+        List<Object[]> getDashboardBreakdowns(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
         @Query("SELECT a.status, COUNT(a) FROM Appointment a GROUP BY a.status")
         List<Object[]> countByStatusDistribution();
 
@@ -112,11 +182,77 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
                         "LEFT JOIN FETCH a.timeSlot " +
                         "WHERE (cast(:dateFrom as string) IS NULL OR a.appointmentDate >= :dateFrom) " +
                         "AND (cast(:dateTo as string) IS NULL OR a.appointmentDate <= :dateTo) " +
-                        "AND (cast(:doctorId as string) IS NULL OR d.id = :doctorId) " +
+                        "AND (cast(:doctorId as string) IS NULL OR a.doctor.id = :doctorId) " +
                         "AND (cast(:status as string) IS NULL OR a.status = :status) " +
                         "ORDER BY a.appointmentDate DESC, a.appointmentTime DESC")
         List<Appointment> findAllForAdmin(@Param("dateFrom") LocalDate dateFrom,
                         @Param("dateTo") LocalDate dateTo,
                         @Param("doctorId") UUID doctorId,
                         @Param("status") AppointmentStatus status);
+
+        String LISTING_SELECT = "SELECT new com.clinic.dto.response.AppointmentResponse(" +
+                        "a.id, p.id, pu.fullName, d.id, du.fullName, s.id, s.name, a.timeSlot.id, " +
+                        "a.appointmentDate, a.appointmentTime, a.status, a.symptoms, a.notes, " +
+                        "a.cancelledBy, a.cancelledReason, a.confirmedAt, a.completedAt, a.createdAt, a.updatedAt, " +
+                        "d.consultationFee) " +
+                        "FROM Appointment a " +
+                        "JOIN a.patient p JOIN p.user pu " +
+                        "JOIN a.doctor d JOIN d.user du " +
+                        "LEFT JOIN a.specialty s ";
+
+        String LISTING_FILTER = "WHERE (cast(:patientId as string) IS NULL OR a.patient.id = :patientId) " +
+                        "AND (cast(:doctorId as string) IS NULL OR a.doctor.id = :doctorId) " +
+                        "AND (cast(:dateFrom as string) IS NULL OR a.appointmentDate >= :dateFrom) " +
+                        "AND (cast(:dateTo as string) IS NULL OR a.appointmentDate <= :dateTo) " +
+                        "AND (cast(:status as string) IS NULL OR a.status = :status) ";
+
+        String LISTING_ORDER = "ORDER BY a.appointmentDate DESC, a.appointmentTime DESC, a.id DESC";
+
+        /**
+         * First page of the appointment listing, newest first, projected straight
+         * into {@code AppointmentResponse}. Page size comes from {@code pageable}.
+         */
+        @Query(LISTING_SELECT + LISTING_FILTER + LISTING_ORDER)
+        List<AppointmentResponse> findListingPage(@Param("patientId") UUID patientId,
+                        @Param("doctorId") UUID doctorId,
+                        @Param("dateFrom") LocalDate dateFrom,
+                        @Param("dateTo") LocalDate dateTo,
+                        @Param("status") AppointmentStatus status,
+                        Pageable pageable);
+
+        /**
+         * Page after the cursor row (date, time, id) in listing order. Seeks on the
+         * composite keyset indexes instead of skipping OFFSET rows.
+         */
+        @Query(LISTING_SELECT + LISTING_FILTER +
+                        "AND (a.appointmentDate < :cursorDate " +
+                        "OR (a.appointmentDate = :cursorDate AND a.appointmentTime < :cursorTime) " +
+                        "OR (a.appointmentDate = :cursorDate AND a.appointmentTime = :cursorTime AND a.id < :cursorId)) " +
+                        LISTING_ORDER)
+        List<AppointmentResponse> findListingPageAfter(@Param("patientId") UUID patientId,
+                        @Param("doctorId") UUID doctorId,
+                        @Param("dateFrom") LocalDate dateFrom,
+                        @Param("dateTo") LocalDate dateTo,
+                        @Param("status") AppointmentStatus status,
+                        @Param("cursorDate") LocalDate cursorDate,
+                        @Param("cursorTime") LocalTime cursorTime,
+                        @Param("cursorId") UUID cursorId,
+                        Pageable pageable);
+
+        /**
+         * Forward-only export rows: id, patient name, doctor name, specialty, date,
+         * time, status, symptoms. Must be consumed inside a transaction and closed.
+         */
+        @QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = UserRepository.EXPORT_FETCH_SIZE),
+                        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+        @Query("SELECT a.id, pu.fullName, du.fullName, s.name, a.appointmentDate, a.appointmentTime, " +
+                        "a.status, a.symptoms " +
+                        "FROM Appointment a " +
+                        "LEFT JOIN a.patient p LEFT JOIN p.user pu " +
+                        "LEFT JOIN a.doctor d LEFT JOIN d.user du " +
+                        "LEFT JOIN a.specialty s " +
+                        "WHERE (cast(:dateFrom as string) IS NULL OR a.appointmentDate >= :dateFrom) " +
+                        "AND (cast(:dateTo as string) IS NULL OR a.appointmentDate <= :dateTo) " +
+                        "ORDER BY a.appointmentDate DESC, a.appointmentTime DESC")
+        Stream<Object[]> streamForExport(@Param("dateFrom") LocalDate dateFrom, @Param("dateTo") LocalDate dateTo);
 }
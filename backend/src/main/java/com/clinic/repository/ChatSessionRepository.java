@@ -0,0 +1,26 @@
+package com.clinic.repository;
+
+import com.clinic.entity.ChatSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID> {
+
+    Optional<ChatSession> findByUserId(UUID userId);
+
+    List<ChatSession> findByUserIdIn(Collection<UUID> userIds);
+
+    @Modifying
+    @Query("DELETE FROM ChatSession s WHERE s.lastActiveAt < :cutoff")
+    int deleteInactiveBefore(@Param("cutoff") LocalDateTime cutoff);
+}
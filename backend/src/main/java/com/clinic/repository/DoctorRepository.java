@@ -39,4 +39,7 @@ public interface DoctorRepository extends JpaRepository<Doctor, UUID> {
     long countBySpecialtyId(UUID specialtyId);
 
     List<Doctor> findBySpecialtyIsNull();
+
+    @Query("SELECT d.id FROM Doctor d WHERE d.user.id = :userId")
+    Optional<UUID> findIdByUserId(@Param("userId") UUID userId);
 }
@@ -27,6 +27,12 @@ public interface MedicalRecordRepository extends JpaRepository<MedicalRecord, UU
             "WHERE r.id = :id")
     Optional<MedicalRecord> findByIdWithUser(@org.springframework.data.repository.query.Param("id") UUID id);
 
+    /**
+     * Patient id and doctor id of a record, read from its own row.
+     */
+    @org.springframework.data.jpa.repository.Query("SELECT r.patient.id, r.doctor.id FROM MedicalRecord r WHERE r.id = :id")
+    List<Object[]> findOwnerIds(@org.springframework.data.repository.query.Param("id") UUID id);
+
     @org.springframework.data.jpa.repository.Query("SELECT r FROM MedicalRecord r " +
             "JOIN FETCH r.patient p " +
             "JOIN FETCH p.user " +
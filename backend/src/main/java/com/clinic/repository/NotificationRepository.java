@@ -1,7 +1,7 @@
 package com.clinic.repository;
 
+import com.clinic.dto.response.NotificationResponse;
 import com.clinic.entity.Notification;
-import com.clinic.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,16 +9,84 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, UUID> {
 
-    Page<Notification> findAllByUserOrderByCreatedAtDesc(User user, Pageable pageable);
+    String LISTING_SELECT = "SELECT new com.clinic.dto.response.NotificationResponse(n.id, n.title, n.message, "
+            + "n.type, n.isRead, n.relatedEntityType, n.relatedEntityId, n.createdAt) FROM Notification n ";
 
-    long countByUserAndIsReadFalse(User user);
+    String LISTING_ORDER = " ORDER BY n.createdAt DESC, n.id DESC";
 
+    /**
+     * OFFSET page of the user's notifications, newest first, for the
+     * page-number listing.
+     */
+    @Query(value = LISTING_SELECT + "WHERE n.user.id = :userId" + LISTING_ORDER,
+            countQuery = "SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId")
+    Page<NotificationResponse> findPageByUserId(UUID userId, Pageable pageable);
+
+    /**
+     * First keyset page of the user's notifications, newest first. Page size
+     * comes from {@code pageable}.
+     */
+    @Query(LISTING_SELECT + "WHERE n.user.id = :userId" + LISTING_ORDER)
+    List<NotificationResponse> findListingPage(UUID userId, Pageable pageable);
+
+    /**
+     * Page after the cursor row (created_at, id), seeking on
+     * idx_notifications_user_keyset instead of skipping OFFSET rows.
+     */
+    @Query(LISTING_SELECT + "WHERE n.user.id = :userId "
+            + "AND (n.createdAt < :cursorCreatedAt OR (n.createdAt = :cursorCreatedAt AND n.id < :cursorId))"
+            + LISTING_ORDER)
+    List<NotificationResponse> findListingPageAfter(UUID userId, LocalDateTime cursorCreatedAt, UUID cursorId,
+            Pageable pageable);
+
+    long countByUserIdAndIsReadFalse(UUID userId);
+
+    boolean existsByUserIdAndRelatedEntityIdAndTitleAndCreatedAtGreaterThanEqual(UUID userId, UUID relatedEntityId,
+            String title, LocalDateTime since);
+
+    /**
+     * Unread counts of the given users as (userId, count) rows; users without
+     * unread notifications are missing.
+     */
+    @Query("SELECT n.user.id, COUNT(n) FROM Notification n WHERE n.isRead = false AND n.user.id IN :userIds "
+            + "GROUP BY n.user.id")
+    List<Object[]> countUnreadByUserIds(Collection<UUID> userIds);
+
+    /**
+     * @return 1 if the notification belonged to the user and was unread, else 0
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.id = :id AND n.user.id = :userId AND n.isRead = false")
+    int markAsRead(UUID id, UUID userId);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = :userId AND n.isRead = false")
+    int markAllAsReadByUserId(UUID userId);
+
+    /**
+     * Moves up to {@code limit} read notifications created before
+     * {@code before} into notifications_archive, oldest first. SKIP LOCKED
+     * keeps concurrent sweeps (other nodes) on disjoint rows.
+     *
+     * @return number of notifications archived
+     */
     @Modifying
-    @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = :userId")
-    void markAllAsReadByUserId(UUID userId);
+    @Query(value = "WITH moved AS (DELETE FROM notifications WHERE id IN ("
+            + "SELECT id FROM notifications WHERE is_read = true AND created_at < :before "
+            + "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED) "
+            + "RETURNING id, user_id, title, message, type, is_read, related_entity_type, related_entity_id, "
+            + "created_at, updated_at) "
+            + "INSERT INTO notifications_archive (id, user_id, title, message, type, is_read, related_entity_type, "
+            + "related_entity_id, created_at, updated_at) "
+            + "SELECT id, user_id, title, message, type, is_read, related_entity_type, related_entity_id, "
+            + "created_at, updated_at FROM moved", nativeQuery = true)
+    int archiveReadBefore(LocalDateTime before, int limit);
 }
@@ -0,0 +1,31 @@
+package com.clinic.repository;
+
+import com.clinic.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, UUID> {
+
+        /**
+         * Locks a batch of due events. SKIP LOCKED lets several dispatchers (or
+         * nodes) claim disjoint batches without waiting on each other.
+         */
+        @Query(value = "SELECT * FROM outbox_events " +
+                        "WHERE status IN ('PENDING', 'PROCESSING') AND next_attempt_at <= :now " +
+                        "ORDER BY next_attempt_at " +
+                        "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+        List<OutboxEvent> lockDueEvents(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+        @Modifying
+        @Query("DELETE FROM OutboxEvent e WHERE e.status = com.clinic.entity.enums.OutboxStatus.SENT " +
+                        "AND e.processedAt < :before")
+        int deleteSentBefore(@Param("before") LocalDateTime before);
+}
@@ -1,14 +1,18 @@
 package com.clinic.repository;
 
 import com.clinic.entity.Patient;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, UUID> {
@@ -47,4 +51,17 @@ public interface PatientRepository extends JpaRepository<Patient, UUID> {
                         "WHERE p.id IN (SELECT a.patient.id FROM Appointment a WHERE a.doctor.id = :doctorId) " +
                         "OR p.id IN (SELECT mr.patient.id FROM MedicalRecord mr WHERE mr.doctor.id = :doctorId)")
         List<Patient> findDistinctPatientsByDoctorId(@Param("doctorId") UUID doctorId);
+
+        @Query("SELECT p.id FROM Patient p WHERE p.user.id = :userId")
+        Optional<UUID> findIdByUserId(@Param("userId") UUID userId);
+
+        /**
+         * Forward-only export rows: id, fullName, email, phone, dateOfBirth, gender,
+         * address, bloodType. Must be consumed inside a transaction and closed.
+         */
+        @QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = UserRepository.EXPORT_FETCH_SIZE),
+                        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+        @Query("SELECT p.id, u.fullName, u.email, u.phone, p.dateOfBirth, p.gender, p.address, p.bloodType " +
+                        "FROM Patient p LEFT JOIN p.user u")
+        Stream<Object[]> streamForExport();
 }
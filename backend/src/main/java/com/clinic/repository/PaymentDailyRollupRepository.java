@@ -0,0 +1,43 @@
+package com.clinic.repository;
+
+import com.clinic.entity.PaymentDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PaymentDailyRollupRepository extends JpaRepository<PaymentDailyRollup, Long> {
+
+        /**
+         * Rows [createdAt, paidAt] of payments changed in the window; both days are
+         * affected when an unpaid payment becomes paid.
+         */
+        @Query("SELECT p.createdAt, p.paidAt FROM Payment p WHERE p.updatedAt > :since AND p.updatedAt <= :until")
+        List<Object[]> findChangedTimestamps(@Param("since") LocalDateTime since,
+                        @Param("until") LocalDateTime until);
+
+        @Modifying
+        @Query("DELETE FROM PaymentDailyRollup r WHERE r.statDate IN :dates")
+        int deleteDays(@Param("dates") Collection<LocalDate> dates);
+
+        @Modifying
+        @Query(value = "INSERT INTO payment_daily_rollups (stat_date, status, payment_count, amount_total) " +
+                        "SELECT CAST(COALESCE(p.paid_at, p.created_at) AS DATE), COALESCE(p.status, 'PENDING'), " +
+                        "COUNT(*), COALESCE(SUM(p.amount), 0) " +
+                        "FROM payments p WHERE CAST(COALESCE(p.paid_at, p.created_at) AS DATE) IN (:dates) " +
+                        "GROUP BY CAST(COALESCE(p.paid_at, p.created_at) AS DATE), COALESCE(p.status, 'PENDING')",
+                        nativeQuery = true)
+        int insertDays(@Param("dates") Collection<LocalDate> dates);
+
+        @Query("SELECT r.statDate, SUM(r.amountTotal), SUM(r.paymentCount) FROM PaymentDailyRollup r " +
+                        "WHERE r.status = 'COMPLETED' AND r.statDate BETWEEN :from AND :to " +
+                        "GROUP BY r.statDate ORDER BY r.statDate")
+        List<Object[]> getRevenueTrend(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
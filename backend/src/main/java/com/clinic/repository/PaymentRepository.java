@@ -1,11 +1,15 @@
 package com.clinic.repository;
 
 import com.clinic.entity.Payment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import com.clinic.entity.enums.PaymentStatus;
 
@@ -31,4 +35,19 @@ public interface PaymentRepository extends JpaRepository<Payment, UUID> {
         java.util.List<Object[]> getRevenueTrend(
                         @org.springframework.data.repository.query.Param("from") java.time.LocalDateTime from,
                         @org.springframework.data.repository.query.Param("to") java.time.LocalDateTime to);
+
+        /**
+         * Forward-only export rows: id, transactionId, patient name, appointment
+         * date, amount, method, status, paidAt, createdAt for payments created in
+         * [from, to). Must be consumed inside a transaction and closed.
+         */
+        @QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = UserRepository.EXPORT_FETCH_SIZE),
+                        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+        @org.springframework.data.jpa.repository.Query("SELECT p.id, p.transactionId, pu.fullName, a.appointmentDate, "
+                        + "p.amount, p.paymentMethod, p.status, p.paidAt, p.createdAt "
+                        + "FROM Payment p LEFT JOIN p.patient pt LEFT JOIN pt.user pu LEFT JOIN p.appointment a "
+                        + "WHERE p.createdAt >= :from AND p.createdAt < :to ORDER BY p.createdAt")
+        Stream<Object[]> streamForExport(
+                        @org.springframework.data.repository.query.Param("from") java.time.LocalDateTime from,
+                        @org.springframework.data.repository.query.Param("to") java.time.LocalDateTime to);
 }
@@ -0,0 +1,58 @@
+package com.clinic.repository;
+
+import com.clinic.entity.ReportJob;
+import com.clinic.entity.enums.ReportJobStatus;
+import com.clinic.entity.enums.ReportJobType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ReportJobRepository extends JpaRepository<ReportJob, UUID> {
+
+    /**
+     * Jobs for the same request that are still in flight or finished after
+     * {@code since} and not yet expired, newest first.
+     */
+    @Query("SELECT j FROM ReportJob j WHERE j.jobType = :type AND j.dateFrom = :from AND j.dateTo = :to " +
+            "AND (j.status IN (com.clinic.entity.enums.ReportJobStatus.PENDING, " +
+            "com.clinic.entity.enums.ReportJobStatus.RUNNING) " +
+            "OR (j.status = com.clinic.entity.enums.ReportJobStatus.COMPLETED " +
+            "AND j.finishedAt >= :since AND j.expiresAt > :now)) " +
+            "ORDER BY j.createdAt DESC")
+    List<ReportJob> findReusable(@Param("type") ReportJobType type, @Param("from") LocalDate from,
+            @Param("to") LocalDate to, @Param("since") LocalDateTime since, @Param("now") LocalDateTime now);
+
+    List<ReportJob> findByStatusAndExpiresAtBefore(ReportJobStatus status, LocalDateTime cutoff);
+
+    /**
+     * Refreshes the heartbeat of in-flight jobs run by the calling node.
+     */
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.heartbeatAt = :now " +
+            "WHERE j.id IN :ids AND j.status IN (com.clinic.entity.enums.ReportJobStatus.PENDING, " +
+            "com.clinic.entity.enums.ReportJobStatus.RUNNING)")
+    int touch(@Param("ids") Collection<UUID> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Fails jobs whose heartbeat stopped before {@code cutoff}, e.g. because
+     * the node running them was restarted. Bumps the version so that node
+     * cannot overwrite the outcome if it turns out to be alive.
+     */
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.status = com.clinic.entity.enums.ReportJobStatus.FAILED, " +
+            "j.errorMessage = :error, j.finishedAt = :now, j.updatedAt = :now, j.version = j.version + 1 " +
+            "WHERE j.status IN (com.clinic.entity.enums.ReportJobStatus.PENDING, " +
+            "com.clinic.entity.enums.ReportJobStatus.RUNNING) " +
+            "AND COALESCE(j.heartbeatAt, j.createdAt) < :cutoff")
+    int failStale(@Param("cutoff") LocalDateTime cutoff, @Param("error") String error,
+            @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,48 @@
+package com.clinic.repository;
+
+import com.clinic.entity.SlotHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface SlotHoldRepository extends JpaRepository<SlotHold, UUID> {
+
+        @Query("SELECT h FROM SlotHold h WHERE h.doctorId = :doctorId AND h.holdDate = :date " +
+                        "AND h.holdTime = :time AND h.expiresAt > :now")
+        List<SlotHold> findActiveHolds(@Param("doctorId") UUID doctorId,
+                        @Param("date") LocalDate date,
+                        @Param("time") LocalTime time,
+                        @Param("now") LocalDateTime now);
+
+        /**
+         * Active hold counts per doctor, date and time.
+         * Rows: [doctorId, holdDate, holdTime, count].
+         */
+        @Query("SELECT h.doctorId, h.holdDate, h.holdTime, COUNT(h) FROM SlotHold h " +
+                        "WHERE h.doctorId IN :doctorIds AND h.holdDate BETWEEN :from AND :to AND h.expiresAt > :now " +
+                        "GROUP BY h.doctorId, h.holdDate, h.holdTime")
+        List<Object[]> countActiveHolds(@Param("doctorIds") Collection<UUID> doctorIds,
+                        @Param("from") LocalDate from,
+                        @Param("to") LocalDate to,
+                        @Param("now") LocalDateTime now);
+
+        @Modifying
+        @Query("DELETE FROM SlotHold h WHERE h.doctorId = :doctorId AND h.holdDate = :date " +
+                        "AND h.holdTime = :time AND h.expiresAt <= :now")
+        int deleteExpiredForSlot(@Param("doctorId") UUID doctorId,
+                        @Param("date") LocalDate date,
+                        @Param("time") LocalTime time,
+                        @Param("now") LocalDateTime now);
+
+        List<SlotHold> findTop500ByExpiresAtBefore(LocalDateTime now);
+}
@@ -2,9 +2,14 @@ package com.clinic.repository;
 
 import com.clinic.entity.TimeSlot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public interface TimeSlotRepository extends JpaRepository<TimeSlot, Integer> {
@@ -14,4 +19,17 @@ public interface TimeSlotRepository extends JpaRepository<TimeSlot, Integer> {
     List<TimeSlot> findByScheduleId(Integer scheduleId);
 
     void deleteByScheduleId(Integer scheduleId);
+
+    /**
+     * Loads every bookable slot (with its schedule) for the given doctors that can
+     * apply to a date inside [from, to]: weekly schedules plus specific-date
+     * overrides falling in the range.
+     */
+    @Query("SELECT ts FROM TimeSlot ts JOIN FETCH ts.schedule ws " +
+            "WHERE ws.doctor.id IN :doctorIds " +
+            "AND ws.isAvailable = true AND ts.isAvailable = true " +
+            "AND (ws.specificDate IS NULL OR ws.specificDate BETWEEN :from AND :to)")
+    List<TimeSlot> findBookableSlots(@Param("doctorIds") Collection<UUID> doctorIds,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to);
 }
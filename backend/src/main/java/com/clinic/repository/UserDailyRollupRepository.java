@@ -0,0 +1,40 @@
+package com.clinic.repository;
+
+import com.clinic.entity.UserDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UserDailyRollupRepository extends JpaRepository<UserDailyRollup, Long> {
+
+        @Query("SELECT u.createdAt FROM User u WHERE u.updatedAt > :since AND u.updatedAt <= :until")
+        List<LocalDateTime> findChangedCreatedAt(@Param("since") LocalDateTime since,
+                        @Param("until") LocalDateTime until);
+
+        @Modifying
+        @Query("DELETE FROM UserDailyRollup r WHERE r.statDate IN :dates")
+        int deleteDays(@Param("dates") Collection<LocalDate> dates);
+
+        @Modifying
+        @Query(value = "INSERT INTO user_daily_rollups (stat_date, role_name, registered_count) " +
+                        "SELECT CAST(u.created_at AS DATE), r.name, COUNT(*) " +
+                        "FROM users u LEFT JOIN roles r ON r.id = u.role_id " +
+                        "WHERE CAST(u.created_at AS DATE) IN (:dates) " +
+                        "GROUP BY CAST(u.created_at AS DATE), r.name", nativeQuery = true)
+        int insertDays(@Param("dates") Collection<LocalDate> dates);
+
+        @Query("SELECT r.statDate, SUM(r.registeredCount) FROM UserDailyRollup r " +
+                        "WHERE r.statDate BETWEEN :from AND :to GROUP BY r.statDate ORDER BY r.statDate")
+        List<Object[]> getRegistrationTrend(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+        @Query("SELECT r.roleName, SUM(r.registeredCount) FROM UserDailyRollup r GROUP BY r.roleName")
+        List<Object[]> getRoleDistribution();
+}
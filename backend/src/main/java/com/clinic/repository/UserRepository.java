@@ -1,24 +1,50 @@
 package com.clinic.repository;
 
 import com.clinic.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
 
+    /** Rows the JDBC driver fetches per round trip while streaming exports. */
+    String EXPORT_FETCH_SIZE = "1000";
+
     Optional<User> findByEmail(String email);
 
     boolean existsByEmail(String email);
 
     Optional<User> findByEmailAndIsActiveTrue(String email);
 
+    @Query("SELECT u.tokenVersion, u.isActive FROM User u WHERE u.id = :id")
+    List<Object[]> findTokenState(@Param("id") UUID id);
+
+    /**
+     * Identity row: id, email, password hash, active flag, role name, token
+     * version, doctor id and patient id (the last two null when absent).
+     */
+    @Query("SELECT u.id, u.email, u.passwordHash, u.isActive, r.name, u.tokenVersion, "
+            + "(SELECT d.id FROM Doctor d WHERE d.user.id = u.id), "
+            + "(SELECT p.id FROM Patient p WHERE p.user.id = u.id) "
+            + "FROM User u LEFT JOIN u.role r WHERE u.id = :id")
+    List<Object[]> findIdentityById(@Param("id") UUID id);
+
+    @Query("SELECT u.id, u.email, u.passwordHash, u.isActive, r.name, u.tokenVersion, "
+            + "(SELECT d.id FROM Doctor d WHERE d.user.id = u.id), "
+            + "(SELECT p.id FROM Patient p WHERE p.user.id = u.id) "
+            + "FROM User u LEFT JOIN u.role r WHERE u.email = :email")
+    List<Object[]> findIdentityByEmail(@Param("email") String email);
+
     @org.springframework.data.jpa.repository.Query("SELECT u FROM User u WHERE u.role.name = :roleName")
     List<User> findByRoleName(
             @org.springframework.data.repository.query.Param("roleName") com.clinic.entity.enums.RoleName roleName);
@@ -32,4 +58,14 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     @org.springframework.data.jpa.repository.Query("SELECT u.role.name, COUNT(u) " +
             "FROM User u GROUP BY u.role.name")
     List<Object[]> getRoleDistribution();
+
+    /**
+     * Forward-only export rows: id, email, fullName, phone, role, isActive, createdAt.
+     * Must be consumed inside a transaction and closed.
+     */
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    @Query("SELECT u.id, u.email, u.fullName, u.phone, r.name, u.isActive, u.createdAt " +
+            "FROM User u LEFT JOIN u.role r")
+    Stream<Object[]> streamForExport();
 }
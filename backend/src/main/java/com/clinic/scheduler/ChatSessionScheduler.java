@@ -0,0 +1,48 @@
+package com.clinic.scheduler;
+
+import com.clinic.service.CachedChatSessionStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatSessionScheduler {
+
+    private final CachedChatSessionStore chatSessionStore;
+
+    /**
+     * Runs every 5 seconds (app.chat.sessions.flush-interval-ms) to write changed conversations behind
+     */
+    @Scheduled(fixedDelayString = "${app.chat.sessions.flush-interval-ms:5000}")
+    public void flushSessions() {
+        int written = chatSessionStore.flush();
+        if (written > 0) {
+            log.debug("Wrote {} chat session(s)", written);
+        }
+    }
+
+    /**
+     * Runs every minute to drop idle conversations from memory
+     */
+    @Scheduled(fixedDelayString = "${app.chat.sessions.eviction-interval-ms:60000}")
+    public void evictIdleSessions() {
+        int evicted = chatSessionStore.evictIdle();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle chat session(s)", evicted);
+        }
+    }
+
+    /**
+     * Runs daily at 3:45 AM to delete conversations past their retention
+     */
+    @Scheduled(cron = "0 45 3 * * *")
+    public void purgeInactiveSessions() {
+        int deleted = chatSessionStore.purgeInactive();
+        if (deleted > 0) {
+            log.info("Deleted {} inactive chat session(s)", deleted);
+        }
+    }
+}
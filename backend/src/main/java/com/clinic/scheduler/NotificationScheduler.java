@@ -0,0 +1,47 @@
+package com.clinic.scheduler;
+
+import com.clinic.service.NotificationService;
+import com.clinic.service.UnreadNotificationCounter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationScheduler {
+
+    private final UnreadNotificationCounter unreadCounter;
+    private final NotificationService notificationService;
+
+    @Value("${app.notifications.retention.days:90}")
+    private long retentionDays;
+
+    @Value("${app.notifications.retention.batch-size:1000}")
+    private int archiveBatchSize;
+
+    /**
+     * Runs every 5 minutes (app.notifications.unread.reconcile-interval-ms) to correct cached unread counts
+     */
+    @Scheduled(fixedDelayString = "${app.notifications.unread.reconcile-interval-ms:300000}")
+    public void reconcileUnreadCounts() {
+        int corrected = unreadCounter.reconcile();
+        if (corrected > 0) {
+            log.info("Corrected {} cached unread notification count(s)", corrected);
+        }
+    }
+
+    /**
+     * Runs every day at 3:45 AM to move read notifications past retention to the archive table
+     */
+    @Scheduled(cron = "0 45 3 * * *")
+    public void archiveReadNotifications() {
+        int archived = notificationService.archiveRead(LocalDateTime.now().minusDays(retentionDays),
+                archiveBatchSize);
+        log.info("Archived {} read notification(s) older than {} days", archived, retentionDays);
+    }
+}
@@ -0,0 +1,126 @@
+package com.clinic.scheduler;
+
+import com.clinic.entity.OutboxEvent;
+import com.clinic.entity.enums.OutboxChannel;
+import com.clinic.entity.enums.OutboxEventType;
+import com.clinic.service.OutboxEventHandler;
+import com.clinic.service.OutboxService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxDispatcher {
+
+    private final OutboxService outboxService;
+    private final List<OutboxEventHandler> handlers;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    @Value("${app.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.outbox.retention-days:7}")
+    private long retentionDays;
+
+    /**
+     * Delivery progress is tracked per channel, not per handler, so a second
+     * handler for the same event type would be skipped as already delivered.
+     */
+    @PostConstruct
+    void checkHandlers() {
+        for (OutboxEventType type : OutboxEventType.values()) {
+            List<OutboxEventHandler> supporting = handlers.stream().filter(h -> h.supports(type)).toList();
+            if (supporting.size() > 1) {
+                throw new IllegalStateException("Outbox event type " + type + " has more than one handler: "
+                        + supporting);
+            }
+        }
+    }
+
+    /**
+     * Dispatches right after a publishing transaction commits instead of waiting
+     * for the next poll.
+     */
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPublished(OutboxService.Published published) {
+        dispatchPending();
+    }
+
+    /**
+     * Polls for events that are due again (retries, expired leases, missed wake-ups).
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        dispatchPending();
+    }
+
+    /**
+     * Runs every day at 3:30 AM to drop delivered events past retention.
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeDelivered() {
+        int removed = outboxService.purgeSent(LocalDateTime.now().minusDays(retentionDays));
+        log.info("Purged {} delivered outbox events", removed);
+    }
+
+    /**
+     * Drains due events batch by batch. Concurrent triggers on this node collapse
+     * into one extra pass; other nodes claim disjoint rows via SKIP LOCKED.
+     */
+    public void dispatchPending() {
+        requested.set(true);
+        while (requested.get() && running.compareAndSet(false, true)) {
+            requested.set(false);
+            try {
+                List<OutboxEvent> batch;
+                do {
+                    batch = outboxService.claimBatch(batchSize);
+                    batch.forEach(this::deliver);
+                } while (batch.size() == batchSize);
+            } catch (Exception e) {
+                log.error("Outbox dispatch failed", e);
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+
+    void deliver(OutboxEvent event) {
+        Set<OutboxChannel> delivered = OutboxService.parseChannels(event.getDeliveredChannels());
+        Exception error = null;
+        try {
+            Map<String, Object> payload = outboxService.readPayload(event);
+            for (OutboxEventHandler handler : handlers) {
+                if (!handler.supports(event.getEventType())) {
+                    continue;
+                }
+                for (OutboxChannel channel : OutboxChannel.values()) {
+                    if (!delivered.contains(channel)) {
+                        handler.handle(event, payload, channel);
+                        delivered.add(channel);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            error = e;
+        }
+        outboxService.complete(event, delivered, error);
+    }
+}
@@ -0,0 +1,26 @@
+package com.clinic.scheduler;
+
+import com.clinic.service.ReportJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReportJobScheduler {
+
+    private final ReportJobService reportJobService;
+
+    /**
+     * Runs every 15 minutes (app.report.jobs.cleanup-interval-ms) to drop expired report artifacts
+     */
+    @Scheduled(fixedDelayString = "${app.report.jobs.cleanup-interval-ms:900000}")
+    public void purgeExpiredReports() {
+        int purged = reportJobService.purgeExpired();
+        if (purged > 0) {
+            log.info("Purged {} expired report artifact(s)", purged);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.clinic.scheduler;
+
+import com.clinic.service.ReportRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReportRollupScheduler implements ApplicationRunner {
+
+    static final String BACKFILL_OPTION = "rollup-backfill";
+
+    private final ReportRollupService reportRollupService;
+
+    /**
+     * Runs every minute (app.rollup.refresh-interval-ms) to fold recent changes into the daily rollups
+     */
+    @Scheduled(fixedDelayString = "${app.rollup.refresh-interval-ms:60000}",
+            initialDelayString = "${app.rollup.refresh-interval-ms:60000}")
+    public void refreshRollups() {
+        reportRollupService.refreshAll();
+    }
+
+    /**
+     * Backfill command: start the application with
+     * {@code --rollup-backfill=2024-01-01:2024-12-31} (end defaults to today)
+     * to rebuild the rollups for that range.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> values = args.getOptionValues(BACKFILL_OPTION);
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        String[] range = values.get(0).split(":");
+        LocalDate from = LocalDate.parse(range[0]);
+        LocalDate to = range.length > 1 ? LocalDate.parse(range[1]) : LocalDate.now();
+        log.info("Backfilling report rollups from {} to {}", from, to);
+        int days = reportRollupService.backfill(from, to);
+        log.info("Report rollup backfill finished: {} day(s)", days);
+    }
+}
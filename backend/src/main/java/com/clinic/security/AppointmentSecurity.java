@@ -1,6 +1,5 @@
 package com.clinic.security;
 
-import com.clinic.repository.AppointmentRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -10,17 +9,9 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class AppointmentSecurity {
 
-    private final AppointmentRepository appointmentRepository;
+    private final ResourceOwnership resourceOwnership;
 
     public boolean isAuthorized(UUID appointmentId, Object principal) {
-        if (!(principal instanceof CustomUserDetails userDetails)) {
-            return false;
-        }
-
-        UUID userId = userDetails.getId();
-        return appointmentRepository.findByIdWithUser(appointmentId)
-                .map(appointment -> appointment.getPatient().getUser().getId().equals(userId) ||
-                        appointment.getDoctor().getUser().getId().equals(userId))
-                .orElse(false);
+        return resourceOwnership.ownsAppointment(appointmentId, principal);
     }
 }
@@ -20,20 +20,56 @@ public class CustomUserDetails implements UserDetails {
     private final String password;
     private final boolean isActive;
     private final Collection<? extends GrantedAuthority> authorities;
+    private final UUID doctorId;
+    private final UUID patientId;
+    private final int tokenVersion;
 
     public static CustomUserDetails build(User user) {
+        return build(user, null, null);
+    }
+
+    public static CustomUserDetails build(User user, UUID doctorId, UUID patientId) {
         String roleName = (user.getRole() != null && user.getRole().getName() != null)
                 ? user.getRole().getName().name()
                 : "PATIENT"; // Default or throw meaningful exception
 
-        SimpleGrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + roleName);
-
         return new CustomUserDetails(
                 user.getId(),
                 user.getEmail(),
                 user.getPasswordHash(),
                 user.getIsActive(),
-                Collections.singletonList(authority));
+                authorities(roleName),
+                doctorId,
+                patientId,
+                user.getTokenVersion() != null ? user.getTokenVersion() : 0);
+    }
+
+    /**
+     * Principal rebuilt from access token claims, without a database lookup.
+     */
+    public static CustomUserDetails fromClaims(UUID id, String email, String roleName, UUID doctorId,
+            UUID patientId, int tokenVersion) {
+        return new CustomUserDetails(id, email, null, true, authorities(roleName), doctorId, patientId,
+                tokenVersion);
+    }
+
+    /**
+     * Principal rebuilt from an identity row, see {@link IdentityCache}.
+     */
+    static CustomUserDetails fromRow(Object[] row) {
+        String roleName = row[4] != null ? row[4].toString() : "PATIENT";
+        return new CustomUserDetails((UUID) row[0], (String) row[1], (String) row[2],
+                Boolean.TRUE.equals(row[3]), authorities(roleName), (UUID) row[6], (UUID) row[7],
+                row[5] != null ? ((Number) row[5]).intValue() : 0);
+    }
+
+    public String getRoleName() {
+        return authorities.isEmpty() ? null
+                : authorities.iterator().next().getAuthority().substring("ROLE_".length());
+    }
+
+    private static Collection<? extends GrantedAuthority> authorities(String roleName) {
+        return Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + roleName));
     }
 
     @Override
@@ -1,9 +1,6 @@
 package com.clinic.security;
 
-import com.clinic.entity.Doctor;
-import com.clinic.repository.DoctorRepository;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 
 import java.util.UUID;
@@ -12,16 +9,9 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class DoctorSecurity {
 
-    private final DoctorRepository doctorRepository;
+    private final ResourceOwnership resourceOwnership;
 
-    @Transactional(readOnly = true)
     public boolean isOwner(UUID doctorId, Object principal) {
-        if (!(principal instanceof CustomUserDetails userDetails)) {
-            return false;
-        }
-
-        return doctorRepository.findById(doctorId)
-                .map(doctor -> doctor.getUser().getId().equals(userDetails.getId()))
-                .orElse(false);
+        return resourceOwnership.isDoctor(doctorId, principal);
     }
 }
@@ -0,0 +1,139 @@
+package com.clinic.security;
+
+import com.clinic.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caller identity (user, role, doctor id and patient id) shared by the
+ * authentication paths and by services that only need the caller's profile
+ * id. Entries are keyed by user id with a secondary email index, loaded with
+ * a single scalar query, bounded in size and expire after a short TTL; writes
+ * that change an identity call {@link #evict} so this node sees them once the
+ * transaction commits.
+ */
+@Component
+public class IdentityCache {
+
+    private final Map<UUID, Entry> byId = new ConcurrentHashMap<>();
+    private final Map<String, UUID> idByEmail = new ConcurrentHashMap<>();
+    private final UserRepository userRepository;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public IdentityCache(UserRepository userRepository, MeterRegistry meterRegistry,
+            @Value("${app.identity-cache.ttl-seconds:60}") long ttlSeconds,
+            @Value("${app.identity-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("clinic.auth.identity.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("clinic.auth.identity.lookups").tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the identity, or {@code null} when no such user exists
+     */
+    public CustomUserDetails getById(UUID userId) {
+        if (userId == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        Entry entry = byId.get(userId);
+        if (entry != null && now - entry.loadedAt() < ttlNanos) {
+            hits.increment();
+            return entry.principal();
+        }
+        misses.increment();
+        return store(userRepository.findIdentityById(userId), now);
+    }
+
+    /**
+     * @return the identity, or {@code null} when no such user exists
+     */
+    public CustomUserDetails getByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        UUID userId = idByEmail.get(email);
+        Entry entry = userId != null ? byId.get(userId) : null;
+        if (entry != null && now - entry.loadedAt() < ttlNanos && email.equals(entry.principal().getEmail())) {
+            hits.increment();
+            return entry.principal();
+        }
+        misses.increment();
+        return store(userRepository.findIdentityByEmail(email), now);
+    }
+
+    /**
+     * Drops the user's entry once the current transaction commits.
+     */
+    public void evict(UUID userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(userId);
+                }
+            });
+        } else {
+            remove(userId);
+        }
+    }
+
+    private CustomUserDetails store(List<Object[]> rows, long now) {
+        if (rows.isEmpty()) {
+            return null;
+        }
+        CustomUserDetails principal = CustomUserDetails.fromRow(rows.get(0));
+        if (byId.size() >= maxEntries) {
+            trim(now);
+        }
+        Entry previous = byId.put(principal.getId(), new Entry(principal, now));
+        if (previous != null && !previous.principal().getEmail().equals(principal.getEmail())) {
+            idByEmail.remove(previous.principal().getEmail(), principal.getId());
+        }
+        idByEmail.put(principal.getEmail(), principal.getId());
+        return principal;
+    }
+
+    private void remove(UUID userId) {
+        Entry entry = byId.remove(userId);
+        if (entry != null) {
+            idByEmail.remove(entry.principal().getEmail(), userId);
+        }
+    }
+
+    private void trim(long now) {
+        byId.entrySet().removeIf(e -> {
+            boolean expired = now - e.getValue().loadedAt() >= ttlNanos;
+            if (expired) {
+                idByEmail.remove(e.getValue().principal().getEmail(), e.getKey());
+            }
+            return expired;
+        });
+        Iterator<UUID> it = byId.keySet().iterator();
+        int toRemove = byId.size() - maxEntries + Math.max(1, maxEntries / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            remove(it.next());
+        }
+    }
+
+    private record Entry(CustomUserDetails principal, long loadedAt) {
+    }
+}
@@ -1,6 +1,5 @@
 package com.clinic.security;
 
-import com.clinic.repository.MedicalRecordRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -10,17 +9,9 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class MedicalRecordSecurity {
 
-    private final MedicalRecordRepository medicalRecordRepository;
+    private final ResourceOwnership resourceOwnership;
 
     public boolean isAuthorized(UUID recordId, Object principal) {
-        if (!(principal instanceof CustomUserDetails userDetails)) {
-            return false;
-        }
-
-        UUID userId = userDetails.getId();
-        return medicalRecordRepository.findByIdWithUser(recordId)
-                .map(record -> record.getPatient().getUser().getId().equals(userId) ||
-                        record.getDoctor().getUser().getId().equals(userId))
-                .orElse(false);
+        return resourceOwnership.ownsMedicalRecord(recordId, principal);
     }
 }
@@ -0,0 +1,129 @@
+package com.clinic.security;
+
+import com.clinic.repository.AppointmentRepository;
+import com.clinic.repository.MedicalRecordRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Ownership checks behind the {@code @PreAuthorize} expressions. The caller's
+ * doctor and patient ids come from the principal (token claims, or the
+ * {@link IdentityCache} when a claim is missing or the patient profile is
+ * newer than the token), so a check costs at most one
+ * primary-key lookup of the resource's patient and doctor ids, leaving the
+ * aggregate to the service call. Those ids are memoized for the rest of the
+ * request, so repeated checks on the same resource do not query again.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResourceOwnership {
+
+    private static final String MEMO_ATTRIBUTE = ResourceOwnership.class.getName() + ".memo";
+
+    private final AppointmentRepository appointmentRepository;
+    private final MedicalRecordRepository medicalRecordRepository;
+    private final IdentityCache identityCache;
+
+    public boolean ownsAppointment(UUID appointmentId, Object principal) {
+        return owns(appointmentOwners(appointmentId), principal);
+    }
+
+    public boolean ownsMedicalRecord(UUID recordId, Object principal) {
+        return owns(medicalRecordOwners(recordId), principal);
+    }
+
+    public boolean isPatient(UUID patientId, Object principal) {
+        return patientId != null && matches(principal, identity -> patientId.equals(identity.getPatientId()));
+    }
+
+    public boolean isDoctor(UUID doctorId, Object principal) {
+        return doctorId != null && matches(principal, identity -> doctorId.equals(identity.getDoctorId()));
+    }
+
+    /**
+     * Patient and doctor id of an appointment, or {@code null} when it does not exist.
+     */
+    public Owners appointmentOwners(UUID appointmentId) {
+        return memoized("appointment:", appointmentId, appointmentRepository::findOwnerIds);
+    }
+
+    public Owners medicalRecordOwners(UUID recordId) {
+        return memoized("record:", recordId, medicalRecordRepository::findOwnerIds);
+    }
+
+    private boolean owns(Owners owners, Object principal) {
+        return owners != null && matches(principal, identity ->
+                (identity.getPatientId() != null && identity.getPatientId().equals(owners.patientId()))
+                || (identity.getDoctorId() != null && identity.getDoctorId().equals(owners.doctorId())));
+    }
+
+    private boolean matches(Object principal, Predicate<CustomUserDetails> check) {
+        CustomUserDetails identity = identity(principal);
+        if (identity == null) {
+            return false;
+        }
+        if (check.test(identity)) {
+            return true;
+        }
+        // Doctors and admins get their patient profile when they first book,
+        // usually after the token was issued
+        if (identity == principal && identity.getPatientId() == null) {
+            CustomUserDetails current = identityCache.getById(identity.getId());
+            return current != null && check.test(current);
+        }
+        return false;
+    }
+
+    private CustomUserDetails identity(Object principal) {
+        if (!(principal instanceof CustomUserDetails userDetails)) {
+            return null;
+        }
+        if (userDetails.getDoctorId() != null || userDetails.getPatientId() != null) {
+            return userDetails;
+        }
+        // Legacy token, or a profile created after the token was issued
+        return Objects.requireNonNullElse(identityCache.getById(userDetails.getId()), userDetails);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Owners memoized(String prefix, UUID id, Function<UUID, List<Object[]>> loader) {
+        if (id == null) {
+            return null;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return load(id, loader);
+        }
+        Map<String, Owners> memo = (Map<String, Owners>) attributes.getAttribute(MEMO_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        if (memo == null) {
+            memo = new HashMap<>();
+            attributes.setAttribute(MEMO_ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+        }
+        String key = prefix + id;
+        if (memo.containsKey(key)) {
+            return memo.get(key);
+        }
+        Owners owners = load(id, loader);
+        memo.put(key, owners);
+        return owners;
+    }
+
+    private static Owners load(UUID id, Function<UUID, List<Object[]>> loader) {
+        List<Object[]> rows = loader.apply(id);
+        return rows.isEmpty() ? null : new Owners((UUID) rows.get(0)[0], (UUID) rows.get(0)[1]);
+    }
+
+    public record Owners(UUID patientId, UUID doctorId) {
+    }
+}
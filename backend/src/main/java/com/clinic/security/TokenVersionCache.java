@@ -0,0 +1,114 @@
+package com.clinic.security;
+
+import com.clinic.entity.User;
+import com.clinic.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Current token version and active flag per user, so claims-based access
+ * tokens can be checked for revocation without a query per request. Entries
+ * expire after a short TTL, which bounds how long another node can keep
+ * accepting a revoked token; on this node {@link #revoke} evicts after commit.
+ */
+@Component
+@Slf4j
+public class TokenVersionCache {
+
+    private final Map<UUID, State> entries = new ConcurrentHashMap<>();
+    private final UserRepository userRepository;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public TokenVersionCache(UserRepository userRepository, MeterRegistry meterRegistry,
+            @Value("${app.jwt.version-cache-ttl-seconds:30}") long ttlSeconds,
+            @Value("${app.jwt.version-cache-max-entries:50000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("clinic.auth.token-version.lookups").tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("clinic.auth.token-version.lookups").tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * True when the user still exists, is active and has not revoked tokens
+     * since {@code tokenVersion} was issued.
+     */
+    public boolean isCurrent(UUID userId, int tokenVersion) {
+        long now = System.nanoTime();
+        State state = entries.get(userId);
+        if (state != null && now - state.loadedAt() < ttlNanos) {
+            hits.increment();
+        } else {
+            misses.increment();
+            state = load(userId, now);
+        }
+        return state.active() && state.version() == tokenVersion;
+    }
+
+    /**
+     * Invalidates every access token issued to {@code user} so far. The new
+     * version is persisted with the caller's transaction.
+     */
+    public void revoke(User user) {
+        user.setTokenVersion((user.getTokenVersion() != null ? user.getTokenVersion() : 0) + 1);
+        evict(user.getId());
+    }
+
+    /**
+     * Drops the cached state once the current transaction commits.
+     */
+    public void evict(UUID userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entries.remove(userId);
+                }
+            });
+        } else {
+            entries.remove(userId);
+        }
+    }
+
+    private State load(UUID userId, long now) {
+        List<Object[]> rows = userRepository.findTokenState(userId);
+        State state = rows.isEmpty()
+                ? new State(-1, false, now)
+                : new State(((Number) rows.get(0)[0]).intValue(), Boolean.TRUE.equals(rows.get(0)[1]), now);
+        if (entries.size() >= maxEntries) {
+            trim(now);
+        }
+        entries.put(userId, state);
+        return state;
+    }
+
+    private void trim(long now) {
+        entries.values().removeIf(s -> now - s.loadedAt() >= ttlNanos);
+        Iterator<UUID> it = entries.keySet().iterator();
+        int toRemove = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private record State(int version, boolean active, long loadedAt) {
+    }
+}
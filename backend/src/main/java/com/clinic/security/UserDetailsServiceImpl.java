@@ -1,7 +1,8 @@
 package com.clinic.security;
 
 import com.clinic.entity.User;
-import com.clinic.repository.UserRepository;
+import com.clinic.repository.DoctorRepository;
+import com.clinic.repository.PatientRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -9,18 +10,34 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.UUID;
+
 @Service
 @RequiredArgsConstructor
 public class UserDetailsServiceImpl implements UserDetailsService {
 
-    private final UserRepository userRepository;
+    private final DoctorRepository doctorRepository;
+    private final PatientRepository patientRepository;
+    private final IdentityCache identityCache;
 
     @Override
-    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+        CustomUserDetails principal = identityCache.getByEmail(email);
+        if (principal == null) {
+            throw new UsernameNotFoundException("User not found with email: " + email);
+        }
+        return principal;
+    }
 
-        return CustomUserDetails.build(user);
+    /**
+     * Principal with the doctor and patient profile ids resolved, as embedded
+     * into access tokens. Both are looked up whatever the role: doctors and
+     * admins who book appointments have a patient profile too.
+     */
+    @Transactional(readOnly = true)
+    public CustomUserDetails buildPrincipal(User user) {
+        UUID doctorId = doctorRepository.findIdByUserId(user.getId()).orElse(null);
+        UUID patientId = patientRepository.findIdByUserId(user.getId()).orElse(null);
+        return CustomUserDetails.build(user, doctorId, patientId);
     }
 }
@@ -1,6 +1,7 @@
 package com.clinic.security;
 
-import com.clinic.security.jwt.JwtTokenProvider;
+import com.clinic.config.WebSocketConfig;
+import com.clinic.security.jwt.JwtPrincipalResolver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.Message;
@@ -9,49 +10,77 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
+/**
+ * Authenticates STOMP connections with the bearer token of the CONNECT frame
+ * and only lets authenticated sessions subscribe to their own user
+ * destinations and send to the application. Everything else on the broker,
+ * in particular the topics the nodes use to share user sessions and
+ * undelivered user messages, carries other users' pushes; broker wildcards
+ * are refused as well, since they would match those topics.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketChannelInterceptor implements ChannelInterceptor {
 
-    private final JwtTokenProvider tokenProvider;
-    private final UserDetailsService userDetailsService;
+    // RabbitMQ (*, #) and ActiveMQ (*, >) destination wildcards
+    private static final String WILDCARDS = "*#>";
+
+    private final JwtPrincipalResolver principalResolver;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
 
-        if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
-            List<String> authHeaders = accessor.getNativeHeader("Authorization");
+        switch (accessor.getCommand()) {
+            case CONNECT -> authenticate(accessor);
+            case SUBSCRIBE -> authorize(accessor, WebSocketConfig.USER_DESTINATION_PREFIX);
+            case SEND -> authorize(accessor, WebSocketConfig.APPLICATION_DESTINATION_PREFIX);
+            default -> {
+                // UNSUBSCRIBE, DISCONNECT, ACK, ...
+            }
+        }
+        return message;
+    }
 
-            if (authHeaders != null && !authHeaders.isEmpty()) {
-                String bearerToken = authHeaders.get(0);
-                if (bearerToken.startsWith("Bearer ")) {
-                    String jwt = bearerToken.substring(7);
+    private void authorize(StompHeaderAccessor accessor, String allowedPrefix) {
+        if (accessor.getUser() == null) {
+            throw new AccessDeniedException("Not authenticated");
+        }
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(allowedPrefix)
+                || destination.chars().anyMatch(c -> WILDCARDS.indexOf(c) >= 0)) {
+            log.warn("Rejected {} to {} by {}", accessor.getCommand(), destination, accessor.getUser().getName());
+            throw new AccessDeniedException("Destination not allowed: " + destination);
+        }
+    }
 
-                    if (tokenProvider.validateToken(jwt)) {
-                        String username = tokenProvider.getUsernameFromToken(jwt);
-                        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+    private void authenticate(StompHeaderAccessor accessor) {
+        List<String> authHeaders = accessor.getNativeHeader("Authorization");
+        UserDetails userDetails = null;
+        if (authHeaders != null && !authHeaders.isEmpty() && authHeaders.get(0).startsWith("Bearer ")) {
+            userDetails = principalResolver.resolve(authHeaders.get(0).substring(7));
+        }
+        if (userDetails == null) {
+            throw new AccessDeniedException("Missing or invalid access token");
+        }
 
-                        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities());
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                userDetails, null, userDetails.getAuthorities());
 
-                        // Set the user principal for the WebSocket session
-                        accessor.setUser(authentication);
+        // Set the user principal for the WebSocket session
+        accessor.setUser(authentication);
 
-                        log.info("WebSocket user authenticated: {}", username);
-                    }
-                }
-            }
-        }
-        return message;
+        log.info("WebSocket user authenticated: {}", userDetails.getUsername());
     }
 }
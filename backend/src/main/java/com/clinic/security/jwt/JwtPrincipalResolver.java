@@ -0,0 +1,46 @@
+package com.clinic.security.jwt;
+
+import com.clinic.security.CustomUserDetails;
+import com.clinic.security.TokenVersionCache;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns a bearer token into the authenticated principal for HTTP requests and
+ * STOMP connections. Access tokens are verified once and checked against the
+ * {@link TokenVersionCache}; no database query is needed while the cache entry
+ * is fresh. Refresh tokens, and tokens without the identity claims, are
+ * rejected.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JwtPrincipalResolver {
+
+    private final JwtTokenProvider tokenProvider;
+    private final TokenVersionCache tokenVersionCache;
+
+    /**
+     * @return the principal, or {@code null} when the token is invalid or revoked
+     */
+    public UserDetails resolve(String token) {
+        Claims claims = tokenProvider.parseClaims(token);
+        if (claims == null || tokenProvider.isRefreshToken(claims)) {
+            return null;
+        }
+        // Tokens issued before the claims were embedded expired long ago (15 min lifetime)
+        CustomUserDetails principal = tokenProvider.toPrincipal(claims);
+        if (principal == null) {
+            log.debug("Rejected token without identity claims for {}", claims.getSubject());
+            return null;
+        }
+        if (!tokenVersionCache.isCurrent(principal.getId(), principal.getTokenVersion())) {
+            log.debug("Rejected revoked token for user {}", principal.getId());
+            return null;
+        }
+        return principal;
+    }
+}
@@ -1,5 +1,6 @@
 package com.clinic.security.jwt;
 
+import com.clinic.security.CustomUserDetails;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -14,12 +15,21 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 @Slf4j
 public class JwtTokenProvider {
 
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLE = "role";
+    static final String CLAIM_DOCTOR_ID = "did";
+    static final String CLAIM_PATIENT_ID = "pid";
+    static final String CLAIM_TOKEN_VERSION = "ver";
+    static final String CLAIM_TOKEN_TYPE = "typ";
+    static final String TOKEN_TYPE_REFRESH = "refresh";
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
@@ -31,19 +41,50 @@ public class JwtTokenProvider {
 
     private SecretKey key;
 
+    // Immutable and thread-safe, built once instead of per token
+    private JwtParser parser;
+
     @PostConstruct
     public void init() {
         this.key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(key).build();
     }
 
+    /**
+     * Access token. For a {@link CustomUserDetails} principal it carries the
+     * user id, role, doctor/patient id and token version, so requests can be
+     * authenticated from the claims alone.
+     */
     public String generateToken(Authentication authentication) {
         UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
-        return buildToken(new HashMap<>(), userPrincipal.getUsername(), jwtExpiration);
+        Map<String, Object> claims = new HashMap<>();
+        if (userPrincipal instanceof CustomUserDetails principal) {
+            claims.put(CLAIM_USER_ID, principal.getId().toString());
+            claims.put(CLAIM_ROLE, principal.getRoleName());
+            claims.put(CLAIM_TOKEN_VERSION, principal.getTokenVersion());
+            if (principal.getDoctorId() != null) {
+                claims.put(CLAIM_DOCTOR_ID, principal.getDoctorId().toString());
+            }
+            if (principal.getPatientId() != null) {
+                claims.put(CLAIM_PATIENT_ID, principal.getPatientId().toString());
+            }
+        }
+        return buildToken(claims, userPrincipal.getUsername(), jwtExpiration);
     }
 
+    /**
+     * Refresh token, typed so it is never accepted as an access token. It
+     * carries the token version it was issued under.
+     */
     public String generateRefreshToken(Authentication authentication) {
         UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
-        return buildToken(new HashMap<>(), userPrincipal.getUsername(), refreshExpiration);
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_TOKEN_TYPE, TOKEN_TYPE_REFRESH);
+        if (userPrincipal instanceof CustomUserDetails principal) {
+            claims.put(CLAIM_USER_ID, principal.getId().toString());
+            claims.put(CLAIM_TOKEN_VERSION, principal.getTokenVersion());
+        }
+        return buildToken(claims, userPrincipal.getUsername(), refreshExpiration);
     }
 
     private String buildToken(Map<String, Object> extraClaims, String subject, long expiration) {
@@ -61,31 +102,55 @@ public class JwtTokenProvider {
     }
 
     public <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = parser.parseSignedClaims(token).getPayload();
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-
-    public boolean validateToken(String token) {
+    /**
+     * Verifies the token once and returns its claims, or {@code null} when it
+     * is malformed, expired or not signed with our key.
+     */
+    public Claims parseClaims(String token) {
         try {
-            Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
-            return true;
+            return parser.parseSignedClaims(token).getPayload();
         } catch (MalformedJwtException e) {
             log.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
             log.error("JWT token is expired: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
             log.error("JWT token is unsupported: {}", e.getMessage());
+        } catch (JwtException e) {
+            log.error("JWT token is invalid: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             log.error("JWT claims string is empty: {}", e.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Principal built from the claims of {@link #generateToken}, or
+     * {@code null} for tokens issued without them.
+     */
+    public CustomUserDetails toPrincipal(Claims claims) {
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        Integer version = claims.get(CLAIM_TOKEN_VERSION, Integer.class);
+        if (userId == null || role == null || version == null) {
+            return null;
+        }
+        String doctorId = claims.get(CLAIM_DOCTOR_ID, String.class);
+        String patientId = claims.get(CLAIM_PATIENT_ID, String.class);
+        return CustomUserDetails.fromClaims(UUID.fromString(userId), claims.getSubject(), role,
+                doctorId != null ? UUID.fromString(doctorId) : null,
+                patientId != null ? UUID.fromString(patientId) : null,
+                version);
+    }
+
+    public boolean isRefreshToken(Claims claims) {
+        return TOKEN_TYPE_REFRESH.equals(claims.get(CLAIM_TOKEN_TYPE, String.class));
+    }
+
+    public boolean validateToken(String token) {
+        return parseClaims(token) != null;
     }
 }
@@ -2,6 +2,7 @@ package com.clinic.service;
 
 import com.clinic.dto.request.AdminUserRequest;
 import com.clinic.dto.response.AppointmentResponse;
+import com.clinic.dto.response.CursorPageResponse;
 import com.clinic.dto.response.DashboardStatsResponse;
 import com.clinic.dto.response.UserResponse;
 import com.clinic.entity.*;
@@ -11,19 +12,24 @@ import com.clinic.exception.AppException;
 import com.clinic.exception.ErrorCode;
 import com.clinic.repository.*;
 import com.clinic.security.CustomUserDetails;
+import com.clinic.security.IdentityCache;
+import com.clinic.security.TokenVersionCache;
+import com.clinic.util.CsvWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -36,10 +42,13 @@ public class AdminService {
     private final AppointmentRepository appointmentRepository;
     private final SpecialtyRepository specialtyRepository;
     private final RoleRepository roleRepository;
-    private final PaymentRepository paymentRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuditLogService auditLogService;
     private final AuditLogRepository auditLogRepository;
+    private final DashboardStatsCache dashboardStatsCache;
+    private final TokenVersionCache tokenVersionCache;
+    private final IdentityCache identityCache;
+    private final ChatToolCache chatToolCache;
 
     // ════════════════════════════════════════
     // Dashboard Stats
@@ -47,46 +56,45 @@ public class AdminService {
 
     @Transactional(readOnly = true)
     public DashboardStatsResponse getDashboardStats() {
-        long totalUsers = userRepository.count();
-        long totalDoctors = doctorRepository.count();
-        long totalPatients = patientRepository.count();
+        return dashboardStatsCache.get(this::loadDashboardStats);
+    }
 
+    /**
+     * Builds the dashboard from three statements: one row of FILTER counters, one
+     * grouped breakdown (monthly trend + specialty distribution) and the latest
+     * audit entries.
+     */
+    private DashboardStatsResponse loadDashboardStats() {
         LocalDate today = LocalDate.now();
-        List<Appointment> todayAppts = appointmentRepository
-                .findByAppointmentDateAndStatus(today, AppointmentStatus.CONFIRMED);
-        long todayPending = appointmentRepository
-                .findByAppointmentDateAndStatus(today, AppointmentStatus.PENDING).size();
-        long todayAppointments = todayAppts.size() + todayPending;
-
-        // Monthly appointments (current month)
         LocalDate monthStart = today.withDayOfMonth(1);
-        long monthAppointments = appointmentRepository.countByDateRange(monthStart, today);
-
-        // Pending appointments system-wide
-        long pendingAppointments = appointmentRepository.countByStatus(AppointmentStatus.PENDING);
-
-        // Monthly trend (last 6 months)
+        Object[] counters = appointmentRepository.getDashboardCounters(today, monthStart).get(0);
+
+        // Monthly trend (last 6 months) and specialty distribution
+        YearMonth firstMonth = YearMonth.now().minusMonths(5);
+        Map<String, Long> monthCounts = new HashMap<>();
+        List<DashboardStatsResponse.SpecialtyStatItem> specialtyDist = new ArrayList<>();
+        for (Object[] row : appointmentRepository.getDashboardBreakdowns(firstMonth.atDay(1),
+                YearMonth.now().atEndOfMonth())) {
+            String key = (String) row[1];
+            long count = ((Number) row[2]).longValue();
+            if ("MONTH".equals(row[0])) {
+                monthCounts.put(key, count);
+            } else {
+                specialtyDist.add(DashboardStatsResponse.SpecialtyStatItem.builder()
+                        .name(key)
+                        .count(count)
+                        .build());
+            }
+        }
         List<DashboardStatsResponse.MonthlyStatItem> monthlyStats = new ArrayList<>();
-        for (int i = 5; i >= 0; i--) {
-            YearMonth ym = YearMonth.now().minusMonths(i);
-            LocalDate start = ym.atDay(1);
-            LocalDate end = ym.atEndOfMonth();
-            long count = appointmentRepository.countByDateRange(start, end);
+        for (int i = 0; i < 6; i++) {
+            String month = firstMonth.plusMonths(i).format(DateTimeFormatter.ofPattern("yyyy-MM"));
             monthlyStats.add(DashboardStatsResponse.MonthlyStatItem.builder()
-                    .month(ym.format(DateTimeFormatter.ofPattern("yyyy-MM")))
-                    .count(count)
+                    .month(month)
+                    .count(monthCounts.getOrDefault(month, 0L))
                     .build());
         }
 
-        // Specialty distribution
-        List<Object[]> specialtyCounts = appointmentRepository.countBySpecialty();
-        List<DashboardStatsResponse.SpecialtyStatItem> specialtyDist = specialtyCounts.stream()
-                .map(row -> DashboardStatsResponse.SpecialtyStatItem.builder()
-                        .name((String) row[0])
-                        .count((Long) row[1])
-                        .build())
-                .collect(Collectors.toList());
-
         // Recent activities
         List<AuditLog> recentLogs = auditLogRepository.findTop10ByOrderByCreatedAtDesc();
         List<DashboardStatsResponse.RecentActivityItem> recentActivities = recentLogs.stream()
@@ -99,17 +107,17 @@ public class AdminService {
                 .collect(Collectors.toList());
 
         // Payment stats
-        long totalPayments = paymentRepository.count();
-        long completedPayments = paymentRepository.countByStatus(com.clinic.entity.enums.PaymentStatus.COMPLETED);
+        long totalPayments = ((Number) counters[6]).longValue();
+        long completedPayments = ((Number) counters[7]).longValue();
         double successRate = totalPayments > 0 ? (double) completedPayments * 100 / totalPayments : 0;
 
         return DashboardStatsResponse.builder()
-                .totalUsers(totalUsers)
-                .totalDoctors(totalDoctors)
-                .totalPatients(totalPatients)
-                .todayAppointments(todayAppointments)
-                .monthAppointments(monthAppointments)
-                .pendingAppointments(pendingAppointments)
+                .totalUsers(((Number) counters[0]).longValue())
+                .totalDoctors(((Number) counters[1]).longValue())
+                .totalPatients(((Number) counters[2]).longValue())
+                .todayAppointments(((Number) counters[3]).longValue())
+                .monthAppointments(((Number) counters[4]).longValue())
+                .pendingAppointments(((Number) counters[5]).longValue())
                 .monthlyAppointmentStats(monthlyStats)
                 .specialtyDistribution(specialtyDist)
                 .recentActivities(recentActivities)
@@ -225,6 +233,7 @@ public class AdminService {
                     .isAvailable(true)
                     .build();
             doctorRepository.save(doctor);
+            chatToolCache.invalidate(ChatToolCache.SEARCH_DOCTORS);
         }
 
         CustomUserDetails userDetails = (CustomUserDetails) org.springframework.security.core.context.SecurityContextHolder
@@ -244,8 +253,10 @@ public class AdminService {
         user.setFullName(request.getFullName());
         user.setPhone(request.getPhone());
 
-        if (request.getIsActive() != null) {
+        boolean revokeTokens = false;
+        if (request.getIsActive() != null && !request.getIsActive().equals(user.getIsActive())) {
             user.setIsActive(request.getIsActive());
+            revokeTokens = true;
         }
 
         // Role change
@@ -253,9 +264,18 @@ public class AdminService {
             RoleName roleName = RoleName.valueOf(request.getRole().toUpperCase());
             Role role = roleRepository.findByName(roleName)
                     .orElseThrow(() -> new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION));
+            revokeTokens |= user.getRole() == null || user.getRole().getName() != roleName;
             user.setRole(role);
         }
 
+        // Access tokens carry the role and are only rechecked against the token version
+        if (revokeTokens) {
+            tokenVersionCache.revoke(user);
+        }
+        identityCache.evict(user.getId());
+        // Doctor names are part of the chatbot's doctor search results
+        chatToolCache.invalidate(ChatToolCache.SEARCH_DOCTORS);
+
         User savedUser = userRepository.save(user);
 
         CustomUserDetails userDetails = (CustomUserDetails) org.springframework.security.core.context.SecurityContextHolder
@@ -272,6 +292,8 @@ public class AdminService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         user.setIsActive(!user.getIsActive());
+        tokenVersionCache.revoke(user);
+        identityCache.evict(user.getId());
         User savedUser = userRepository.save(user);
 
         CustomUserDetails userDetails = (CustomUserDetails) org.springframework.security.core.context.SecurityContextHolder
@@ -291,6 +313,8 @@ public class AdminService {
         // Generate temporary password
         String tempPassword = UUID.randomUUID().toString().substring(0, 8);
         user.setPasswordHash(passwordEncoder.encode(tempPassword));
+        tokenVersionCache.revoke(user);
+        identityCache.evict(user.getId());
         userRepository.save(user);
 
         log.info("Password reset for user {}. Temp password: {}", user.getEmail(), tempPassword);
@@ -305,92 +329,74 @@ public class AdminService {
     @Transactional(readOnly = true)
     public List<AppointmentResponse> getAllAppointments(LocalDate dateFrom, LocalDate dateTo,
             UUID doctorId, String status) {
-        AppointmentStatus appointmentStatus = null;
+        return appointmentRepository.findListingPage(null, doctorId, dateFrom, dateTo, parseStatus(status),
+                Pageable.unpaged());
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<AppointmentResponse> getAppointmentsPage(LocalDate dateFrom, LocalDate dateTo,
+            UUID doctorId, String status, String cursor, Integer size) {
+        return appointmentService.listAppointments(null, doctorId, dateFrom, dateTo, parseStatus(status), cursor,
+                size);
+    }
+
+    private AppointmentStatus parseStatus(String status) {
         if (status != null && !status.isEmpty() && !"ALL".equalsIgnoreCase(status)) {
             try {
-                appointmentStatus = AppointmentStatus.valueOf(status.toUpperCase());
+                return AppointmentStatus.valueOf(status.toUpperCase());
             } catch (IllegalArgumentException e) {
                 log.warn("Invalid status provided for appointment filtering: {}", status);
             }
         }
-
-        return appointmentRepository.findAllForAdmin(dateFrom, dateTo, doctorId, appointmentStatus).stream()
-                .map(appointmentService::mapToResponse)
-                .collect(Collectors.toList());
+        return null;
     }
 
     // ════════════════════════════════════════
     // CSV Export
     // ════════════════════════════════════════
 
+    /**
+     * The exports stream forward-only scalar rows straight into {@code out}:
+     * nothing is hydrated into the persistence context and the whole result is
+     * never held in memory, so footprint is independent of the row count.
+     */
     @Transactional(readOnly = true)
-    public byte[] exportUsersCsv() {
-        List<User> users = userRepository.findAll();
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        PrintWriter writer = new PrintWriter(out);
-
-        writer.println("ID,Email,Full Name,Phone,Role,Active,Created At");
-        for (User u : users) {
-            writer.printf("%s,%s,%s,%s,%s,%s,%s%n",
-                    u.getId(),
-                    escapeCsv(u.getEmail()),
-                    escapeCsv(u.getFullName()),
-                    escapeCsv(u.getPhone()),
-                    u.getRole() != null ? u.getRole().getName() : "",
-                    u.getIsActive(),
-                    u.getCreatedAt());
+    public void exportUsersCsv(OutputStream out) throws IOException {
+        CsvWriter csv = new CsvWriter(out)
+                .header("ID", "Email", "Full Name", "Phone", "Role", "Active", "Created At");
+        try (Stream<Object[]> rows = userRepository.streamForExport()) {
+            writeRows(csv, rows);
         }
-        writer.flush();
-        return out.toByteArray();
+        csv.flush();
     }
 
     @Transactional(readOnly = true)
-    public byte[] exportPatientsCsv() {
-        List<Patient> patients = patientRepository.findAll();
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        PrintWriter writer = new PrintWriter(out);
-
-        writer.println("ID,Full Name,Email,Phone,Date of Birth,Gender,Address,Blood Type");
-        for (Patient p : patients) {
-            User u = p.getUser();
-            writer.printf("%s,%s,%s,%s,%s,%s,%s,%s%n",
-                    p.getId(),
-                    escapeCsv(u != null ? u.getFullName() : ""),
-                    escapeCsv(u != null ? u.getEmail() : ""),
-                    escapeCsv(u != null ? u.getPhone() : ""),
-                    p.getDateOfBirth(),
-                    p.getGender(),
-                    escapeCsv(p.getAddress()),
-                    escapeCsv(p.getBloodType()));
+    public void exportPatientsCsv(OutputStream out) throws IOException {
+        CsvWriter csv = new CsvWriter(out)
+                .header("ID", "Full Name", "Email", "Phone", "Date of Birth", "Gender", "Address", "Blood Type");
+        try (Stream<Object[]> rows = patientRepository.streamForExport()) {
+            writeRows(csv, rows);
         }
-        writer.flush();
-        return out.toByteArray();
+        csv.flush();
     }
 
     @Transactional(readOnly = true)
-    public byte[] exportAppointmentsCsv(LocalDate dateFrom, LocalDate dateTo) {
-        List<Appointment> appointments = appointmentRepository.findAllForAdmin(dateFrom, dateTo, null, null);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        PrintWriter writer = new PrintWriter(out);
-
-        writer.println("ID,Patient,Doctor,Specialty,Date,Time,Status,Symptoms");
-        for (Appointment a : appointments) {
-            writer.printf("%s,%s,%s,%s,%s,%s,%s,%s%n",
-                    a.getId(),
-                    escapeCsv(a.getPatient() != null && a.getPatient().getUser() != null
-                            ? a.getPatient().getUser().getFullName()
-                            : ""),
-                    escapeCsv(a.getDoctor() != null && a.getDoctor().getUser() != null
-                            ? a.getDoctor().getUser().getFullName()
-                            : ""),
-                    escapeCsv(a.getSpecialty() != null ? a.getSpecialty().getName() : ""),
-                    a.getAppointmentDate(),
-                    a.getAppointmentTime(),
-                    a.getStatus(),
-                    escapeCsv(a.getSymptoms()));
+    public void exportAppointmentsCsv(LocalDate dateFrom, LocalDate dateTo, OutputStream out) throws IOException {
+        CsvWriter csv = new CsvWriter(out)
+                .header("ID", "Patient", "Doctor", "Specialty", "Date", "Time", "Status", "Symptoms");
+        try (Stream<Object[]> rows = appointmentRepository.streamForExport(dateFrom, dateTo)) {
+            writeRows(csv, rows);
+        }
+        csv.flush();
+    }
+
+    private void writeRows(CsvWriter csv, Stream<Object[]> rows) throws IOException {
+        for (Iterator<Object[]> it = rows.iterator(); it.hasNext();) {
+            for (Object value : it.next()) {
+                csv.field(value);
+            }
+            csv.endRow();
         }
-        writer.flush();
-        return out.toByteArray();
     }
 
     // ════════════════════════════════════════
@@ -424,13 +430,4 @@ public class AdminService {
                 .patientId(patientId)
                 .build();
     }
-
-    private String escapeCsv(String value) {
-        if (value == null)
-            return "";
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
-        }
-        return value;
-    }
 }
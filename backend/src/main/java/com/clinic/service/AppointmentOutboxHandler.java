@@ -0,0 +1,179 @@
+package com.clinic.service;
+
+import com.clinic.entity.Appointment;
+import com.clinic.entity.OutboxEvent;
+import com.clinic.entity.User;
+import com.clinic.entity.enums.AppointmentStatus;
+import com.clinic.entity.enums.NotificationType;
+import com.clinic.entity.enums.OutboxChannel;
+import com.clinic.entity.enums.OutboxEventType;
+import com.clinic.repository.AppointmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Delivers appointment lifecycle events: audit entry, in-app notifications
+ * (saved and pushed over web socket) and emails to patient and doctor. The
+ * PUSH step may notify both; when it is retried after a partial failure,
+ * recipients already notified for the event are skipped.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AppointmentOutboxHandler implements OutboxEventHandler {
+
+    public static final String AGGREGATE_TYPE = "APPOINTMENT";
+    public static final String KEY_STATUS = "status";
+    public static final String KEY_REASON = "reason";
+
+    private final AppointmentRepository appointmentRepository;
+    private final AuditLogService auditLogService;
+    private final NotificationService notificationService;
+    private final EmailService emailService;
+
+    @Override
+    public boolean supports(OutboxEventType type) {
+        return type == OutboxEventType.APPOINTMENT_CREATED
+                || type == OutboxEventType.APPOINTMENT_STATUS_CHANGED
+                || type == OutboxEventType.APPOINTMENT_CANCELLED;
+    }
+
+    @Override
+    public void handle(OutboxEvent event, Map<String, Object> payload, OutboxChannel channel) throws Exception {
+        if (channel == OutboxChannel.AUDIT) {
+            auditLogService.record(event.getActorId(), auditAction(event.getEventType()), AGGREGATE_TYPE,
+                    event.getAggregateId().toString(), (String) payload.get(OutboxService.KEY_IP_ADDRESS),
+                    (String) payload.get(OutboxService.KEY_USER_AGENT));
+            return;
+        }
+
+        Appointment appointment = appointmentRepository.findByIdWithUser(event.getAggregateId()).orElse(null);
+        if (appointment == null) {
+            log.warn("Appointment {} of outbox event {} no longer exists", event.getAggregateId(), event.getId());
+            return;
+        }
+        switch (event.getEventType()) {
+            case APPOINTMENT_CREATED -> onCreated(event, appointment, channel);
+            case APPOINTMENT_STATUS_CHANGED -> onStatusChanged(event, appointment,
+                    AppointmentStatus.valueOf((String) payload.get(KEY_STATUS)), channel);
+            case APPOINTMENT_CANCELLED -> onCancelled(event, appointment, (String) payload.get(KEY_REASON),
+                    channel);
+            default -> {
+            }
+        }
+    }
+
+    private void onCreated(OutboxEvent event, Appointment appointment, OutboxChannel channel) throws Exception {
+        User doctorUser = appointment.getDoctor().getUser();
+        User patientUser = appointment.getPatient().getUser();
+
+        if (channel == OutboxChannel.EMAIL) {
+            log.info("Preparing to notify doctor {}. ID: {}, Email: {}",
+                    doctorUser.getFullName(), appointment.getDoctor().getId(), doctorUser.getEmail());
+
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("doctorName", doctorUser.getFullName());
+            variables.put("patientName", patientUser.getFullName());
+            variables.put("appointmentDate", appointment.getAppointmentDate().toString());
+            variables.put("appointmentTime", appointment.getAppointmentTime().toString());
+            variables.put("symptoms", appointment.getSymptoms() != null ? appointment.getSymptoms() : "Không có");
+
+            emailService.sendHtmlEmailNow(doctorUser.getEmail(),
+                    "Thông báo lịch hẹn mới - ClinicPro", "appointment-notification-doctor", variables);
+        } else if (channel == OutboxChannel.PUSH) {
+            // Web Notification to Doctor
+            notify(event, doctorUser, appointment, "Lịch hẹn mới",
+                    "Bạn có lịch hẹn mới từ " + patientUser.getFullName() + " vào ngày "
+                            + appointment.getAppointmentDate());
+
+            // Web Notification to Patient
+            notify(event, patientUser, appointment, "Đặt lịch thành công",
+                    "Lịch hẹn với bác sĩ " + doctorUser.getFullName() + " đã được tạo thành công");
+        }
+    }
+
+    private void onStatusChanged(OutboxEvent event, Appointment appointment, AppointmentStatus status,
+            OutboxChannel channel) throws Exception {
+        User patientUser = appointment.getPatient().getUser();
+        String doctorName = appointment.getDoctor().getUser().getFullName();
+
+        if (status == AppointmentStatus.CONFIRMED) {
+            if (channel == OutboxChannel.EMAIL) {
+                // Send confirmation email
+                emailService.sendHtmlEmailNow(patientUser.getEmail(),
+                        "Xác nhận lịch hẹn khám - ClinicPro", "appointment-confirmation",
+                        scheduleVariables(appointment));
+            } else if (channel == OutboxChannel.PUSH) {
+                notify(event, patientUser, appointment, "Lịch hẹn đã được xác nhận",
+                        "Lịch hẹn ngày " + appointment.getAppointmentDate() + " với bác sĩ " + doctorName
+                                + " đã được xác nhận");
+            }
+        } else if (status == AppointmentStatus.COMPLETED && channel == OutboxChannel.PUSH) {
+            notify(event, patientUser, appointment, "Khám bệnh hoàn tất",
+                    "Lịch hẹn ngày " + appointment.getAppointmentDate() + " với bác sĩ " + doctorName
+                            + " đã hoàn tất. Bạn có thể xem kết quả trong phần bệnh án.");
+        }
+    }
+
+    private void onCancelled(OutboxEvent event, Appointment appointment, String reason, OutboxChannel channel)
+            throws Exception {
+        UUID actorId = event.getActorId();
+        User patientUser = appointment.getPatient().getUser();
+        User doctorUser = appointment.getDoctor().getUser();
+
+        if (channel == OutboxChannel.EMAIL) {
+            // Send Cancellation Email
+            Map<String, Object> variables = scheduleVariables(appointment);
+            variables.put("reason", reason);
+            emailService.sendHtmlEmailNow(patientUser.getEmail(),
+                    "Thông báo hủy lịch hẹn - ClinicPro", "appointment-cancelled", variables);
+        } else if (channel == OutboxChannel.PUSH) {
+            // Web Notification to Patient (if cancelled by others)
+            if (!patientUser.getId().equals(actorId)) {
+                notify(event, patientUser, appointment, "Lịch hẹn bị hủy",
+                        "Lịch hẹn ngày " + appointment.getAppointmentDate() + " với bác sĩ "
+                                + doctorUser.getFullName() + " đã bị hủy. Lý do: " + reason);
+            }
+
+            // Web Notification to Doctor (if cancelled by others)
+            if (!doctorUser.getId().equals(actorId)) {
+                notify(event, doctorUser, appointment, "Lịch hẹn bị hủy",
+                        "Bệnh nhân " + patientUser.getFullName() + " đã hủy lịch hẹn ngày "
+                                + appointment.getAppointmentDate());
+            }
+        }
+    }
+
+    private Map<String, Object> scheduleVariables(Appointment appointment) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("name", appointment.getPatient().getUser().getFullName());
+        variables.put("doctorName", appointment.getDoctor().getUser().getFullName());
+        variables.put("appointmentDate", appointment.getAppointmentDate().toString());
+        variables.put("appointmentTime", appointment.getAppointmentTime().toString());
+        return variables;
+    }
+
+    private void notify(OutboxEvent event, User user, Appointment appointment, String title, String message) {
+        // Attempts count the current one: anything above 1 is a retry
+        if (event.getAttempts() > 1 && notificationService.wasDelivered(user.getId(), appointment.getId(), title,
+                event.getCreatedAt())) {
+            log.info("Outbox event {} already notified {}, skipping", event.getId(), user.getEmail());
+            return;
+        }
+        notificationService.deliver(user, title, message, NotificationType.APPOINTMENT, AGGREGATE_TYPE,
+                appointment.getId());
+    }
+
+    private static String auditAction(OutboxEventType type) {
+        return switch (type) {
+            case APPOINTMENT_CREATED -> "CREATE_APPOINTMENT";
+            case APPOINTMENT_STATUS_CHANGED -> "UPDATE_APPOINTMENT";
+            case APPOINTMENT_CANCELLED -> "CANCEL_APPOINTMENT";
+        };
+    }
+}
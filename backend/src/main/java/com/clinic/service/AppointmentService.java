@@ -3,26 +3,33 @@ package com.clinic.service;
 import com.clinic.dto.request.AppointmentCancelRequest;
 import com.clinic.dto.request.AppointmentRequest;
 import com.clinic.dto.request.AppointmentStatusRequest;
+import com.clinic.dto.request.SlotHoldRequest;
 import com.clinic.dto.response.AppointmentResponse;
+import com.clinic.dto.response.CursorPageResponse;
+import com.clinic.dto.response.SlotHoldResponse;
 import com.clinic.dto.response.TimeSlotResponse;
 import com.clinic.entity.*;
 import com.clinic.entity.enums.AppointmentStatus;
+import com.clinic.entity.enums.OutboxEventType;
 import com.clinic.exception.AppException;
 import com.clinic.exception.ErrorCode;
 import com.clinic.repository.*;
 import com.clinic.security.CustomUserDetails;
+import com.clinic.security.IdentityCache;
+import com.clinic.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
@@ -30,16 +37,21 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class AppointmentService {
 
+        static final int DEFAULT_PAGE_SIZE = 20;
+        static final int MAX_PAGE_SIZE = 100;
+
         private final AppointmentRepository appointmentRepository;
         private final PatientRepository patientRepository;
         private final DoctorRepository doctorRepository;
         private final SpecialtyRepository specialtyRepository;
         private final TimeSlotRepository timeSlotRepository;
-        private final WorkingScheduleRepository workingScheduleRepository;
         private final UserRepository userRepository;
-        private final AuditLogService auditLogService;
-        private final EmailService emailService;
-        private final NotificationService notificationService;
+        private final OutboxService outboxService;
+        private final AvailabilityService availabilityService;
+        private final SlotOccupancyIndex slotOccupancyIndex;
+        private final SlotReservationService slotReservationService;
+        private final IdentityCache identityCache;
+        private final ChatToolCache chatToolCache;
 
         @Transactional
         public AppointmentResponse createAppointment(AppointmentRequest request) {
@@ -56,6 +68,7 @@ public class AppointmentService {
                                         Patient newPatient = Patient.builder()
                                                         .user(user)
                                                         .build();
+                                        identityCache.evict(user.getId());
                                         return patientRepository.save(newPatient);
                                 });
 
@@ -65,14 +78,6 @@ public class AppointmentService {
                 TimeSlot timeSlot = timeSlotRepository.findById(request.getTimeSlotId())
                                 .orElseThrow(() -> new AppException(ErrorCode.INVALID_KEY));
 
-                // Check availability
-                appointmentRepository
-                                .findExistingAppointment(doctor.getId(), request.getAppointmentDate(),
-                                                timeSlot.getStartTime())
-                                .ifPresent(a -> {
-                                        throw new AppException(ErrorCode.APPOINTMENT_SLOT_TAKEN);
-                                });
-
                 Specialty specialty = null;
                 if (request.getSpecialtyId() != null) {
                         specialty = specialtyRepository.findById(request.getSpecialtyId()).orElse(null);
@@ -90,84 +95,50 @@ public class AppointmentService {
                                 .notes(request.getNotes())
                                 .build();
 
-                Appointment savedAppointment = appointmentRepository.save(appointment);
-                auditLogService.log(userDetails.getId(), "CREATE_APPOINTMENT", "APPOINTMENT",
-                                savedAppointment.getId().toString());
-
-                // Send notification email to Doctor
-                try {
-                        log.info("Preparing to notify doctor {}. ID: {}, Email: {}",
-                                        doctor.getUser().getFullName(), doctor.getId(), doctor.getUser().getEmail());
-
-                        java.util.Map<String, Object> variables = new java.util.HashMap<>();
-                        variables.put("doctorName", doctor.getUser().getFullName());
-                        variables.put("patientName", patient.getUser().getFullName());
-                        variables.put("appointmentDate", savedAppointment.getAppointmentDate().toString());
-                        variables.put("appointmentTime", savedAppointment.getAppointmentTime().toString());
-                        variables.put("symptoms",
-                                        savedAppointment.getSymptoms() != null ? savedAppointment.getSymptoms()
-                                                        : "Không có");
-
-                        emailService.sendHtmlEmail(doctor.getUser().getEmail(),
-                                        "Thông báo lịch hẹn mới - ClinicPro", "appointment-notification-doctor",
-                                        variables);
-
-                        // Web Notification to Doctor
-                        notificationService.sendNotification(
-                                        doctor.getUser(),
-                                        "Lịch hẹn mới",
-                                        "Bạn có lịch hẹn mới từ " + patient.getUser().getFullName() + " vào ngày "
-                                                        + savedAppointment.getAppointmentDate(),
-                                        com.clinic.entity.enums.NotificationType.APPOINTMENT,
-                                        "APPOINTMENT",
-                                        savedAppointment.getId());
-
-                        // Web Notification to Patient
-                        notificationService.sendNotification(
-                                        patient.getUser(),
-                                        "Đặt lịch thành công",
-                                        "Lịch hẹn với bác sĩ " + doctor.getUser().getFullName()
-                                                        + " đã được tạo thành công",
-                                        com.clinic.entity.enums.NotificationType.APPOINTMENT,
-                                        "APPOINTMENT",
-                                        savedAppointment.getId());
-
-                } catch (Exception e) {
-                        log.error("Failed to send doctor/patient notification for appointment {}",
-                                        savedAppointment.getId(),
-                                        e);
+                // Occupy a seat of the slot atomically (directly, or from a previous hold)
+                Appointment savedAppointment;
+                if (request.getHoldId() != null) {
+                        savedAppointment = slotReservationService.consumeHold(request.getHoldId(),
+                                        userDetails.getId(), doctor.getId(), request.getAppointmentDate(), timeSlot,
+                                        seat -> {
+                                                appointment.setSeatNo(seat);
+                                                return appointmentRepository.saveAndFlush(appointment);
+                                        });
+                } else {
+                        savedAppointment = slotReservationService.reserve(doctor.getId(),
+                                        request.getAppointmentDate(), timeSlot, seat -> {
+                                                appointment.setSeatNo(seat);
+                                                return appointmentRepository.saveAndFlush(appointment);
+                                        });
+                        slotOccupancyIndex.markBooked(doctor.getId(), savedAppointment.getAppointmentDate(),
+                                        savedAppointment.getAppointmentTime());
                 }
+                evictChatTools(savedAppointment);
+                // Audit, emails and notifications are delivered by the outbox after commit
+                outboxService.publish(OutboxEventType.APPOINTMENT_CREATED, AppointmentOutboxHandler.AGGREGATE_TYPE,
+                                savedAppointment.getId(), userDetails.getId(), Map.of());
 
                 return mapToResponse(savedAppointment);
         }
 
-        @Transactional(readOnly = true)
         public List<TimeSlotResponse> getAvailableSlots(UUID doctorId, LocalDate date) {
-                int dayOfWeek = date.getDayOfWeek().getValue() % 7; // Convert to 0=Sunday, 1=Monday...
-
-                List<WorkingSchedule> schedules = workingScheduleRepository
-                                .findByDoctorAndDate(doctorId, date, dayOfWeek);
+                return availabilityService.getAvailableSlots(doctorId, date);
+        }
 
-                if (schedules.isEmpty()) {
-                        return Collections.emptyList();
-                }
+        @Transactional
+        public SlotHoldResponse holdSlot(SlotHoldRequest request) {
+                CustomUserDetails userDetails = (CustomUserDetails) SecurityContextHolder.getContext()
+                                .getAuthentication()
+                                .getPrincipal();
+                return slotReservationService.createHold(userDetails.getId(), request);
+        }
 
-                return schedules.stream()
-                                .flatMap(s -> timeSlotRepository.findByScheduleIdAndIsAvailableTrue(s.getId()).stream())
-                                .filter(ts -> {
-                                        // Check if there is an existing appointment for this exact slot
-                                        // Based on current logic where 1 slot = 1 appointment
-                                        return appointmentRepository.findExistingAppointment(
-                                                        doctorId, date, ts.getStartTime()).isEmpty();
-                                })
-                                .map(ts -> TimeSlotResponse.builder()
-                                                .id(ts.getId())
-                                                .startTime(ts.getStartTime())
-                                                .endTime(ts.getEndTime())
-                                                .maxPatients(ts.getMaxPatients())
-                                                .isAvailable(true)
-                                                .build())
-                                .collect(Collectors.toList());
+        @Transactional
+        public void releaseHold(UUID holdId) {
+                CustomUserDetails userDetails = (CustomUserDetails) SecurityContextHolder.getContext()
+                                .getAuthentication()
+                                .getPrincipal();
+                slotReservationService.releaseHold(holdId, userDetails.getId());
         }
 
         public List<AppointmentResponse> getMyAppointments() {
@@ -175,11 +146,67 @@ public class AppointmentService {
                                 .getAuthentication()
                                 .getPrincipal();
 
-                UUID userId = userDetails.getId();
+                Owner owner = resolveOwner(userDetails.getId());
+                if (owner == null) {
+                        return List.of();
+                }
+                return appointmentRepository.findListingPage(owner.patientId(), owner.doctorId(), null, null, null,
+                                Pageable.unpaged());
+        }
+
+        public CursorPageResponse<AppointmentResponse> getMyAppointmentsPage(LocalDate dateFrom, LocalDate dateTo,
+                        UUID doctorId, AppointmentStatus status, String cursor, Integer size) {
+                CustomUserDetails userDetails = (CustomUserDetails) SecurityContextHolder.getContext()
+                                .getAuthentication()
+                                .getPrincipal();
+
+                Owner owner = resolveOwner(userDetails.getId());
+                if (owner == null) {
+                        return CursorPageResponse.<AppointmentResponse>builder().items(List.of()).build();
+                }
+                // A doctor only ever sees their own appointments
+                UUID doctorFilter = owner.doctorId() != null ? owner.doctorId() : doctorId;
+                return listAppointments(owner.patientId(), doctorFilter, dateFrom, dateTo, status, cursor, size);
+        }
+
+        /**
+         * Keyset-paginated listing ordered by (appointment_date, appointment_time, id)
+         * descending. Rows are projected into {@link AppointmentResponse} by the query,
+         * and one extra row is fetched to tell whether a next page exists.
+         */
+        public CursorPageResponse<AppointmentResponse> listAppointments(UUID patientId, UUID doctorId,
+                        LocalDate dateFrom, LocalDate dateTo, AppointmentStatus status, String cursor, Integer size) {
+                int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+                Pageable limit = PageRequest.of(0, pageSize + 1);
+
+                List<AppointmentResponse> rows;
+                if (cursor == null || cursor.isBlank()) {
+                        rows = appointmentRepository.findListingPage(patientId, doctorId, dateFrom, dateTo, status,
+                                        limit);
+                } else {
+                        String[] keys = KeysetCursor.decode(cursor, 3);
+                        try {
+                                rows = appointmentRepository.findListingPageAfter(patientId, doctorId, dateFrom,
+                                                dateTo, status, LocalDate.parse(keys[0]), LocalTime.parse(keys[1]),
+                                                UUID.fromString(keys[2]), limit);
+                        } catch (DateTimeParseException | IllegalArgumentException e) {
+                                throw new AppException(ErrorCode.INVALID_CURSOR);
+                        }
+                }
 
-                return appointmentRepository.findAllByUserId(userId).stream()
-                                .map(this::mapToResponse)
-                                .collect(Collectors.toList());
+                boolean hasNext = rows.size() > pageSize;
+                List<AppointmentResponse> items = hasNext ? rows.subList(0, pageSize) : rows;
+                String nextCursor = null;
+                if (hasNext) {
+                        AppointmentResponse last = items.get(items.size() - 1);
+                        nextCursor = KeysetCursor.encode(last.getAppointmentDate(), last.getAppointmentTime(),
+                                        last.getId());
+                }
+                return CursorPageResponse.<AppointmentResponse>builder()
+                                .items(items)
+                                .nextCursor(nextCursor)
+                                .hasNext(hasNext)
+                                .build();
         }
 
         public AppointmentResponse getAppointmentById(UUID id) {
@@ -193,52 +220,33 @@ public class AppointmentService {
                 Appointment appointment = appointmentRepository.findById(id)
                                 .orElseThrow(() -> new AppException(ErrorCode.APPOINTMENT_NOT_FOUND));
 
+                // Its seat may have been booked again since it was released; a new booking reserves one
+                boolean wasCancelled = appointment.getStatus() == AppointmentStatus.CANCELLED;
+                if (wasCancelled && request.getStatus() != AppointmentStatus.CANCELLED) {
+                        throw new AppException(ErrorCode.APPOINTMENT_REOPEN_FORBIDDEN);
+                }
+
                 appointment.setStatus(request.getStatus());
                 if (request.getStatus() == AppointmentStatus.CONFIRMED) {
                         appointment.setConfirmedAt(LocalDateTime.now());
-
-                        // Send confirmation email
-                        java.util.Map<String, Object> variables = new java.util.HashMap<>();
-                        variables.put("name", appointment.getPatient().getUser().getFullName());
-                        variables.put("doctorName", appointment.getDoctor().getUser().getFullName());
-                        variables.put("appointmentDate", appointment.getAppointmentDate().toString());
-                        variables.put("appointmentTime", appointment.getAppointmentTime().toString());
-
-                        emailService.sendHtmlEmail(appointment.getPatient().getUser().getEmail(),
-                                        "Xác nhận lịch hẹn khám - ClinicPro", "appointment-confirmation", variables);
-
-                        // Web Notification to Patient
-                        notificationService.sendNotification(
-                                        appointment.getPatient().getUser(),
-                                        "Lịch hẹn đã được xác nhận",
-                                        "Lịch hẹn ngày " + appointment.getAppointmentDate() + " với bác sĩ "
-                                                        + appointment.getDoctor().getUser().getFullName()
-                                                        + " đã được xác nhận",
-                                        com.clinic.entity.enums.NotificationType.APPOINTMENT,
-                                        "APPOINTMENT",
-                                        appointment.getId());
                 } else if (request.getStatus() == AppointmentStatus.COMPLETED) {
                         appointment.setCompletedAt(LocalDateTime.now());
-
-                        // Web Notification to Patient
-                        notificationService.sendNotification(
-                                        appointment.getPatient().getUser(),
-                                        "Khám bệnh hoàn tất",
-                                        "Lịch hẹn ngày " + appointment.getAppointmentDate() + " với bác sĩ "
-                                                        + appointment.getDoctor().getUser().getFullName()
-                                                        + " đã hoàn tất. Bạn có thể xem kết quả trong phần bệnh án.",
-                                        com.clinic.entity.enums.NotificationType.APPOINTMENT,
-                                        "APPOINTMENT",
-                                        appointment.getId());
                 }
 
                 Appointment savedAppointment = appointmentRepository.save(appointment);
+                if (wasCancelled != (request.getStatus() == AppointmentStatus.CANCELLED)) {
+                        // Only cancellation frees a seat (uk_appointments_active_seat)
+                        slotOccupancyIndex.invalidate(appointment.getDoctor().getId(),
+                                        appointment.getAppointmentDate());
+                }
+                evictChatTools(savedAppointment);
 
                 CustomUserDetails userDetails = (CustomUserDetails) SecurityContextHolder.getContext()
                                 .getAuthentication()
                                 .getPrincipal();
-                auditLogService.log(userDetails.getId(), "UPDATE_APPOINTMENT", "APPOINTMENT",
-                                savedAppointment.getId().toString());
+                outboxService.publish(OutboxEventType.APPOINTMENT_STATUS_CHANGED,
+                                AppointmentOutboxHandler.AGGREGATE_TYPE, savedAppointment.getId(), userDetails.getId(),
+                                Map.of(AppointmentOutboxHandler.KEY_STATUS, request.getStatus().name()));
 
                 return mapToResponse(savedAppointment);
         }
@@ -261,46 +269,40 @@ public class AppointmentService {
                 appointment.setCancelledReason(request.getReason());
 
                 Appointment savedAppointment = appointmentRepository.save(appointment);
-                auditLogService.log(userDetails.getId(), "CANCEL_APPOINTMENT", "APPOINTMENT",
-                                savedAppointment.getId().toString());
-
-                // Send Cancellation Email
-                java.util.Map<String, Object> variables = new java.util.HashMap<>();
-                variables.put("name", appointment.getPatient().getUser().getFullName());
-                variables.put("doctorName", appointment.getDoctor().getUser().getFullName());
-                variables.put("appointmentDate", appointment.getAppointmentDate().toString());
-                variables.put("appointmentTime", appointment.getAppointmentTime().toString());
-                variables.put("reason", request.getReason());
-
-                emailService.sendHtmlEmail(appointment.getPatient().getUser().getEmail(),
-                                "Thông báo hủy lịch hẹn - ClinicPro", "appointment-cancelled", variables);
-
-                // Web Notification to Patient (if cancelled by others)
-                if (!appointment.getPatient().getUser().getId().equals(userDetails.getId())) {
-                        notificationService.sendNotification(
-                                        appointment.getPatient().getUser(),
-                                        "Lịch hẹn bị hủy",
-                                        "Lịch hẹn ngày " + appointment.getAppointmentDate() + " với bác sĩ "
-                                                        + appointment.getDoctor().getUser().getFullName()
-                                                        + " đã bị hủy. Lý do: " + request.getReason(),
-                                        com.clinic.entity.enums.NotificationType.APPOINTMENT,
-                                        "APPOINTMENT",
-                                        appointment.getId());
-                }
+                slotOccupancyIndex.invalidate(appointment.getDoctor().getId(), appointment.getAppointmentDate());
+                evictChatTools(savedAppointment);
+                Map<String, Object> payload = new HashMap<>();
+                payload.put(AppointmentOutboxHandler.KEY_REASON, request.getReason());
+                outboxService.publish(OutboxEventType.APPOINTMENT_CANCELLED, AppointmentOutboxHandler.AGGREGATE_TYPE,
+                                savedAppointment.getId(), userDetails.getId(), payload);
+
+                return mapToResponse(savedAppointment);
+        }
 
-                // Web Notification to Doctor (if cancelled by others)
-                if (!appointment.getDoctor().getUser().getId().equals(userDetails.getId())) {
-                        notificationService.sendNotification(
-                                        appointment.getDoctor().getUser(),
-                                        "Lịch hẹn bị hủy",
-                                        "Bệnh nhân " + appointment.getPatient().getUser().getFullName()
-                                                        + " đã hủy lịch hẹn ngày " + appointment.getAppointmentDate(),
-                                        com.clinic.entity.enums.NotificationType.APPOINTMENT,
-                                        "APPOINTMENT",
-                                        appointment.getId());
+        /**
+         * The chatbot caches each user's appointment list and each doctor's free slots.
+         */
+        private void evictChatTools(Appointment appointment) {
+                chatToolCache.invalidate(ChatToolCache.MY_APPOINTMENTS, appointment.getPatient().getUser().getId());
+                chatToolCache.invalidate(ChatToolCache.MY_APPOINTMENTS, appointment.getDoctor().getUser().getId());
+                chatToolCache.invalidate(ChatToolCache.DOCTOR_SCHEDULE, appointment.getDoctor().getId());
+        }
+
+        /**
+         * Listing scope of a user: the doctor row for doctors, the patient row otherwise.
+         */
+        private Owner resolveOwner(UUID userId) {
+                CustomUserDetails identity = identityCache.getById(userId);
+                if (identity == null) {
+                        return null;
+                }
+                if (identity.getDoctorId() != null) {
+                        return new Owner(null, identity.getDoctorId());
                 }
+                return identity.getPatientId() != null ? new Owner(identity.getPatientId(), null) : null;
+        }
 
-                return mapToResponse(savedAppointment);
+        private record Owner(UUID patientId, UUID doctorId) {
         }
 
         public AppointmentResponse mapToResponse(Appointment appointment) {
@@ -48,6 +48,24 @@ public class AuditLogService {
         }
     }
 
+    /**
+     * Saves an audit entry with an explicit request origin and lets failures
+     * propagate. Used when the entry is written after the request has ended.
+     */
+    @Transactional
+    public void record(UUID userId, String action, String entityType, String entityId, String ipAddress,
+            String userAgent) {
+        auditLogRepository.save(AuditLog.builder()
+                .userId(userId)
+                .action(action)
+                .entityType(entityType)
+                .entityId(entityId)
+                .ipAddress(ipAddress)
+                .userAgent(userAgent)
+                .build());
+        log.debug("Audit log saved: {} - {} - {}", userId, action, entityId);
+    }
+
     public void log(UUID userId, String action, String entityType, String entityId) {
         log(userId, action, entityType, entityId, null, null);
     }
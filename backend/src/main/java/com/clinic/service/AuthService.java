@@ -16,6 +16,9 @@ import com.clinic.exception.AppException;
 import com.clinic.exception.ErrorCode;
 import com.clinic.repository.*;
 import com.clinic.security.CustomUserDetails;
+import com.clinic.security.IdentityCache;
+import com.clinic.security.TokenVersionCache;
+import com.clinic.security.UserDetailsServiceImpl;
 import com.clinic.security.jwt.JwtTokenProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -47,6 +50,10 @@ public class AuthService {
         private final DoctorRepository doctorRepository;
         private final AuditLogService auditLogService;
         private final EmailService emailService;
+        private final UserDetailsServiceImpl userDetailsService;
+        private final TokenVersionCache tokenVersionCache;
+        private final IdentityCache identityCache;
+        private final ChatToolCache chatToolCache;
 
         @Value("${app.jwt.refresh-expiration}")
         private long refreshExpiration;
@@ -80,6 +87,7 @@ public class AuthService {
                         patientRepository.save(Patient.builder().user(user).build());
                 } else if (role.getName() == RoleName.DOCTOR) {
                         doctorRepository.save(Doctor.builder().user(user).build());
+                        chatToolCache.invalidate(ChatToolCache.SEARCH_DOCTORS);
                 }
 
                 auditLogService.log(user.getId(), "REGISTER", "USER", user.getId().toString());
@@ -121,18 +129,9 @@ public class AuthService {
 
                 saveRefreshToken(user, refreshToken);
 
-                UUID doctorId = null;
-                UUID patientId = null;
-
-                if (user.getRole() != null && user.getRole().getName() == RoleName.DOCTOR) {
-                        doctorId = doctorRepository.findByUserId(user.getId())
-                                        .map(Doctor::getId)
-                                        .orElse(null);
-                } else if (user.getRole().getName() == RoleName.PATIENT) {
-                        patientId = patientRepository.findByUserId(user.getId())
-                                        .map(Patient::getId)
-                                        .orElse(null);
-                }
+                // Resolved by UserDetailsServiceImpl during authentication
+                UUID doctorId = userDetails.getDoctorId();
+                UUID patientId = userDetails.getPatientId();
 
                 return AuthResponse.builder()
                                 .accessToken(accessToken)
@@ -160,7 +159,7 @@ public class AuthService {
                                                         .orElseThrow(() -> new AppException(
                                                                         ErrorCode.USER_NOT_EXISTED));
 
-                                        CustomUserDetails userDetails = CustomUserDetails.build(freshUser);
+                                        CustomUserDetails userDetails = userDetailsService.buildPrincipal(freshUser);
                                         log.info("[Auth-Refresh] Refreshing token for user: {}, authorities: {}",
                                                         freshUser.getEmail(), userDetails.getAuthorities());
 
@@ -173,6 +172,8 @@ public class AuthService {
         @Transactional
         public void logout(UUID userId) {
                 refreshTokenRepository.revokeAllByUserId(userId, LocalDateTime.now());
+                userRepository.findById(userId).ifPresent(tokenVersionCache::revoke);
+                identityCache.evict(userId);
         }
 
         @Transactional
@@ -218,6 +219,8 @@ public class AuthService {
 
                 User user = resetToken.getUser();
                 user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
+                tokenVersionCache.revoke(user);
+                identityCache.evict(user.getId());
                 userRepository.save(user);
 
                 passwordResetTokenRepository.delete(resetToken);
@@ -0,0 +1,169 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.DoctorAvailabilityResponse;
+import com.clinic.dto.response.TimeSlotResponse;
+import com.clinic.entity.TimeSlot;
+import com.clinic.entity.WorkingSchedule;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.clinic.repository.AppointmentRepository;
+import com.clinic.repository.SlotHoldRepository;
+import com.clinic.repository.TimeSlotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Resolves bookable slots for one or more doctors over a date range.
+ * Days are served from the {@link SlotOccupancyIndex} when present; misses are
+ * loaded with a fixed number of set-based queries (slots with their schedules,
+ * booked appointment counts, active hold counts) regardless of how many doctors, days or slots
+ * are requested.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class AvailabilityService {
+
+    static final int MAX_RANGE_DAYS = 31;
+    static final int MAX_DOCTORS = 50;
+
+    private final TimeSlotRepository timeSlotRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final SlotHoldRepository slotHoldRepository;
+    private final SlotOccupancyIndex occupancyIndex;
+
+    public List<TimeSlotResponse> getAvailableSlots(UUID doctorId, LocalDate date) {
+        return getAvailability(List.of(doctorId), date, date).get(0).getDays().get(0).getSlots();
+    }
+
+    public List<DoctorAvailabilityResponse> getAvailability(Collection<UUID> doctorIds, LocalDate from,
+            LocalDate to) {
+        if (doctorIds == null || doctorIds.isEmpty() || from == null || to == null || to.isBefore(from)) {
+            throw new AppException(ErrorCode.AVAILABILITY_RANGE_INVALID);
+        }
+        Set<UUID> ids = new LinkedHashSet<>(doctorIds);
+        if (ids.size() > MAX_DOCTORS || ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new AppException(ErrorCode.AVAILABILITY_RANGE_INVALID);
+        }
+
+        // 1. Serve what the occupancy index already holds
+        Map<UUID, Map<LocalDate, SlotOccupancyIndex.DayOccupancy>> resolved = new HashMap<>();
+        Set<UUID> missingDoctors = new LinkedHashSet<>();
+        LocalDate missFrom = null;
+        LocalDate missTo = null;
+        for (UUID doctorId : ids) {
+            Map<LocalDate, SlotOccupancyIndex.DayOccupancy> days = resolved.computeIfAbsent(doctorId,
+                    k -> new HashMap<>());
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                SlotOccupancyIndex.DayOccupancy occupancy = occupancyIndex.get(doctorId, date);
+                if (occupancy != null) {
+                    days.put(date, occupancy);
+                    continue;
+                }
+                missingDoctors.add(doctorId);
+                missFrom = missFrom == null || date.isBefore(missFrom) ? date : missFrom;
+                missTo = missTo == null || date.isAfter(missTo) ? date : missTo;
+            }
+        }
+
+        // 2. Load the misses with the set-based queries and populate the index
+        if (!missingDoctors.isEmpty()) {
+            loadMisses(missingDoctors, missFrom, missTo, resolved);
+        }
+
+        List<DoctorAvailabilityResponse> result = new ArrayList<>(ids.size());
+        for (UUID doctorId : ids) {
+            Map<LocalDate, SlotOccupancyIndex.DayOccupancy> doctorDays = resolved.get(doctorId);
+            List<DoctorAvailabilityResponse.DayAvailability> days = new ArrayList<>();
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                days.add(DoctorAvailabilityResponse.DayAvailability.builder()
+                        .date(date)
+                        .slots(doctorDays.get(date).availableSlots())
+                        .build());
+            }
+            result.add(DoctorAvailabilityResponse.builder()
+                    .doctorId(doctorId)
+                    .days(days)
+                    .build());
+        }
+        return result;
+    }
+
+    private void loadMisses(Set<UUID> doctorIds, LocalDate from, LocalDate to,
+            Map<UUID, Map<LocalDate, SlotOccupancyIndex.DayOccupancy>> resolved) {
+        Map<UUID, Long> versions = new HashMap<>();
+        doctorIds.forEach(id -> versions.put(id, occupancyIndex.version(id)));
+
+        Map<UUID, DoctorSlots> slotsByDoctor = new HashMap<>();
+        for (TimeSlot slot : timeSlotRepository.findBookableSlots(doctorIds, from, to)) {
+            WorkingSchedule schedule = slot.getSchedule();
+            slotsByDoctor.computeIfAbsent(schedule.getDoctor().getId(), k -> new DoctorSlots()).add(schedule, slot);
+        }
+
+        // Seats taken per (doctor, date, time): active appointments plus unexpired holds
+        Map<SlotKey, Integer> occupied = new HashMap<>();
+        if (!slotsByDoctor.isEmpty()) {
+            for (Object[] row : appointmentRepository.countBookedSlots(slotsByDoctor.keySet(), from, to)) {
+                occupied.merge(new SlotKey((UUID) row[0], (LocalDate) row[1], (LocalTime) row[2]),
+                        ((Long) row[3]).intValue(), Integer::sum);
+            }
+            for (Object[] row : slotHoldRepository.countActiveHolds(slotsByDoctor.keySet(), from, to,
+                    LocalDateTime.now())) {
+                occupied.merge(new SlotKey((UUID) row[0], (LocalDate) row[1], (LocalTime) row[2]),
+                        ((Long) row[3]).intValue(), Integer::sum);
+            }
+        }
+
+        for (UUID doctorId : doctorIds) {
+            DoctorSlots doctorSlots = slotsByDoctor.getOrDefault(doctorId, DoctorSlots.EMPTY);
+            Map<LocalDate, SlotOccupancyIndex.DayOccupancy> days = resolved.get(doctorId);
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                if (days.containsKey(date)) {
+                    continue;
+                }
+                LocalDate day = date;
+                SlotOccupancyIndex.DayOccupancy occupancy = SlotOccupancyIndex.DayOccupancy.of(
+                        doctorSlots.forDate(day), time -> occupied.getOrDefault(new SlotKey(doctorId, day, time), 0));
+                days.put(day, occupancy);
+                occupancyIndex.put(doctorId, day, occupancy, versions.get(doctorId));
+            }
+        }
+    }
+
+    private record SlotKey(UUID doctorId, LocalDate date, LocalTime time) {
+    }
+
+    /**
+     * Slots of one doctor, indexed by weekly day-of-week and by specific date.
+     */
+    private static final class DoctorSlots {
+        static final DoctorSlots EMPTY = new DoctorSlots();
+
+        final Map<Integer, List<TimeSlot>> weekly = new HashMap<>();
+        final Map<LocalDate, List<TimeSlot>> specific = new HashMap<>();
+
+        List<TimeSlot> forDate(LocalDate date) {
+            int dayOfWeek = date.getDayOfWeek().getValue() % 7; // 0=Sunday, 1=Monday...
+            List<TimeSlot> slots = new ArrayList<>(weekly.getOrDefault(dayOfWeek, List.of()));
+            slots.addAll(specific.getOrDefault(date, List.of()));
+            return slots;
+        }
+
+        void add(WorkingSchedule schedule, TimeSlot slot) {
+            if (schedule.getSpecificDate() != null) {
+                specific.computeIfAbsent(schedule.getSpecificDate(), k -> new ArrayList<>()).add(slot);
+            } else {
+                weekly.computeIfAbsent(schedule.getDayOfWeek(), k -> new ArrayList<>()).add(slot);
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.clinic.service;
+
+import com.clinic.entity.ChatSession;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.clinic.repository.ChatSessionRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Two-tier {@link ChatSessionStore}. Active conversations live in memory with a
+ * per-user lock (a lease, see {@link ChatSessionStore#acquire}); sessions idle longer than {@code idle-minutes}, or the least
+ * recently used ones once {@code max-sessions} is exceeded, are dropped from
+ * memory. Changes are written behind to {@code chat_sessions} as gzipped JSON
+ * by {@link #flush()} and reloaded lazily on the next message after eviction
+ * or a restart.
+ */
+@Service
+@Slf4j
+public class CachedChatSessionStore implements ChatSessionStore {
+
+    private static final TypeReference<List<Map<String, Object>>> TURNS = new TypeReference<>() {
+    };
+
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+    private final ChatSessionRepository chatSessionRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxSessions;
+    private final long idleNanos;
+    private final long lockTimeoutSeconds;
+    private final long retentionDays;
+
+    private final Counter memoryHits;
+    private final Counter storeLoads;
+    private final Counter created;
+    private final Counter idleEvictions;
+    private final Counter sizeEvictions;
+    private final Timer flushTimer;
+
+    public CachedChatSessionStore(ChatSessionRepository chatSessionRepository, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.chat.sessions.max-sessions:5000}") int maxSessions,
+            @Value("${app.chat.sessions.idle-minutes:30}") long idleMinutes,
+            @Value("${app.chat.sessions.lock-timeout-seconds:60}") long lockTimeoutSeconds,
+            @Value("${app.chat.sessions.retention-days:30}") long retentionDays) {
+        this.chatSessionRepository = chatSessionRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxSessions = maxSessions;
+        this.idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        this.lockTimeoutSeconds = lockTimeoutSeconds;
+        this.retentionDays = retentionDays;
+
+        this.memoryHits = lookups(meterRegistry, "memory");
+        this.storeLoads = lookups(meterRegistry, "store");
+        this.created = lookups(meterRegistry, "new");
+        this.idleEvictions = Counter.builder("clinic.chat.sessions.evictions").tag("reason", "idle")
+                .register(meterRegistry);
+        this.sizeEvictions = Counter.builder("clinic.chat.sessions.evictions").tag("reason", "size")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("clinic.chat.sessions.flush").register(meterRegistry);
+        Gauge.builder("clinic.chat.sessions.active", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("clinic.chat.sessions.turns", this, CachedChatSessionStore::totalTurns)
+                .register(meterRegistry);
+        Gauge.builder("clinic.chat.sessions.payload.bytes", this, CachedChatSessionStore::totalPayloadBytes)
+                .description("Compressed size of the cached conversations as last written")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Lease acquire(UUID userId) {
+        while (true) {
+            Session session = sessions.computeIfAbsent(userId, id -> new Session());
+            lock(session);
+            boolean leased = false;
+            try {
+                if (session.evicted) {
+                    // Removed between lookup and lock: retry with a fresh session
+                    continue;
+                }
+                if (session.turns == null) {
+                    session.turns = loadTurns(userId);
+                    trimToCapacity(session);
+                } else {
+                    memoryHits.increment();
+                }
+                session.lastAccess = System.nanoTime();
+                leased = true;
+                return new SessionLease(session);
+            } finally {
+                if (!leased) {
+                    session.lock.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every changed session to the database in one transaction.
+     * Sessions busy with a message are skipped and picked up next time.
+     */
+    public int flush() {
+        Map<UUID, Snapshot> pending = new HashMap<>();
+        for (Map.Entry<UUID, Session> entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            if (session.dirty && session.lock.tryAcquire()) {
+                try {
+                    if (session.dirty && !session.evicted && session.turns != null) {
+                        pending.put(entry.getKey(), snapshot(session));
+                    }
+                } finally {
+                    session.lock.release();
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        try {
+            flushTimer.record(() -> persist(pending));
+        } catch (RuntimeException e) {
+            log.error("Cannot write {} chat session(s), will retry", pending.size(), e);
+            pending.keySet().forEach(userId -> {
+                Session session = sessions.get(userId);
+                if (session != null) {
+                    session.dirty = true;
+                }
+            });
+            return 0;
+        }
+        return pending.size();
+    }
+
+    /**
+     * Drops sessions idle for longer than the idle timeout, writing them first if needed.
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Map.Entry<UUID, Session> entry : sessions.entrySet()) {
+            if (now - entry.getValue().lastAccess >= idleNanos
+                    && evict(entry.getKey(), entry.getValue(), true)) {
+                idleEvictions.increment();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Deletes stored conversations nobody has touched within the retention period.
+     */
+    public int purgeInactive() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        Integer deleted = transactionTemplate.execute(status -> chatSessionRepository.deleteInactiveBefore(cutoff));
+        return deleted != null ? deleted : 0;
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        int written = flush();
+        if (written > 0) {
+            log.info("Wrote {} chat session(s) on shutdown", written);
+        }
+    }
+
+    /**
+     * Keeps the number of sessions under the cap by dropping the least recently
+     * used ones that are already written; dirty sessions wait for the next flush.
+     */
+    private void trimToCapacity(Session current) {
+        int excess = sessions.size() - maxSessions;
+        if (excess <= 0) {
+            return;
+        }
+        int batch = excess + Math.max(1, maxSessions / 20);
+        sessions.entrySet().stream()
+                .filter(e -> e.getValue() != current && !e.getValue().dirty)
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .limit(batch)
+                .forEach(e -> {
+                    if (evict(e.getKey(), e.getValue(), false)) {
+                        sizeEvictions.increment();
+                    }
+                });
+    }
+
+    private boolean evict(UUID userId, Session session, boolean writeDirty) {
+        if (!session.lock.tryAcquire()) {
+            return false;
+        }
+        try {
+            if (session.dirty) {
+                if (!writeDirty) {
+                    return false;
+                }
+                persist(Map.of(userId, snapshot(session)));
+            }
+            session.evicted = true;
+            sessions.remove(userId, session);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Cannot write chat session of {} before eviction: {}", userId, e.getMessage());
+            session.dirty = true;
+            return false;
+        } finally {
+            session.lock.release();
+        }
+    }
+
+    private void lock(Session session) {
+        try {
+            if (!session.lock.tryAcquire(lockTimeoutSeconds, TimeUnit.SECONDS)) {
+                throw new AppException(ErrorCode.CHAT_SESSION_BUSY);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.CHAT_SESSION_BUSY);
+        }
+    }
+
+    private List<Map<String, Object>> loadTurns(UUID userId) {
+        Optional<ChatSession> stored = chatSessionRepository.findByUserId(userId);
+        if (stored.isEmpty()) {
+            created.increment();
+            return new ArrayList<>();
+        }
+        storeLoads.increment();
+        try {
+            return new ArrayList<>(decode(stored.get().getPayload()));
+        } catch (IOException e) {
+            log.warn("Discarding unreadable chat session of {}: {}", userId, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Serializes the session; callers hold its lock.
+     */
+    private Snapshot snapshot(Session session) {
+        try {
+            byte[] payload = encode(session.turns);
+            session.dirty = false;
+            session.payloadBytes = payload.length;
+            return new Snapshot(payload, session.turns.size(), session.lastActiveAt);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize chat session", e);
+        }
+    }
+
+    private void persist(Map<UUID, Snapshot> pending) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<UUID, ChatSession> existing = new HashMap<>();
+            for (ChatSession stored : chatSessionRepository.findByUserIdIn(pending.keySet())) {
+                existing.put(stored.getUserId(), stored);
+            }
+            List<ChatSession> rows = new ArrayList<>(pending.size());
+            pending.forEach((userId, snapshot) -> {
+                ChatSession row = existing.getOrDefault(userId, ChatSession.builder().userId(userId).build());
+                row.setPayload(snapshot.payload());
+                row.setTurnCount(snapshot.turnCount());
+                row.setLastActiveAt(snapshot.lastActiveAt());
+                rows.add(row);
+            });
+            chatSessionRepository.saveAll(rows);
+        });
+    }
+
+    private byte[] encode(List<Map<String, Object>> turns) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            objectMapper.writeValue(out, turns);
+        }
+        return buffer.toByteArray();
+    }
+
+    private List<Map<String, Object>> decode(byte[] payload) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(in, TURNS);
+        }
+    }
+
+    private double totalTurns() {
+        long total = 0;
+        for (Session session : sessions.values()) {
+            List<Map<String, Object>> turns = session.turns;
+            total += turns != null ? turns.size() : 0;
+        }
+        return total;
+    }
+
+    private double totalPayloadBytes() {
+        long total = 0;
+        for (Session session : sessions.values()) {
+            total += session.payloadBytes;
+        }
+        return total;
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("clinic.chat.sessions.lookups").tag("source", source).register(meterRegistry);
+    }
+
+    /**
+     * A session is guarded by a one-permit semaphore rather than a lock so a
+     * streaming turn can release it from whichever thread completes it.
+     */
+    private static final class Session {
+        final Semaphore lock = new Semaphore(1);
+        volatile List<Map<String, Object>> turns;
+        volatile long lastAccess = System.nanoTime();
+        volatile LocalDateTime lastActiveAt = LocalDateTime.now();
+        volatile boolean dirty;
+        volatile boolean evicted;
+        volatile int payloadBytes;
+    }
+
+    private static final class SessionLease implements Lease {
+        private final Session session;
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        SessionLease(Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public List<Map<String, Object>> history() {
+            return session.turns;
+        }
+
+        @Override
+        public void close() {
+            if (open.compareAndSet(true, false)) {
+                session.lastAccess = System.nanoTime();
+                session.lastActiveAt = LocalDateTime.now();
+                session.dirty = true;
+                session.lock.release();
+            }
+        }
+    }
+
+    private record Snapshot(byte[] payload, int turnCount, LocalDateTime lastActiveAt) {
+    }
+}
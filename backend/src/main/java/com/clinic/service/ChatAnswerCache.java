@@ -0,0 +1,274 @@
+package com.clinic.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Local answers to FAQ-style chatbot questions (opening hours, address, which
+ * specialty treats what), served without a Gemini round trip.
+ * <p>
+ * Questions are normalized (lower case, Vietnamese diacritics folded, stop
+ * words dropped) and turned into word, word-bigram and character-trigram
+ * features; a question is answered from the cache when its TF-IDF cosine
+ * similarity to a cached question reaches the threshold. Only answers to
+ * questions without personal details (numbers, emails, the user introducing
+ * themselves or describing their own symptoms) that did not use personal or
+ * time-sensitive functions are stored, and they expire after the TTL or when
+ * the tool cache drops a function they used. Callers only use the cache for
+ * the opening question of a conversation, whose answer does not depend on
+ * earlier turns.
+ */
+@Component
+public class ChatAnswerCache {
+
+    // Answers built from these depend on the caller or on today's date
+    static final Set<String> UNCACHEABLE_FUNCTIONS = Set.of(ChatToolCache.MY_APPOINTMENTS,
+            ChatToolCache.DOCTOR_SCHEDULE);
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "ah", "ak", "ban", "biet", "cac", "cho", "chao", "co", "da", "dang", "de", "di", "duoc",
+            "em", "gi", "giup", "ha", "hay", "hoi", "la", "lam", "minh", "muon", "nao", "nay", "nhe",
+            "nhi", "o", "oi", "roi", "se", "ta", "the", "thi", "toi", "va", "vay", "ve", "voi", "vui",
+            "xin");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^a-z0-9]+");
+    // Phone numbers, ages, ids, dates and emails
+    private static final Pattern PERSONAL_DATA = Pattern.compile("[0-9@]");
+    // "tôi tên", "tên em là", "mình là", "con tôi bị", ... on folded text
+    private static final Pattern SELF_DESCRIPTION = Pattern.compile(
+            "\\b(?:(?:toi|minh|em|con)\\s+(?:ten|la|bi|nam nay)|ten\\s+(?:toi|minh|em|con))\\b");
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    // Number of cached questions containing each feature, for the IDF
+    private final Map<String, Integer> documentFrequency = new HashMap<>();
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final int minTerms;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter skipped;
+    LongSupplier clock = System::nanoTime;
+
+    public ChatAnswerCache(ChatToolCache chatToolCache, MeterRegistry meterRegistry,
+            @Value("${app.chat.answer-cache.enabled:true}") boolean enabled,
+            @Value("${app.chat.answer-cache.similarity-threshold:0.85}") double similarityThreshold,
+            @Value("${app.chat.answer-cache.min-terms:2}") int minTerms,
+            @Value("${app.chat.answer-cache.ttl-seconds:1800}") long ttlSeconds,
+            @Value("${app.chat.answer-cache.max-entries:500}") int maxEntries) {
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.minTerms = minTerms;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = maxEntries;
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+        this.skipped = lookups(meterRegistry, "skipped");
+        Gauge.builder("clinic.chat.answers.entries", this, ChatAnswerCache::size).register(meterRegistry);
+        Gauge.builder("clinic.chat.answers.hit.ratio", this, ChatAnswerCache::hitRatio).register(meterRegistry);
+        chatToolCache.addInvalidationListener(this::invalidate);
+    }
+
+    /**
+     * Returns the cached answer to a question similar enough to
+     * {@code question}, or {@code null}.
+     */
+    public String lookup(String question) {
+        if (!enabled) {
+            return null;
+        }
+        List<String> terms = terms(question);
+        if (terms.size() < minTerms) {
+            skipped.increment();
+            return null;
+        }
+        Map<String, Integer> features = features(terms);
+        String answer;
+        synchronized (this) {
+            answer = bestMatch(String.join(" ", terms), features, clock.getAsLong());
+        }
+        (answer != null ? hits : misses).increment();
+        return answer;
+    }
+
+    /**
+     * Caches {@code answer} for {@code question} unless it was built from a
+     * personal or time-sensitive function.
+     *
+     * @param functions functions called while answering
+     */
+    public void store(String question, String answer, Collection<String> functions) {
+        if (!enabled || answer == null || answer.isBlank()
+                || functions.stream().anyMatch(UNCACHEABLE_FUNCTIONS::contains) || isPersonal(question)) {
+            return;
+        }
+        List<String> terms = terms(question);
+        if (terms.size() < minTerms) {
+            return;
+        }
+        String key = String.join(" ", terms);
+        Entry entry = new Entry(answer, features(terms), Set.copyOf(functions), clock.getAsLong() + ttlNanos);
+        synchronized (this) {
+            remove(key);
+            if (entries.size() >= maxEntries) {
+                trim(clock.getAsLong());
+            }
+            entries.put(key, entry);
+            entry.features().keySet().forEach(feature -> documentFrequency.merge(feature, 1, Integer::sum));
+        }
+    }
+
+    /**
+     * Drops the answers that used {@code function}.
+     */
+    public synchronized void invalidate(String function) {
+        entries.entrySet().stream()
+                .filter(e -> e.getValue().functions().contains(function))
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(this::remove);
+    }
+
+    /**
+     * Whether {@code question} carries details about the asker, whose answer
+     * may repeat them and must not be served to someone else.
+     */
+    static boolean isPersonal(String question) {
+        if (question == null) {
+            return false;
+        }
+        return PERSONAL_DATA.matcher(question).find()
+                || SELF_DESCRIPTION.matcher(NON_WORD.matcher(fold(question)).replaceAll(" ")).find();
+    }
+
+    /**
+     * Lower-cased, diacritic-folded words of {@code text} without stop words.
+     */
+    static List<String> terms(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String word : NON_WORD.split(fold(text))) {
+            if (!word.isEmpty() && !STOP_WORDS.contains(word)) {
+                terms.add(word);
+            }
+        }
+        return terms;
+    }
+
+    private static String fold(String text) {
+        return MARKS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD))
+                .replaceAll("")
+                .replace('đ', 'd');
+    }
+
+    private static Map<String, Integer> features(List<String> terms) {
+        Map<String, Integer> features = new HashMap<>();
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            features.merge("w:" + term, 1, Integer::sum);
+            if (i > 0) {
+                features.merge("b:" + terms.get(i - 1) + " " + term, 1, Integer::sum);
+            }
+            // Character trigrams absorb typos and words split or joined differently
+            String padded = " " + term + " ";
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                features.merge("c:" + padded.substring(j, j + 3), 1, Integer::sum);
+            }
+        }
+        return features;
+    }
+
+    private String bestMatch(String key, Map<String, Integer> features, long now) {
+        Entry exact = entries.get(key);
+        if (exact != null && now - exact.expiresAt() < 0) {
+            return exact.answer();
+        }
+        double queryNorm = norm(features);
+        Entry best = null;
+        double bestScore = similarityThreshold;
+        for (Entry entry : entries.values()) {
+            if (now - entry.expiresAt() >= 0) {
+                continue;
+            }
+            double dot = 0;
+            for (Map.Entry<String, Integer> feature : features.entrySet()) {
+                Integer tf = entry.features().get(feature.getKey());
+                if (tf != null) {
+                    double idf = idf(feature.getKey());
+                    dot += feature.getValue() * tf * idf * idf;
+                }
+            }
+            if (dot == 0) {
+                continue;
+            }
+            double score = dot / (queryNorm * norm(entry.features()));
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+        return best != null ? best.answer() : null;
+    }
+
+    private double norm(Map<String, Integer> features) {
+        double sum = 0;
+        for (Map.Entry<String, Integer> feature : features.entrySet()) {
+            double weight = feature.getValue() * idf(feature.getKey());
+            sum += weight * weight;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private double idf(String feature) {
+        return Math.log((1.0 + entries.size()) / (1.0 + documentFrequency.getOrDefault(feature, 0))) + 1;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            removed.features().keySet().forEach(feature ->
+                    documentFrequency.computeIfPresent(feature, (k, n) -> n > 1 ? n - 1 : null));
+        }
+    }
+
+    private void trim(long now) {
+        entries.entrySet().stream()
+                .filter(e -> now - e.getValue().expiresAt() >= 0)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(this::remove);
+        // Oldest first
+        Iterator<String> it = new ArrayList<>(entries.keySet()).iterator();
+        int toRemove = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            remove(it.next());
+        }
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private double hitRatio() {
+        double lookups = hits.count() + misses.count();
+        return lookups > 0 ? hits.count() / lookups : 0;
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("clinic.chat.answers.lookups").tag("result", result).register(meterRegistry);
+    }
+
+    private record Entry(String answer, Map<String, Integer> features, Set<String> functions, long expiresAt) {
+    }
+}
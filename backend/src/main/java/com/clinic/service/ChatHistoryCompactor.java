@@ -0,0 +1,187 @@
+package com.clinic.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Keeps a conversation within an estimated token budget before it is stored
+ * and sent again. Large function responses are summarized first (lists keep
+ * their leading items and a total, anything else becomes a short note), then
+ * the oldest exchanges are dropped whole, starting from a user message; the
+ * latest exchange is always kept. Tokens are estimated at about four
+ * characters each, which is close enough to size a request.
+ */
+@Component
+public class ChatHistoryCompactor {
+
+    static final int CHARS_PER_TOKEN = 4;
+    static final String OMITTED_NOTE = "Kết quả đã được lược bớt, hãy gọi lại hàm nếu cần chi tiết.";
+
+    private final int tokenBudget;
+    private final int functionResultTokens;
+
+    public ChatHistoryCompactor(@Value("${app.chat.history.token-budget:4000}") int tokenBudget,
+            @Value("${app.chat.history.function-result-tokens:600}") int functionResultTokens) {
+        this.tokenBudget = tokenBudget;
+        this.functionResultTokens = functionResultTokens;
+    }
+
+    /**
+     * Compacts {@code history} in place.
+     */
+    public void compact(List<Map<String, Object>> history) {
+        // Đảm bảo tin nhắn đầu tiên phải là "user"
+        while (!history.isEmpty() && !isUser(history.get(0))) {
+            history.remove(0);
+        }
+
+        int[] tokens = new int[history.size()];
+        int total = 0;
+        int latestExchange = 0;
+        for (int i = 0; i < history.size(); i++) {
+            Map<String, Object> turn = history.get(i);
+            if ("function".equals(turn.get("role"))) {
+                turn = summarizeFunctionTurn(turn);
+                history.set(i, turn);
+            } else if (isUser(turn)) {
+                latestExchange = i;
+            }
+            tokens[i] = estimateTokens(turn);
+            total += tokens[i];
+        }
+
+        int drop = 0;
+        while (total > tokenBudget && drop < latestExchange) {
+            do {
+                total -= tokens[drop++];
+            } while (drop < latestExchange && !isUser(history.get(drop)));
+        }
+        if (drop > 0) {
+            history.subList(0, drop).clear();
+        }
+    }
+
+    static int estimateTokens(Object value) {
+        return chars(value) / CHARS_PER_TOKEN + 1;
+    }
+
+    private Map<String, Object> summarizeFunctionTurn(Map<String, Object> turn) {
+        if (!(turn.get("parts") instanceof List<?> parts)) {
+            return turn;
+        }
+        List<Object> compacted = new ArrayList<>(parts.size());
+        boolean changed = false;
+        for (Object part : parts) {
+            Object summarized = summarizePart(part);
+            changed |= summarized != part;
+            compacted.add(summarized);
+        }
+        return changed ? Map.of("role", turn.get("role"), "parts", compacted) : turn;
+    }
+
+    private Object summarizePart(Object part) {
+        if (!(part instanceof Map<?, ?> map)
+                || !(map.get("functionResponse") instanceof Map<?, ?> functionResponse)
+                || !(functionResponse.get("response") instanceof Map<?, ?> response)) {
+            return part;
+        }
+        Object result = response.get("result");
+        if (isSummary(result) || estimateTokens(result) <= functionResultTokens) {
+            return part;
+        }
+        return Map.of("functionResponse", Map.of(
+                "name", String.valueOf(functionResponse.get("name")),
+                "response", Map.of("result", summarize(result))));
+    }
+
+    private Object summarize(Object result) {
+        List<Object> items = elements(result);
+        if (items == null) {
+            return Map.of("truncated", true, "note", OMITTED_NOTE);
+        }
+        List<Object> kept = new ArrayList<>();
+        int used = 0;
+        for (Object item : items) {
+            int itemTokens = estimateTokens(item);
+            if (used + itemTokens > functionResultTokens) {
+                break;
+            }
+            kept.add(item);
+            used += itemTokens;
+        }
+        return Map.of("items", kept, "total", items.size(), "truncated", true);
+    }
+
+    private static boolean isSummary(Object result) {
+        if (result instanceof Map<?, ?> map) {
+            return map.containsKey("truncated");
+        }
+        return result instanceof JsonNode node && node.has("truncated");
+    }
+
+    private static List<Object> elements(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return new ArrayList<>(collection);
+        }
+        if (result instanceof JsonNode node && node.isArray()) {
+            List<Object> items = new ArrayList<>(node.size());
+            node.forEach(items::add);
+            return items;
+        }
+        return null;
+    }
+
+    private static boolean isUser(Map<String, Object> turn) {
+        return "user".equals(turn.get("role"));
+    }
+
+    /**
+     * Approximate length of {@code value} as JSON.
+     */
+    private static int chars(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof CharSequence text) {
+            return text.length() + 2;
+        }
+        if (value instanceof Map<?, ?> map) {
+            int n = 2;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                n += chars(entry.getKey()) + chars(entry.getValue()) + 2;
+            }
+            return n;
+        }
+        if (value instanceof Collection<?> collection) {
+            int n = 2;
+            for (Object item : collection) {
+                n += chars(item) + 1;
+            }
+            return n;
+        }
+        if (value instanceof JsonNode node) {
+            if (node.isTextual()) {
+                return node.textValue().length() + 2;
+            }
+            int n = 2;
+            if (node.isObject()) {
+                for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+                    Map.Entry<String, JsonNode> field = it.next();
+                    n += field.getKey().length() + 4 + chars(field.getValue());
+                }
+                return n;
+            }
+            if (node.isArray()) {
+                for (JsonNode item : node) {
+                    n += chars(item) + 1;
+                }
+                return n;
+            }
+            return node.asText().length();
+        }
+        return String.valueOf(value).length();
+    }
+}
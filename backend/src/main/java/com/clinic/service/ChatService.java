@@ -2,14 +2,26 @@ package com.clinic.service;
 
 import com.clinic.dto.request.ChatRequest;
 import com.clinic.dto.response.ChatResponse;
+import com.clinic.exception.AppException;
 import com.clinic.util.SecurityUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.LocalDate;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 /**
  * Điều phối chính cho AI Chatbot.
@@ -24,11 +36,35 @@ public class ChatService {
     private final ChatFunctionService chatFunctionService;
     private final SecurityUtils securityUtils;
     private final ObjectMapper objectMapper;
-
-    // Lưu lịch sử hội thoại tạm thời trong bộ nhớ (Key: User ID)
-    private final Map<UUID, List<Map<String, Object>>> chatHistoryMap = new ConcurrentHashMap<>();
-
-    private static final int MAX_HISTORY_SIZE = 20;
+    private final ChatSessionStore chatSessionStore;
+    private final GeminiGuard geminiGuard;
+    private final ChatToolCache chatToolCache;
+    private final ChatHistoryCompactor historyCompactor;
+    private final ChatAnswerCache chatAnswerCache;
+
+    // System instruction + tools, serialized on first use
+    private volatile GeminiService.RequestTemplate requestTemplate;
+
+    private static final int MAX_FUNCTION_CALLS = 5;
+    private static final TypeReference<Map<String, Object>> ARGS_TYPE = new TypeReference<>() {
+    };
+    // Arguments matched case-insensitively (LOWER(...) LIKE searches, UUIDs)
+    private static final Set<String> CASE_INSENSITIVE_ARGS = Set.of("doctorName", "name", "doctorId");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final List<Map<String, Object>> FUNCTION_DECLARATIONS = functionDeclarations();
+
+    // System Instruction
+    private static final String SPECIALTIES_INFO = "- Tim mạch, Nhi khoa, Da liễu, Nội khoa, Thần kinh, Cơ xương khớp, Tai mũi họng, Răng hàm mặt, Sản phụ khoa, Mắt.";
+    private static final String CLINIC_INFO = "Tên: Phòng khám Đa khoa ClinicPro. Địa chỉ: 123 Đường Láng, Đống Đa, Hà Nội. Hotline: 0123-456-789. Giờ làm việc: Thứ 2 - Thứ 7 (7:30 - 20:30), Chủ nhật (8:00 - 17:00).";
+    private static final String SYSTEM_INSTRUCTION = "Bạn là trợ lý ảo chính thức của phòng khám Đa khoa ClinicPro. " +
+            "Nhiệm vụ của bạn là hỗ trợ bệnh nhân giải đáp thắc mắc về chuyên khoa, bác sĩ, lịch làm việc, tra cứu thuốc và xem lịch hẹn cá nhân. " +
+            "Hãy trả lời thân thiện, chuyên nghiệp, bằng tiếng Việt. " +
+            "\n\nTHÔNG TIN PHÒNG KHÁM:\n" + CLINIC_INFO +
+            "\n\nDANH SÁCH CHUYÊN KHOA:\n" + SPECIALTIES_INFO +
+            "\n\nQuan trọng: Chỉ trả lời dữ liệu về Chuyên khoa và Thông tin chung dựa trên thông tin trên. " +
+            "Chỉ gọi hàm (functions) khi cần tìm Bác sĩ cụ thể, xem Lịch làm việc, Tra cứu thuốc hoặc Lịch hẹn cá nhân. " +
+            "Nếu không tìm thấy dữ liệu, hãy báo người dùng liên hệ hotline. " +
+            "Nếu người dùng hỏi vấn đề không liên quan đến y tế hoặc phòng khám, hãy từ chối lịch sự.";
 
     /**
      * Xử lý tin nhắn chat từ người dùng.
@@ -36,49 +72,50 @@ public class ChatService {
     public ChatResponse processChat(ChatRequest request) {
         UUID userId = securityUtils.getCurrentUserId()
                 .orElseThrow(() -> new RuntimeException("Người dùng chưa đăng nhập"));
-        String userMsg = request.getMessage();
+        // Vượt giới hạn tin nhắn → 429, không chiếm phiên hội thoại
+        geminiGuard.checkRate(userId);
 
-        // 1. Lấy lịch sử hội thoại (làm việc trên bản sao để tránh "nhiễm độc" khi lỗi)
-        List<Map<String, Object>> originalHistory = chatHistoryMap.getOrDefault(userId, new ArrayList<>());
-        List<Map<String, Object>> history = new ArrayList<>(originalHistory);
+        // 1. Lấy lịch sử hội thoại (khóa theo user, các tab cùng lúc sẽ chờ nhau)
+        return chatSessionStore.withHistory(userId, history -> respond(userId, request.getMessage(), history));
+    }
 
+    private ChatResponse respond(UUID userId, String userMsg, List<Map<String, Object>> history) {
         // Đảm bảo lịch sử ở trạng thái hợp lệ (phải bắt đầu bằng user và kết thúc bằng
         // model response)
         repairHistory(history);
+        // Lượt này chỉ thêm vào cuối; khi lỗi sẽ cắt bỏ về mốc này
+        int committedSize = history.size();
+
+        // Câu hỏi mở đầu thường gặp đã có câu trả lời gần đây → trả lời ngay, không gọi Gemini.
+        // Câu hỏi tiếp nối phụ thuộc ngữ cảnh nên luôn hỏi Gemini
+        String cached = committedSize == 0 ? chatAnswerCache.lookup(userMsg) : null;
+        if (cached != null) {
+            history.add(Map.of("role", "user", "parts", List.of(Map.of("text", userMsg))));
+            history.add(Map.of("role", "model", "parts", List.of(Map.of("text", cached))));
+            historyCompactor.compact(history);
+            return ChatResponse.of(cached);
+        }
 
-        // 2. Định nghĩa System Instruction
-        String specialtiesInfo = "- Tim mạch, Nhi khoa, Da liễu, Nội khoa, Thần kinh, Cơ xương khớp, Tai mũi họng, Răng hàm mặt, Sản phụ khoa, Mắt.";
-        String clinicInfoHtml = "Tên: Phòng khám Đa khoa ClinicPro. Địa chỉ: 123 Đường Láng, Đống Đa, Hà Nội. Hotline: 0123-456-789. Giờ làm việc: Thứ 2 - Thứ 7 (7:30 - 20:30), Chủ nhật (8:00 - 17:00).";
-
-        String systemInstruction = "Bạn là trợ lý ảo chính thức của phòng khám Đa khoa ClinicPro. " +
-                "Nhiệm vụ của bạn là hỗ trợ bệnh nhân giải đáp thắc mắc về chuyên khoa, bác sĩ, lịch làm việc, tra cứu thuốc và xem lịch hẹn cá nhân. " +
-                "Hãy trả lời thân thiện, chuyên nghiệp, bằng tiếng Việt. " +
-                "\n\nTHÔNG TIN PHÒNG KHÁM:\n" + clinicInfoHtml + 
-                "\n\nDANH SÁCH CHUYÊN KHOA:\n" + specialtiesInfo +
-                "\n\nQuan trọng: Chỉ trả lời dữ liệu về Chuyên khoa và Thông tin chung dựa trên thông tin trên. " +
-                "Chỉ gọi hàm (functions) khi cần tìm Bác sĩ cụ thể, xem Lịch làm việc, Tra cứu thuốc hoặc Lịch hẹn cá nhân. " +
-                "Nếu không tìm thấy dữ liệu, hãy báo người dùng liên hệ hotline. " +
-                "Nếu người dùng hỏi vấn đề không liên quan đến y tế hoặc phòng khám, hãy từ chối lịch sự.";
-
-        // 3. Định nghĩa danh sách functions AI có thể gọi
-        List<Map<String, Object>> functions = getFunctionDeclarations();
+        // 2-3. System Instruction + functions AI có thể gọi (đã biên dịch sẵn)
+        GeminiService.RequestTemplate template = requestTemplate();
 
         try {
             log.debug("Current history size for {}: {}", userId, history.size());
 
             // 4. Gọi Gemini lần đầu
-            String response = geminiService.chat(userMsg, systemInstruction, history, functions);
+            String response = geminiService.chat(userMsg, template, history);
 
             boolean hadFunctionCall = geminiService.isFunctionCall(response);
 
             // 5. Vòng lặp xử lý Function Calling (nếu có)
             int loopCount = 0;
+            Set<String> functionsUsed = new HashSet<>();
             if (hadFunctionCall) {
                 // Thêm tin nhắn user vào lịch sử ngay khi biết sẽ có Function Call
                 history.add(Map.of("role", "user", "parts", List.of(Map.of("text", userMsg))));
             }
 
-            while (geminiService.isFunctionCall(response) && loopCount < 5) {
+            while (geminiService.isFunctionCall(response) && loopCount < MAX_FUNCTION_CALLS) {
                 // Lưu message role: model (với functionCall) vào lịch sử
                 Map<String, Object> assistantPart = Map.of(
                         "role", "model",
@@ -93,13 +130,12 @@ public class ChatService {
 
                 log.info("Gemini requested function: {} with args: {}", functionName, args);
 
-                // Thực thi hàm Java tương ứng
-                Object result = executeFunction(functionName, args);
-                String resultJson = objectMapper.writeValueAsString(result);
+                // Thực thi hàm Java tương ứng (hoặc lấy kết quả đã cache)
+                ChatToolCache.Result result = executeFunction(functionName, args);
+                functionsUsed.add(functionName);
 
                 // Gửi kết quả về cho Gemini (GeminiService sẽ thêm role: function vào contents)
-                response = geminiService.sendFunctionResult(functionName, resultJson, systemInstruction, history,
-                        functions);
+                response = geminiService.sendFunctionResult(functionName, result.json(), template, history);
 
                 // Lưu kết quả function vào lịch sử sau khi gọi xong để các lượt sau có dữ liệu
                 Map<String, Object> functionPart = Map.of(
@@ -107,7 +143,7 @@ public class ChatService {
                         "parts", List.of(Map.of(
                                 "functionResponse", Map.of(
                                         "name", functionName,
-                                        "response", Map.of("result", result)))));
+                                        "response", Map.of("result", result.value())))));
                 history.add(functionPart);
 
                 loopCount++;
@@ -119,21 +155,186 @@ public class ChatService {
             }
             history.add(Map.of("role", "model", "parts", List.of(Map.of("text", response))));
 
-            // Giới hạn số lượng tin nhắn trong lịch sử và đảm bảo bắt đầu bằng User
-            truncateHistory(history);
+            // Chỉ lưu câu trả lời cho câu hỏi mở đầu hội thoại (không phụ thuộc ngữ cảnh)
+            if (committedSize == 0 && !geminiService.isFunctionCall(response)) {
+                chatAnswerCache.store(userMsg, response, functionsUsed);
+            }
 
-            // 7. Lưu lại lịch sử đã cập nhật thành công
-            chatHistoryMap.put(userId, history);
+            // Giới hạn lịch sử theo ngân sách token và đảm bảo bắt đầu bằng User
+            historyCompactor.compact(history);
 
             return ChatResponse.of(response);
 
         } catch (Exception e) {
             log.error("Error in AI processing loop for user {}", userId, e);
+            history.subList(Math.min(committedSize, history.size()), history.size()).clear();
             String errorMsg = e.getMessage() != null ? e.getMessage() : "Hệ thống AI đang gặp sự cố. Vui lòng thử lại.";
             return ChatResponse.error("Xin lỗi, " + errorMsg);
         }
     }
 
+    /**
+     * Phiên bản streaming của {@link #processChat}: token được gửi về dưới dạng
+     * sự kiện {@code token} ngay khi Gemini sinh ra, function call chạy trên
+     * scheduler bounded-elastic, lượt chat kết thúc bằng {@code done} (kèm câu
+     * trả lời đầy đủ) hoặc {@code error}. Không giữ request thread trong lúc chờ AI.
+     */
+    public Flux<ServerSentEvent<Object>> streamChat(ChatRequest request) {
+        UUID userId = securityUtils.getCurrentUserId()
+                .orElseThrow(() -> new RuntimeException("Người dùng chưa đăng nhập"));
+        // Function calls (getMyAppointments) read the caller from the security context
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        String userMsg = request.getMessage();
+        try {
+            geminiGuard.checkRate(userId);
+        } catch (AppException e) {
+            return Flux.just(event("error", ChatResponse.error("Xin lỗi, " + e.getErrorCode().getMessage())));
+        }
+
+        return Flux.usingWhen(
+                Mono.fromCallable(() -> new StreamingTurn(chatSessionStore.acquire(userId)))
+                        .subscribeOn(Schedulers.boundedElastic()),
+                turn -> streamTurn(userId, userMsg, turn, securityContext),
+                turn -> Mono.fromRunnable(turn::close))
+                .onErrorResume(e -> {
+                    log.error("Error in AI streaming for user {}", userId, e);
+                    String errorMsg = e instanceof AppException appException
+                            ? appException.getErrorCode().getMessage()
+                            : e.getMessage() != null ? e.getMessage() : "Hệ thống AI đang gặp sự cố. Vui lòng thử lại.";
+                    return Mono.just(event("error", ChatResponse.error("Xin lỗi, " + errorMsg)));
+                });
+    }
+
+    private Flux<ServerSentEvent<Object>> streamTurn(UUID userId, String userMsg, StreamingTurn turn,
+            SecurityContext securityContext) {
+        List<Map<String, Object>> history = turn.history();
+        repairHistory(history);
+        turn.committedSize = history.size();
+        history.add(Map.of("role", "user", "parts", List.of(Map.of("text", userMsg))));
+        log.debug("Current history size for {}: {}", userId, history.size());
+
+        boolean standalone = turn.committedSize == 0;
+        String cached = standalone ? chatAnswerCache.lookup(userMsg) : null;
+        Flux<ServerSentEvent<Object>> answer;
+        if (cached != null) {
+            answer = Flux.defer(() -> {
+                history.add(Map.of("role", "model", "parts", List.of(Map.of("text", cached))));
+                turn.reply = cached;
+                return Flux.just(event("token", cached));
+            });
+        } else {
+            answer = streamStep(history, securityContext, requestTemplate(), 0, turn);
+        }
+        return answer.concatWith(Mono.fromSupplier(() -> {
+            if (cached == null && standalone && turn.cacheable) {
+                chatAnswerCache.store(userMsg, turn.reply, turn.functions);
+            }
+            historyCompactor.compact(history);
+            turn.completed = true;
+            return event("done", ChatResponse.of(turn.reply));
+        }));
+    }
+
+    /**
+     * One model round trip: forwards text parts as they arrive and, when the
+     * model asks for a function, runs it and streams the follow-up answer.
+     */
+    private Flux<ServerSentEvent<Object>> streamStep(List<Map<String, Object>> history,
+            SecurityContext securityContext, GeminiService.RequestTemplate template, int functionCalls,
+            StreamingTurn turn) {
+        StringBuilder text = new StringBuilder();
+        AtomicReference<JsonNode> functionCall = new AtomicReference<>();
+
+        Flux<ServerSentEvent<Object>> tokens = geminiService.streamContent(template, history)
+                .handle((part, sink) -> {
+                    if (part.has("functionCall")) {
+                        functionCall.compareAndSet(null, part);
+                    } else if (part.hasNonNull("text")) {
+                        String token = part.get("text").asText();
+                        text.append(token);
+                        sink.next(event("token", token));
+                    }
+                });
+
+        return tokens.concatWith(Flux.defer(() -> {
+            JsonNode call = functionCall.get();
+            if (call == null || functionCalls >= MAX_FUNCTION_CALLS) {
+                String answer = text.length() > 0 ? text.toString() : "Xin lỗi, em không thể trả lời câu hỏi này.";
+                history.add(Map.of("role", "model", "parts", List.of(Map.of("text", answer))));
+                turn.reply = answer;
+                // Câu trả lời dự phòng / bị cắt ngang không được cache
+                turn.cacheable = call == null && text.length() > 0;
+                return Flux.empty();
+            }
+
+            // Lưu message role: model (với functionCall) vào lịch sử
+            history.add(Map.of("role", "model", "parts", List.of(call)));
+            String functionName = call.get("functionCall").path("name").asText();
+            Map<String, Object> args = call.get("functionCall").has("args")
+                    ? objectMapper.convertValue(call.get("functionCall").get("args"), ARGS_TYPE)
+                    : Map.of();
+            log.info("Gemini requested function: {} with args: {}", functionName, args);
+
+            return Mono.fromCallable(() -> executeFunctionAs(securityContext, functionName, args))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMapMany(result -> {
+                        turn.functions.add(functionName);
+                        history.add(Map.of(
+                                "role", "function",
+                                "parts", List.of(Map.of(
+                                        "functionResponse", Map.of(
+                                                "name", functionName,
+                                                "response", Map.of("result", result.value()))))));
+                        return Flux.just(event("function", functionName))
+                                .concatWith(streamStep(history, securityContext, template, functionCalls + 1,
+                                        turn));
+                    });
+        }));
+    }
+
+    private ChatToolCache.Result executeFunctionAs(SecurityContext securityContext, String name, Map<String, Object> args) {
+        SecurityContextHolder.setContext(securityContext);
+        try {
+            return executeFunction(name, args);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+
+    /**
+     * Session lease of one streamed turn, plus what the turn produced. Closing
+     * it (on completion, error or client disconnect) drops the turn's additions
+     * unless it completed, then releases the session.
+     */
+    private static final class StreamingTurn {
+        private final ChatSessionStore.Lease lease;
+        final Set<String> functions = ConcurrentHashMap.newKeySet();
+        volatile int committedSize = -1;
+        volatile boolean completed;
+        volatile String reply;
+        volatile boolean cacheable;
+
+        StreamingTurn(ChatSessionStore.Lease lease) {
+            this.lease = lease;
+        }
+
+        List<Map<String, Object>> history() {
+            return lease.history();
+        }
+
+        void close() {
+            List<Map<String, Object>> history = lease.history();
+            if (!completed && committedSize >= 0 && committedSize < history.size()) {
+                history.subList(committedSize, history.size()).clear();
+            }
+            lease.close();
+        }
+    }
+
     private void repairHistory(List<Map<String, Object>> history) {
         if (history.isEmpty())
             return;
@@ -172,39 +373,72 @@ public class ChatService {
         }
     }
 
-    private void truncateHistory(List<Map<String, Object>> history) {
-        while (history.size() > MAX_HISTORY_SIZE) {
-            history.remove(0);
-        }
-        // Đảm bảo tin nhắn đầu tiên phải là "user"
-        while (!history.isEmpty() && !"user".equals(history.get(0).get("role"))) {
-            history.remove(0);
+    private GeminiService.RequestTemplate requestTemplate() {
+        GeminiService.RequestTemplate template = requestTemplate;
+        if (template == null) {
+            template = geminiService.compile(SYSTEM_INSTRUCTION, FUNCTION_DECLARATIONS);
+            requestTemplate = template;
         }
+        return template;
     }
 
     /**
-     * Thực thi hàm Java dựa trên tên hàm AI yêu cầu.
+     * Thực thi hàm Java dựa trên tên hàm AI yêu cầu. Kết quả được cache theo
+     * hàm + tham số đã chuẩn hóa; lịch hẹn cá nhân cache riêng cho từng người dùng.
      */
-    private Object executeFunction(String name, Map<String, Object> args) {
-        return switch (name) {
-            case "listSpecialties" -> chatFunctionService.listSpecialties();
-            case "searchDoctors" -> chatFunctionService.searchDoctors(
+    private ChatToolCache.Result executeFunction(String name, Map<String, Object> rawArgs) {
+        Map<String, Object> args = normalizeArgs(name, rawArgs);
+        Object scope = switch (name) {
+            case ChatToolCache.MY_APPOINTMENTS -> securityUtils.getCurrentUserId().orElse(null);
+            case ChatToolCache.DOCTOR_SCHEDULE -> args.get("doctorId");
+            default -> null;
+        };
+        return chatToolCache.get(name, scope, args, () -> switch (name) {
+            case ChatToolCache.LIST_SPECIALTIES -> chatFunctionService.listSpecialties();
+            case ChatToolCache.SEARCH_DOCTORS -> chatFunctionService.searchDoctors(
                     (String) args.get("specialtyName"),
                     (String) args.get("doctorName"));
-            case "getDoctorSchedule" -> chatFunctionService.getDoctorSchedule(
+            case ChatToolCache.DOCTOR_SCHEDULE -> chatFunctionService.getDoctorSchedule(
                     (String) args.get("doctorId"),
                     (String) args.get("date"));
-            case "searchMedicines" -> chatFunctionService.searchMedicines((String) args.get("name"));
-            case "getMyAppointments" -> chatFunctionService.getMyAppointments();
-            case "getClinicInfo" -> chatFunctionService.getClinicInfo();
+            case ChatToolCache.SEARCH_MEDICINES -> chatFunctionService.searchMedicines((String) args.get("name"));
+            case ChatToolCache.MY_APPOINTMENTS -> chatFunctionService.getMyAppointments();
+            case ChatToolCache.CLINIC_INFO -> chatFunctionService.getClinicInfo();
             default -> Map.of("error", "Function not found");
-        };
+        });
+    }
+
+    /**
+     * Chuẩn hóa tham số để các câu hỏi tương đương dùng chung một entry cache:
+     * bỏ khoảng trắng thừa và tham số rỗng, chữ thường cho tham số tìm kiếm
+     * không phân biệt hoa thường, ngày mặc định của lịch làm việc là hôm nay.
+     */
+    static Map<String, Object> normalizeArgs(String name, Map<String, Object> args) {
+        Map<String, Object> normalized = new HashMap<>();
+        if (args != null) {
+            args.forEach((key, value) -> {
+                if (value instanceof String text) {
+                    text = WHITESPACE.matcher(text.trim()).replaceAll(" ");
+                    if (text.isEmpty()) {
+                        return;
+                    }
+                    value = CASE_INSENSITIVE_ARGS.contains(key) ? text.toLowerCase(Locale.ROOT) : text;
+                }
+                if (value != null) {
+                    normalized.put(key, value);
+                }
+            });
+        }
+        if (ChatToolCache.DOCTOR_SCHEDULE.equals(name)) {
+            normalized.putIfAbsent("date", LocalDate.now().toString());
+        }
+        return normalized;
     }
 
     /**
      * Định nghĩa Metadata cho các Function để gửi cho Gemini.
      */
-    private List<Map<String, Object>> getFunctionDeclarations() {
+    private static List<Map<String, Object>> functionDeclarations() {
         List<Map<String, Object>> declarations = new ArrayList<>();
 
         // 1. searchDoctors
@@ -242,10 +476,10 @@ public class ChatService {
         declarations.add(
                 createFunc("getMyAppointments", "Xem danh sách lịch hẹn của chính người dùng đang đăng nhập.", null));
 
-        return declarations;
+        return List.copyOf(declarations);
     }
 
-    private Map<String, Object> createFunc(String name, String description, Map<String, Object> parameters) {
+    private static Map<String, Object> createFunc(String name, String description, Map<String, Object> parameters) {
         Map<String, Object> func = new HashMap<>();
         func.put("name", name);
         func.put("description", description);
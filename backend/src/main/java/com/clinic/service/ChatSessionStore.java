@@ -0,0 +1,40 @@
+package com.clinic.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Conversation history of the chatbot, one session per user. Turns are
+ * Gemini {@code contents} entries ({role, parts}).
+ */
+public interface ChatSessionStore {
+
+    /**
+     * Runs {@code action} with exclusive access to the user's history. The
+     * list may be modified in place; whatever it holds when the action
+     * returns (or throws) is kept. Concurrent calls for the same user, for
+     * example from two browser tabs, wait for each other.
+     */
+    default <T> T withHistory(UUID userId, Function<List<Map<String, Object>>, T> action) {
+        try (Lease lease = acquire(userId)) {
+            return action.apply(lease.history());
+        }
+    }
+
+    /**
+     * Same exclusive access for asynchronous pipelines: the lease may be
+     * closed from another thread and must be closed exactly once. Blocks
+     * while another lease for the user is open.
+     */
+    Lease acquire(UUID userId);
+
+    interface Lease extends AutoCloseable {
+
+        List<Map<String, Object>> history();
+
+        @Override
+        void close();
+    }
+}
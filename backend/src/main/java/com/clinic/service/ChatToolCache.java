@@ -0,0 +1,186 @@
+package com.clinic.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Results of the chatbot's function calls, kept already serialized.
+ * Entries are keyed by function, scope (the caller for user-scoped functions,
+ * the doctor for schedules) and normalized arguments, and expire after the
+ * function's TTL; functions without a TTL are never cached. Write paths drop
+ * a function, or one scope of it, after their transaction commits, and a
+ * generation counter stops a load that raced an invalidation from being stored.
+ */
+@Component
+public class ChatToolCache {
+
+    public static final String LIST_SPECIALTIES = "listSpecialties";
+    public static final String SEARCH_DOCTORS = "searchDoctors";
+    public static final String DOCTOR_SCHEDULE = "getDoctorSchedule";
+    public static final String SEARCH_MEDICINES = "searchMedicines";
+    public static final String MY_APPOINTMENTS = "getMyAppointments";
+    public static final String CLINIC_INFO = "getClinicInfo";
+
+    /**
+     * A cached function result: the JSON sent back to Gemini and the same
+     * value as a tree for the conversation history. Shared, never modify it.
+     */
+    public record Result(String json, JsonNode value) {
+    }
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> ttlNanos = new HashMap<>();
+    private final Map<String, Counter> hits = new HashMap<>();
+    private final Map<String, Counter> misses = new HashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+
+    public ChatToolCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${app.chat.tool-cache.max-entries:5000}") int maxEntries,
+            @Value("${app.chat.tool-cache.specialties-ttl-seconds:3600}") long specialtiesTtl,
+            @Value("${app.chat.tool-cache.doctors-ttl-seconds:600}") long doctorsTtl,
+            @Value("${app.chat.tool-cache.schedule-ttl-seconds:60}") long scheduleTtl,
+            @Value("${app.chat.tool-cache.medicines-ttl-seconds:3600}") long medicinesTtl,
+            @Value("${app.chat.tool-cache.appointments-ttl-seconds:120}") long appointmentsTtl,
+            @Value("${app.chat.tool-cache.clinic-info-ttl-seconds:86400}") long clinicInfoTtl) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+        ttlNanos.put(LIST_SPECIALTIES, TimeUnit.SECONDS.toNanos(specialtiesTtl));
+        ttlNanos.put(SEARCH_DOCTORS, TimeUnit.SECONDS.toNanos(doctorsTtl));
+        ttlNanos.put(DOCTOR_SCHEDULE, TimeUnit.SECONDS.toNanos(scheduleTtl));
+        ttlNanos.put(SEARCH_MEDICINES, TimeUnit.SECONDS.toNanos(medicinesTtl));
+        ttlNanos.put(MY_APPOINTMENTS, TimeUnit.SECONDS.toNanos(appointmentsTtl));
+        ttlNanos.put(CLINIC_INFO, TimeUnit.SECONDS.toNanos(clinicInfoTtl));
+        for (String function : ttlNanos.keySet()) {
+            hits.put(function, Counter.builder("clinic.chat.tools.lookups").tag("function", function)
+                    .tag("result", "hit").register(meterRegistry));
+            misses.put(function, Counter.builder("clinic.chat.tools.lookups").tag("function", function)
+                    .tag("result", "miss").register(meterRegistry));
+        }
+        Gauge.builder("clinic.chat.tools.entries", entries, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached result, or runs {@code loader} and caches what it
+     * returns.
+     *
+     * @param scope user or doctor the result belongs to, or null for shared data
+     * @param args  arguments already normalized by the caller; they are part of the key
+     */
+    public Result get(String function, Object scope, Map<String, Object> args, Supplier<Object> loader) {
+        Long ttl = ttlNanos.get(function);
+        if (ttl == null || ttl <= 0) {
+            return serialize(loader.get());
+        }
+        Key key = new Key(function, scope != null ? scope.toString() : null, new TreeMap<>(args).toString());
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null && now - entry.expiresAt() < 0) {
+            hits.get(function).increment();
+            return entry.result();
+        }
+        misses.get(function).increment();
+
+        long loadGeneration = generation.get();
+        Result result = serialize(loader.get());
+        if (entries.size() >= maxEntries) {
+            trim(now);
+        }
+        entries.put(key, new Entry(result, System.nanoTime() + ttl));
+        // An invalidation during the load means the result may already be stale
+        if (generation.get() != loadGeneration) {
+            entries.remove(key);
+        }
+        return result;
+    }
+
+    /**
+     * Drops every result of {@code function} once the current transaction commits.
+     */
+    public void invalidate(String function) {
+        afterCommit(function, () -> entries.keySet().removeIf(key -> key.function().equals(function)));
+    }
+
+    /**
+     * Drops the results of {@code function} for one user or doctor once the
+     * current transaction commits.
+     */
+    public void invalidate(String function, Object scope) {
+        if (scope == null) {
+            return;
+        }
+        String scopeKey = scope.toString();
+        afterCommit(function, () -> entries.keySet()
+                .removeIf(key -> key.function().equals(function) && scopeKey.equals(key.scope())));
+    }
+
+    /**
+     * Registers {@code listener} to be told the function name whenever results
+     * of that function are dropped, for caches built on top of these results.
+     */
+    public void addInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    private Result serialize(Object value) {
+        JsonNode tree = objectMapper.valueToTree(value);
+        try {
+            return new Result(objectMapper.writeValueAsString(tree), tree);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize function result", e);
+        }
+    }
+
+    private void trim(long now) {
+        entries.values().removeIf(entry -> now - entry.expiresAt() >= 0);
+        Iterator<Key> it = entries.keySet().iterator();
+        int toRemove = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private void afterCommit(String function, Runnable invalidation) {
+        Runnable action = () -> {
+            invalidation.run();
+            invalidationListeners.forEach(listener -> listener.accept(function));
+        };
+        generation.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record Key(String function, String scope, String args) {
+    }
+
+    private record Entry(Result result, long expiresAt) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.DashboardStatsResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived cache of the admin dashboard.
+ * Every admin tab polls the same numbers, so one snapshot is shared until it
+ * expires or a booking/payment change commits; concurrent misses wait for a
+ * single reload instead of each hitting the database.
+ */
+@Component
+@Slf4j
+public class DashboardStatsCache {
+
+    private final long ttlMillis;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final Object loadLock = new Object();
+    private final Counter hits;
+    private final Counter misses;
+
+    public DashboardStatsCache(MeterRegistry meterRegistry,
+            @Value("${app.dashboard.cache-ttl-seconds:30}") long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.hits = Counter.builder("clinic.dashboard.cache.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("clinic.dashboard.cache.lookups").tag("result", "miss").register(meterRegistry);
+    }
+
+    public DashboardStatsResponse get(Supplier<DashboardStatsResponse> loader) {
+        Snapshot current = snapshot.get();
+        if (isFresh(current)) {
+            hits.increment();
+            return current.stats();
+        }
+        synchronized (loadLock) {
+            current = snapshot.get();
+            if (isFresh(current)) {
+                hits.increment();
+                return current.stats();
+            }
+            misses.increment();
+            long loadGeneration = generation.get();
+            DashboardStatsResponse stats = loader.get();
+            // An invalidation during the load means the result may already be stale
+            if (generation.get() == loadGeneration) {
+                snapshot.set(new Snapshot(stats, System.currentTimeMillis() + ttlMillis));
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Drops the snapshot once the current transaction commits (immediately when
+     * there is none).
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        } else {
+            clear();
+        }
+    }
+
+    /**
+     * Appointment bookings, status changes and cancellations all publish an
+     * outbox event, so they refresh the dashboard through it.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOutboxPublished(OutboxService.Published published) {
+        clear();
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    private boolean isFresh(Snapshot s) {
+        return s != null && System.currentTimeMillis() < s.expiresAt();
+    }
+
+    private record Snapshot(DashboardStatsResponse stats, long expiresAt) {
+    }
+}
@@ -11,6 +11,7 @@ import com.clinic.repository.DoctorRepository;
 import com.clinic.repository.ReviewRepository;
 import com.clinic.repository.SpecialtyRepository;
 import com.clinic.repository.UserRepository;
+import com.clinic.security.IdentityCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -32,6 +33,8 @@ public class DoctorService {
     private final UserRepository userRepository;
     private final SpecialtyRepository specialtyRepository;
     private final ReviewRepository reviewRepository;
+    private final ChatToolCache chatToolCache;
+    private final IdentityCache identityCache;
 
     public List<DoctorResponse> getAllDoctors(UUID specialtyId) {
         List<Doctor> doctors;
@@ -83,7 +86,11 @@ public class DoctorService {
                 .certifications(request.getCertifications())
                 .build();
 
-        return mapToResponse(doctorRepository.save(doctor));
+        Doctor saved = doctorRepository.save(doctor);
+        // The cached identity of the user has no doctor id yet
+        identityCache.evict(user.getId());
+        chatToolCache.invalidate(ChatToolCache.SEARCH_DOCTORS);
+        return mapToResponse(saved);
     }
 
     @Transactional
@@ -111,6 +118,7 @@ public class DoctorService {
         doctor.setEducation(request.getEducation());
         doctor.setCertifications(request.getCertifications());
 
+        chatToolCache.invalidate(ChatToolCache.SEARCH_DOCTORS);
         return mapToResponse(doctorRepository.save(doctor));
     }
 
@@ -127,6 +135,7 @@ public class DoctorService {
             doctor.setSpecialty(null);
         }
 
+        chatToolCache.invalidate(ChatToolCache.SEARCH_DOCTORS);
         return mapToResponse(doctorRepository.save(doctor));
     }
 
@@ -29,31 +29,39 @@ public class EmailService {
     @Async
     public void sendHtmlEmail(String to, String subject, String templateName, Map<String, Object> variables) {
         try {
-            log.info("Sending email to {} with subject: {} using template: {}", to, subject, templateName);
-            log.debug("Email variables: {}", variables);
-            log.debug("Sender email: {}", fromEmail);
-
-            Context context = new Context();
-            context.setVariables(variables);
-            String htmlContent = templateEngine.process("email/" + templateName, context);
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message,
-                    MimeMessageHelper.MULTIPART_MODE_MIXED_RELATED,
-                    StandardCharsets.UTF_8.name());
-
-            helper.setFrom(fromEmail);
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-            log.info("Email sent successfully to {}", to);
-
+            sendHtmlEmailNow(to, subject, templateName, variables);
         } catch (MessagingException e) {
             log.error("Failed to send email to {}", to, e);
         } catch (Exception e) {
             log.error("Unexpected error while sending email to {}", to, e);
         }
     }
+
+    /**
+     * Sends on the calling thread and lets failures propagate, for callers that
+     * retry (outbox delivery).
+     */
+    public void sendHtmlEmailNow(String to, String subject, String templateName, Map<String, Object> variables)
+            throws MessagingException {
+        log.info("Sending email to {} with subject: {} using template: {}", to, subject, templateName);
+        log.debug("Email variables: {}", variables);
+        log.debug("Sender email: {}", fromEmail);
+
+        Context context = new Context();
+        context.setVariables(variables);
+        String htmlContent = templateEngine.process("email/" + templateName, context);
+
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message,
+                MimeMessageHelper.MULTIPART_MODE_MIXED_RELATED,
+                StandardCharsets.UTF_8.name());
+
+        helper.setFrom(fromEmail);
+        helper.setTo(to);
+        helper.setSubject(subject);
+        helper.setText(htmlContent, true);
+
+        mailSender.send(message);
+        log.info("Email sent successfully to {}", to);
+    }
 }
@@ -0,0 +1,380 @@
+package com.clinic.service;
+
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Protects the Gemini API and the request threads waiting on it:
+ * <ul>
+ * <li>a per-user token bucket on chat messages ({@link #checkRate}) and a
+ * global one on API calls;</li>
+ * <li>a bulkhead of {@code max-concurrent} calls in flight, with at most
+ * {@code max-queued} callers waiting up to {@code max-wait-ms} for a slot;</li>
+ * <li>a circuit breaker over the last {@code window-size} calls that opens at
+ * {@code failure-rate} percent of failures (5xx, 429, timeouts, connection
+ * errors), rejects immediately for {@code open-seconds}, then lets
+ * {@code half-open-probes} calls through and closes only if all succeed.</li>
+ * </ul>
+ * Rejections are {@link AppException}s so callers answer with a short
+ * degraded message instead of waiting for the upstream timeout.
+ */
+@Component
+@Slf4j
+public class GeminiGuard {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int maxQueued;
+    private final long maxWaitMillis;
+    private final double userBurst;
+    private final double userPerNano;
+    private final int failureRatePercent;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    private final Semaphore bulkhead;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final TokenBucket globalBucket;
+    private final Map<UUID, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final int maxTrackedUsers;
+
+    // Circuit breaker state, guarded by this
+    private final boolean[] window;
+    private int windowPos;
+    private int windowCalls;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probesSucceeded;
+
+    private final Counter userRateRejections;
+    private final Counter globalRateRejections;
+    private final Counter bulkheadRejections;
+    private final Counter circuitRejections;
+    private final Timer successes;
+    private final Timer failures;
+    private final Counter cancellations;
+
+    // Replaced in tests to move time forward
+    LongSupplier clock = System::nanoTime;
+
+    public GeminiGuard(MeterRegistry meterRegistry,
+            @Value("${app.gemini.resilience.max-concurrent:8}") int maxConcurrent,
+            @Value("${app.gemini.resilience.max-queued:32}") int maxQueued,
+            @Value("${app.gemini.resilience.max-wait-ms:3000}") long maxWaitMillis,
+            @Value("${app.gemini.resilience.user-burst:5}") int userBurst,
+            @Value("${app.gemini.resilience.user-per-minute:12}") int userPerMinute,
+            @Value("${app.gemini.resilience.global-burst:30}") int globalBurst,
+            @Value("${app.gemini.resilience.global-per-second:10}") int globalPerSecond,
+            @Value("${app.gemini.resilience.failure-rate:50}") int failureRatePercent,
+            @Value("${app.gemini.resilience.window-size:20}") int windowSize,
+            @Value("${app.gemini.resilience.minimum-calls:10}") int minimumCalls,
+            @Value("${app.gemini.resilience.open-seconds:30}") long openSeconds,
+            @Value("${app.gemini.resilience.half-open-probes:3}") int halfOpenProbes,
+            @Value("${app.gemini.resilience.max-tracked-users:10000}") int maxTrackedUsers) {
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+        this.userBurst = userBurst;
+        this.userPerNano = userPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.failureRatePercent = failureRatePercent;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.openNanos = TimeUnit.SECONDS.toNanos(openSeconds);
+        this.halfOpenProbes = halfOpenProbes;
+        this.maxTrackedUsers = maxTrackedUsers;
+        this.bulkhead = new Semaphore(maxConcurrent, true);
+        this.window = new boolean[windowSize];
+        this.globalBucket = new TokenBucket(globalBurst, globalPerSecond / (double) TimeUnit.SECONDS.toNanos(1));
+
+        this.userRateRejections = rejections(meterRegistry, "user_rate");
+        this.globalRateRejections = rejections(meterRegistry, "global_rate");
+        this.bulkheadRejections = rejections(meterRegistry, "bulkhead");
+        this.circuitRejections = rejections(meterRegistry, "circuit_open");
+        this.successes = Timer.builder("clinic.gemini.calls").tag("outcome", "success").register(meterRegistry);
+        this.failures = Timer.builder("clinic.gemini.calls").tag("outcome", "failure").register(meterRegistry);
+        this.cancellations = Counter.builder("clinic.gemini.cancellations").register(meterRegistry);
+        Gauge.builder("clinic.gemini.bulkhead.queued", queued, AtomicInteger::get)
+                .description("Callers waiting for a free Gemini slot")
+                .register(meterRegistry);
+        Gauge.builder("clinic.gemini.bulkhead.active", active, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("clinic.gemini.circuit.state", this, guard -> guard.state().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes one chat message from the user's bucket.
+     */
+    public void checkRate(UUID userId) {
+        if (userBuckets.size() > maxTrackedUsers) {
+            // Full buckets carry no state worth keeping
+            userBuckets.values().removeIf(TokenBucket::isFull);
+        }
+        TokenBucket bucket = userBuckets.computeIfAbsent(userId, id -> new TokenBucket(userBurst, userPerNano));
+        if (!bucket.tryConsume()) {
+            userRateRejections.increment();
+            throw new AppException(ErrorCode.CHAT_RATE_LIMITED);
+        }
+    }
+
+    /**
+     * Runs one blocking API call inside the guard. The original exception of a
+     * failed call is rethrown unchanged.
+     */
+    public <T> T call(Supplier<T> call) {
+        Permit permit = admit();
+        Throwable error = null;
+        try {
+            return call.get();
+        } catch (RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            permit.release(error);
+        }
+    }
+
+    /**
+     * Guards a streamed call: the slot is held until the stream completes,
+     * fails or is cancelled. Waiting for a slot happens on bounded-elastic.
+     */
+    public <T> Flux<T> guard(Flux<T> source) {
+        return Flux.usingWhen(
+                Mono.fromCallable(this::admit).subscribeOn(Schedulers.boundedElastic()),
+                permit -> source,
+                permit -> Mono.fromRunnable(() -> permit.release(null)),
+                (permit, error) -> Mono.fromRunnable(() -> permit.release(error)),
+                permit -> Mono.fromRunnable(permit::cancel));
+    }
+
+    synchronized State state() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            transition(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    private Permit admit() {
+        boolean probe = acquirePermission();
+        if (!globalBucket.tryConsume()) {
+            releaseProbe(probe);
+            globalRateRejections.increment();
+            throw new AppException(ErrorCode.AI_BUSY);
+        }
+        if (!bulkhead.tryAcquire()) {
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                releaseProbe(probe);
+                bulkheadRejections.increment();
+                throw new AppException(ErrorCode.AI_BUSY);
+            }
+            boolean acquired = false;
+            try {
+                acquired = bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                queued.decrementAndGet();
+            }
+            if (!acquired) {
+                releaseProbe(probe);
+                bulkheadRejections.increment();
+                throw new AppException(ErrorCode.AI_BUSY);
+            }
+        }
+        active.incrementAndGet();
+        return new Permit(probe, clock.getAsLong());
+    }
+
+    /**
+     * @return whether the call is a half-open probe
+     */
+    private synchronized boolean acquirePermission() {
+        State current = state();
+        if (current == State.CLOSED) {
+            return false;
+        }
+        if (current == State.HALF_OPEN && probesInFlight + probesSucceeded < halfOpenProbes) {
+            probesInFlight++;
+            return true;
+        }
+        circuitRejections.increment();
+        throw new AppException(ErrorCode.AI_UNAVAILABLE);
+    }
+
+    private synchronized void releaseProbe(boolean probe) {
+        if (probe && state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    private synchronized void record(boolean probe, boolean failed) {
+        if (probe) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            probesInFlight--;
+            if (failed) {
+                transition(State.OPEN);
+            } else if (++probesSucceeded >= halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (windowCalls == window.length) {
+            if (window[windowPos]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowPos] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowPos = (windowPos + 1) % window.length;
+        if (windowCalls >= minimumCalls && windowFailures * 100 >= failureRatePercent * windowCalls) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State next) {
+        log.warn("Gemini circuit {} -> {} (failures {}/{} in window)", state, next, windowFailures, windowCalls);
+        state = next;
+        probesInFlight = 0;
+        probesSucceeded = 0;
+        if (next == State.OPEN) {
+            openedAt = clock.getAsLong();
+        } else if (next == State.CLOSED) {
+            windowPos = 0;
+            windowCalls = 0;
+            windowFailures = 0;
+        }
+    }
+
+    /**
+     * Failures that say something about Gemini's health; a 400 or a bad API
+     * key does not, and counts as a success for the breaker.
+     */
+    static boolean isFailure(Throwable error) {
+        Throwable e = Exceptions.unwrap(error);
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("clinic.gemini.rejections").tag("reason", reason).register(meterRegistry);
+    }
+
+    /**
+     * One admitted call. Released exactly once, whichever way the call ends.
+     */
+    private final class Permit {
+        private final boolean probe;
+        private final long startedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(boolean probe, long startedAt) {
+            this.probe = probe;
+            this.startedAt = startedAt;
+        }
+
+        void release(Throwable error) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            boolean failed = error != null && isFailure(error);
+            (failed ? failures : successes).record(clock.getAsLong() - startedAt, TimeUnit.NANOSECONDS);
+            free();
+            record(probe, failed);
+        }
+
+        void cancel() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            cancellations.increment();
+            free();
+            releaseProbe(probe);
+        }
+
+        private void free() {
+            active.decrementAndGet();
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Classic token bucket refilled continuously from the guard's clock.
+     */
+    private final class TokenBucket {
+        private final double capacity;
+        private final double perNano;
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(double capacity, double perNano) {
+            this.capacity = capacity;
+            this.perNano = perNano;
+            this.tokens = capacity;
+            this.refilledAt = clock.getAsLong();
+        }
+
+        synchronized boolean tryConsume() {
+            refill();
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        synchronized boolean isFull() {
+            refill();
+            return tokens >= capacity;
+        }
+
+        private void refill() {
+            long now = clock.getAsLong();
+            tokens = Math.min(capacity, tokens + Math.max(0, now - refilledAt) * perNano);
+            refilledAt = now;
+        }
+    }
+}
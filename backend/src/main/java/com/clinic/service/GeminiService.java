@@ -1,27 +1,39 @@
 package com.clinic.service;
 
 import com.clinic.config.GeminiConfig;
+import com.clinic.exception.AppException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Service gọi Google Gemini API.
  * Hỗ trợ:
  * - Chat đơn giản (text prompt → text response)
  * - Function Calling (AI gọi hàm Java để truy vấn DB)
+ * Mọi lời gọi API đi qua {@link GeminiGuard} (bulkhead, rate limit, circuit breaker).
  */
 @Service
 @Slf4j
@@ -32,59 +44,76 @@ public class GeminiService {
     @Qualifier("geminiWebClient")
     private final WebClient geminiWebClient;
     private final ObjectMapper objectMapper;
+    private final GeminiGuard geminiGuard;
+
+    private static final byte[] CONTENTS_FIELD = ",\"contents\":".getBytes(StandardCharsets.UTF_8);
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_CHUNK =
+            new ParameterizedTypeReference<>() {
+            };
 
     /**
      * Gửi prompt đơn giản và nhận text response.
      */
     public String chat(String userMessage) {
-        return chat(userMessage, null, null, null);
+        return chat(userMessage, compile(null, null), null);
+    }
+
+    /**
+     * Pre-serializes the parts of a request that do not change between
+     * messages (system instruction, tools, generation config). Compile once and
+     * reuse the template for every call.
+     */
+    public RequestTemplate compile(String systemInstruction, List<Map<String, Object>> functionDeclarations) {
+        Map<String, Object> prefix = new LinkedHashMap<>();
+        if (systemInstruction != null) {
+            prefix.put("system_instruction", Map.of("parts", List.of(Map.of("text", systemInstruction))));
+        }
+        if (functionDeclarations != null && !functionDeclarations.isEmpty()) {
+            prefix.put("tools", List.of(Map.of("function_declarations", functionDeclarations)));
+        }
+        // Low temperature for factual responses
+        prefix.put("generationConfig", Map.of("maxOutputTokens", geminiConfig.getMaxTokens(), "temperature", 0.3));
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(prefix);
+            // Keep the object open: the contents field is appended per request
+            byte[] head = new byte[json.length - 1 + CONTENTS_FIELD.length];
+            System.arraycopy(json, 0, head, 0, json.length - 1);
+            System.arraycopy(CONTENTS_FIELD, 0, head, json.length - 1, CONTENTS_FIELD.length);
+            return new RequestTemplate(head);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize Gemini request template", e);
+        }
     }
 
     /**
-     * Gửi prompt với system instruction, conversation history và function
-     * declarations.
+     * Gửi prompt với conversation history theo template đã biên dịch.
      *
-     * @param userMessage          Tin nhắn người dùng
-     * @param systemInstruction    System prompt (vai trò AI)
-     * @param conversationHistory  Lịch sử hội thoại (list of {role, parts})
-     * @param functionDeclarations Danh sách functions AI có thể gọi (nullable)
+     * @param userMessage         Tin nhắn người dùng (null khi đã nằm trong history)
+     * @param template            System instruction + function declarations, xem {@link #compile}
+     * @param conversationHistory Lịch sử hội thoại (list of {role, parts})
      * @return Response text từ Gemini, hoặc JSON function call
      */
-    public String chat(String userMessage, String systemInstruction,
-            List<Map<String, Object>> conversationHistory,
-            List<Map<String, Object>> functionDeclarations) {
+    public String chat(String userMessage, RequestTemplate template,
+            List<Map<String, Object>> conversationHistory) {
         try {
-            ObjectNode requestBody = buildRequestBody(
-                    userMessage, systemInstruction, conversationHistory, functionDeclarations);
+            byte[] requestBody = template.render(objectMapper, conversationHistory,
+                    userMessage != null ? userTurn(userMessage) : null);
 
             String apiUrl = String.format("%smodels/%s:generateContent?key=%s",
                     geminiConfig.getBaseUrl(), geminiConfig.getModel(), geminiConfig.getApiKey());
-            log.debug("Gemini request to: {}", apiUrl);
-
-            String responseJson = geminiWebClient.post()
-                    .uri(apiUrl)
-                    .header("x-goog-api-key", geminiConfig.getApiKey())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(requestBody.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(geminiConfig.getTimeoutSeconds()))
-                    .block();
+            log.debug("Gemini request to: {} ({} bytes)", apiUrl, requestBody.length);
+
+            String responseJson = post(apiUrl, requestBody);
 
             log.debug("Gemini response: {}", responseJson);
             return extractResponse(responseJson);
 
+        } catch (AppException e) {
+            throw e;
         } catch (WebClientResponseException e) {
             log.error("Gemini API error: {} - {} - Request payload preview: {}",
                     e.getStatusCode(), e.getResponseBodyAsString(), userMessage);
-            if (e.getStatusCode().value() == 400) {
-                throw new RuntimeException("Gemini 400 Error: " + e.getResponseBodyAsString());
-            } else if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
-                throw new RuntimeException("API Key không hợp lệ hoặc đã hết hạn.");
-            } else if (e.getStatusCode().value() == 429) {
-                throw new RuntimeException("Đã vượt quá giới hạn gọi API. Vui lòng thử lại sau.");
-            }
-            throw new RuntimeException("Lỗi kết nối AI. Vui lòng thử lại sau.");
+            throw apiError(e);
         } catch (Exception e) {
             log.error("Unexpected error calling Gemini API", e);
             if (e.getMessage() != null && e.getMessage().contains("Timeout")) {
@@ -96,75 +125,30 @@ public class GeminiService {
 
     /**
      * Gửi function result về cho Gemini để nó soạn câu trả lời cuối cùng.
+     * {@code resultJson} được chèn nguyên văn, không parse lại.
      */
-    public String sendFunctionResult(String functionName, String resultJson,
-            String systemInstruction,
-            List<Map<String, Object>> conversationHistory,
-            List<Map<String, Object>> functionDeclarations) {
+    public String sendFunctionResult(String functionName, String resultJson, RequestTemplate template,
+            List<Map<String, Object>> conversationHistory) {
         try {
-            ObjectNode requestBody = objectMapper.createObjectNode();
-
-            // System instruction
-            if (systemInstruction != null) {
-                ObjectNode sysNode = objectMapper.createObjectNode();
-                ObjectNode sysPart = objectMapper.createObjectNode();
-                sysPart.put("text", systemInstruction);
-                sysNode.set("parts", objectMapper.createArrayNode().add(sysPart));
-                requestBody.set("system_instruction", sysNode);
-            }
-
-            // Contents: conversation history + function response
-            ArrayNode contents = objectMapper.createArrayNode();
-            if (conversationHistory != null) {
-                for (Map<String, Object> msg : conversationHistory) {
-                    contents.add(objectMapper.valueToTree(msg));
-                }
-            }
-
-            // Add function response
-            ObjectNode functionResponseContent = objectMapper.createObjectNode();
-            functionResponseContent.put("role", "function");
-            ObjectNode functionPart = objectMapper.createObjectNode();
-            ObjectNode functionResponse = objectMapper.createObjectNode();
-            functionResponse.put("name", functionName);
-            ObjectNode responseObj = objectMapper.createObjectNode();
-            responseObj.set("result", objectMapper.readTree(resultJson));
-            functionResponse.set("response", responseObj);
-            functionPart.set("functionResponse", functionResponse);
-            functionResponseContent.set("parts", objectMapper.createArrayNode().add(functionPart));
-            contents.add(functionResponseContent);
-
-            requestBody.set("contents", contents);
-
-            // Tools (function declarations)
-            if (functionDeclarations != null && !functionDeclarations.isEmpty()) {
-                ArrayNode tools = objectMapper.createArrayNode();
-                ObjectNode toolObj = objectMapper.createObjectNode();
-                toolObj.set("function_declarations", objectMapper.valueToTree(functionDeclarations));
-                tools.add(toolObj);
-                requestBody.set("tools", tools);
-            }
-
-            // Generation config
-            addGenerationConfig(requestBody);
+            Map<String, Object> functionTurn = Map.of(
+                    "role", "function",
+                    "parts", List.of(Map.of(
+                            "functionResponse", Map.of(
+                                    "name", functionName,
+                                    "response", Map.of("result", new RawValue(resultJson))))));
+            byte[] requestBody = template.render(objectMapper, conversationHistory, functionTurn);
 
             String apiUrl = String.format("%smodels/%s:generateContent?key=%s",
                     geminiConfig.getBaseUrl(), geminiConfig.getModel(), geminiConfig.getApiKey());
-            log.debug("Gemini function result request to: {}", apiUrl);
-
-            String responseJson = geminiWebClient.post()
-                    .uri(apiUrl)
-                    .header("x-goog-api-key", geminiConfig.getApiKey())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(requestBody.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(geminiConfig.getTimeoutSeconds()))
-                    .block();
+            log.debug("Gemini function result request to: {} ({} bytes)", apiUrl, requestBody.length);
+
+            String responseJson = post(apiUrl, requestBody);
 
             log.debug("Gemini function result response: {}", responseJson);
             return extractResponse(responseJson);
 
+        } catch (AppException e) {
+            throw e;
         } catch (WebClientResponseException e) {
             log.error("Gemini API error in sendFunctionResult: {} - {} - Function: {}",
                     e.getStatusCode(), e.getResponseBodyAsString(), functionName);
@@ -175,6 +159,39 @@ public class GeminiService {
         }
     }
 
+    /**
+     * Streams a reply with {@code streamGenerateContent} (SSE). Each element is
+     * one part of the model's content: {@code {"text": ...}} fragments as they
+     * are generated, or a {@code {"functionCall": ...}} part. Nothing blocks;
+     * the timeout applies to the first chunk and to every gap between chunks.
+     *
+     * @param conversationHistory full contents, ending with the user or function turn
+     */
+    public Flux<JsonNode> streamContent(RequestTemplate template, List<Map<String, Object>> conversationHistory) {
+        byte[] requestBody = template.render(objectMapper, conversationHistory, null);
+        String apiUrl = String.format("%smodels/%s:streamGenerateContent?alt=sse&key=%s",
+                geminiConfig.getBaseUrl(), geminiConfig.getModel(), geminiConfig.getApiKey());
+        log.debug("Gemini stream request to: {} ({} bytes)", apiUrl, requestBody.length);
+
+        return geminiGuard.guard(geminiWebClient.post()
+                        .uri(apiUrl)
+                        .header("x-goog-api-key", geminiConfig.getApiKey())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToFlux(SSE_CHUNK)
+                        .timeout(Duration.ofSeconds(geminiConfig.getTimeoutSeconds())))
+                .mapNotNull(ServerSentEvent::data)
+                .flatMapIterable(this::chunkParts)
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    log.error("Gemini stream error: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
+                    return apiError(e);
+                })
+                .onErrorMap(TimeoutException.class,
+                        e -> new RuntimeException("AI phản hồi quá lâu. Vui lòng thử lại."));
+    }
+
     /**
      * Kiểm tra xem response có phải là function call không.
      */
@@ -208,60 +225,50 @@ public class GeminiService {
 
     // ─── Private helpers ───────────────────────────────────
 
-    private ObjectNode buildRequestBody(String userMessage, String systemInstruction,
-            List<Map<String, Object>> conversationHistory,
-            List<Map<String, Object>> functionDeclarations) {
-        ObjectNode requestBody = objectMapper.createObjectNode();
-
-        // System instruction
-        if (systemInstruction != null) {
-            ObjectNode sysNode = objectMapper.createObjectNode();
-            ObjectNode sysPart = objectMapper.createObjectNode();
-            sysPart.put("text", systemInstruction);
-            sysNode.set("parts", objectMapper.createArrayNode().add(sysPart));
-            requestBody.set("system_instruction", sysNode);
-        }
-
-        // Contents
-        ArrayNode contents = objectMapper.createArrayNode();
+    /**
+     * Blocking generateContent call through {@link GeminiGuard}.
+     */
+    private String post(String apiUrl, byte[] requestBody) {
+        return geminiGuard.call(() -> geminiWebClient.post()
+                .uri(apiUrl)
+                .header("x-goog-api-key", geminiConfig.getApiKey())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(geminiConfig.getTimeoutSeconds()))
+                .block());
+    }
 
-        // Add conversation history
-        if (conversationHistory != null) {
-            for (Map<String, Object> msg : conversationHistory) {
-                contents.add(objectMapper.valueToTree(msg));
-            }
+    private RuntimeException apiError(WebClientResponseException e) {
+        if (e.getStatusCode().value() == 400) {
+            return new RuntimeException("Gemini 400 Error: " + e.getResponseBodyAsString());
+        } else if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
+            return new RuntimeException("API Key không hợp lệ hoặc đã hết hạn.");
+        } else if (e.getStatusCode().value() == 429) {
+            return new RuntimeException("Đã vượt quá giới hạn gọi API. Vui lòng thử lại sau.");
         }
+        return new RuntimeException("Lỗi kết nối AI. Vui lòng thử lại sau.");
+    }
 
-        // Add current user message
-        ObjectNode userContent = objectMapper.createObjectNode();
-        userContent.put("role", "user");
-        ObjectNode userPart = objectMapper.createObjectNode();
-        userPart.put("text", userMessage);
-        userContent.set("parts", objectMapper.createArrayNode().add(userPart));
-        contents.add(userContent);
-
-        requestBody.set("contents", contents);
-
-        // Tools (Function Calling)
-        if (functionDeclarations != null && !functionDeclarations.isEmpty()) {
-            ArrayNode tools = objectMapper.createArrayNode();
-            ObjectNode toolObj = objectMapper.createObjectNode();
-            toolObj.set("function_declarations", objectMapper.valueToTree(functionDeclarations));
-            tools.add(toolObj);
-            requestBody.set("tools", tools);
+    /**
+     * Parts of the first candidate in one streamed chunk.
+     */
+    private List<JsonNode> chunkParts(String chunkJson) {
+        try {
+            JsonNode parts = objectMapper.readTree(chunkJson).path("candidates").path(0).path("content")
+                    .path("parts");
+            List<JsonNode> result = new ArrayList<>(parts.size());
+            parts.forEach(result::add);
+            return result;
+        } catch (Exception e) {
+            log.warn("Skipping unreadable Gemini stream chunk: {}", chunkJson);
+            return List.of();
         }
-
-        // Generation config
-        addGenerationConfig(requestBody);
-
-        return requestBody;
     }
 
-    private void addGenerationConfig(ObjectNode requestBody) {
-        ObjectNode genConfig = objectMapper.createObjectNode();
-        genConfig.put("maxOutputTokens", geminiConfig.getMaxTokens());
-        genConfig.put("temperature", 0.3); // Low temperature for factual responses
-        requestBody.set("generationConfig", genConfig);
+    private static Map<String, Object> userTurn(String text) {
+        return Map.of("role", "user", "parts", List.of(Map.of("text", text)));
     }
 
     /**
@@ -311,4 +318,39 @@ public class GeminiService {
         }
     }
     // getApiUrl removed as we now build absolute URLs in situ
+
+    /**
+     * A compiled request: the serialized system instruction, tools and
+     * generation config, ending in {@code "contents":}. Rendering copies these
+     * bytes and streams only the conversation after them.
+     */
+    public static final class RequestTemplate {
+
+        private final byte[] head;
+
+        RequestTemplate(byte[] head) {
+            this.head = head;
+        }
+
+        byte[] render(ObjectMapper objectMapper, List<Map<String, Object>> history, Map<String, Object> lastTurn) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(head.length + 4096);
+            out.writeBytes(head);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                if (history != null) {
+                    for (Map<String, Object> turn : history) {
+                        objectMapper.writeValue(generator, turn);
+                    }
+                }
+                if (lastTurn != null) {
+                    objectMapper.writeValue(generator, lastTurn);
+                }
+                generator.writeEndArray();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot serialize Gemini request", e);
+            }
+            out.write('}');
+            return out.toByteArray();
+        }
+    }
 }
@@ -28,6 +28,7 @@ public class InvoiceService {
     private final InvoiceRepository invoiceRepository;
     private final PaymentRepository paymentRepository;
     private final NotificationService notificationService;
+    private final DashboardStatsCache dashboardStatsCache;
 
     @Transactional
     public Invoice createInvoiceFromPayment(Payment payment) {
@@ -104,6 +105,7 @@ public class InvoiceService {
         payment.setPaymentMethod(method);
         payment.setPaidAt(LocalDateTime.now());
         paymentRepository.save(payment);
+        dashboardStatsCache.invalidate();
 
         log.info("Invoice {} marked as paid manually via {}", invoiceId, method);
 
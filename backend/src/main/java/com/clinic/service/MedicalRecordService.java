@@ -10,6 +10,7 @@ import com.clinic.exception.AppException;
 import com.clinic.exception.ErrorCode;
 import com.clinic.repository.*;
 import com.clinic.security.CustomUserDetails;
+import com.clinic.util.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -34,6 +35,8 @@ public class MedicalRecordService {
         private final MedicineRepository medicineRepository;
         private final PatientRepository patientRepository;
         private final NotificationService notificationService;
+        private final SecurityUtils securityUtils;
+        private final ChatToolCache chatToolCache;
 
         @Transactional
         public MedicalRecordResponse createMedicalRecord(MedicalRecordRequest request) {
@@ -83,6 +86,9 @@ public class MedicalRecordService {
                 appointment.setStatus(AppointmentStatus.COMPLETED);
                 appointment.setCompletedAt(java.time.LocalDateTime.now());
                 appointmentRepository.save(appointment);
+                // The chatbot caches each user's appointment list, statuses included
+                chatToolCache.invalidate(ChatToolCache.MY_APPOINTMENTS, appointment.getPatient().getUser().getId());
+                chatToolCache.invalidate(ChatToolCache.MY_APPOINTMENTS, appointment.getDoctor().getUser().getId());
 
                 // Prescription
                 if (request.getPrescriptionDetails() != null && !request.getPrescriptionDetails().isEmpty()) {
@@ -138,14 +144,10 @@ public class MedicalRecordService {
         }
 
         public List<MedicalRecordResponse> getMyRecords() {
-                CustomUserDetails userDetails = (CustomUserDetails) SecurityContextHolder.getContext()
-                                .getAuthentication()
-                                .getPrincipal();
-
-                Patient patient = patientRepository.findByUserId(userDetails.getId())
+                UUID patientId = securityUtils.getCurrentPatientId()
                                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
 
-                return getRecordsByPatient(patient.getId());
+                return getRecordsByPatient(patientId);
         }
 
         public MedicalRecordResponse getRecordById(UUID id) {
@@ -16,6 +16,7 @@ import java.util.stream.Collectors;
 public class MedicineService {
 
     private final MedicineRepository medicineRepository;
+    private final ChatToolCache chatToolCache;
 
     @Transactional(readOnly = true)
     public List<MedicineResponse> getAllMedicines() {
@@ -40,6 +41,7 @@ public class MedicineService {
                 .isActive(request.getIsActive())
                 .build();
 
+        chatToolCache.invalidate(ChatToolCache.SEARCH_MEDICINES);
         return mapToResponse(medicineRepository.save(medicine));
     }
 
@@ -1,17 +1,31 @@
 package com.clinic.service;
 
+import com.clinic.dto.response.CursorPageResponse;
+import com.clinic.dto.response.NotificationResponse;
 import com.clinic.entity.Notification;
 import com.clinic.entity.User;
 import com.clinic.entity.enums.NotificationType;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
 import com.clinic.repository.NotificationRepository;
+import com.clinic.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -19,13 +33,53 @@ import java.util.UUID;
 @Slf4j
 public class NotificationService {
 
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
     private final NotificationRepository notificationRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final NotificationWriter notificationWriter;
+    private final UnreadNotificationCounter unreadCounter;
+    private final PlatformTransactionManager transactionManager;
 
-    @Async
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    /**
+     * Queues a notification for {@link NotificationWriter}, which saves it in a
+     * batch and then pushes it. Inside a transaction it is queued only once
+     * that transaction commits, so a rolled-back change notifies nobody.
+     */
     public void sendNotification(User user, String title, String message, NotificationType type, String entityType,
             UUID entityId) {
+        NotificationWriter.Pending pending = new NotificationWriter.Pending(user.getId(), user.getEmail(), title,
+                message, type, entityType, entityId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notificationWriter.enqueue(pending);
+                }
+            });
+        } else {
+            notificationWriter.enqueue(pending);
+        }
+    }
+
+    /**
+     * Whether the user already got a notification with this title about the
+     * entity since {@code since}, so a retried outbox delivery can skip them.
+     */
+    @Transactional(readOnly = true)
+    public boolean wasDelivered(UUID userId, UUID entityId, String title, LocalDateTime since) {
+        return notificationRepository.existsByUserIdAndRelatedEntityIdAndTitleAndCreatedAtGreaterThanEqual(userId,
+                entityId, title, since);
+    }
+
+    /**
+     * Synchronous variant of {@link #sendNotification}: saves and pushes on the
+     * calling thread and lets failures propagate (outbox delivery).
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void deliver(User user, String title, String message, NotificationType type, String entityType,
+            UUID entityId) {
         log.info("Creating notification for user: {} - Type: {}", user.getEmail(), type);
 
         // 1. Save to Database
@@ -53,5 +107,84 @@ public class NotificationService {
         messagingTemplate.convertAndSendToUser(user.getEmail(), destination, notification);
 
         log.info("Notification pushed to WebSocket for user: {}", user.getEmail());
+        unreadCounter.added(user.getId(), user.getEmail(), 1);
+    }
+
+    /**
+     * Marks one of the user's notifications as read; others' notifications
+     * are left alone.
+     */
+    @Transactional
+    public void markAsRead(UUID userId, UUID notificationId) {
+        unreadCounter.read(userId, notificationRepository.markAsRead(notificationId, userId));
+    }
+
+    @Transactional
+    public void markAllAsRead(UUID userId) {
+        if (notificationRepository.markAllAsReadByUserId(userId) > 0) {
+            unreadCounter.allRead(userId);
+        }
+    }
+
+    public long getUnreadCount(UUID userId) {
+        return unreadCounter.get(userId);
+    }
+
+    public Page<NotificationResponse> getNotifications(UUID userId, int page, int size) {
+        return notificationRepository.findPageByUserId(userId, PageRequest.of(page, size));
+    }
+
+    /**
+     * Keyset-paginated notifications of the user ordered by (created_at, id)
+     * descending. One extra row is fetched to tell whether a next page exists.
+     */
+    public CursorPageResponse<NotificationResponse> getNotificationsPage(UUID userId, String cursor, Integer size) {
+        int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        List<NotificationResponse> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = notificationRepository.findListingPage(userId, limit);
+        } else {
+            String[] keys = KeysetCursor.decode(cursor, 2);
+            try {
+                rows = notificationRepository.findListingPageAfter(userId, LocalDateTime.parse(keys[0]),
+                        UUID.fromString(keys[1]), limit);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new AppException(ErrorCode.INVALID_CURSOR);
+            }
+        }
+
+        boolean hasNext = rows.size() > pageSize;
+        List<NotificationResponse> items = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            NotificationResponse last = items.get(items.size() - 1);
+            nextCursor = KeysetCursor.encode(last.getCreatedAt(), last.getId());
+        }
+        return CursorPageResponse.<NotificationResponse>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    /**
+     * Moves read notifications created before {@code before} to the archive
+     * table, {@code batchSize} rows per transaction so the sweep never holds
+     * long locks on the live table. Unread notifications are never archived,
+     * so unread counts are unaffected.
+     *
+     * @return number of notifications archived
+     */
+    public int archiveRead(LocalDateTime before, int batchSize) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> notificationRepository.archiveReadBefore(before, batchSize));
+            total += moved;
+        } while (moved == batchSize);
+        return total;
     }
 }
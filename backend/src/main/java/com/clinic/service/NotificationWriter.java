@@ -0,0 +1,279 @@
+package com.clinic.service;
+
+import com.clinic.entity.Notification;
+import com.clinic.entity.User;
+import com.clinic.entity.enums.NotificationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writer for in-app notifications. Producers put notifications on a
+ * bounded queue; when it is full they wait up to {@code enqueue-timeout-ms}
+ * (backpressure) and the notification is dropped after that. One thread
+ * drains the queue, folds identical notifications for the same user into one,
+ * inserts the batch with a JDBC batch in a single transaction and pushes each
+ * notification over WebSocket once the transaction has committed, followed by
+ * the users' new unread counts.
+ */
+@Component
+@Slf4j
+public class NotificationWriter {
+
+    static final String INSERT_SQL = "INSERT INTO notifications (id, user_id, title, message, type, is_read, "
+            + "related_entity_type, related_entity_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, false, ?, ?, ?, ?)";
+    private static final String DESTINATION = "/queue/notifications";
+
+    /**
+     * A notification waiting to be written. Holds ids rather than the
+     * {@code User} entity, which belongs to the producer's persistence context.
+     */
+    public record Pending(UUID userId, String email, String title, String message, NotificationType type,
+            String entityType, UUID entityId) {
+    }
+
+    private final BlockingQueue<Pending> queue;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final UnreadNotificationCounter unreadCounter;
+    private final int batchSize;
+    private final long lingerMs;
+    private final long enqueueTimeoutMs;
+    private volatile boolean running;
+    private Thread worker;
+
+    private final Counter enqueued;
+    private final Counter coalesced;
+    private final Counter written;
+    private final Counter droppedQueueFull;
+    private final Counter droppedWriteFailed;
+    private final DistributionSummary batchSizes;
+    private final Timer writeTimer;
+
+    public NotificationWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            SimpMessagingTemplate messagingTemplate, UnreadNotificationCounter unreadCounter,
+            MeterRegistry meterRegistry,
+            @Value("${app.notifications.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.notifications.batch-size:200}") int batchSize,
+            @Value("${app.notifications.linger-ms:50}") long lingerMs,
+            @Value("${app.notifications.enqueue-timeout-ms:100}") long enqueueTimeoutMs) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.messagingTemplate = messagingTemplate;
+        this.unreadCounter = unreadCounter;
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+
+        this.enqueued = Counter.builder("clinic.notifications.enqueued").register(meterRegistry);
+        this.coalesced = Counter.builder("clinic.notifications.coalesced")
+                .description("Duplicates folded into a notification of the same batch")
+                .register(meterRegistry);
+        this.written = Counter.builder("clinic.notifications.written").register(meterRegistry);
+        this.droppedQueueFull = Counter.builder("clinic.notifications.dropped").tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.droppedWriteFailed = Counter.builder("clinic.notifications.dropped").tag("reason", "write_failed")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("clinic.notifications.batch.size").register(meterRegistry);
+        this.writeTimer = Timer.builder("clinic.notifications.batch.write").register(meterRegistry);
+        Gauge.builder("clinic.notifications.queue.depth", queue, Collection::size).register(meterRegistry);
+        Gauge.builder("clinic.notifications.queue.remaining", queue, BlockingQueue::remainingCapacity)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = new Thread(this::run, "notification-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues a notification, waiting for room up to the enqueue timeout.
+     *
+     * @return false if the queue stayed full and the notification was dropped
+     */
+    public boolean enqueue(Pending notification) {
+        try {
+            if (queue.offer(notification, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                enqueued.increment();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedQueueFull.increment();
+        log.warn("Notification queue full, dropped '{}' for user {}", notification.title(), notification.userId());
+        return false;
+    }
+
+    /**
+     * Writes and pushes what is queued, up to one batch.
+     *
+     * @return number of notifications written
+     */
+    int drain() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        queue.drainTo(batch, batchSize);
+        return write(batch);
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Pending> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                // Give a burst (bulk cancellation, reminder job) a moment to fill the batch
+                if (batch.size() < batchSize && lingerMs > 0 && running) {
+                    TimeUnit.MILLISECONDS.sleep(lingerMs);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Notification writer failed", e);
+            }
+        }
+    }
+
+    private int write(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Collection<Pending> unique = new LinkedHashSet<>(batch);
+        coalesced.increment(batch.size() - unique.size());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Notification> rows = new ArrayList<>(unique.size());
+        Map<Notification, Pending> sources = new IdentityHashMap<>();
+        for (Pending pending : unique) {
+            Notification row = toNotification(pending, now);
+            rows.add(row);
+            sources.put(row, pending);
+        }
+
+        List<Notification> saved;
+        try {
+            writeTimer.record(() -> insert(rows));
+            saved = rows;
+        } catch (RuntimeException e) {
+            // One bad row (e.g. the user was deleted meanwhile) must not lose the rest
+            log.warn("Batch insert of {} notification(s) failed, writing them one by one", rows.size(), e);
+            saved = new ArrayList<>(rows.size());
+            for (Notification row : rows) {
+                try {
+                    insert(List.of(row));
+                    saved.add(row);
+                } catch (RuntimeException rowError) {
+                    droppedWriteFailed.increment();
+                    log.error("Cannot write notification '{}' for user {}", row.getTitle(),
+                            sources.get(row).userId(), rowError);
+                }
+            }
+        }
+        batchSizes.record(saved.size());
+        written.increment(saved.size());
+
+        // Committed: push, then move the badges
+        Map<UUID, Integer> perUser = new LinkedHashMap<>();
+        Map<UUID, String> emails = new HashMap<>();
+        for (Notification row : saved) {
+            Pending source = sources.get(row);
+            try {
+                messagingTemplate.convertAndSendToUser(source.email(), DESTINATION, row);
+            } catch (RuntimeException e) {
+                log.warn("Cannot push notification to {}", source.email(), e);
+            }
+            perUser.merge(source.userId(), 1, Integer::sum);
+            emails.put(source.userId(), source.email());
+        }
+        perUser.forEach((userId, count) -> unreadCounter.added(userId, emails.get(userId), count));
+        return saved.size();
+    }
+
+    private void insert(List<Notification> rows) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(),
+                NotificationWriter::bind));
+    }
+
+    private static void bind(PreparedStatement ps, Notification row) throws SQLException {
+        Timestamp createdAt = Timestamp.valueOf(row.getCreatedAt());
+        ps.setObject(1, row.getId());
+        ps.setObject(2, row.getUser().getId());
+        ps.setString(3, row.getTitle());
+        ps.setString(4, row.getMessage());
+        ps.setString(5, row.getType().name());
+        ps.setString(6, row.getRelatedEntityType());
+        ps.setObject(7, row.getRelatedEntityId());
+        ps.setTimestamp(8, createdAt);
+        ps.setTimestamp(9, createdAt);
+    }
+
+    private static Notification toNotification(Pending pending, LocalDateTime now) {
+        User user = new User();
+        user.setId(pending.userId());
+        Notification notification = Notification.builder()
+                .user(user)
+                .title(pending.title())
+                .message(pending.message())
+                .type(pending.type())
+                .relatedEntityType(pending.entityType())
+                .relatedEntityId(pending.entityId())
+                .isRead(false)
+                .build();
+        notification.setId(UUID.randomUUID());
+        notification.setCreatedAt(now);
+        notification.setUpdatedAt(now);
+        return notification;
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Anything the worker could not finish
+        int remaining = 0;
+        while (!queue.isEmpty()) {
+            remaining += drain();
+        }
+        if (remaining > 0) {
+            log.info("Wrote {} queued notification(s) on shutdown", remaining);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.clinic.service;
+
+import com.clinic.entity.OutboxEvent;
+import com.clinic.entity.enums.OutboxChannel;
+import com.clinic.entity.enums.OutboxEventType;
+
+import java.util.Map;
+
+/**
+ * Delivers outbox events of the types it supports.
+ * {@link #handle} is called once per channel that has not been delivered yet and
+ * must throw when the delivery failed, so the event is retried from that channel.
+ */
+public interface OutboxEventHandler {
+
+    boolean supports(OutboxEventType type);
+
+    void handle(OutboxEvent event, Map<String, Object> payload, OutboxChannel channel) throws Exception;
+}
@@ -0,0 +1,191 @@
+package com.clinic.service;
+
+import com.clinic.entity.OutboxEvent;
+import com.clinic.entity.enums.OutboxChannel;
+import com.clinic.entity.enums.OutboxEventType;
+import com.clinic.entity.enums.OutboxStatus;
+import com.clinic.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Transactional outbox.
+ * Business services call {@link #publish} inside their own transaction, so the
+ * event row commits (or rolls back) together with the change it describes. The
+ * {@code OutboxDispatcher} claims due rows in batches after commit, fans them out
+ * to email, web-socket push and audit, and reschedules failures with
+ * exponential backoff.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxService {
+
+    public static final String KEY_IP_ADDRESS = "ipAddress";
+    public static final String KEY_USER_AGENT = "userAgent";
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.outbox.backoff-base-seconds:30}")
+    private long backoffBaseSeconds;
+
+    @Value("${app.outbox.backoff-max-seconds:3600}")
+    private long backoffMaxSeconds;
+
+    @Value("${app.outbox.lease-seconds:300}")
+    private long leaseSeconds;
+
+    /**
+     * Signals that events were committed and the dispatcher can run early.
+     */
+    public record Published(OutboxEventType type) {
+    }
+
+    /**
+     * Records an event in the caller's transaction. The request origin is captured
+     * now, since delivery happens later on a background thread.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent publish(OutboxEventType type, String aggregateType, UUID aggregateId, UUID actorId,
+            Map<String, Object> payload) {
+        Map<String, Object> data = new HashMap<>(payload);
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        HttpServletRequest request = attributes != null ? attributes.getRequest() : null;
+        data.putIfAbsent(KEY_IP_ADDRESS, request != null ? request.getRemoteAddr() : "unknown");
+        data.putIfAbsent(KEY_USER_AGENT, request != null ? request.getHeader("User-Agent") : "unknown");
+
+        OutboxEvent event = outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(type)
+                .aggregateType(aggregateType)
+                .aggregateId(aggregateId)
+                .actorId(actorId)
+                .payload(writePayload(data))
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+
+        eventPublisher.publishEvent(new Published(type));
+        return event;
+    }
+
+    /**
+     * Claims up to {@code limit} due events. Claimed rows are leased: if this node
+     * dies mid-delivery they become due again once the lease expires.
+     */
+    @Transactional
+    public List<OutboxEvent> claimBatch(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = outboxEventRepository.lockDueEvents(now, limit);
+        for (OutboxEvent event : events) {
+            event.setStatus(OutboxStatus.PROCESSING);
+            event.setAttempts(event.getAttempts() + 1);
+            event.setNextAttemptAt(now.plusSeconds(leaseSeconds));
+        }
+        return outboxEventRepository.saveAll(events);
+    }
+
+    /**
+     * Stores the outcome of one delivery attempt: channels that succeeded are kept
+     * so a retry only repeats the failed ones.
+     */
+    @Transactional
+    public void complete(OutboxEvent event, Set<OutboxChannel> delivered, Exception error) {
+        event.setDeliveredChannels(joinChannels(delivered));
+        if (error == null) {
+            event.setStatus(OutboxStatus.SENT);
+            event.setProcessedAt(LocalDateTime.now());
+            event.setLastError(null);
+        } else {
+            String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+            event.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+            if (event.getAttempts() >= maxAttempts) {
+                event.setStatus(OutboxStatus.FAILED);
+                log.error("Outbox event {} ({}) failed permanently after {} attempts", event.getId(),
+                        event.getEventType(), event.getAttempts(), error);
+            } else {
+                event.setStatus(OutboxStatus.PENDING);
+                event.setNextAttemptAt(LocalDateTime.now().plus(backoff(event.getAttempts())));
+                log.warn("Outbox event {} ({}) attempt {} failed, retrying at {}: {}", event.getId(),
+                        event.getEventType(), event.getAttempts(), event.getNextAttemptAt(), message);
+            }
+        }
+        outboxEventRepository.save(event);
+    }
+
+    @Transactional
+    public int purgeSent(LocalDateTime before) {
+        return outboxEventRepository.deleteSentBefore(before);
+    }
+
+    /**
+     * Exponential backoff (base * 2^(attempt-1)) capped at the maximum, with up to
+     * 20% jitter so a burst of failures does not retry in lockstep.
+     */
+    Duration backoff(int attempt) {
+        long seconds = backoffBaseSeconds << Math.min(Math.max(attempt - 1, 0), 20);
+        seconds = Math.min(seconds, backoffMaxSeconds);
+        long jitter = ThreadLocalRandom.current().nextLong(seconds / 5 + 1);
+        return Duration.ofSeconds(seconds + jitter);
+    }
+
+    public Map<String, Object> readPayload(OutboxEvent event) {
+        if (event.getPayload() == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(event.getPayload(), new TypeReference<Map<String, Object>>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outbox payload for event " + event.getId(), e);
+        }
+    }
+
+    public static Set<OutboxChannel> parseChannels(String channels) {
+        Set<OutboxChannel> result = EnumSet.noneOf(OutboxChannel.class);
+        if (channels != null && !channels.isBlank()) {
+            for (String channel : channels.split(",")) {
+                result.add(OutboxChannel.valueOf(channel.trim()));
+            }
+        }
+        return result;
+    }
+
+    private static String joinChannels(Set<OutboxChannel> channels) {
+        if (channels.isEmpty()) {
+            return null;
+        }
+        StringJoiner joiner = new StringJoiner(",");
+        channels.forEach(c -> joiner.add(c.name()));
+        return joiner.toString();
+    }
+
+    private String writePayload(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox payload", e);
+        }
+    }
+}
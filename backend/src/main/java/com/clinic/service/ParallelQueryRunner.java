@@ -0,0 +1,239 @@
+package com.clinic.service;
+
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent read-only queries concurrently on the bounded
+ * {@code reportQueryExecutor}, each in its own read-only transaction with a
+ * statement timeout, so a report takes as long as its slowest query instead of
+ * the sum. When the connection pool is short of idle connections the batch runs
+ * sequentially in one transaction on the calling thread instead.
+ */
+@Component
+@Slf4j
+public class ParallelQueryRunner {
+
+    private final ThreadPoolTaskExecutor executor;
+    private final PlatformTransactionManager transactionManager;
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+    private final int timeoutSeconds;
+    private final int reservedConnections;
+
+    public ParallelQueryRunner(@Qualifier("reportQueryExecutor") ThreadPoolTaskExecutor executor,
+            PlatformTransactionManager transactionManager, DataSource dataSource, MeterRegistry meterRegistry,
+            @Value("${app.report.query-timeout-seconds:10}") int timeoutSeconds,
+            @Value("${app.report.reserved-connections:2}") int reservedConnections) {
+        this.executor = executor;
+        this.transactionManager = transactionManager;
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+        this.timeoutSeconds = timeoutSeconds;
+        this.reservedConnections = reservedConnections;
+    }
+
+    public Batch batch(String name) {
+        return new Batch(name);
+    }
+
+    /**
+     * Result slot of one query, readable after {@link Batch#execute()}.
+     */
+    public static final class Result<T> {
+        private T value;
+
+        public T get() {
+            return value;
+        }
+    }
+
+    public final class Batch {
+
+        private final String name;
+        private final List<Query<?>> queries = new ArrayList<>();
+
+        private Batch(String name) {
+            this.name = name;
+        }
+
+        public <T> Result<T> add(String queryName, Supplier<T> query) {
+            Query<T> q = new Query<>(queryName, query, new Result<>());
+            queries.add(q);
+            return q.result();
+        }
+
+        public void execute() {
+            if (canRunInParallel(queries.size())) {
+                runParallel();
+            } else {
+                runSequential();
+            }
+        }
+
+        private void runParallel() {
+            meterRegistry.counter("clinic.report.batches", "batch", name, "mode", "parallel").increment();
+            TransactionTemplate template = readOnlyTemplate(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+            List<Future<?>> futures = new ArrayList<>(queries.size());
+            try {
+                for (Query<?> query : queries) {
+                    futures.add(executor.submit(() -> template.executeWithoutResult(
+                            status -> query.run("parallel"))));
+                }
+            } catch (TaskRejectedException e) {
+                // Executor saturated by other reports: finish what was not submitted here
+                log.warn("Report executor saturated, running {} remaining queries inline", queries.size()
+                        - futures.size());
+                for (Query<?> query : queries.subList(futures.size(), queries.size())) {
+                    template.executeWithoutResult(status -> query.run("inline"));
+                }
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds + 1L);
+            for (int i = 0; i < futures.size(); i++) {
+                Future<?> future = futures.get(i);
+                try {
+                    future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    log.error("Report query {}.{} timed out", name, queries.get(i).name());
+                    throw new AppException(ErrorCode.REPORT_QUERY_TIMEOUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.forEach(f -> f.cancel(true));
+                    throw new AppException(ErrorCode.REPORT_QUERY_FAILED);
+                } catch (ExecutionException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    throw translate(queries.get(i).name(), e.getCause());
+                }
+            }
+        }
+
+        private void runSequential() {
+            meterRegistry.counter("clinic.report.batches", "batch", name, "mode", "sequential").increment();
+            try {
+                readOnlyTemplate(TransactionDefinition.PROPAGATION_REQUIRED).executeWithoutResult(status -> {
+                    for (Query<?> query : queries) {
+                        query.run("sequential");
+                    }
+                });
+            } catch (RuntimeException e) {
+                throw translate(name, e);
+            }
+        }
+
+        private final class Query<T> {
+            private final String name;
+            private final Supplier<T> supplier;
+            private final Result<T> result;
+
+            private Query(String name, Supplier<T> supplier, Result<T> result) {
+                this.name = name;
+                this.supplier = supplier;
+                this.result = result;
+            }
+
+            String name() {
+                return name;
+            }
+
+            Result<T> result() {
+                return result;
+            }
+
+            void run(String mode) {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                String outcome = "success";
+                try {
+                    result.value = supplier.get();
+                } catch (RuntimeException e) {
+                    outcome = "error";
+                    throw e;
+                } finally {
+                    sample.stop(meterRegistry.timer("clinic.report.query", "batch", Batch.this.name,
+                            "query", name, "mode", mode, "outcome", outcome));
+                }
+            }
+        }
+    }
+
+    /**
+     * Parallel mode needs one free connection per concurrent query on top of
+     * a reserve for regular requests, and nobody already waiting for one.
+     */
+    boolean canRunInParallel(int queryCount) {
+        if (queryCount < 2) {
+            return false;
+        }
+        HikariPoolMXBean pool = hikariPool();
+        if (pool == null) {
+            return true;
+        }
+        int maxPool = dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize()
+                : pool.getTotalConnections();
+        int free = maxPool - pool.getActiveConnections();
+        int needed = Math.min(queryCount, executor.getMaxPoolSize()) + reservedConnections;
+        boolean parallel = pool.getThreadsAwaitingConnection() == 0 && free >= needed;
+        if (!parallel) {
+            log.debug("Connection pool under pressure (free={}, needed={}, waiting={}), running report sequentially",
+                    free, needed, pool.getThreadsAwaitingConnection());
+        }
+        return parallel;
+    }
+
+    private HikariPoolMXBean hikariPool() {
+        try {
+            if (dataSource instanceof HikariDataSource hikari) {
+                return hikari.getHikariPoolMXBean();
+            }
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+            }
+        } catch (Exception e) {
+            log.debug("Cannot inspect connection pool: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private TransactionTemplate readOnlyTemplate(int propagation) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        template.setPropagationBehavior(propagation);
+        template.setTimeout(timeoutSeconds);
+        return template;
+    }
+
+    private AppException translate(String queryName, Throwable cause) {
+        if (cause instanceof AppException appException) {
+            return appException;
+        }
+        if (cause instanceof TransactionTimedOutException || cause instanceof jakarta.persistence.QueryTimeoutException
+                || cause instanceof org.springframework.dao.QueryTimeoutException) {
+            log.error("Report query {} timed out", queryName);
+            return new AppException(ErrorCode.REPORT_QUERY_TIMEOUT);
+        }
+        log.error("Report query {} failed", queryName, cause);
+        return new AppException(ErrorCode.REPORT_QUERY_FAILED);
+    }
+}
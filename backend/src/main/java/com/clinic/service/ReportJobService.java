@@ -0,0 +1,347 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.ReportJobResponse;
+import com.clinic.entity.ReportJob;
+import com.clinic.entity.enums.ReportJobStatus;
+import com.clinic.entity.enums.ReportJobType;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.clinic.repository.ReportJobRepository;
+import com.clinic.util.ExcelExporter;
+import com.clinic.util.PdfExporter;
+import com.clinic.util.SecurityUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders report exports on the bounded {@code reportJobExecutor} instead of a
+ * request thread. A submitted job is persisted, rendered to a temp file in the
+ * storage directory and atomically moved into place; the requester is notified
+ * on {@code /user/queue/report-jobs} and can also poll. Identical requests
+ * (type and range) that are still running or finished within the dedup window
+ * are answered with the existing job; a unique index on in-flight jobs settles
+ * submits racing on different nodes. Each node keeps the heartbeat of the jobs
+ * it runs fresh, and jobs whose heartbeat stops are failed as stale.
+ */
+@Service
+@Slf4j
+public class ReportJobService {
+
+    static final String DESTINATION = "/queue/report-jobs";
+    static final long MAX_RANGE_DAYS = 366 * 3;
+
+    private final ReportJobRepository reportJobRepository;
+    private final ReportService reportService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ThreadPoolTaskExecutor executor;
+    private final SecurityUtils securityUtils;
+    private final Path storageDir;
+    private final long retentionHours;
+    private final long dedupMinutes;
+    private final long staleMinutes;
+
+    // Principals to notify per in-flight job, including requests deduplicated into it
+    private final ConcurrentHashMap<UUID, Set<String>> watchers = new ConcurrentHashMap<>();
+    private final Object submitLock = new Object();
+
+    public ReportJobService(ReportJobRepository reportJobRepository, ReportService reportService,
+            SimpMessagingTemplate messagingTemplate, @Qualifier("reportJobExecutor") ThreadPoolTaskExecutor executor,
+            SecurityUtils securityUtils,
+            @Value("${app.report.jobs.storage-dir:${java.io.tmpdir}/clinic-reports}") String storageDir,
+            @Value("${app.report.jobs.retention-hours:24}") long retentionHours,
+            @Value("${app.report.jobs.dedup-minutes:10}") long dedupMinutes,
+            @Value("${app.report.jobs.stale-minutes:60}") long staleMinutes) {
+        this.reportJobRepository = reportJobRepository;
+        this.reportService = reportService;
+        this.messagingTemplate = messagingTemplate;
+        this.executor = executor;
+        this.securityUtils = securityUtils;
+        this.storageDir = Path.of(storageDir);
+        this.retentionHours = retentionHours;
+        this.dedupMinutes = dedupMinutes;
+        this.staleMinutes = staleMinutes;
+    }
+
+    public ReportJobResponse submit(ReportJobType type, LocalDate from, LocalDate to) {
+        if (type == null || from == null || to == null || to.isBefore(from)
+                || ChronoUnit.DAYS.between(from, to) > MAX_RANGE_DAYS) {
+            throw new AppException(ErrorCode.REPORT_RANGE_INVALID);
+        }
+        String principal = currentPrincipal();
+
+        ReportJob job;
+        synchronized (submitLock) {
+            ReportJobResponse reused = findReusable(type, from, to, principal);
+            if (reused != null) {
+                return reused;
+            }
+            try {
+                job = reportJobRepository.save(ReportJob.builder()
+                        .jobType(type)
+                        .dateFrom(from)
+                        .dateTo(to)
+                        .requestedBy(securityUtils.getCurrentUserId().orElse(null))
+                        .heartbeatAt(LocalDateTime.now())
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Another node submitted the same request in the meantime
+                reused = findReusable(type, from, to, principal);
+                if (reused != null) {
+                    return reused;
+                }
+                throw new AppException(ErrorCode.REPORT_JOB_REJECTED);
+            }
+            Set<String> notify = ConcurrentHashMap.newKeySet();
+            if (principal != null) {
+                notify.add(principal);
+            }
+            watchers.put(job.getId(), notify);
+        }
+
+        UUID jobId = job.getId();
+        try {
+            executor.execute(() -> run(jobId));
+        } catch (TaskRejectedException e) {
+            watchers.remove(jobId);
+            finish(job, ReportJobStatus.FAILED, null, "Report queue is full");
+            throw new AppException(ErrorCode.REPORT_JOB_REJECTED);
+        }
+        return toResponse(job, false);
+    }
+
+    private ReportJobResponse findReusable(ReportJobType type, LocalDate from, LocalDate to, String principal) {
+        LocalDateTime now = LocalDateTime.now();
+        for (ReportJob existing : reportJobRepository.findReusable(type, from, to,
+                now.minusMinutes(dedupMinutes), now)) {
+            if (existing.getStatus() != ReportJobStatus.COMPLETED) {
+                if (principal != null) {
+                    watchers.computeIfPresent(existing.getId(), (id, set) -> {
+                        set.add(principal);
+                        return set;
+                    });
+                }
+                return toResponse(existing, true);
+            }
+            if (existing.getFilePath() != null && Files.exists(Path.of(existing.getFilePath()))) {
+                return toResponse(existing, true);
+            }
+        }
+        return null;
+    }
+
+    public ReportJobResponse getJob(UUID id) {
+        return toResponse(findJob(id), false);
+    }
+
+    /**
+     * Returns the finished job whose artifact is still on disk.
+     */
+    public ReportJob getDownloadableJob(UUID id) {
+        ReportJob job = findJob(id);
+        if (job.getStatus() != ReportJobStatus.COMPLETED || job.getFilePath() == null
+                || !Files.exists(Path.of(job.getFilePath()))) {
+            throw new AppException(ErrorCode.REPORT_JOB_NOT_READY);
+        }
+        return job;
+    }
+
+    public String fileName(ReportJob job) {
+        return "report-" + job.getJobType().name().toLowerCase().replace('_', '-') + "-" + job.getDateFrom()
+                + "-" + job.getDateTo() + "." + job.getJobType().getExtension();
+    }
+
+    /**
+     * Refreshes the heartbeat of the jobs this node runs, fails jobs whose
+     * heartbeat stopped (for example by a restart) for longer than the stale
+     * threshold and deletes artifacts past their retention.
+     */
+    @Transactional
+    public int purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        if (!watchers.isEmpty()) {
+            reportJobRepository.touch(Set.copyOf(watchers.keySet()), now);
+        }
+        int stale = reportJobRepository.failStale(now.minusMinutes(staleMinutes), "Interrupted", now);
+        if (stale > 0) {
+            log.warn("Marked {} stale report job(s) as failed", stale);
+        }
+        int purged = 0;
+        for (ReportJob job : reportJobRepository.findByStatusAndExpiresAtBefore(ReportJobStatus.COMPLETED, now)) {
+            try {
+                if (job.getFilePath() != null) {
+                    Files.deleteIfExists(Path.of(job.getFilePath()));
+                }
+                job.setStatus(ReportJobStatus.EXPIRED);
+                job.setFilePath(null);
+                purged++;
+            } catch (IOException e) {
+                log.warn("Cannot delete report artifact {}: {}", job.getFilePath(), e.getMessage());
+            }
+        }
+        return purged;
+    }
+
+    void run(UUID jobId) {
+        ReportJob job = reportJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            watchers.remove(jobId);
+            return;
+        }
+        if (job.getStatus() != ReportJobStatus.PENDING) {
+            // Failed as stale while queued
+            notifyWatchers(job);
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        job.setStatus(ReportJobStatus.RUNNING);
+        job.setStartedAt(startedAt);
+        job.setHeartbeatAt(startedAt);
+        try {
+            job = reportJobRepository.save(job);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            notifyWatchers(reportJobRepository.findById(jobId).orElse(job));
+            return;
+        }
+
+        Path target = storageDir.resolve(jobId + "." + job.getJobType().getExtension());
+        Path temp = storageDir.resolve(jobId + ".part");
+        try {
+            Files.createDirectories(storageDir);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                render(job, out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.error("Report job {} ({}) failed", jobId, job.getJobType(), e);
+            deleteQuietly(temp);
+            notifyWatchers(finishOrReload(job, ReportJobStatus.FAILED, null, e.getMessage()));
+            return;
+        }
+        job = finishOrReload(job, ReportJobStatus.COMPLETED, target, null);
+        if (job.getStatus() == ReportJobStatus.COMPLETED) {
+            log.info("Report job {} ({}) finished: {} bytes", jobId, job.getJobType(), job.getFileSize());
+        } else {
+            deleteQuietly(target);
+        }
+        notifyWatchers(job);
+    }
+
+    /**
+     * Finishes the job unless it was failed as stale meanwhile, in which case
+     * the stored outcome wins and is returned.
+     */
+    private ReportJob finishOrReload(ReportJob job, ReportJobStatus status, Path artifact, String error) {
+        try {
+            return finish(job, status, artifact, error);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            log.warn("Report job {} was failed as stale while running, dropping its result", job.getId());
+            return reportJobRepository.findById(job.getId()).orElse(job);
+        }
+    }
+
+    private void render(ReportJob job, OutputStream out) throws IOException {
+        LocalDate from = job.getDateFrom();
+        LocalDate to = job.getDateTo();
+        switch (job.getJobType()) {
+            case SUMMARY_PDF -> PdfExporter.writeReport(reportService.getSummaryReport(from, to), out);
+            case SUMMARY_EXCEL -> ExcelExporter.writeReport(reportService.getSummaryReport(from, to), out);
+            case APPOINTMENTS_EXCEL -> reportService.exportAppointmentsExcel(from, to, out);
+            case PAYMENTS_EXCEL -> reportService.exportPaymentsExcel(from, to, out);
+        }
+    }
+
+    private ReportJob finish(ReportJob job, ReportJobStatus status, Path artifact, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        job.setStatus(status);
+        job.setFinishedAt(now);
+        job.setErrorMessage(error);
+        if (artifact != null) {
+            job.setFilePath(artifact.toString());
+            job.setFileSize(sizeOf(artifact));
+            job.setExpiresAt(now.plusHours(retentionHours));
+        }
+        return reportJobRepository.save(job);
+    }
+
+    private void notifyWatchers(ReportJob job) {
+        Set<String> principals = watchers.remove(job.getId());
+        if (principals == null) {
+            return;
+        }
+        ReportJobResponse response = toResponse(job, false);
+        for (String principal : principals) {
+            try {
+                messagingTemplate.convertAndSendToUser(principal, DESTINATION, response);
+            } catch (Exception e) {
+                log.warn("Cannot push report job {} to {}: {}", job.getId(), principal, e.getMessage());
+            }
+        }
+    }
+
+    private ReportJob findJob(UUID id) {
+        return reportJobRepository.findById(id).orElseThrow(() -> new AppException(ErrorCode.REPORT_JOB_NOT_FOUND));
+    }
+
+    private ReportJobResponse toResponse(ReportJob job, boolean deduplicated) {
+        return ReportJobResponse.builder()
+                .id(job.getId())
+                .type(job.getJobType().name())
+                .status(job.getStatus().name())
+                .from(job.getDateFrom())
+                .to(job.getDateTo())
+                .fileSize(job.getFileSize())
+                .downloadUrl(job.getStatus() == ReportJobStatus.COMPLETED
+                        ? "/api/reports/jobs/" + job.getId() + "/download"
+                        : null)
+                .errorMessage(job.getErrorMessage())
+                .deduplicated(deduplicated)
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .expiresAt(job.getExpiresAt())
+                .build();
+    }
+
+    private String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : null;
+    }
+
+    private static Long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Leftover .part files are harmless and overwritten by the next attempt
+        }
+    }
+}
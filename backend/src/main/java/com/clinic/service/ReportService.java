@@ -1,23 +1,27 @@
 package com.clinic.service;
 
 import com.clinic.dto.response.ReportResponse;
+import com.clinic.entity.enums.AppointmentStatus;
+import com.clinic.repository.AppointmentDailyRollupRepository;
 import com.clinic.repository.AppointmentRepository;
-import com.clinic.repository.PaymentRepository;
 import com.clinic.repository.PatientRepository;
-import com.clinic.repository.UserRepository;
+import com.clinic.repository.PaymentDailyRollupRepository;
+import com.clinic.repository.PaymentRepository;
+import com.clinic.repository.UserDailyRollupRepository;
 import com.clinic.util.ExcelExporter;
-import com.clinic.util.PdfExporter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -25,61 +29,93 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class ReportService {
 
+        private final AppointmentDailyRollupRepository appointmentRollupRepository;
+        private final PaymentDailyRollupRepository paymentRollupRepository;
+        private final UserDailyRollupRepository userRollupRepository;
+        private final PatientRepository patientRepository;
+        private final ParallelQueryRunner queryRunner;
         private final AppointmentRepository appointmentRepository;
         private final PaymentRepository paymentRepository;
-        private final PatientRepository patientRepository;
-        private final UserRepository userRepository;
 
+        /**
+         * Builds the summary from the daily rollups (see {@link ReportRollupService}),
+         * so a year-long report reads a few hundred pre-aggregated rows instead of
+         * scanning appointments, payments and users. Patient demographics are not
+         * date-based and still come from the patients table.
+         * <p>
+         * The queries are independent, so they are fanned out through
+         * {@link ParallelQueryRunner}, each on its own read-only connection. No
+         * transaction is held here while they run.
+         */
+        @Transactional(propagation = Propagation.NOT_SUPPORTED)
         public ReportResponse getSummaryReport(LocalDate from, LocalDate to) {
-                LocalDateTime start = from.atStartOfDay();
-                LocalDateTime end = to.atTime(LocalTime.MAX);
+                ParallelQueryRunner.Batch batch = queryRunner.batch("summary");
+                var statusRows = batch.add("statusTotals", () -> appointmentRollupRepository.sumByStatus(from, to));
+                var patientCount = batch.add("patientCount", patientRepository::count);
+                var revenueRows = batch.add("revenueTrend", () -> paymentRollupRepository.getRevenueTrend(from, to));
+                var trendRows = batch.add("appointmentTrend", () -> appointmentRollupRepository.getTrend(from, to));
+                var specialtyRows = batch.add("specialty", () -> appointmentRollupRepository.sumBySpecialty(from, to));
+                var genderRows = batch.add("gender", patientRepository::getGenderDistribution);
+                var ageRows = batch.add("age", patientRepository::getAgeDistribution);
+                var doctorRows = batch.add("doctorPerformance",
+                                () -> appointmentRollupRepository.getDoctorPerformance(from, to));
+                var registrationRows = batch.add("registrationTrend",
+                                () -> userRollupRepository.getRegistrationTrend(from, to));
+                var roleRows = batch.add("roles", userRollupRepository::getRoleDistribution);
+                batch.execute();
 
                 // 1. Overview
-                BigDecimal totalRevenue = paymentRepository.getTotalRevenue(start, end);
-                if (totalRevenue == null)
-                        totalRevenue = BigDecimal.ZERO;
-
-                long totalAppointments = appointmentRepository.countByDateRange(from, to);
-                long completedAppointments = appointmentRepository.countByDateRangeAndStatus(from, to,
-                                com.clinic.entity.enums.AppointmentStatus.COMPLETED);
-
-                long totalPatients = patientRepository.count();
+                long totalAppointments = 0;
+                long completedAppointments = 0;
+                List<ReportResponse.CategoryStat> statusDistribution = new ArrayList<>();
+                for (Object[] row : statusRows.get()) {
+                        String status = (String) row[0];
+                        long count = ((Number) row[1]).longValue();
+                        if (!AppointmentStatus.CANCELLED.name().equals(status)) {
+                                totalAppointments += count;
+                        }
+                        if (AppointmentStatus.COMPLETED.name().equals(status)) {
+                                completedAppointments = count;
+                        }
+                        statusDistribution.add(ReportResponse.CategoryStat.builder()
+                                        .category(status)
+                                        .count(count)
+                                        .build());
+                }
+
+                long totalPatients = patientCount.get();
 
                 // 2. Trends
-                List<ReportResponse.DataPoint> revenueTrend = paymentRepository.getRevenueTrend(start, end).stream()
+                List<ReportResponse.DataPoint> revenueTrend = revenueRows.get().stream()
                                 .map(row -> ReportResponse.DataPoint.builder()
                                                 .label(row[0].toString())
                                                 .value((BigDecimal) row[1])
-                                                .count((Long) row[2])
+                                                .count(((Number) row[2]).longValue())
                                                 .build())
                                 .collect(Collectors.toList());
+                BigDecimal totalRevenue = revenueTrend.stream()
+                                .map(ReportResponse.DataPoint::getValue)
+                                .filter(Objects::nonNull)
+                                .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-                List<ReportResponse.DataPoint> appointmentTrend = appointmentRepository.getAppointmentTrend(from, to)
+                List<ReportResponse.DataPoint> appointmentTrend = trendRows.get()
                                 .stream()
                                 .map(row -> ReportResponse.DataPoint.builder()
                                                 .label(row[0].toString())
-                                                .count((Long) row[1])
+                                                .count(((Number) row[1]).longValue())
                                                 .build())
                                 .collect(Collectors.toList());
 
                 // 3. Distributions
-                List<ReportResponse.CategoryStat> specialtyDistribution = appointmentRepository.countBySpecialty()
+                List<ReportResponse.CategoryStat> specialtyDistribution = specialtyRows.get()
                                 .stream()
                                 .map(row -> ReportResponse.CategoryStat.builder()
                                                 .category((String) row[0])
-                                                .count((Long) row[1])
+                                                .count(((Number) row[1]).longValue())
                                                 .build())
                                 .collect(Collectors.toList());
 
-                List<ReportResponse.CategoryStat> statusDistribution = appointmentRepository.countByStatusDistribution()
-                                .stream()
-                                .map(row -> ReportResponse.CategoryStat.builder()
-                                                .category(row[0].toString())
-                                                .count((Long) row[1])
-                                                .build())
-                                .collect(Collectors.toList());
-
-                List<ReportResponse.CategoryStat> genderDistribution = patientRepository.getGenderDistribution()
+                List<ReportResponse.CategoryStat> genderDistribution = genderRows.get()
                                 .stream()
                                 .map(row -> ReportResponse.CategoryStat.builder()
                                                 .category(row[0] != null ? row[0].toString() : "UNKNOWN")
@@ -87,7 +123,7 @@ public class ReportService {
                                                 .build())
                                 .collect(Collectors.toList());
 
-                List<ReportResponse.CategoryStat> ageDistribution = patientRepository.getAgeDistribution().stream()
+                List<ReportResponse.CategoryStat> ageDistribution = ageRows.get().stream()
                                 .map(row -> ReportResponse.CategoryStat.builder()
                                                 .category((String) row[0])
                                                 .count((Long) row[1])
@@ -95,31 +131,29 @@ public class ReportService {
                                 .collect(Collectors.toList());
 
                 // 4. Performance
-                List<ReportResponse.DoctorPerformance> doctorPerformance = appointmentRepository
-                                .getDoctorPerformance(from, to)
+                List<ReportResponse.DoctorPerformance> doctorPerformance = doctorRows.get()
                                 .stream()
                                 .map(row -> ReportResponse.DoctorPerformance.builder()
                                                 .doctorName((String) row[0])
-                                                .appointmentCount((Long) row[1])
+                                                .appointmentCount(((Number) row[1]).longValue())
                                                 .totalRevenue((BigDecimal) row[2])
                                                 .averageRating(row[3] != null ? ((Number) row[3]).doubleValue() : 0.0)
                                                 .build())
                                 .collect(Collectors.toList());
 
                 // 5. Usage metrics
-                List<ReportResponse.DataPoint> userRegistrationTrend = userRepository
-                                .getUserRegistrationTrend(start, end)
+                List<ReportResponse.DataPoint> userRegistrationTrend = registrationRows.get()
                                 .stream()
                                 .map(row -> ReportResponse.DataPoint.builder()
                                                 .label(row[0].toString())
-                                                .count((Long) row[1])
+                                                .count(((Number) row[1]).longValue())
                                                 .build())
                                 .collect(Collectors.toList());
 
-                List<ReportResponse.CategoryStat> roleDistribution = userRepository.getRoleDistribution().stream()
+                List<ReportResponse.CategoryStat> roleDistribution = roleRows.get().stream()
                                 .map(row -> ReportResponse.CategoryStat.builder()
-                                                .category(row[0].toString())
-                                                .count((Long) row[1])
+                                                .category(row[0] != null ? row[0].toString() : "UNKNOWN")
+                                                .count(((Number) row[1]).longValue())
                                                 .build())
                                 .collect(Collectors.toList());
 
@@ -139,4 +173,28 @@ public class ReportService {
                                 .roleDistribution(roleDistribution)
                                 .build();
         }
+
+        /**
+         * Detailed appointment export: rows are pulled from a forward-only cursor
+         * and written through the streaming workbook, so millions of rows cost the
+         * same heap as a few hundred.
+         */
+        public void exportAppointmentsExcel(LocalDate from, LocalDate to, OutputStream out) throws IOException {
+                try (Stream<Object[]> rows = appointmentRepository.streamForExport(from, to)) {
+                        ExcelExporter.writeRows("Lịch hẹn",
+                                        new String[] { "ID", "Bệnh nhân", "Bác sĩ", "Chuyên khoa", "Ngày", "Giờ",
+                                                        "Trạng thái", "Triệu chứng" },
+                                        rows.iterator(), out);
+                }
+        }
+
+        public void exportPaymentsExcel(LocalDate from, LocalDate to, OutputStream out) throws IOException {
+                try (Stream<Object[]> rows = paymentRepository.streamForExport(from.atStartOfDay(),
+                                to.plusDays(1).atStartOfDay())) {
+                        ExcelExporter.writeRows("Thanh toán",
+                                        new String[] { "ID", "Mã giao dịch", "Bệnh nhân", "Ngày khám", "Số tiền",
+                                                        "Phương thức", "Trạng thái", "Thanh toán lúc", "Tạo lúc" },
+                                        rows.iterator(), out);
+                }
+        }
 }
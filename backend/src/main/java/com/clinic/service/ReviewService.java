@@ -33,6 +33,7 @@ public class ReviewService {
     private final ReviewRepository reviewRepository;
     private final AppointmentRepository appointmentRepository;
     private final DoctorRepository doctorRepository;
+    private final ChatToolCache chatToolCache;
 
     @Transactional
     public ReviewResponse createReview(ReviewRequest request) {
@@ -114,6 +115,7 @@ public class ReviewService {
         doctor.setTotalReviews(count != null ? count.intValue() : 0);
 
         doctorRepository.save(doctor);
+        chatToolCache.invalidate(ChatToolCache.SEARCH_DOCTORS);
     }
 
     private ReviewResponse mapToResponse(Review review) {
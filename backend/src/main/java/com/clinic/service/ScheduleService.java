@@ -27,6 +27,8 @@ public class ScheduleService {
         private final WorkingScheduleRepository scheduleRepository;
         private final TimeSlotRepository timeSlotRepository;
         private final DoctorRepository doctorRepository;
+        private final SlotOccupancyIndex slotOccupancyIndex;
+        private final ChatToolCache chatToolCache;
 
         @Transactional(readOnly = true)
         public List<ScheduleResponse> getDoctorSchedule(UUID doctorId) {
@@ -42,6 +44,8 @@ public class ScheduleService {
 
                 // 1. Fetch all existing schedules for this doctor
                 List<WorkingSchedule> existingSchedules = scheduleRepository.findByDoctorId(doctorId);
+                slotOccupancyIndex.invalidateDoctor(doctorId);
+                chatToolCache.invalidate(ChatToolCache.DOCTOR_SCHEDULE, doctorId);
 
                 // 2. Process each request
                 return requests.stream().map(req -> {
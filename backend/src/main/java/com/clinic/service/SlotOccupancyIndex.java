@@ -0,0 +1,224 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.TimeSlotResponse;
+import com.clinic.entity.TimeSlot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * In-memory occupancy index per (doctor, date).
+ * Each entry holds the day's candidate slots in start-time order, their
+ * occupied seat counts and a bitset of slots that are already full. Writers
+ * (booking, holds, cancellation, schedule edits) update or drop entries after
+ * their transaction commits; a per-doctor version stops a reader that loaded
+ * before the commit from re-inserting a stale day.
+ */
+@Component
+@Slf4j
+public class SlotOccupancyIndex {
+
+    private final Map<Key, DayOccupancy> entries = new ConcurrentHashMap<>();
+    private final Map<UUID, AtomicLong> doctorVersions = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public SlotOccupancyIndex(MeterRegistry meterRegistry,
+            @Value("${app.availability.index.max-entries:20000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("clinic.availability.index.lookups").tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("clinic.availability.index.lookups").tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("clinic.availability.index.size", entries, Map::size).register(meterRegistry);
+        Gauge.builder("clinic.availability.index.hit-rate", this, SlotOccupancyIndex::hitRate)
+                .register(meterRegistry);
+    }
+
+    public DayOccupancy get(UUID doctorId, LocalDate date) {
+        DayOccupancy occupancy = entries.get(new Key(doctorId, date));
+        (occupancy != null ? hits : misses).increment();
+        return occupancy;
+    }
+
+    /**
+     * Version to capture before loading a doctor's days from the database and
+     * pass back to {@link #put}.
+     */
+    public long version(UUID doctorId) {
+        return doctorVersions.computeIfAbsent(doctorId, k -> new AtomicLong()).get();
+    }
+
+    public void put(UUID doctorId, LocalDate date, DayOccupancy occupancy, long expectedVersion) {
+        if (date.isBefore(LocalDate.now()) || version(doctorId) != expectedVersion) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            trim();
+        }
+        Key key = new Key(doctorId, date);
+        entries.put(key, occupancy);
+        // A writer may have committed between the version check and the put
+        if (version(doctorId) != expectedVersion) {
+            entries.remove(key, occupancy);
+        }
+    }
+
+    public void markBooked(UUID doctorId, LocalDate date, LocalTime time) {
+        afterCommit(() -> {
+            bumpVersion(doctorId);
+            entries.computeIfPresent(new Key(doctorId, date), (k, v) -> v.withBooked(time));
+        });
+    }
+
+    public void invalidate(UUID doctorId, LocalDate date) {
+        afterCommit(() -> {
+            bumpVersion(doctorId);
+            entries.remove(new Key(doctorId, date));
+        });
+    }
+
+    public void invalidateDoctor(UUID doctorId) {
+        afterCommit(() -> {
+            bumpVersion(doctorId);
+            entries.keySet().removeIf(k -> k.doctorId().equals(doctorId));
+        });
+    }
+
+    /**
+     * Runs every day shortly after midnight to drop days that can no longer be booked.
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    public void evictPastDates() {
+        LocalDate today = LocalDate.now();
+        int before = entries.size();
+        entries.keySet().removeIf(k -> k.date().isBefore(today));
+        log.debug("Slot occupancy index evicted {} past entries", before - entries.size());
+    }
+
+    public double hitRate() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void trim() {
+        evictPastDates();
+        Iterator<Key> it = entries.keySet().iterator();
+        int toRemove = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private void bumpVersion(UUID doctorId) {
+        doctorVersions.computeIfAbsent(doctorId, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record Key(UUID doctorId, LocalDate date) {
+    }
+
+    /**
+     * Immutable snapshot of one doctor's day: slots sorted by start time, seats
+     * occupied per slot and a bitset of the positions that are full.
+     */
+    public static final class DayOccupancy {
+
+        private final int[] slotIds;
+        private final LocalTime[] startTimes;
+        private final LocalTime[] endTimes;
+        private final int[] maxPatients;
+        private final int[] occupied;
+        private final BitSet full;
+
+        private DayOccupancy(int[] slotIds, LocalTime[] startTimes, LocalTime[] endTimes, int[] maxPatients,
+                int[] occupied, BitSet full) {
+            this.slotIds = slotIds;
+            this.startTimes = startTimes;
+            this.endTimes = endTimes;
+            this.maxPatients = maxPatients;
+            this.occupied = occupied;
+            this.full = full;
+        }
+
+        public static DayOccupancy of(List<TimeSlot> slots, ToIntFunction<LocalTime> occupiedSeats) {
+            List<TimeSlot> sorted = new ArrayList<>(slots);
+            sorted.sort(Comparator.comparing(TimeSlot::getStartTime));
+            int n = sorted.size();
+            int[] ids = new int[n];
+            LocalTime[] starts = new LocalTime[n];
+            LocalTime[] ends = new LocalTime[n];
+            int[] max = new int[n];
+            int[] occupied = new int[n];
+            BitSet full = new BitSet(n);
+            for (int i = 0; i < n; i++) {
+                TimeSlot ts = sorted.get(i);
+                ids[i] = ts.getId();
+                starts[i] = ts.getStartTime();
+                ends[i] = ts.getEndTime();
+                max[i] = ts.getMaxPatients() != null ? ts.getMaxPatients() : 1;
+                occupied[i] = occupiedSeats.applyAsInt(ts.getStartTime());
+                if (occupied[i] >= max[i]) {
+                    full.set(i);
+                }
+            }
+            return new DayOccupancy(ids, starts, ends, max, occupied, full);
+        }
+
+        DayOccupancy withBooked(LocalTime time) {
+            int[] occupiedCopy = occupied.clone();
+            BitSet fullCopy = (BitSet) full.clone();
+            for (int i = 0; i < startTimes.length; i++) {
+                if (startTimes[i].equals(time) && ++occupiedCopy[i] >= maxPatients[i]) {
+                    fullCopy.set(i);
+                }
+            }
+            return new DayOccupancy(slotIds, startTimes, endTimes, maxPatients, occupiedCopy, fullCopy);
+        }
+
+        public List<TimeSlotResponse> availableSlots() {
+            List<TimeSlotResponse> result = new ArrayList<>(slotIds.length - full.cardinality());
+            for (int i = full.nextClearBit(0); i < slotIds.length; i = full.nextClearBit(i + 1)) {
+                result.add(TimeSlotResponse.builder()
+                        .id(slotIds[i])
+                        .startTime(startTimes[i])
+                        .endTime(endTimes[i])
+                        .maxPatients(maxPatients[i])
+                        .isAvailable(true)
+                        .build());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.clinic.service;
+
+import com.clinic.dto.request.SlotHoldRequest;
+import com.clinic.dto.response.SlotHoldResponse;
+import com.clinic.entity.SlotHold;
+import com.clinic.entity.TimeSlot;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.clinic.repository.AppointmentRepository;
+import com.clinic.repository.SlotHoldRepository;
+import com.clinic.repository.TimeSlotRepository;
+import com.clinic.util.StripedLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Atomic seat reservation for time slots.
+ * A slot offers {@code TimeSlot.maxPatients} seats; active appointments and
+ * unexpired holds each occupy one. Seats are allocated under a striped
+ * in-process lock keyed by doctor + date + time, kept until the surrounding
+ * transaction completes. Across nodes the unique indexes on
+ * (doctor_id, appointment_date, appointment_time, seat_no) and
+ * (doctor_id, hold_date, hold_time, seat_no) stop two appointments or two holds
+ * from sharing a seat, and a violation is reported as
+ * {@code APPOINTMENT_SLOT_TAKEN}; nothing in the database stops a hold on one
+ * node and an appointment on another from taking the same seat.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SlotReservationService {
+
+    private static final long LOCK_WAIT_MS = 2000;
+
+    private final AppointmentRepository appointmentRepository;
+    private final SlotHoldRepository slotHoldRepository;
+    private final TimeSlotRepository timeSlotRepository;
+    private final SlotOccupancyIndex slotOccupancyIndex;
+    private final StripedLock slotLocks = new StripedLock(256);
+
+    @Value("${app.booking.hold-ttl-minutes:10}")
+    private long holdTtlMinutes;
+
+    /**
+     * Allocates the lowest free seat of the slot and passes it to {@code writer},
+     * which must persist the occupying row (and flush it).
+     */
+    public <T> T reserve(UUID doctorId, LocalDate date, TimeSlot slot, IntFunction<T> writer) {
+        LocalTime time = slot.getStartTime();
+        return withSlotLock(doctorId, date, time, () -> {
+            LocalDateTime now = LocalDateTime.now();
+            slotHoldRepository.deleteExpiredForSlot(doctorId, date, time, now);
+
+            BitSet taken = new BitSet();
+            appointmentRepository.findActiveSeats(doctorId, date, time).forEach(taken::set);
+            slotHoldRepository.findActiveHolds(doctorId, date, time, now).forEach(h -> taken.set(h.getSeatNo()));
+
+            int capacity = slot.getMaxPatients() != null ? slot.getMaxPatients() : 1;
+            int seat = taken.nextClearBit(1);
+            if (seat > capacity) {
+                throw new AppException(ErrorCode.APPOINTMENT_SLOT_TAKEN);
+            }
+            return writer.apply(seat);
+        });
+    }
+
+    /**
+     * Turns the caller's hold into the seat for {@code writer}. The hold row is
+     * removed in the same transaction, so the seat is never observed free.
+     */
+    public <T> T consumeHold(UUID holdId, UUID userId, UUID doctorId, LocalDate date, TimeSlot slot,
+            IntFunction<T> writer) {
+        return withSlotLock(doctorId, date, slot.getStartTime(), () -> {
+            SlotHold hold = slotHoldRepository.findById(holdId)
+                    .filter(h -> h.getUserId().equals(userId)
+                            && h.getDoctorId().equals(doctorId)
+                            && h.getTimeSlotId().equals(slot.getId())
+                            && h.getHoldDate().equals(date)
+                            && !h.isExpired())
+                    .orElseThrow(() -> new AppException(ErrorCode.SLOT_HOLD_INVALID));
+            slotHoldRepository.delete(hold);
+            slotHoldRepository.flush();
+            return writer.apply(hold.getSeatNo());
+        });
+    }
+
+    @Transactional
+    public SlotHoldResponse createHold(UUID userId, SlotHoldRequest request) {
+        TimeSlot slot = timeSlotRepository.findById(request.getTimeSlotId())
+                .orElseThrow(() -> new AppException(ErrorCode.INVALID_KEY));
+
+        SlotHold hold = reserve(request.getDoctorId(), request.getAppointmentDate(), slot,
+                seat -> slotHoldRepository.saveAndFlush(SlotHold.builder()
+                        .userId(userId)
+                        .doctorId(request.getDoctorId())
+                        .timeSlotId(slot.getId())
+                        .holdDate(request.getAppointmentDate())
+                        .holdTime(slot.getStartTime())
+                        .seatNo(seat)
+                        .expiresAt(LocalDateTime.now().plusMinutes(holdTtlMinutes))
+                        .build()));
+
+        slotOccupancyIndex.markBooked(hold.getDoctorId(), hold.getHoldDate(), hold.getHoldTime());
+        return SlotHoldResponse.builder()
+                .id(hold.getId())
+                .doctorId(hold.getDoctorId())
+                .timeSlotId(hold.getTimeSlotId())
+                .appointmentDate(hold.getHoldDate())
+                .appointmentTime(hold.getHoldTime())
+                .expiresAt(hold.getExpiresAt())
+                .build();
+    }
+
+    @Transactional
+    public void releaseHold(UUID holdId, UUID userId) {
+        slotHoldRepository.findById(holdId)
+                .filter(h -> h.getUserId().equals(userId))
+                .ifPresent(h -> {
+                    slotHoldRepository.delete(h);
+                    slotOccupancyIndex.invalidate(h.getDoctorId(), h.getHoldDate());
+                });
+    }
+
+    /**
+     * Runs every minute to free seats of holds that were never turned into appointments.
+     */
+    @Scheduled(fixedDelay = 60000)
+    @Transactional
+    public void purgeExpiredHolds() {
+        List<SlotHold> expired = slotHoldRepository.findTop500ByExpiresAtBefore(LocalDateTime.now());
+        if (expired.isEmpty()) {
+            return;
+        }
+        slotHoldRepository.deleteAllInBatch(expired);
+        expired.forEach(h -> slotOccupancyIndex.invalidate(h.getDoctorId(), h.getHoldDate()));
+        log.debug("Purged {} expired slot holds", expired.size());
+    }
+
+    private <T> T withSlotLock(UUID doctorId, LocalDate date, LocalTime time, Supplier<T> work) {
+        ReentrantLock lock = slotLocks.get(new SlotKey(doctorId, date, time));
+        try {
+            if (!lock.tryLock(LOCK_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                throw new AppException(ErrorCode.APPOINTMENT_SLOT_BUSY);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.APPOINTMENT_SLOT_BUSY);
+        }
+
+        // Keep the slot locked until commit so the next booker sees the new row
+        boolean releaseOnCompletion = TransactionSynchronizationManager.isSynchronizationActive();
+        if (releaseOnCompletion) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            });
+        }
+        try {
+            return work.get();
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Seat conflict for doctor {} on {} {}: {}", doctorId, date, time, e.getMessage());
+            throw new AppException(ErrorCode.APPOINTMENT_SLOT_TAKEN);
+        } finally {
+            if (!releaseOnCompletion) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private record SlotKey(UUID doctorId, LocalDate date, LocalTime time) {
+    }
+}
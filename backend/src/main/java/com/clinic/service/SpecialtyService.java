@@ -23,6 +23,7 @@ public class SpecialtyService {
 
     private final SpecialtyRepository specialtyRepository;
     private final DoctorRepository doctorRepository;
+    private final ChatToolCache chatToolCache;
 
     public List<SpecialtyResponse> getAllActiveSpecialties() {
         return specialtyRepository.findByIsActiveTrueOrderByDisplayOrderAsc().stream()
@@ -57,6 +58,7 @@ public class SpecialtyService {
                 .displayOrder(request.getDisplayOrder() != null ? request.getDisplayOrder() : 0)
                 .build();
 
+        evictChatTools();
         return mapToResponse(specialtyRepository.save(specialty));
     }
 
@@ -75,6 +77,7 @@ public class SpecialtyService {
             specialty.setDisplayOrder(request.getDisplayOrder());
         }
 
+        evictChatTools();
         return mapToResponse(specialtyRepository.save(specialty));
     }
 
@@ -84,6 +87,15 @@ public class SpecialtyService {
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         specialty.setIsActive(false);
         specialtyRepository.save(specialty);
+        evictChatTools();
+    }
+
+    /**
+     * Specialty names are also part of the chatbot's doctor search results.
+     */
+    private void evictChatTools() {
+        chatToolCache.invalidate(ChatToolCache.LIST_SPECIALTIES);
+        chatToolCache.invalidate(ChatToolCache.SEARCH_DOCTORS);
     }
 
     private SpecialtyResponse mapToResponse(Specialty specialty) {
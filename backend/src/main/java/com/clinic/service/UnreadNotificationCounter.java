@@ -0,0 +1,246 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.UnreadCountResponse;
+import com.clinic.repository.NotificationRepository;
+import com.clinic.security.CustomUserDetails;
+import com.clinic.security.IdentityCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user unread notification counts kept in memory, so the badge does not
+ * count the notifications table on every request. A count is loaded on first
+ * use and then moved by the write paths (new notifications, mark as read)
+ * once their transaction commits; every change is pushed to the user on
+ * {@code /user/queue/notifications} so clients do not need to poll.
+ * {@link #reconcile()} re-reads the cached counts to correct any drift, for
+ * example from another node, and drops counts of users idle for too long.
+ */
+@Component
+@Slf4j
+public class UnreadNotificationCounter {
+
+    private static final String DESTINATION = "/queue/notifications";
+    private static final int RECONCILE_CHUNK = 500;
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final NotificationRepository notificationRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final IdentityCache identityCache;
+    private final long idleNanos;
+    private final int maxUsers;
+    private final Counter hits;
+    private final Counter loads;
+    private final Counter corrections;
+
+    public UnreadNotificationCounter(NotificationRepository notificationRepository,
+            SimpMessagingTemplate messagingTemplate, IdentityCache identityCache, MeterRegistry meterRegistry,
+            @Value("${app.notifications.unread.idle-minutes:60}") long idleMinutes,
+            @Value("${app.notifications.unread.max-users:50000}") int maxUsers) {
+        this.notificationRepository = notificationRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.identityCache = identityCache;
+        this.idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        this.maxUsers = maxUsers;
+        this.hits = Counter.builder("clinic.notifications.unread.lookups").tag("result", "hit")
+                .register(meterRegistry);
+        this.loads = Counter.builder("clinic.notifications.unread.lookups").tag("result", "load")
+                .register(meterRegistry);
+        this.corrections = Counter.builder("clinic.notifications.unread.corrections")
+                .description("Cached counts fixed by reconciliation")
+                .register(meterRegistry);
+        Gauge.builder("clinic.notifications.unread.cached", entries, Map::size).register(meterRegistry);
+    }
+
+    public long get(UUID userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            hits.increment();
+        } else {
+            entry = load(userId);
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry.count();
+    }
+
+    /**
+     * {@code count} new notifications for the user, once the current
+     * transaction (if any) commits.
+     *
+     * @param email principal name of the user's WebSocket sessions, or null to look it up
+     */
+    public void added(UUID userId, String email, int count) {
+        afterCommit(() -> {
+            Entry entry = entries.get(userId);
+            // A freshly loaded count already includes the new rows
+            long unread = entry != null ? entry.add(count) : load(userId).count();
+            push(userId, email, unread);
+        });
+    }
+
+    /**
+     * {@code count} of the user's notifications were marked as read, once the
+     * current transaction (if any) commits.
+     */
+    public void read(UUID userId, int count) {
+        if (count <= 0) {
+            return;
+        }
+        afterCommit(() -> {
+            Entry entry = entries.get(userId);
+            push(userId, null, entry != null ? entry.add(-count) : load(userId).count());
+        });
+    }
+
+    /**
+     * All of the user's notifications were marked as read.
+     */
+    public void allRead(UUID userId) {
+        afterCommit(() -> {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                entry.set(0);
+            }
+            push(userId, null, 0);
+        });
+    }
+
+    /**
+     * Re-reads the counts of cached users, pushing the ones that were off, and
+     * drops users idle for longer than the idle timeout.
+     *
+     * @return number of counts corrected
+     */
+    public int reconcile() {
+        long now = System.nanoTime();
+        entries.entrySet().removeIf(e -> now - e.getValue().lastAccess >= idleNanos);
+
+        int corrected = 0;
+        List<UUID> userIds = new ArrayList<>(entries.keySet());
+        for (int from = 0; from < userIds.size(); from += RECONCILE_CHUNK) {
+            List<UUID> chunk = userIds.subList(from, Math.min(userIds.size(), from + RECONCILE_CHUNK));
+            // Versions seen before the query: a count that changed meanwhile is newer than the query
+            Map<UUID, Long> versions = new HashMap<>();
+            for (UUID userId : chunk) {
+                Entry entry = entries.get(userId);
+                if (entry != null) {
+                    versions.put(userId, entry.version());
+                }
+            }
+            Map<UUID, Long> stored = new HashMap<>();
+            for (Object[] row : notificationRepository.countUnreadByUserIds(versions.keySet())) {
+                stored.put((UUID) row[0], ((Number) row[1]).longValue());
+            }
+            for (Map.Entry<UUID, Long> seen : versions.entrySet()) {
+                Entry entry = entries.get(seen.getKey());
+                long unread = stored.getOrDefault(seen.getKey(), 0L);
+                if (entry != null && entry.setIfUnchanged(seen.getValue(), unread)) {
+                    corrected++;
+                    corrections.increment();
+                    push(seen.getKey(), null, unread);
+                }
+            }
+        }
+        return corrected;
+    }
+
+    private Entry load(UUID userId) {
+        if (entries.size() >= maxUsers) {
+            trim();
+        }
+        return entries.computeIfAbsent(userId, id -> {
+            loads.increment();
+            return new Entry(notificationRepository.countByUserIdAndIsReadFalse(id));
+        });
+    }
+
+    private void trim() {
+        // Least recently used first
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .limit(Math.max(1, maxUsers / 10))
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+    }
+
+    private void push(UUID userId, String email, long unread) {
+        if (email == null) {
+            CustomUserDetails identity = identityCache.getById(userId);
+            if (identity == null) {
+                return;
+            }
+            email = identity.getEmail();
+        }
+        try {
+            messagingTemplate.convertAndSendToUser(email, DESTINATION, UnreadCountResponse.of(unread));
+        } catch (RuntimeException e) {
+            log.warn("Cannot push unread count to {}", email, e);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Entry {
+        private long count;
+        private long version;
+        volatile long lastAccess = System.nanoTime();
+
+        Entry(long count) {
+            this.count = count;
+        }
+
+        synchronized long count() {
+            return count;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized long add(long delta) {
+            count = Math.max(0, count + delta);
+            version++;
+            return count;
+        }
+
+        synchronized void set(long value) {
+            count = value;
+            version++;
+        }
+
+        /**
+         * @return true if the count was changed
+         */
+        synchronized boolean setIfUnchanged(long seenVersion, long value) {
+            if (version != seenVersion || count == value) {
+                return false;
+            }
+            count = value;
+            version++;
+            return true;
+        }
+    }
+}
@@ -10,6 +10,8 @@ import com.clinic.repository.UserRepository;
 import com.clinic.repository.DoctorRepository;
 import com.clinic.repository.PatientRepository;
 import com.clinic.repository.SpecialtyRepository;
+import com.clinic.security.IdentityCache;
+import com.clinic.security.TokenVersionCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -31,6 +33,9 @@ public class UserService {
     private final DoctorRepository doctorRepository;
     private final PatientRepository patientRepository;
     private final SpecialtyRepository specialtyRepository;
+    private final TokenVersionCache tokenVersionCache;
+    private final IdentityCache identityCache;
+    private final ChatToolCache chatToolCache;
 
     @Transactional
     public String uploadAvatar(UUID id, MultipartFile file) throws IOException {
@@ -62,6 +67,7 @@ public class UserService {
         user.setAvatarUrl(request.getAvatarUrl());
 
         userRepository.save(user);
+        identityCache.evict(user.getId());
 
         // Update role-specific profile
         if (user.getRole() != null) {
@@ -85,6 +91,8 @@ public class UserService {
                     }
 
                     doctorRepository.save(doctor);
+                    // Name, specialty, bio and fee show up in the chatbot's doctor search
+                    chatToolCache.invalidate(ChatToolCache.SEARCH_DOCTORS);
                 });
             } else if ("PATIENT".equals(roleName)) {
                 patientRepository.findByUserId(user.getId()).ifPresent(patient -> {
@@ -126,6 +134,8 @@ public class UserService {
         }
 
         user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
+        tokenVersionCache.revoke(user);
+        identityCache.evict(user.getId());
         userRepository.save(user);
     }
 
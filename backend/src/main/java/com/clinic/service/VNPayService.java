@@ -37,6 +37,7 @@ public class VNPayService {
     private final PaymentRepository paymentRepository;
     private final EmailService emailService;
     private final NotificationService notificationService;
+    private final DashboardStatsCache dashboardStatsCache;
 
     @Transactional
     public PaymentResponse createPaymentUrl(PaymentRequest request, String ipAddr) {
@@ -191,6 +192,7 @@ public class VNPayService {
         // Save raw response
         payment.setVnpayResponse(params.toString());
         paymentRepository.save(payment);
+        dashboardStatsCache.invalidate();
     }
 
     /**
@@ -245,6 +247,7 @@ public class VNPayService {
             paymentRepository.save(payment);
             log.warn("Return payment failed/cancelled for txnRef={}", txnRef);
         }
+        dashboardStatsCache.invalidate();
 
         return mapToResponse(payment);
     }
@@ -0,0 +1,78 @@
+package com.clinic.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal RFC 4180 writer for streamed exports. Fields are escaped while being
+ * copied into a buffered UTF-8 writer, so a row costs no intermediate strings
+ * beyond the values themselves. The underlying stream is flushed but never
+ * closed; that belongs to the caller (servlet response, gzip wrapper).
+ */
+public class CsvWriter implements Flushable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Writer writer;
+    private boolean rowStarted;
+
+    public CsvWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    public CsvWriter header(String... columns) throws IOException {
+        for (String column : columns) {
+            field(column);
+        }
+        return endRow();
+    }
+
+    public CsvWriter field(Object value) throws IOException {
+        return field(value != null ? value.toString() : null);
+    }
+
+    public CsvWriter field(String value) throws IOException {
+        if (rowStarted) {
+            writer.write(',');
+        }
+        rowStarted = true;
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+        if (!needsQuoting(value)) {
+            writer.write(value);
+            return this;
+        }
+        writer.write('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+        return this;
+    }
+
+    public CsvWriter endRow() throws IOException {
+        writer.write('\n');
+        rowStarted = false;
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,134 +1,202 @@
 package com.clinic.util;
 
 import com.clinic.dto.response.ReportResponse;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streaming xlsx writer built on {@link SXSSFWorkbook}: only the last
+ * {@link #ROW_WINDOW} rows of a sheet stay in memory, older rows are flushed to
+ * a compressed temp file and the finished workbook is written straight to the
+ * caller's stream.
+ */
 public class ExcelExporter {
 
-    public static ByteArrayInputStream exportReportToExcel(ReportResponse report) throws IOException {
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            Sheet sheet = workbook.createSheet("Báo cáo tổng quan");
-
-            // Define Header Style
-            Font headerFont = workbook.createFont();
-            headerFont.setBold(true);
-            headerFont.setColor(IndexedColors.WHITE.getIndex());
-
-            CellStyle headerCellStyle = workbook.createCellStyle();
-            headerCellStyle.setFont(headerFont);
-            headerCellStyle.setFillForegroundColor(IndexedColors.BLUE_GREY.getIndex());
-            headerCellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-            // Row 0: Summary Header
-            Row headerRow = sheet.createRow(0);
-            headerRow.createCell(0).setCellValue("Chỉ số");
-            headerRow.createCell(1).setCellValue("Giá trị");
-            for (int i = 0; i < 2; i++) {
-                headerRow.getCell(i).setCellStyle(headerCellStyle);
-            }
-
-            // Data Rows
-            Row row1 = sheet.createRow(1);
-            row1.createCell(0).setCellValue("Tổng doanh thu");
-            row1.createCell(1).setCellValue(report.getTotalRevenue().doubleValue());
+    static final int ROW_WINDOW = 200;
+    static final int MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
 
-            Row row2 = sheet.createRow(2);
-            row2.createCell(0).setCellValue("Tổng lịch hẹn");
-            row2.createCell(1).setCellValue(report.getTotalAppointments());
+    public static void writeReport(ReportResponse report, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = newWorkbook();
+        try {
+            Styles styles = new Styles(workbook);
 
-            Row row3 = sheet.createRow(3);
-            row3.createCell(0).setCellValue("Lịch hẹn hoàn thành");
-            row3.createCell(1).setCellValue(report.getCompletedAppointments());
-
-            Row row4 = sheet.createRow(4);
-            row4.createCell(0).setCellValue("Tổng bệnh nhân");
-            row4.createCell(1).setCellValue(report.getTotalPatients());
+            Sheet sheet = workbook.createSheet("Báo cáo tổng quan");
+            header(sheet.createRow(0), styles, "Chỉ số", "Giá trị");
+            summaryRow(sheet, 1, styles, "Tổng doanh thu", report.getTotalRevenue());
+            summaryRow(sheet, 2, styles, "Tổng lịch hẹn", report.getTotalAppointments());
+            summaryRow(sheet, 3, styles, "Lịch hẹn hoàn thành", report.getCompletedAppointments());
+            summaryRow(sheet, 4, styles, "Tổng bệnh nhân", report.getTotalPatients());
 
-            // Specialty Distribution Sheet
-            Sheet specialtySheet = workbook.createSheet("Phân bố chuyên khoa");
-            Row specialtyHeader = specialtySheet.createRow(0);
-            specialtyHeader.createCell(0).setCellValue("Chuyên khoa");
-            specialtyHeader.createCell(1).setCellValue("Số lượng");
-            for (int i = 0; i < 2; i++)
-                specialtyHeader.getCell(i).setCellStyle(headerCellStyle);
+            categorySheet(workbook, styles, "Phân bố chuyên khoa", "Chuyên khoa", report.getSpecialtyDistribution());
+            categorySheet(workbook, styles, "Trạng thái lịch hẹn", "Trạng thái", report.getStatusDistribution());
 
+            Sheet revenueSheet = workbook.createSheet("Xu hướng doanh thu");
+            header(revenueSheet.createRow(0), styles, "Ngày", "Doanh thu", "Số giao dịch");
             int rowIdx = 1;
-            for (ReportResponse.CategoryStat stat : report.getSpecialtyDistribution()) {
-                Row row = specialtySheet.createRow(rowIdx++);
-                row.createCell(0).setCellValue(stat.getCategory());
-                row.createCell(1).setCellValue(stat.getCount());
-            }
-
-            // Status Distribution Sheet
-            Sheet statusSheet = workbook.createSheet("Trạng thái lịch hẹn");
-            Row statusHeader = statusSheet.createRow(0);
-            statusHeader.createCell(0).setCellValue("Trạng thái");
-            statusHeader.createCell(1).setCellValue("Số lượng");
-            for (int i = 0; i < 2; i++)
-                statusHeader.getCell(i).setCellStyle(headerCellStyle);
-            rowIdx = 1;
-            for (ReportResponse.CategoryStat stat : report.getStatusDistribution()) {
-                Row row = statusSheet.createRow(rowIdx++);
-                row.createCell(0).setCellValue(stat.getCategory());
-                row.createCell(1).setCellValue(stat.getCount());
-            }
-
-            // Revenue Trend Sheet
-            Sheet revTrendSheet = workbook.createSheet("Xu hướng doanh thu");
-            Row revHeader = revTrendSheet.createRow(0);
-            revHeader.createCell(0).setCellValue("Ngày");
-            revHeader.createCell(1).setCellValue("Doanh thu");
-            revHeader.createCell(2).setCellValue("Số giao dịch");
-            for (int i = 0; i < 3; i++)
-                revHeader.getCell(i).setCellStyle(headerCellStyle);
-            rowIdx = 1;
             for (ReportResponse.DataPoint dp : report.getRevenueTrend()) {
-                Row row = revTrendSheet.createRow(rowIdx++);
+                Row row = revenueSheet.createRow(rowIdx++);
                 row.createCell(0).setCellValue(dp.getLabel());
-                row.createCell(1).setCellValue(dp.getValue().doubleValue());
+                cell(row, 1, dp.getValue(), styles);
                 row.createCell(2).setCellValue(dp.getCount());
             }
 
-            // User Trend Sheet
-            Sheet userTrendSheet = workbook.createSheet("Người dùng mới");
-            Row userHeader = userTrendSheet.createRow(0);
-            userHeader.createCell(0).setCellValue("Ngày");
-            userHeader.createCell(1).setCellValue("Số người đăng ký");
-            for (int i = 0; i < 2; i++)
-                userHeader.getCell(i).setCellStyle(headerCellStyle);
+            Sheet userSheet = workbook.createSheet("Người dùng mới");
+            header(userSheet.createRow(0), styles, "Ngày", "Số người đăng ký");
             rowIdx = 1;
             for (ReportResponse.DataPoint dp : report.getUserRegistrationTrend()) {
-                Row row = userTrendSheet.createRow(rowIdx++);
+                Row row = userSheet.createRow(rowIdx++);
                 row.createCell(0).setCellValue(dp.getLabel());
                 row.createCell(1).setCellValue(dp.getCount());
             }
 
-            // Doctor Performance Sheet
             Sheet doctorSheet = workbook.createSheet("Hiệu suất bác sĩ");
-            Row doctorHeader = doctorSheet.createRow(0);
-            doctorHeader.createCell(0).setCellValue("Bác sĩ");
-            doctorHeader.createCell(1).setCellValue("Số ca khám");
-            doctorHeader.createCell(2).setCellValue("Doanh thu");
-            doctorHeader.createCell(3).setCellValue("Đánh giá");
-            for (int i = 0; i < 4; i++)
-                doctorHeader.getCell(i).setCellStyle(headerCellStyle);
-
+            header(doctorSheet.createRow(0), styles, "Bác sĩ", "Số ca khám", "Doanh thu", "Đánh giá");
             rowIdx = 1;
             for (ReportResponse.DoctorPerformance perf : report.getDoctorPerformance()) {
                 Row row = doctorSheet.createRow(rowIdx++);
                 row.createCell(0).setCellValue(perf.getDoctorName());
                 row.createCell(1).setCellValue(perf.getAppointmentCount());
-                row.createCell(2).setCellValue(perf.getTotalRevenue().doubleValue());
+                cell(row, 2, perf.getTotalRevenue(), styles);
                 row.createCell(3).setCellValue(perf.getAverageRating());
             }
 
             workbook.write(out);
-            return new ByteArrayInputStream(out.toByteArray());
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Writes raw rows into one or more sheets, starting a new sheet whenever
+     * the xlsx row limit is reached. Cell types follow the Java value type
+     * (numbers, money, dates, timestamps, everything else as text).
+     */
+    public static void writeRows(String sheetName, String[] headers, Iterator<Object[]> rows, OutputStream out)
+            throws IOException {
+        SXSSFWorkbook workbook = newWorkbook();
+        try {
+            Styles styles = new Styles(workbook);
+            int part = 1;
+            Sheet sheet = tableSheet(workbook, styles, sheetName, headers);
+            int rowIdx = 1;
+            while (rows.hasNext()) {
+                if (rowIdx > MAX_ROWS_PER_SHEET) {
+                    sheet = tableSheet(workbook, styles, sheetName + " (" + ++part + ")", headers);
+                    rowIdx = 1;
+                }
+                Object[] values = rows.next();
+                Row row = sheet.createRow(rowIdx++);
+                for (int i = 0; i < values.length; i++) {
+                    cell(row, i, values[i], styles);
+                }
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static SXSSFWorkbook newWorkbook() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+
+    private static Sheet tableSheet(SXSSFWorkbook workbook, Styles styles, String name, String[] headers) {
+        SXSSFSheet sheet = workbook.createSheet(name);
+        header(sheet.createRow(0), styles, headers);
+        sheet.createFreezePane(0, 1);
+        return sheet;
+    }
+
+    private static void categorySheet(SXSSFWorkbook workbook, Styles styles, String name, String column,
+            List<ReportResponse.CategoryStat> stats) {
+        Sheet sheet = workbook.createSheet(name);
+        header(sheet.createRow(0), styles, column, "Số lượng");
+        int rowIdx = 1;
+        for (ReportResponse.CategoryStat stat : stats) {
+            Row row = sheet.createRow(rowIdx++);
+            row.createCell(0).setCellValue(stat.getCategory());
+            row.createCell(1).setCellValue(stat.getCount());
+        }
+    }
+
+    private static void summaryRow(Sheet sheet, int rowIdx, Styles styles, String label, Object value) {
+        Row row = sheet.createRow(rowIdx);
+        row.createCell(0).setCellValue(label);
+        cell(row, 1, value, styles);
+    }
+
+    private static void header(Row row, Styles styles, String... titles) {
+        for (int i = 0; i < titles.length; i++) {
+            Cell cell = row.createCell(i);
+            cell.setCellValue(titles[i]);
+            cell.setCellStyle(styles.header);
+        }
+    }
+
+    private static void cell(Row row, int column, Object value, Styles styles) {
+        if (value == null) {
+            return;
+        }
+        Cell cell = row.createCell(column);
+        if (value instanceof BigDecimal decimal) {
+            cell.setCellValue(decimal.doubleValue());
+            cell.setCellStyle(styles.money);
+        } else if (value instanceof Number number) {
+            cell.setCellValue(number.doubleValue());
+        } else if (value instanceof LocalDateTime dateTime) {
+            cell.setCellValue(dateTime);
+            cell.setCellStyle(styles.dateTime);
+        } else if (value instanceof LocalDate date) {
+            cell.setCellValue(date);
+            cell.setCellStyle(styles.date);
+        } else if (value instanceof Boolean bool) {
+            cell.setCellValue(bool);
+        } else {
+            cell.setCellValue(value.toString());
+        }
+    }
+
+    /**
+     * Cell styles are workbook-scoped and capped, so they are created once per
+     * workbook and shared by every cell.
+     */
+    private static final class Styles {
+        final CellStyle header;
+        final CellStyle money;
+        final CellStyle date;
+        final CellStyle dateTime;
+
+        Styles(Workbook workbook) {
+            Font headerFont = workbook.createFont();
+            headerFont.setBold(true);
+            headerFont.setColor(IndexedColors.WHITE.getIndex());
+
+            header = workbook.createCellStyle();
+            header.setFont(headerFont);
+            header.setFillForegroundColor(IndexedColors.BLUE_GREY.getIndex());
+            header.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+
+            DataFormat format = workbook.createDataFormat();
+            money = workbook.createCellStyle();
+            money.setDataFormat(format.getFormat("#,##0"));
+            date = workbook.createCellStyle();
+            date.setDataFormat(format.getFormat("dd/mm/yyyy"));
+            dateTime = workbook.createCellStyle();
+            dateTime.setDataFormat(format.getFormat("dd/mm/yyyy hh:mm"));
         }
     }
 }
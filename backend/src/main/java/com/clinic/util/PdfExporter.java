@@ -8,67 +8,67 @@ import com.lowagie.text.pdf.PdfPTable;
 import com.lowagie.text.pdf.PdfWriter;
 
 import java.awt.*;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
+/**
+ * Writes the summary report PDF straight to the caller's stream. Fonts are
+ * built once, and long tables are emitted in chunks (incomplete tables) so
+ * OpenPDF can flush finished pages instead of laying out every row at once.
+ */
 public class PdfExporter {
 
-    public static ByteArrayInputStream exportReportToPdf(ReportResponse report) {
-        Document document = new Document(PageSize.A4);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private static final int TABLE_CHUNK_ROWS = 50;
+    private static final DateTimeFormatter EXPORT_TIME = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private static final Font TITLE_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, Color.BLUE);
+    private static final Font HEAD_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, Color.WHITE);
+    private static final Font NORMAL_FONT = FontFactory.getFont(FontFactory.HELVETICA, 10);
 
+    public static void writeReport(ReportResponse report, OutputStream out) throws IOException {
+        Document document = new Document(PageSize.A4);
         try {
-            PdfWriter.getInstance(document, out);
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            writer.setCloseStream(false);
             document.open();
 
-            // Font configurations
-            Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, Color.BLUE);
-            Font headFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, Color.WHITE);
-            Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 10);
-
             // Title
-            Paragraph title = new Paragraph("BÁO CÁO TỔNG QUAN PHÒNG KHÁM", titleFont);
+            Paragraph title = new Paragraph("BÁO CÁO TỔNG QUAN PHÒNG KHÁM", TITLE_FONT);
             title.setAlignment(Element.ALIGN_CENTER);
             title.setSpacingAfter(20);
             document.add(title);
 
             // Export Info
-            document.add(new Paragraph(
-                    "Ngày xuất: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))));
+            document.add(new Paragraph("Ngày xuất: " + LocalDateTime.now().format(EXPORT_TIME)));
             document.add(new Paragraph(" "));
 
             // Summary Stats
-            document.add(new Paragraph("Thông số tổng quát:", headFont));
+            document.add(new Paragraph("Thông số tổng quát:", HEAD_FONT));
             document.add(new Paragraph(
                     "Tổng doanh thu: " + String.format("%,.0f VNĐ", report.getTotalRevenue().doubleValue()),
-                    normalFont));
-            document.add(new Paragraph("Tổng lịch hẹn: " + report.getTotalAppointments(), normalFont));
-            document.add(new Paragraph("Lịch hẹn hoàn thành: " + report.getCompletedAppointments(), normalFont));
-            document.add(new Paragraph("Tổng bệnh nhân: " + report.getTotalPatients(), normalFont));
+                    NORMAL_FONT));
+            document.add(new Paragraph("Tổng lịch hẹn: " + report.getTotalAppointments(), NORMAL_FONT));
+            document.add(new Paragraph("Lịch hẹn hoàn thành: " + report.getCompletedAppointments(), NORMAL_FONT));
+            document.add(new Paragraph("Tổng bệnh nhân: " + report.getTotalPatients(), NORMAL_FONT));
             document.add(new Paragraph(" "));
 
             // Distribution Table
-            document.add(new Paragraph("Phân bố chuyên khoa:", headFont));
+            document.add(new Paragraph("Phân bố chuyên khoa:", HEAD_FONT));
             PdfPTable specialtyTable = new PdfPTable(2);
             specialtyTable.setWidthPercentage(50);
             specialtyTable.setHorizontalAlignment(Element.ALIGN_LEFT);
             specialtyTable.setSpacingBefore(10);
-            specialtyTable.addCell(new PdfPCell(new Phrase("Chuyên khoa", headFont)) {
-                {
-                    setBackgroundColor(Color.GRAY);
-                }
-            });
-            specialtyTable.addCell(new PdfPCell(new Phrase("Số lượng", headFont)) {
-                {
-                    setBackgroundColor(Color.GRAY);
-                }
-            });
+            specialtyTable.setComplete(false);
+            headerCells(specialtyTable, Color.GRAY, "Chuyên khoa", "Số lượng");
+            int rows = 0;
             for (ReportResponse.CategoryStat stat : report.getSpecialtyDistribution()) {
-                specialtyTable.addCell(new Phrase(stat.getCategory(), normalFont));
-                specialtyTable.addCell(new Phrase(String.valueOf(stat.getCount()), normalFont));
+                specialtyTable.addCell(new Phrase(stat.getCategory(), NORMAL_FONT));
+                specialtyTable.addCell(new Phrase(String.valueOf(stat.getCount()), NORMAL_FONT));
+                flushChunk(document, specialtyTable, ++rows);
             }
+            specialtyTable.setComplete(true);
             document.add(specialtyTable);
             document.add(new Paragraph(" "));
 
@@ -77,29 +77,44 @@ public class PdfExporter {
             PdfPTable table = new PdfPTable(4);
             table.setWidthPercentage(100);
             table.setSpacingBefore(10);
-
-            String[] headers = { "Bác sĩ", "Số ca khám", "Doanh thu", "Đánh giá" };
-            for (String header : headers) {
-                PdfPCell cell = new PdfPCell(new Phrase(header, headFont));
-                cell.setBackgroundColor(Color.DARK_GRAY);
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                table.addCell(cell);
-            }
-
+            table.setHeaderRows(1);
+            table.setComplete(false);
+            headerCells(table, Color.DARK_GRAY, "Bác sĩ", "Số ca khám", "Doanh thu", "Đánh giá");
+            rows = 0;
             for (ReportResponse.DoctorPerformance perf : report.getDoctorPerformance()) {
-                table.addCell(new PdfPCell(new Phrase(perf.getDoctorName(), normalFont)));
-                table.addCell(new PdfPCell(new Phrase(String.valueOf(perf.getAppointmentCount()), normalFont)));
+                table.addCell(new PdfPCell(new Phrase(perf.getDoctorName(), NORMAL_FONT)));
+                table.addCell(new PdfPCell(new Phrase(String.valueOf(perf.getAppointmentCount()), NORMAL_FONT)));
                 table.addCell(new PdfPCell(
-                        new Phrase(String.format("%,.0f", perf.getTotalRevenue().doubleValue()), normalFont)));
-                table.addCell(new PdfPCell(new Phrase(String.format("%.1f", perf.getAverageRating()), normalFont)));
+                        new Phrase(String.format("%,.0f", perf.getTotalRevenue().doubleValue()), NORMAL_FONT)));
+                table.addCell(new PdfPCell(new Phrase(String.format("%.1f", perf.getAverageRating()), NORMAL_FONT)));
+                flushChunk(document, table, ++rows);
             }
+            table.setComplete(true);
             document.add(table);
-
-            document.close();
         } catch (DocumentException ex) {
-            ex.printStackTrace();
+            throw new IOException("Cannot render report PDF", ex);
+        } finally {
+            if (document.isOpen()) {
+                document.close();
+            }
+        }
+    }
+
+    private static void headerCells(PdfPTable table, Color background, String... titles) {
+        for (String title : titles) {
+            PdfPCell cell = new PdfPCell(new Phrase(title, HEAD_FONT));
+            cell.setBackgroundColor(background);
+            cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+            table.addCell(cell);
         }
+    }
 
-        return new ByteArrayInputStream(out.toByteArray());
+    /**
+     * Adding an incomplete table renders and releases the rows collected so far.
+     */
+    private static void flushChunk(Document document, PdfPTable table, int rows) throws DocumentException {
+        if (rows % TABLE_CHUNK_ROWS == 0) {
+            document.add(table);
+        }
     }
 }
@@ -1,6 +1,8 @@
 package com.clinic.util;
 
 import com.clinic.security.CustomUserDetails;
+import com.clinic.security.IdentityCache;
+import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
@@ -9,8 +11,11 @@ import java.util.Optional;
 import java.util.UUID;
 
 @Component
+@RequiredArgsConstructor
 public class SecurityUtils {
 
+    private final IdentityCache identityCache;
+
     /**
      * Lấy ID của người dùng đang đăng nhập từ SecurityContext.
      */
@@ -38,4 +43,28 @@ public class SecurityUtils {
 
         return Optional.empty();
     }
+
+    /**
+     * Doctor profile ID of the caller, from the token claims or the identity
+     * cache when the token predates the profile.
+     */
+    public Optional<UUID> getCurrentDoctorId() {
+        return currentIdentity().map(CustomUserDetails::getDoctorId);
+    }
+
+    /**
+     * Patient profile ID of the caller, see {@link #getCurrentDoctorId()}.
+     */
+    public Optional<UUID> getCurrentPatientId() {
+        return currentIdentity().map(CustomUserDetails::getPatientId);
+    }
+
+    private Optional<CustomUserDetails> currentIdentity() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetails principal
+                && (principal.getDoctorId() != null || principal.getPatientId() != null)) {
+            return Optional.of(principal);
+        }
+        return getCurrentUserId().map(identityCache::getById);
+    }
 }
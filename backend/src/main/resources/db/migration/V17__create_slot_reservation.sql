@@ -0,0 +1,35 @@
+-- =====================================================
+-- V17__create_slot_reservation.sql
+-- Seat-based slot reservation and short-lived slot holds
+-- =====================================================
+
+-- Each active appointment occupies one seat (1..time_slots.max_patients) of its slot.
+-- The old unique index also covered cancelled rows, so a cancelled slot could never
+-- be rebooked and multi-patient slots were impossible.
+ALTER TABLE appointments ADD COLUMN seat_no INTEGER NOT NULL DEFAULT 1;
+
+DROP INDEX IF EXISTS idx_unique_appointment;
+
+CREATE UNIQUE INDEX uk_appointments_active_seat
+ON appointments(doctor_id, appointment_date, appointment_time, seat_no)
+WHERE status <> 'CANCELLED';
+
+-- =====================================================
+-- SLOT HOLDS TABLE
+-- =====================================================
+CREATE TABLE slot_holds (
+    id                  UUID DEFAULT gen_random_uuid() PRIMARY KEY,
+    user_id             UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    doctor_id           UUID NOT NULL REFERENCES doctors(id) ON DELETE CASCADE,
+    time_slot_id        INTEGER NOT NULL REFERENCES time_slots(id) ON DELETE CASCADE,
+    hold_date           DATE NOT NULL,
+    hold_time           TIME NOT NULL,
+    seat_no             INTEGER NOT NULL,
+    expires_at          TIMESTAMP NOT NULL,
+    created_at          TIMESTAMP DEFAULT NOW(),
+    updated_at          TIMESTAMP DEFAULT NOW(),
+    UNIQUE(doctor_id, hold_date, hold_time, seat_no)
+);
+
+CREATE INDEX idx_slot_holds_expires ON slot_holds(expires_at);
+CREATE INDEX idx_slot_holds_user ON slot_holds(user_id);
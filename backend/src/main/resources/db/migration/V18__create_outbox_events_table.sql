@@ -0,0 +1,27 @@
+-- =====================================================
+-- V18__create_outbox_events_table.sql
+-- Transactional outbox for side effects (email, web push, audit)
+-- =====================================================
+
+CREATE TABLE outbox_events (
+    id                  UUID DEFAULT gen_random_uuid() PRIMARY KEY,
+    event_type          VARCHAR(50) NOT NULL,
+    aggregate_type      VARCHAR(50) NOT NULL,
+    aggregate_id        UUID NOT NULL,
+    actor_id            UUID,
+    payload             JSONB,
+    status              VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING, PROCESSING, SENT, FAILED
+    delivered_channels  VARCHAR(100),                           -- channels already fanned out, e.g. AUDIT,PUSH
+    attempts            INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at     TIMESTAMP NOT NULL DEFAULT NOW(),
+    last_error          TEXT,
+    processed_at        TIMESTAMP,
+    created_at          TIMESTAMP DEFAULT NOW(),
+    updated_at          TIMESTAMP DEFAULT NOW()
+);
+
+-- Dispatcher polls only undelivered rows
+CREATE INDEX idx_outbox_events_due ON outbox_events(next_attempt_at)
+WHERE status IN ('PENDING', 'PROCESSING');
+
+CREATE INDEX idx_outbox_events_processed ON outbox_events(processed_at) WHERE status = 'SENT';
@@ -0,0 +1,29 @@
+-- =====================================================
+-- V19__add_appointment_keyset_indexes.sql
+-- Composite indexes for keyset-paginated appointment listings
+-- ordered by (appointment_date, appointment_time, id) DESC
+-- =====================================================
+
+-- Patient "my appointments" (+ status filter answered from the index)
+CREATE INDEX idx_appointments_patient_keyset
+    ON appointments(patient_id, appointment_date DESC, appointment_time DESC, id DESC)
+    INCLUDE (status);
+
+-- Doctor "my appointments" and admin doctor filter
+CREATE INDEX idx_appointments_doctor_keyset
+    ON appointments(doctor_id, appointment_date DESC, appointment_time DESC, id DESC)
+    INCLUDE (status);
+
+-- Admin listing filtered by status
+CREATE INDEX idx_appointments_status_keyset
+    ON appointments(status, appointment_date DESC, appointment_time DESC, id DESC);
+
+-- Admin listing without filters / date range only
+CREATE INDEX idx_appointments_keyset
+    ON appointments(appointment_date DESC, appointment_time DESC, id DESC);
+
+-- Superseded by the composite indexes above (leading columns)
+DROP INDEX IF EXISTS idx_appointments_patient;
+DROP INDEX IF EXISTS idx_appointments_doctor;
+DROP INDEX IF EXISTS idx_appointments_date;
+DROP INDEX IF EXISTS idx_appointments_status;
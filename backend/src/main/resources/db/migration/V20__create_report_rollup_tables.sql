@@ -0,0 +1,80 @@
+-- =====================================================
+-- V20__create_report_rollup_tables.sql
+-- Daily pre-aggregated facts for reports, refreshed incrementally
+-- from rows changed since a watermark
+-- =====================================================
+
+-- Appointments per day x doctor x specialty x status
+CREATE TABLE appointment_daily_rollups (
+    id                  BIGSERIAL PRIMARY KEY,
+    stat_date           DATE NOT NULL,
+    doctor_id           UUID NOT NULL,
+    specialty_id        UUID,
+    status              VARCHAR(20) NOT NULL,
+    appointment_count   BIGINT NOT NULL DEFAULT 0,
+    fee_total           DECIMAL(15,2) NOT NULL DEFAULT 0   -- sum of the doctor's consultation fee
+);
+
+CREATE INDEX idx_appt_rollups_date ON appointment_daily_rollups(stat_date);
+CREATE INDEX idx_appt_rollups_doctor_date ON appointment_daily_rollups(doctor_id, stat_date);
+
+-- Payments per day (paid date, or creation date while unpaid) x status
+CREATE TABLE payment_daily_rollups (
+    id                  BIGSERIAL PRIMARY KEY,
+    stat_date           DATE NOT NULL,
+    status              VARCHAR(20) NOT NULL,
+    payment_count       BIGINT NOT NULL DEFAULT 0,
+    amount_total        DECIMAL(15,2) NOT NULL DEFAULT 0
+);
+
+CREATE INDEX idx_payment_rollups_date ON payment_daily_rollups(stat_date);
+
+-- User registrations per day x role
+CREATE TABLE user_daily_rollups (
+    id                  BIGSERIAL PRIMARY KEY,
+    stat_date           DATE NOT NULL,
+    role_name           VARCHAR(20),
+    registered_count    BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE INDEX idx_user_rollups_date ON user_daily_rollups(stat_date);
+
+-- Last processed change time per source table
+CREATE TABLE rollup_watermarks (
+    name                VARCHAR(50) PRIMARY KEY,              -- APPOINTMENTS, PAYMENTS, USERS
+    last_processed_at   TIMESTAMP NOT NULL,
+    updated_at          TIMESTAMP DEFAULT NOW()
+);
+
+-- Change scans for the incremental job
+CREATE INDEX IF NOT EXISTS idx_appointments_updated_at ON appointments(updated_at);
+CREATE INDEX IF NOT EXISTS idx_payments_updated_at ON payments(updated_at);
+CREATE INDEX IF NOT EXISTS idx_users_updated_at ON users(updated_at);
+CREATE INDEX IF NOT EXISTS idx_payments_stat_date ON payments ((CAST(COALESCE(paid_at, created_at) AS DATE)));
+CREATE INDEX IF NOT EXISTS idx_users_created_date ON users ((CAST(created_at AS DATE)));
+
+-- =====================================================
+-- Initial fill from existing history; later changes are picked up
+-- by the incremental job from the watermarks below
+-- =====================================================
+INSERT INTO appointment_daily_rollups (stat_date, doctor_id, specialty_id, status, appointment_count, fee_total)
+SELECT a.appointment_date, a.doctor_id, a.specialty_id, a.status, COUNT(*), COALESCE(SUM(d.consultation_fee), 0)
+FROM appointments a
+JOIN doctors d ON d.id = a.doctor_id
+GROUP BY a.appointment_date, a.doctor_id, a.specialty_id, a.status;
+
+INSERT INTO payment_daily_rollups (stat_date, status, payment_count, amount_total)
+SELECT CAST(COALESCE(p.paid_at, p.created_at) AS DATE), COALESCE(p.status, 'PENDING'), COUNT(*), COALESCE(SUM(p.amount), 0)
+FROM payments p
+GROUP BY CAST(COALESCE(p.paid_at, p.created_at) AS DATE), COALESCE(p.status, 'PENDING');
+
+INSERT INTO user_daily_rollups (stat_date, role_name, registered_count)
+SELECT CAST(u.created_at AS DATE), r.name, COUNT(*)
+FROM users u
+LEFT JOIN roles r ON r.id = u.role_id
+GROUP BY CAST(u.created_at AS DATE), r.name;
+
+INSERT INTO rollup_watermarks (name, last_processed_at) VALUES
+    ('APPOINTMENTS', NOW()),
+    ('PAYMENTS', NOW()),
+    ('USERS', NOW());
@@ -0,0 +1,28 @@
+-- =====================================================
+-- V21__create_report_jobs_table.sql
+-- Asynchronous report exports rendered to local disk
+-- =====================================================
+
+CREATE TABLE report_jobs (
+    id              UUID DEFAULT gen_random_uuid() PRIMARY KEY,
+    job_type        VARCHAR(30) NOT NULL,                   -- SUMMARY_PDF, SUMMARY_EXCEL, APPOINTMENTS_EXCEL, PAYMENTS_EXCEL
+    status          VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING, RUNNING, COMPLETED, FAILED, EXPIRED
+    date_from       DATE NOT NULL,
+    date_to         DATE NOT NULL,
+    requested_by    UUID REFERENCES users(id) ON DELETE SET NULL,
+    file_path       VARCHAR(500),
+    file_size       BIGINT,
+    error_message   TEXT,
+    started_at      TIMESTAMP,
+    finished_at     TIMESTAMP,
+    expires_at      TIMESTAMP,
+    created_at      TIMESTAMP DEFAULT NOW(),
+    updated_at      TIMESTAMP DEFAULT NOW()
+);
+
+-- Dedup lookup of running / recently finished jobs for the same request
+CREATE INDEX idx_report_jobs_request ON report_jobs(job_type, date_from, date_to, created_at DESC);
+
+-- Retention sweep and stale job recovery
+CREATE INDEX idx_report_jobs_expires ON report_jobs(expires_at) WHERE status = 'COMPLETED';
+CREATE INDEX idx_report_jobs_active ON report_jobs(created_at) WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1,7 @@
+-- =====================================================
+-- V22__add_user_token_version.sql
+-- Access tokens carry the version they were issued with; bumping it
+-- (logout, password change, deactivation, role change) revokes them.
+-- =====================================================
+
+ALTER TABLE users ADD COLUMN token_version INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,17 @@
+-- =====================================================
+-- V23__create_chat_sessions_table.sql
+-- Persistent tier of the chatbot session store (write-behind)
+-- =====================================================
+
+CREATE TABLE chat_sessions (
+    id              UUID DEFAULT gen_random_uuid() PRIMARY KEY,
+    user_id         UUID NOT NULL UNIQUE REFERENCES users(id) ON DELETE CASCADE,
+    payload         BYTEA NOT NULL,                          -- gzip-compressed JSON array of turns
+    turn_count      INTEGER NOT NULL DEFAULT 0,
+    last_active_at  TIMESTAMP NOT NULL DEFAULT NOW(),
+    created_at      TIMESTAMP DEFAULT NOW(),
+    updated_at      TIMESTAMP DEFAULT NOW()
+);
+
+-- Retention sweep of abandoned conversations
+CREATE INDEX idx_chat_sessions_last_active ON chat_sessions(last_active_at);
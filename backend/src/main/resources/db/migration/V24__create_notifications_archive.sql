@@ -0,0 +1,30 @@
+-- =====================================================
+-- V24__create_notifications_archive.sql
+-- Archive for read notifications past retention, and a keyset
+-- index for notification listings ordered by (created_at, id) DESC
+-- =====================================================
+
+CREATE TABLE notifications_archive (
+    id                  UUID PRIMARY KEY,
+    user_id             UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    title               VARCHAR(255) NOT NULL,
+    message             TEXT NOT NULL,
+    type                VARCHAR(50) NOT NULL,
+    is_read             BOOLEAN NOT NULL DEFAULT true,
+    related_entity_type VARCHAR(50),
+    related_entity_id   UUID,
+    created_at          TIMESTAMP,
+    updated_at          TIMESTAMP,
+    archived_at         TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX idx_notifications_archive_user_created ON notifications_archive(user_id, created_at DESC);
+
+-- "My notifications" pages seek on (user_id, created_at, id)
+CREATE INDEX idx_notifications_user_keyset ON notifications(user_id, created_at DESC, id DESC);
+
+-- Retention sweep: oldest read notifications first
+CREATE INDEX idx_notifications_read_created ON notifications(created_at) WHERE is_read = true;
+
+-- Superseded by idx_notifications_user_keyset (leading columns)
+DROP INDEX IF EXISTS idx_notifications_user_created;
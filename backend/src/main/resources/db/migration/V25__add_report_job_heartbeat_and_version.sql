@@ -0,0 +1,26 @@
+-- =====================================================
+-- V25__add_report_job_heartbeat_and_version.sql
+-- Stale detection by heartbeat instead of age, optimistic locking so a
+-- late finish cannot overwrite a job failed as stale, and at most one
+-- in-flight job per request across nodes.
+-- =====================================================
+
+ALTER TABLE report_jobs ADD COLUMN heartbeat_at TIMESTAMP;
+ALTER TABLE report_jobs ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+UPDATE report_jobs SET heartbeat_at = COALESCE(started_at, created_at)
+WHERE status IN ('PENDING', 'RUNNING');
+
+DROP INDEX IF EXISTS idx_report_jobs_active;
+CREATE INDEX idx_report_jobs_active ON report_jobs(heartbeat_at) WHERE status IN ('PENDING', 'RUNNING');
+
+-- Fail any duplicates left by concurrent submits on different nodes before enforcing uniqueness
+UPDATE report_jobs j SET status = 'FAILED', error_message = 'Duplicate', finished_at = NOW(), updated_at = NOW()
+WHERE j.status IN ('PENDING', 'RUNNING')
+  AND EXISTS (SELECT 1 FROM report_jobs o
+              WHERE o.status IN ('PENDING', 'RUNNING') AND o.job_type = j.job_type
+                AND o.date_from = j.date_from AND o.date_to = j.date_to
+                AND (o.created_at, o.id) > (j.created_at, j.id));
+
+CREATE UNIQUE INDEX uq_report_jobs_in_flight ON report_jobs(job_type, date_from, date_to)
+WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1,245 @@
+package com.clinic.config;
+
+import com.clinic.dto.response.UnreadCountResponse;
+import com.clinic.security.WebSocketChannelInterceptor;
+import com.clinic.security.jwt.JwtPrincipalResolver;
+import com.clinic.support.StompStubBroker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two backend nodes with {@code app.websocket.broker.mode=relay} sharing a
+ * {@link StompStubBroker}: a message for a user sent on one node must reach
+ * the user's session on the other, and nobody else's.
+ */
+class WebSocketBrokerRelayTest {
+
+    private static final String PATIENT = "patient@clinic.vn";
+    private static final String OTHER_PATIENT = "other@clinic.vn";
+
+    private StompStubBroker broker;
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private WebSocketStompClient stompClient;
+    private ThreadPoolTaskScheduler clientScheduler;
+    private StompSession session;
+    private StompSession otherSession;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = StompStubBroker.start();
+        nodeA = startNode();
+        nodeB = startNode();
+        stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        // Tracks the subscription receipt
+        clientScheduler = new ThreadPoolTaskScheduler();
+        clientScheduler.initialize();
+        stompClient.setTaskScheduler(clientScheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (session != null) {
+            session.disconnect();
+        }
+        if (otherSession != null && otherSession.isConnected()) {
+            otherSession.disconnect();
+        }
+        if (stompClient != null) {
+            stompClient.stop();
+            clientScheduler.shutdown();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        broker.close();
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldReachUserConnectedToAnotherNode() throws Exception {
+        BlockingQueue<Map<?, ?>> received = new LinkedBlockingQueue<>();
+        session = connect(nodeB, "patient-token");
+        subscribe(session, "/user/queue/notifications", received);
+
+        nodeA.getBean(SimpMessagingTemplate.class)
+                .convertAndSendToUser(PATIENT, "/queue/notifications", UnreadCountResponse.of(3));
+
+        Map<?, ?> payload = received.poll(10, TimeUnit.SECONDS);
+        assertNotNull(payload, "Notification sent on node A never reached the session on node B");
+        assertEquals(UnreadCountResponse.EVENT, payload.get("event"));
+        assertEquals(3, payload.get("unreadCount"));
+        assertNull(received.poll(500, TimeUnit.MILLISECONDS), "Delivered more than once");
+    }
+
+    @Test
+    void unresolvedUserBroadcast_ShouldNotBeReadableByOtherClients() throws Exception {
+        session = connect(nodeB, "patient-token");
+        subscribe(session, "/user/queue/notifications", new LinkedBlockingQueue<>());
+
+        // Another patient on node B tries to listen in on what node A broadcasts
+        BlockingQueue<Object> rejections = new LinkedBlockingQueue<>();
+        BlockingQueue<Map<?, ?>> overheard = new LinkedBlockingQueue<>();
+        otherSession = connect(nodeB, "other-token", rejectionHandler(rejections));
+        otherSession.subscribe(WebSocketConfig.UNRESOLVED_USER_BROADCAST, frameHandler(overheard));
+
+        assertNotNull(rejections.poll(10, TimeUnit.SECONDS), "Subscription to the broadcast topic was not rejected");
+
+        nodeA.getBean(SimpMessagingTemplate.class)
+                .convertAndSendToUser(PATIENT, "/queue/notifications", UnreadCountResponse.of(3));
+
+        assertNull(overheard.poll(2, TimeUnit.SECONDS), "Another user's push leaked through the broadcast topic");
+    }
+
+    @Test
+    void subscribe_OutsideOwnUserDestinations_ShouldBeRejected() throws Exception {
+        // Broker wildcards would match the broadcast topics on RabbitMQ / ActiveMQ
+        for (String destination : List.of("/topic/#", "/topic/*", "/topic/>", "/user/queue/#",
+                "/queue/notifications")) {
+            BlockingQueue<Object> rejections = new LinkedBlockingQueue<>();
+            StompSession probe = connect(nodeA, "other-token", rejectionHandler(rejections));
+            probe.subscribe(destination, frameHandler(new LinkedBlockingQueue<>()));
+
+            assertNotNull(rejections.poll(10, TimeUnit.SECONDS),
+                    "Subscription to " + destination + " was not rejected");
+            if (probe.isConnected()) {
+                probe.disconnect();
+            }
+        }
+    }
+
+    @Test
+    void connect_WithoutValidToken_ShouldBeRejected() {
+        assertThrows(ExecutionException.class, () -> connect(nodeA, "expired-token"));
+    }
+
+    private StompSession connect(ConfigurableApplicationContext node, String token) throws Exception {
+        return connect(node, token, new StompSessionHandlerAdapter() {
+        });
+    }
+
+    private StompSession connect(ConfigurableApplicationContext node, String token, StompSessionHandler handler)
+            throws Exception {
+        int port = ((ServletWebServerApplicationContext) node).getWebServer().getPort();
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        return stompClient.connectAsync("http://localhost:" + port + "/ws-clinic", new WebSocketHttpHeaders(),
+                connectHeaders, handler).get(10, TimeUnit.SECONDS);
+    }
+
+    private static void subscribe(StompSession session, String destination, BlockingQueue<Map<?, ?>> received)
+            throws Exception {
+        CompletableFuture<Void> subscribed = new CompletableFuture<>();
+        session.setAutoReceipt(true);
+        session.subscribe(destination, frameHandler(received)).addReceiptTask(() -> subscribed.complete(null));
+        subscribed.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Records the ERROR frame of a rejected frame, or the dropped connection
+     * when the server closes it before the ERROR frame gets out.
+     */
+    private static StompSessionHandler rejectionHandler(BlockingQueue<Object> rejections) {
+        return new StompSessionHandlerAdapter() {
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                rejections.add(headers);
+            }
+
+            @Override
+            public void handleTransportError(StompSession session, Throwable exception) {
+                rejections.add(exception);
+            }
+        };
+    }
+
+    private static StompFrameHandler frameHandler(BlockingQueue<Map<?, ?>> received) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((Map<?, ?>) payload);
+            }
+        };
+    }
+
+    private ConfigurableApplicationContext startNode() throws InterruptedException {
+        ConfigurableApplicationContext node = new SpringApplicationBuilder(Node.class)
+                .web(WebApplicationType.SERVLET)
+                .bannerMode(Banner.Mode.OFF)
+                // Arguments, so they win over application.yml
+                .run("--server.port=0",
+                        "--app.websocket.broker.mode=relay",
+                        "--app.websocket.broker.relay.host=localhost",
+                        "--app.websocket.broker.relay.port=" + broker.port());
+        // Wait for the relay's system connection before sending through it
+        var relay = node.getBean(StompBrokerRelayMessageHandler.class);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!relay.isBrokerAvailable() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(relay.isBrokerAvailable(), "Node could not connect to the broker");
+        return node;
+    }
+
+    /**
+     * Just the WebSocket part of the backend; the real channel interceptor
+     * authenticates STOMP connections against a stubbed token resolver.
+     */
+    @Configuration
+    @ImportAutoConfiguration({ ServletWebServerFactoryAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class, WebSocketServletAutoConfiguration.class })
+    @Import({ WebSocketConfig.class, WebSocketChannelInterceptor.class })
+    static class Node {
+
+        @Bean
+        JwtPrincipalResolver jwtPrincipalResolver() {
+            JwtPrincipalResolver resolver = mock(JwtPrincipalResolver.class);
+            when(resolver.resolve("patient-token")).thenReturn(
+                    User.withUsername(PATIENT).password("unused").roles("PATIENT").build());
+            when(resolver.resolve("other-token")).thenReturn(
+                    User.withUsername(OTHER_PATIENT).password("unused").roles("PATIENT").build());
+            return resolver;
+        }
+    }
+}
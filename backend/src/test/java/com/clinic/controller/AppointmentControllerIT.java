@@ -7,6 +7,7 @@ import com.clinic.entity.*;
 import com.clinic.entity.enums.AppointmentStatus;
 import com.clinic.entity.enums.RoleName;
 import com.clinic.repository.*;
+import com.clinic.security.UserDetailsServiceImpl;
 import com.clinic.security.jwt.JwtTokenProvider;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -67,9 +68,13 @@ class AppointmentControllerIT {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
     private String patientToken;
     private String doctorToken;
     private String adminToken;
+    private User doctorUser;
 
     private Patient testPatient;
     private Doctor testDoctor;
@@ -104,7 +109,7 @@ class AppointmentControllerIT {
 
         // Create Doctor
         var doctorRole = roleRepository.findByName(RoleName.DOCTOR).get();
-        User doctorUser = userRepository.save(User.builder()
+        doctorUser = userRepository.save(User.builder()
                 .fullName("Doctor User")
                 .email("doctor@test.com")
                 .passwordHash("hashed")
@@ -168,6 +173,40 @@ class AppointmentControllerIT {
                 .andExpect(jsonPath("$.result.patientName").value("Patient User"));
     }
 
+    @Test
+    void createAppointment_AsDoctor_ShouldLetDoctorReadAndCancelIt() throws Exception {
+        // Token as issued at login: doctor id claim, no patient profile yet
+        var loginPrincipal = userDetailsService.buildPrincipal(doctorUser);
+        String loginToken = jwtTokenProvider.generateToken(new UsernamePasswordAuthenticationToken(
+                loginPrincipal, null, loginPrincipal.getAuthorities()));
+        AppointmentRequest request = AppointmentRequest.builder()
+                .doctorId(testDoctor.getId())
+                .timeSlotId(testTimeSlot.getId())
+                .appointmentDate(LocalDate.now().plusDays(1))
+                .build();
+
+        String body = mockMvc.perform(post("/api/appointments")
+                .header("Authorization", "Bearer " + loginToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String appointmentId = objectMapper.readTree(body).path("result").path("id").asText();
+
+        mockMvc.perform(get("/api/appointments/" + appointmentId)
+                .header("Authorization", "Bearer " + loginToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result.patientName").value("Doctor User"));
+
+        mockMvc.perform(put("/api/appointments/" + appointmentId + "/cancel")
+                .header("Authorization", "Bearer " + loginToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(AppointmentCancelRequest.builder()
+                        .reason("Conflict").build())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result.status").value("CANCELLED"));
+    }
+
     @Test
     void updateStatus_AsDoctor_ShouldSucceed() throws Exception {
         // Create an appointment first
@@ -232,4 +271,36 @@ class AppointmentControllerIT {
                 .andExpect(jsonPath("$.result").isArray())
                 .andExpect(jsonPath("$.result.length()").value(1));
     }
+
+    @Test
+    void getMyAppointmentsPage_ShouldWalkPagesWithCursor() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            appointmentRepository.save(Appointment.builder()
+                    .patient(testPatient)
+                    .doctor(testDoctor)
+                    .timeSlot(testTimeSlot)
+                    .appointmentDate(LocalDate.now().plusDays(i))
+                    .appointmentTime(testTimeSlot.getStartTime())
+                    .status(AppointmentStatus.PENDING)
+                    .build());
+        }
+
+        String body = mockMvc.perform(get("/api/appointments/me/page")
+                .param("size", "1")
+                .header("Authorization", "Bearer " + patientToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result.items.length()").value(1))
+                .andExpect(jsonPath("$.result.items[0].appointmentDate").value(LocalDate.now().plusDays(1).toString()))
+                .andExpect(jsonPath("$.result.hasNext").value(true))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(body).at("/result/nextCursor").asText();
+
+        mockMvc.perform(get("/api/appointments/me/page")
+                .param("size", "1")
+                .param("cursor", cursor)
+                .header("Authorization", "Bearer " + patientToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result.items[0].appointmentDate").value(LocalDate.now().toString()))
+                .andExpect(jsonPath("$.result.hasNext").value(false));
+    }
 }
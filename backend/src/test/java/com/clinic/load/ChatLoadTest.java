@@ -0,0 +1,257 @@
+package com.clinic.load;
+
+import com.clinic.config.GeminiConfig;
+import com.clinic.dto.request.ChatRequest;
+import com.clinic.dto.response.ChatResponse;
+import com.clinic.service.*;
+import com.clinic.support.GeminiStubServer;
+import com.clinic.util.SecurityUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives concurrent chat sessions through {@link ChatService} and
+ * {@link GeminiService}, including the function-calling loop, against
+ * {@link GeminiStubServer}, then prints p50/p99 turn latency, peak thread
+ * count and heap growth. Skipped unless {@code -DloadTest=true}:
+ * <pre>
+ * mvn test -Dtest=ChatLoadTest -DloadTest=true -DloadTest.users=200 -DloadTest.turns=5
+ * </pre>
+ * Other knobs: {@code loadTest.latencyMs} (stub latency before the first
+ * byte), {@code loadTest.chunkDelayMs}, {@code loadTest.failureRate} and
+ * {@code loadTest.maxConcurrent} (Gemini bulkhead size).
+ */
+@Tag("load")
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+class ChatLoadTest {
+
+    private static final int USERS = Integer.getInteger("loadTest.users", 50);
+    private static final int TURNS = Integer.getInteger("loadTest.turns", 4);
+    private static final long LATENCY_MS = Long.getLong("loadTest.latencyMs", 200);
+    private static final long CHUNK_DELAY_MS = Long.getLong("loadTest.chunkDelayMs", 20);
+    private static final double FAILURE_RATE = Double.parseDouble(System.getProperty("loadTest.failureRate", "0"));
+    private static final int MAX_CONCURRENT = Integer.getInteger("loadTest.maxConcurrent", 64);
+    // Function-call questions first, so every session goes through the loop
+    private static final List<String> QUESTIONS = List.of(
+            "Tìm bác sĩ khoa Tim mạch giúp tôi",
+            "Thuốc paracetamol giá bao nhiêu?",
+            "Lịch hẹn sắp tới của tôi",
+            "Phòng khám mở cửa mấy giờ?",
+            "Khám tổng quát cần chuẩn bị gì?");
+
+    private GeminiStubServer stub;
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = GeminiStubServer.start()
+                .latency(Duration.ofMillis(LATENCY_MS), Duration.ofMillis(LATENCY_MS / 2))
+                .chunkDelay(Duration.ofMillis(CHUNK_DELAY_MS))
+                .failureRate(FAILURE_RATE, 503);
+        ObjectMapper mapper = new ObjectMapper();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        GeminiConfig config = new GeminiConfig();
+        ReflectionTestUtils.setField(config, "apiKey", "load-test");
+        ReflectionTestUtils.setField(config, "model", "gemini-stub");
+        ReflectionTestUtils.setField(config, "baseUrl", stub.baseUrl());
+        ReflectionTestUtils.setField(config, "timeoutSeconds", 30);
+        ReflectionTestUtils.setField(config, "maxTokens", 2048);
+        GeminiGuard guard = new GeminiGuard(meterRegistry, MAX_CONCURRENT, 100_000, 60_000,
+                1_000, 100_000, 100_000, 100_000, 100, 1_000, 1_000, 1, 1, USERS * 2);
+        GeminiService geminiService = new GeminiService(config, config.geminiWebClient(), mapper, guard);
+
+        ChatFunctionService functions = mock(ChatFunctionService.class);
+        when(functions.searchDoctors(any(), any())).thenReturn(List.of(
+                Map.of("id", UUID.randomUUID().toString(), "fullName", "BS. Nguyễn Văn An", "specialty", "Tim mạch")));
+        when(functions.searchMedicines(anyString())).thenReturn(List.of(
+                Map.of("name", "Paracetamol 500mg", "price", 15000)));
+        when(functions.getMyAppointments()).thenReturn(List.of(
+                Map.of("date", "2026-10-20", "time", "09:00", "status", "CONFIRMED")));
+        SecurityUtils securityUtils = mock(SecurityUtils.class);
+        when(securityUtils.getCurrentUserId()).thenAnswer(invocation -> Optional
+                .ofNullable(SecurityContextHolder.getContext().getAuthentication())
+                .map(authentication -> UUID.fromString(authentication.getName())));
+
+        Map<UUID, List<Map<String, Object>>> sessions = new ConcurrentHashMap<>();
+        ChatSessionStore store = userId -> new ChatSessionStore.Lease() {
+            @Override
+            public List<Map<String, Object>> history() {
+                return sessions.computeIfAbsent(userId, id -> new ArrayList<>());
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ChatToolCache toolCache = new ChatToolCache(mapper, meterRegistry, 5_000, 3600, 600, 60, 3600, 120, 86400);
+        // Answer cache off: every turn must reach the stub
+        ChatAnswerCache answerCache = new ChatAnswerCache(toolCache, meterRegistry, false, 1, 1, 0, 1);
+        chatService = new ChatService(geminiService, functions, securityUtils, mapper, store, guard, toolCache,
+                new ChatHistoryCompactor(4000, 600), answerCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void processChat_UnderConcurrentSessions() throws Exception {
+        Snapshot before = Snapshot.take();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService users = Executors.newFixedThreadPool(USERS);
+        long start = System.nanoTime();
+
+        List<Future<?>> sessions = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            UUID userId = UUID.randomUUID();
+            int offset = u;
+            sessions.add(users.submit(() -> {
+                SecurityContextHolder.setContext(context(userId));
+                try {
+                    for (int t = 0; t < TURNS; t++) {
+                        long turnStart = System.nanoTime();
+                        ChatResponse response = chatService.processChat(request(offset + t));
+                        latencies.add(System.nanoTime() - turnStart);
+                        if (response.getMessage().startsWith("Xin lỗi")) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            }));
+        }
+        for (Future<?> session : sessions) {
+            session.get(10, TimeUnit.MINUTES);
+        }
+        users.shutdown();
+
+        report("processChat (blocking)", latencies, errors.get(), System.nanoTime() - start, before);
+        verify(latencies, errors.get());
+    }
+
+    @Test
+    void streamChat_UnderConcurrentSessions() {
+        Snapshot before = Snapshot.take();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+
+        Flux.range(0, USERS)
+                .flatMap(u -> {
+                    UUID userId = UUID.randomUUID();
+                    return Flux.range(0, TURNS).concatMap(t -> Mono.defer(() -> {
+                        long turnStart = System.nanoTime();
+                        return stream(userId, request(u + t))
+                                .filter(event -> "done".equals(event.event()) || "error".equals(event.event()))
+                                .next()
+                                .doOnNext(event -> {
+                                    latencies.add(System.nanoTime() - turnStart);
+                                    if ("error".equals(event.event())) {
+                                        errors.incrementAndGet();
+                                    }
+                                });
+                    }));
+                }, USERS)
+                .blockLast(Duration.ofMinutes(10));
+
+        report("streamChat (SSE)", latencies, errors.get(), System.nanoTime() - start, before);
+        verify(latencies, errors.get());
+    }
+
+    private Flux<ServerSentEvent<Object>> stream(UUID userId, ChatRequest request) {
+        // streamChat reads the caller from the security context when it is called
+        SecurityContextHolder.setContext(context(userId));
+        try {
+            return chatService.streamChat(request);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private void verify(List<Long> latencies, int errors) {
+        assertEquals(USERS * TURNS, latencies.size());
+        assertTrue(stub.functionCalls() > 0, "Sessions must go through the function-calling loop");
+        if (FAILURE_RATE == 0) {
+            assertEquals(0, errors);
+        }
+    }
+
+    private void report(String name, List<Long> latencies, int errors, long elapsedNanos, Snapshot before) {
+        Snapshot after = Snapshot.take();
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("%n=== %s: %d users x %d turns, stub latency %d ms ===%n", name, USERS, TURNS, LATENCY_MS);
+        System.out.printf("turns        %d in %.1f s (%.1f/s), errors %d%n", sorted.length, elapsedNanos / 1e9,
+                sorted.length / (elapsedNanos / 1e9), errors);
+        System.out.printf("latency      p50 %d ms, p99 %d ms, max %d ms%n", millis(sorted, 0.50),
+                millis(sorted, 0.99), sorted.length > 0 ? sorted[sorted.length - 1] / 1_000_000 : 0);
+        System.out.printf("stub         %d requests, %d function calls, %d injected failures%n",
+                stub.requests(), stub.functionCalls(), stub.injectedFailures());
+        System.out.printf("threads      peak %d (started at %d), live %d%n", after.peakThreads, before.liveThreads,
+                after.liveThreads);
+        System.out.printf("heap         %d MB -> %d MB (%+d MB after GC)%n", before.heapUsed >> 20,
+                after.heapUsed >> 20, (after.heapUsed - before.heapUsed) >> 20);
+    }
+
+    private static long millis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000;
+    }
+
+    private static ChatRequest request(int question) {
+        ChatRequest request = new ChatRequest();
+        request.setMessage(QUESTIONS.get(question % QUESTIONS.size()));
+        return request;
+    }
+
+    private static SecurityContext context(UUID userId) {
+        return new SecurityContextImpl(new TestingAuthenticationToken(userId.toString(), null, "ROLE_PATIENT"));
+    }
+
+    private record Snapshot(int liveThreads, int peakThreads, long heapUsed) {
+
+        static Snapshot take() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            Snapshot snapshot = new Snapshot(threads.getThreadCount(), threads.getPeakThreadCount(),
+                    memory.getHeapMemoryUsage().getUsed());
+            threads.resetPeakThreadCount();
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.clinic.scheduler;
+
+import com.clinic.entity.OutboxEvent;
+import com.clinic.entity.enums.OutboxChannel;
+import com.clinic.entity.enums.OutboxEventType;
+import com.clinic.service.OutboxEventHandler;
+import com.clinic.service.OutboxService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxDispatcherTest {
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private OutboxEventHandler handler;
+
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new OutboxDispatcher(outboxService, List.of(handler));
+        when(handler.supports(OutboxEventType.APPOINTMENT_CREATED)).thenReturn(true);
+        lenient().when(outboxService.readPayload(any())).thenReturn(Map.of());
+    }
+
+    @Test
+    void deliver_WhenEmailFails_ShouldKeepDeliveredChannelsAndReportError() throws Exception {
+        OutboxEvent event = event(null);
+        lenient().doThrow(new IllegalStateException("smtp down")).when(handler).handle(eq(event), any(),
+                eq(OutboxChannel.EMAIL));
+
+        dispatcher.deliver(event);
+
+        ArgumentCaptor<Set<OutboxChannel>> delivered = captor();
+        ArgumentCaptor<Exception> error = ArgumentCaptor.forClass(Exception.class);
+        verify(outboxService).complete(eq(event), delivered.capture(), error.capture());
+        assertEquals(EnumSet.of(OutboxChannel.AUDIT, OutboxChannel.PUSH), delivered.getValue());
+        assertEquals("smtp down", error.getValue().getMessage());
+    }
+
+    @Test
+    void deliver_OnRetry_ShouldOnlyRepeatUndeliveredChannels() throws Exception {
+        OutboxEvent event = event("AUDIT,PUSH");
+
+        dispatcher.deliver(event);
+
+        verify(handler, never()).handle(any(), any(), eq(OutboxChannel.AUDIT));
+        verify(handler, never()).handle(any(), any(), eq(OutboxChannel.PUSH));
+        verify(handler).handle(eq(event), any(), eq(OutboxChannel.EMAIL));
+        verify(outboxService).complete(eq(event), eq(EnumSet.allOf(OutboxChannel.class)), isNull());
+    }
+
+    @Test
+    void checkHandlers_WhenTwoHandlersShareAnEventType_ShouldFailAtStartup() {
+        OutboxEventHandler second = mock(OutboxEventHandler.class);
+        when(second.supports(OutboxEventType.APPOINTMENT_CREATED)).thenReturn(true);
+        OutboxDispatcher shared = new OutboxDispatcher(outboxService, List.of(handler, second));
+
+        assertThrows(IllegalStateException.class, shared::checkHandlers);
+        dispatcher.checkHandlers();
+    }
+
+    @Test
+    void dispatchPending_ShouldDrainFullBatches() {
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 2);
+        when(outboxService.claimBatch(2))
+                .thenReturn(List.of(event(null), event(null)))
+                .thenReturn(List.of(event(null)));
+
+        dispatcher.dispatchPending();
+
+        verify(outboxService, times(2)).claimBatch(2);
+        verify(outboxService, times(3)).complete(any(), any(), isNull());
+    }
+
+    private OutboxEvent event(String deliveredChannels) {
+        OutboxEvent event = OutboxEvent.builder()
+                .eventType(OutboxEventType.APPOINTMENT_CREATED)
+                .aggregateId(UUID.randomUUID())
+                .deliveredChannels(deliveredChannels)
+                .attempts(1)
+                .build();
+        event.setId(UUID.randomUUID());
+        return event;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Set<OutboxChannel>> captor() {
+        return ArgumentCaptor.forClass((Class<Set<OutboxChannel>>) (Class<?>) Set.class);
+    }
+}
@@ -0,0 +1,71 @@
+package com.clinic.security;
+
+import com.clinic.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdentityCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private IdentityCache cache;
+    private final UUID userId = UUID.randomUUID();
+    private final UUID doctorId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new IdentityCache(userRepository, meterRegistry, 60, 100);
+    }
+
+    @Test
+    void getByEmail_ThenById_ShouldShareOneEntry() {
+        when(userRepository.findIdentityByEmail("doctor@clinic.com")).thenReturn(List.<Object[]>of(row()));
+
+        CustomUserDetails byEmail = cache.getByEmail("doctor@clinic.com");
+        CustomUserDetails byId = cache.getById(userId);
+
+        assertSame(byEmail, byId);
+        assertEquals("DOCTOR", byId.getRoleName());
+        assertEquals(doctorId, byId.getDoctorId());
+        assertNull(byId.getPatientId());
+        verify(userRepository, never()).findIdentityById(any());
+        assertEquals(1.0, meterRegistry.counter("clinic.auth.identity.lookups", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("clinic.auth.identity.lookups", "result", "miss").count());
+    }
+
+    @Test
+    void evict_ShouldReloadOnNextLookup() {
+        when(userRepository.findIdentityById(userId)).thenReturn(List.<Object[]>of(row()));
+        cache.getById(userId);
+
+        cache.evict(userId);
+        cache.getById(userId);
+
+        verify(userRepository, times(2)).findIdentityById(userId);
+    }
+
+    @Test
+    void getByEmail_ForUnknownUser_ShouldReturnNull() {
+        when(userRepository.findIdentityByEmail("nobody@clinic.com")).thenReturn(List.of());
+
+        assertNull(cache.getByEmail("nobody@clinic.com"));
+    }
+
+    private Object[] row() {
+        return new Object[] { userId, "doctor@clinic.com", "hash", true, "DOCTOR", 0, doctorId, null };
+    }
+}
@@ -0,0 +1,94 @@
+package com.clinic.security;
+
+import com.clinic.repository.AppointmentRepository;
+import com.clinic.repository.MedicalRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceOwnershipTest {
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Mock
+    private IdentityCache identityCache;
+
+    @InjectMocks
+    private ResourceOwnership resourceOwnership;
+
+    private final UUID appointmentId = UUID.randomUUID();
+    private final UUID patientId = UUID.randomUUID();
+    private final UUID doctorId = UUID.randomUUID();
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void ownsAppointment_ShouldCompareClaimsAndMemoizeWithinRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(appointmentRepository.findOwnerIds(appointmentId))
+                .thenReturn(List.<Object[]>of(new Object[] { patientId, doctorId }));
+
+        assertTrue(resourceOwnership.ownsAppointment(appointmentId, principal(null, patientId)));
+        assertTrue(resourceOwnership.ownsAppointment(appointmentId, principal(doctorId, null)));
+        assertFalse(resourceOwnership.ownsAppointment(appointmentId, principal(null, UUID.randomUUID())));
+
+        verify(appointmentRepository, times(1)).findOwnerIds(appointmentId);
+        verifyNoInteractions(identityCache);
+    }
+
+    @Test
+    void ownsAppointment_WhenMissing_ShouldDeny() {
+        when(appointmentRepository.findOwnerIds(appointmentId)).thenReturn(List.of());
+
+        assertFalse(resourceOwnership.ownsAppointment(appointmentId, principal(null, patientId)));
+    }
+
+    @Test
+    void isPatient_WithoutClaim_ShouldFallBackToIdentityCache() {
+        CustomUserDetails legacy = principal(null, null);
+        when(identityCache.getById(legacy.getId())).thenReturn(principal(null, patientId));
+
+        assertTrue(resourceOwnership.isPatient(patientId, legacy));
+        assertFalse(resourceOwnership.isPatient(UUID.randomUUID(), legacy));
+        assertFalse(resourceOwnership.isPatient(patientId, "anonymousUser"));
+    }
+
+    @Test
+    void ownsAppointment_DoctorBookingAsPatient_ShouldUsePatientProfileCreatedAfterToken() {
+        UUID userId = UUID.randomUUID();
+        CustomUserDetails doctor = CustomUserDetails.fromClaims(userId, "doctor@clinic.com", "DOCTOR", doctorId,
+                null, 0);
+        when(appointmentRepository.findOwnerIds(appointmentId))
+                .thenReturn(List.<Object[]>of(new Object[] { patientId, UUID.randomUUID() }));
+        when(identityCache.getById(userId)).thenReturn(CustomUserDetails.fromClaims(userId, "doctor@clinic.com",
+                "DOCTOR", doctorId, patientId, 0));
+
+        assertTrue(resourceOwnership.ownsAppointment(appointmentId, doctor));
+        assertTrue(resourceOwnership.isPatient(patientId, doctor));
+    }
+
+    private static CustomUserDetails principal(UUID doctorId, UUID patientId) {
+        return CustomUserDetails.fromClaims(UUID.randomUUID(), "user@clinic.com",
+                doctorId != null ? "DOCTOR" : "PATIENT", doctorId, patientId, 0);
+    }
+}
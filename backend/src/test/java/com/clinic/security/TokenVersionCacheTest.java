@@ -0,0 +1,68 @@
+package com.clinic.security;
+
+import com.clinic.entity.User;
+import com.clinic.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenVersionCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private TokenVersionCache cache;
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        cache = new TokenVersionCache(userRepository, new SimpleMeterRegistry(), 30, 100);
+    }
+
+    @Test
+    void isCurrent_ShouldHitDatabaseOnlyOnFirstLookup() {
+        when(userRepository.findTokenState(userId)).thenReturn(List.<Object[]>of(new Object[] { 2, true }));
+
+        assertTrue(cache.isCurrent(userId, 2));
+        assertTrue(cache.isCurrent(userId, 2));
+        assertFalse(cache.isCurrent(userId, 1));
+
+        verify(userRepository, times(1)).findTokenState(userId);
+    }
+
+    @Test
+    void revoke_ShouldBumpVersionAndReload() {
+        when(userRepository.findTokenState(userId))
+                .thenReturn(List.<Object[]>of(new Object[] { 0, true }))
+                .thenReturn(List.<Object[]>of(new Object[] { 1, true }));
+        User user = User.builder().build();
+        user.setId(userId);
+        assertTrue(cache.isCurrent(userId, 0));
+
+        cache.revoke(user);
+
+        assertEquals(1, user.getTokenVersion());
+        assertFalse(cache.isCurrent(userId, 0));
+        assertTrue(cache.isCurrent(userId, 1));
+    }
+
+    @Test
+    void isCurrent_ForInactiveOrMissingUser_ShouldReject() {
+        UUID missing = UUID.randomUUID();
+        when(userRepository.findTokenState(userId)).thenReturn(List.<Object[]>of(new Object[] { 0, false }));
+        when(userRepository.findTokenState(missing)).thenReturn(List.of());
+
+        assertFalse(cache.isCurrent(userId, 0));
+        assertFalse(cache.isCurrent(missing, 0));
+    }
+}
@@ -0,0 +1,68 @@
+package com.clinic.security.jwt;
+
+import com.clinic.security.CustomUserDetails;
+import com.clinic.security.TokenVersionCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtPrincipalResolverTest {
+
+    private final TokenVersionCache tokenVersionCache = mock(TokenVersionCache.class);
+    private JwtTokenProvider tokenProvider;
+    private JwtPrincipalResolver resolver;
+    private final UUID userId = UUID.randomUUID();
+    private UsernamePasswordAuthenticationToken authentication;
+
+    @BeforeEach
+    void setUp() {
+        tokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "jwtSecret", "testSecretKeyWithEnoughLengthForHS256Algorithm12345");
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpiration", 900000L);
+        ReflectionTestUtils.setField(tokenProvider, "refreshExpiration", 604800000L);
+        tokenProvider.init();
+        resolver = new JwtPrincipalResolver(tokenProvider, tokenVersionCache);
+
+        CustomUserDetails principal = CustomUserDetails.fromClaims(userId, "patient@clinic.com", "PATIENT", null,
+                UUID.randomUUID(), 2);
+        authentication = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+        when(tokenVersionCache.isCurrent(userId, 2)).thenReturn(true);
+    }
+
+    @Test
+    void resolve_AccessToken_ShouldReturnPrincipalWhileVersionIsCurrent() {
+        String token = tokenProvider.generateToken(authentication);
+
+        assertEquals(userId, ((CustomUserDetails) resolver.resolve(token)).getId());
+
+        // Logout / password reset bumps the version
+        when(tokenVersionCache.isCurrent(userId, 2)).thenReturn(false);
+        assertNull(resolver.resolve(token));
+    }
+
+    @Test
+    void resolve_RefreshToken_ShouldNotAuthenticate() {
+        String refreshToken = tokenProvider.generateRefreshToken(authentication);
+
+        assertTrue(tokenProvider.isRefreshToken(tokenProvider.parseClaims(refreshToken)));
+        assertEquals(2, tokenProvider.parseClaims(refreshToken).get(JwtTokenProvider.CLAIM_TOKEN_VERSION));
+        assertNull(resolver.resolve(refreshToken));
+    }
+
+    @Test
+    void resolve_TokenWithoutIdentityClaims_ShouldNotAuthenticate() {
+        User legacy = new User("patient@clinic.com", "password", new ArrayList<>());
+        String token = tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(legacy, null));
+
+        assertNull(resolver.resolve(token));
+        verifyNoInteractions(tokenVersionCache);
+    }
+}
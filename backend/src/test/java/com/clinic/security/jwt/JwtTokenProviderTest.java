@@ -1,5 +1,7 @@
 package com.clinic.security.jwt;
 
+import com.clinic.security.CustomUserDetails;
+import io.jsonwebtoken.Claims;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -9,6 +11,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.ArrayList;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -54,4 +57,46 @@ class JwtTokenProviderTest {
 
         assertFalse(jwtTokenProvider.validateToken(token));
     }
+
+    @Test
+    void generateToken_ForCustomUserDetails_ShouldRoundTripClaims() {
+        UUID userId = UUID.randomUUID();
+        UUID doctorId = UUID.randomUUID();
+        CustomUserDetails principal = CustomUserDetails.fromClaims(userId, "doctor@clinic.com", "DOCTOR", doctorId,
+                null, 3);
+        String token = jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        Claims claims = jwtTokenProvider.parseClaims(token);
+        CustomUserDetails restored = jwtTokenProvider.toPrincipal(claims);
+
+        assertEquals(userId, restored.getId());
+        assertEquals("doctor@clinic.com", restored.getUsername());
+        assertEquals("ROLE_DOCTOR", restored.getAuthorities().iterator().next().getAuthority());
+        assertEquals(doctorId, restored.getDoctorId());
+        assertNull(restored.getPatientId());
+        assertEquals(3, restored.getTokenVersion());
+    }
+
+    @Test
+    void toPrincipal_ForTokenWithoutClaims_ShouldReturnNull() {
+        UserDetails userDetails = new User("test@clinic.com", "password", new ArrayList<>());
+        String token = jwtTokenProvider.generateToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+
+        assertNull(jwtTokenProvider.toPrincipal(jwtTokenProvider.parseClaims(token)));
+    }
+
+    @Test
+    void parseClaims_ShouldRejectTokenSignedWithAnotherKey() {
+        JwtTokenProvider other = new JwtTokenProvider();
+        ReflectionTestUtils.setField(other, "jwtSecret", "anotherSecretKeyWithEnoughLengthForHS256Algorithm99");
+        ReflectionTestUtils.setField(other, "jwtExpiration", expiration);
+        ReflectionTestUtils.setField(other, "refreshExpiration", expiration);
+        other.init();
+        UserDetails userDetails = new User("test@clinic.com", "password", new ArrayList<>());
+        String token = other.generateToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+
+        assertNull(jwtTokenProvider.parseClaims(token));
+        assertFalse(jwtTokenProvider.validateToken(token));
+    }
 }
@@ -38,6 +38,8 @@ class AdminServiceTest {
     private SpecialtyRepository specialtyRepository;
     @Mock
     private PasswordEncoder passwordEncoder;
+    @Mock
+    private ChatToolCache chatToolCache;
 
     @InjectMocks
     private AdminService adminService;
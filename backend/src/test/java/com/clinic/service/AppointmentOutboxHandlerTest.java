@@ -0,0 +1,100 @@
+package com.clinic.service;
+
+import com.clinic.entity.*;
+import com.clinic.entity.enums.NotificationType;
+import com.clinic.entity.enums.OutboxChannel;
+import com.clinic.entity.enums.OutboxEventType;
+import com.clinic.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AppointmentOutboxHandlerTest {
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private AuditLogService auditLogService;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private EmailService emailService;
+
+    @InjectMocks
+    private AppointmentOutboxHandler handler;
+
+    private User doctorUser;
+    private User patientUser;
+    private Appointment appointment;
+
+    @BeforeEach
+    void setUp() {
+        doctorUser = User.builder().fullName("Bác sĩ An").email("doctor@clinic.vn").build();
+        doctorUser.setId(UUID.randomUUID());
+        patientUser = User.builder().fullName("Nguyễn Văn B").email("patient@clinic.vn").build();
+        patientUser.setId(UUID.randomUUID());
+        appointment = Appointment.builder()
+                .doctor(Doctor.builder().user(doctorUser).build())
+                .patient(Patient.builder().user(patientUser).build())
+                .appointmentDate(LocalDate.of(2026, 10, 20))
+                .appointmentTime(LocalTime.of(9, 0))
+                .build();
+        appointment.setId(UUID.randomUUID());
+        when(appointmentRepository.findByIdWithUser(appointment.getId())).thenReturn(Optional.of(appointment));
+    }
+
+    @Test
+    void handlePush_FirstAttempt_ShouldNotifyDoctorAndPatientWithoutLookup() throws Exception {
+        handler.handle(event(1), Map.of(), OutboxChannel.PUSH);
+
+        verify(notificationService).deliver(eq(doctorUser), any(), any(), eq(NotificationType.APPOINTMENT), any(),
+                eq(appointment.getId()));
+        verify(notificationService).deliver(eq(patientUser), any(), any(), eq(NotificationType.APPOINTMENT), any(),
+                eq(appointment.getId()));
+        verify(notificationService, never()).wasDelivered(any(), any(), any(), any());
+    }
+
+    @Test
+    void handlePush_RetryAfterPatientFailed_ShouldNotNotifyDoctorAgain() throws Exception {
+        OutboxEvent retry = event(2);
+        when(notificationService.wasDelivered(doctorUser.getId(), appointment.getId(), "Lịch hẹn mới",
+                retry.getCreatedAt())).thenReturn(true);
+        when(notificationService.wasDelivered(patientUser.getId(), appointment.getId(), "Đặt lịch thành công",
+                retry.getCreatedAt())).thenReturn(false);
+
+        handler.handle(retry, Map.of(), OutboxChannel.PUSH);
+
+        verify(notificationService, never()).deliver(eq(doctorUser), any(), any(), any(), any(), any());
+        verify(notificationService).deliver(eq(patientUser), any(), any(), eq(NotificationType.APPOINTMENT), any(),
+                eq(appointment.getId()));
+    }
+
+    private OutboxEvent event(int attempts) {
+        OutboxEvent event = OutboxEvent.builder()
+                .eventType(OutboxEventType.APPOINTMENT_CREATED)
+                .aggregateType(AppointmentOutboxHandler.AGGREGATE_TYPE)
+                .aggregateId(appointment.getId())
+                .attempts(attempts)
+                .build();
+        event.setId(UUID.randomUUID());
+        event.setCreatedAt(LocalDateTime.now().minusMinutes(5));
+        return event;
+    }
+}
@@ -0,0 +1,157 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.DoctorAvailabilityResponse;
+import com.clinic.dto.response.TimeSlotResponse;
+import com.clinic.entity.Doctor;
+import com.clinic.entity.TimeSlot;
+import com.clinic.entity.WorkingSchedule;
+import com.clinic.exception.AppException;
+import com.clinic.repository.AppointmentRepository;
+import com.clinic.repository.SlotHoldRepository;
+import com.clinic.repository.TimeSlotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityServiceTest {
+
+    @Mock
+    private TimeSlotRepository timeSlotRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private SlotHoldRepository slotHoldRepository;
+
+    private SlotOccupancyIndex occupancyIndex;
+    private AvailabilityService availabilityService;
+
+    private UUID doctorId;
+    private Doctor doctor;
+
+    private final LocalDate monday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+
+    @BeforeEach
+    void setUp() {
+        occupancyIndex = new SlotOccupancyIndex(new SimpleMeterRegistry(), 100);
+        availabilityService = new AvailabilityService(timeSlotRepository, appointmentRepository,
+                slotHoldRepository, occupancyIndex);
+        doctorId = UUID.randomUUID();
+        doctor = new Doctor();
+        doctor.setId(doctorId);
+    }
+
+    @Test
+    void getAvailability_ShouldResolveWeekInTwoQueries() {
+        WorkingSchedule weeklyMonday = WorkingSchedule.builder().id(1).doctor(doctor).dayOfWeek(1).build();
+        WorkingSchedule specificWednesday = WorkingSchedule.builder().id(2).doctor(doctor).dayOfWeek(3)
+                .specificDate(monday.plusDays(2)).build();
+
+        TimeSlot nine = slot(10, weeklyMonday, LocalTime.of(9, 0));
+        TimeSlot ten = slot(11, weeklyMonday, LocalTime.of(10, 0));
+        TimeSlot fourteen = slot(12, specificWednesday, LocalTime.of(14, 0));
+
+        when(timeSlotRepository.findBookableSlots(anyCollection(), any(), any()))
+                .thenReturn(List.of(ten, nine, fourteen));
+        when(appointmentRepository.countBookedSlots(anyCollection(), any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[] { doctorId, monday, LocalTime.of(10, 0), 1L }));
+
+        List<DoctorAvailabilityResponse> result = availabilityService.getAvailability(List.of(doctorId), monday,
+                monday.plusDays(6));
+
+        assertEquals(1, result.size());
+        List<DoctorAvailabilityResponse.DayAvailability> days = result.get(0).getDays();
+        assertEquals(7, days.size());
+        assertEquals(List.of(LocalTime.of(9, 0)), startTimes(days.get(0).getSlots()));
+        assertTrue(days.get(1).getSlots().isEmpty());
+        assertEquals(List.of(LocalTime.of(14, 0)), startTimes(days.get(2).getSlots()));
+
+        verify(timeSlotRepository, times(1)).findBookableSlots(anyCollection(), any(), any());
+        verify(appointmentRepository, times(1)).countBookedSlots(anyCollection(), any(), any());
+        verify(slotHoldRepository, times(1)).countActiveHolds(anyCollection(), any(), any(), any());
+    }
+
+    @Test
+    void getAvailability_MultiPatientSlot_ShouldStayOpenUntilFull() {
+        WorkingSchedule weeklyMonday = WorkingSchedule.builder().id(1).doctor(doctor).dayOfWeek(1).build();
+        TimeSlot shared = slot(10, weeklyMonday, LocalTime.of(9, 0));
+        shared.setMaxPatients(3);
+
+        when(timeSlotRepository.findBookableSlots(anyCollection(), any(), any())).thenReturn(List.of(shared));
+        when(appointmentRepository.countBookedSlots(anyCollection(), any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[] { doctorId, monday, LocalTime.of(9, 0), 1L }));
+        when(slotHoldRepository.countActiveHolds(anyCollection(), any(), any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[] { doctorId, monday, LocalTime.of(9, 0), 1L }));
+
+        assertEquals(1, availabilityService.getAvailableSlots(doctorId, monday).size());
+
+        occupancyIndex.markBooked(doctorId, monday, LocalTime.of(9, 0));
+        assertTrue(availabilityService.getAvailableSlots(doctorId, monday).isEmpty());
+    }
+
+    @Test
+    void getAvailability_SecondCall_ShouldBeServedFromIndex() {
+        WorkingSchedule weeklyMonday = WorkingSchedule.builder().id(1).doctor(doctor).dayOfWeek(1).build();
+        when(timeSlotRepository.findBookableSlots(anyCollection(), any(), any()))
+                .thenReturn(List.of(slot(10, weeklyMonday, LocalTime.of(9, 0)),
+                        slot(11, weeklyMonday, LocalTime.of(10, 0))));
+        when(appointmentRepository.countBookedSlots(anyCollection(), any(), any())).thenReturn(List.of());
+
+        assertEquals(2, availabilityService.getAvailableSlots(doctorId, monday).size());
+
+        // Booking outside a transaction is applied to the index immediately
+        occupancyIndex.markBooked(doctorId, monday, LocalTime.of(9, 0));
+        List<TimeSlotResponse> slots = availabilityService.getAvailableSlots(doctorId, monday);
+
+        assertEquals(List.of(LocalTime.of(10, 0)), startTimes(slots));
+        verify(timeSlotRepository, times(1)).findBookableSlots(anyCollection(), any(), any());
+        assertEquals(0.5, occupancyIndex.hitRate());
+
+        occupancyIndex.invalidateDoctor(doctorId);
+        availabilityService.getAvailableSlots(doctorId, monday);
+        verify(timeSlotRepository, times(2)).findBookableSlots(anyCollection(), any(), any());
+    }
+
+    @Test
+    void getAvailability_WithoutSchedules_ShouldSkipAppointmentQuery() {
+        when(timeSlotRepository.findBookableSlots(anyCollection(), any(), any())).thenReturn(List.of());
+
+        List<TimeSlotResponse> slots = availabilityService.getAvailableSlots(doctorId, monday);
+
+        assertTrue(slots.isEmpty());
+        verifyNoInteractions(appointmentRepository, slotHoldRepository);
+    }
+
+    @Test
+    void getAvailability_WithTooLongRange_ShouldThrow() {
+        assertThrows(AppException.class, () -> availabilityService.getAvailability(List.of(doctorId), monday,
+                monday.plusDays(AvailabilityService.MAX_RANGE_DAYS)));
+        assertThrows(AppException.class,
+                () -> availabilityService.getAvailability(List.of(doctorId), monday, monday.minusDays(1)));
+    }
+
+    private TimeSlot slot(int id, WorkingSchedule schedule, LocalTime start) {
+        return TimeSlot.builder().id(id).schedule(schedule).startTime(start).endTime(start.plusMinutes(30)).build();
+    }
+
+    private List<LocalTime> startTimes(List<TimeSlotResponse> slots) {
+        return slots.stream().map(TimeSlotResponse::getStartTime).toList();
+    }
+}
@@ -0,0 +1,112 @@
+package com.clinic.service;
+
+import com.clinic.entity.ChatSession;
+import com.clinic.repository.ChatSessionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachedChatSessionStoreTest {
+
+    @Mock
+    private ChatSessionRepository chatSessionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void flush_ThenReloadInNewStore_ShouldRestoreHistory() {
+        CachedChatSessionStore store = newStore(10);
+        when(chatSessionRepository.findByUserId(userId)).thenReturn(Optional.empty());
+        store.withHistory(userId, history -> history.add(turn("user", "Xin chào")));
+
+        assertEquals(1, store.flush());
+        assertEquals(0, store.flush(), "Unchanged sessions are not written again");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatSession>> saved = ArgumentCaptor.forClass(List.class);
+        verify(chatSessionRepository).saveAll(saved.capture());
+        ChatSession row = saved.getValue().get(0);
+        assertEquals(userId, row.getUserId());
+        assertEquals(1, row.getTurnCount());
+
+        // A restarted node loads the stored session lazily
+        CachedChatSessionStore restarted = newStore(10);
+        when(chatSessionRepository.findByUserId(userId)).thenReturn(Optional.of(row));
+        int size = restarted.withHistory(userId, List::size);
+
+        assertEquals(1, size);
+        assertEquals(1.0, meterRegistry.counter("clinic.chat.sessions.lookups", "source", "store").count());
+    }
+
+    @Test
+    void withHistory_ConcurrentTabs_ShouldNotLoseTurns() throws Exception {
+        CachedChatSessionStore store = newStore(10);
+        when(chatSessionRepository.findByUserId(userId)).thenReturn(Optional.empty());
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            int n = i;
+            futures.add(pool.submit(() -> store.withHistory(userId, history -> {
+                int before = history.size();
+                history.add(turn("user", "m" + n));
+                assertEquals(before + 1, history.size());
+                return null;
+            })));
+        }
+        for (Future<?> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        int size = store.withHistory(userId, List::size);
+        assertEquals(400, size);
+    }
+
+    @Test
+    void withHistory_OverCapacity_ShouldEvictWrittenSessions() {
+        CachedChatSessionStore store = newStore(2);
+        when(chatSessionRepository.findByUserId(any())).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 5; i++) {
+            store.withHistory(UUID.randomUUID(), history -> history.add(turn("user", "hi")));
+            store.flush();
+        }
+
+        assertTrue(meterRegistry.get("clinic.chat.sessions.active").gauge().value() <= 2);
+        assertTrue(meterRegistry.counter("clinic.chat.sessions.evictions", "reason", "size").count() >= 3);
+    }
+
+    private CachedChatSessionStore newStore(int maxSessions) {
+        meterRegistry = new SimpleMeterRegistry();
+        return new CachedChatSessionStore(chatSessionRepository, new ObjectMapper(), transactionManager,
+                meterRegistry, maxSessions, 30, 5, 30);
+    }
+
+    private static Map<String, Object> turn(String role, String text) {
+        return Map.of("role", role, "parts", List.of(Map.of("text", text)));
+    }
+}
@@ -0,0 +1,86 @@
+package com.clinic.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatAnswerCacheTest {
+
+    private static final String HOURS = "Phòng khám mở cửa Thứ 2 - Thứ 7 (7:30 - 20:30), Chủ nhật (8:00 - 17:00).";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatToolCache toolCache = new ChatToolCache(new ObjectMapper(), meterRegistry, 100,
+            60, 60, 60, 60, 60, 60);
+    private final ChatAnswerCache cache = new ChatAnswerCache(toolCache, meterRegistry, true, 0.85, 2, 60, 100);
+
+    @Test
+    void terms_ShouldFoldDiacriticsAndDropStopWords() {
+        assertEquals(List.of("dia", "chi", "phong", "kham"), ChatAnswerCache.terms("Cho em hỏi địa chỉ phòng khám ạ?"));
+        assertEquals(ChatAnswerCache.terms("ĐỊA CHỈ PHÒNG KHÁM"), ChatAnswerCache.terms("dia chi phong kham!!"));
+    }
+
+    @Test
+    void lookup_ShouldMatchParaphrasesButNotDifferentQuestions() {
+        cache.store("Phòng khám mở cửa mấy giờ?", HOURS, Set.of());
+        cache.store("Bác sĩ khoa Tim mạch là ai?", "Bác sĩ An.", Set.of(ChatToolCache.SEARCH_DOCTORS));
+        cache.store("Địa chỉ phòng khám ở đâu?", "123 Đường Láng.", Set.of());
+
+        assertEquals(HOURS, cache.lookup("cho mình hỏi phong kham mo cua may gio vay"));
+        assertEquals(HOURS, cache.lookup("Phòng khám mở cửa mấy giờ nhỉ"));
+        assertNull(cache.lookup("Bác sĩ khoa Nhi là ai?"));
+        assertNull(cache.lookup("Giá khám tim mạch bao nhiêu?"));
+        // Too short to be matched safely
+        assertNull(cache.lookup("ở đâu?"));
+
+        assertEquals(2.0, meterRegistry.counter("clinic.chat.answers.lookups", "result", "hit").count());
+        assertEquals(2.0, meterRegistry.counter("clinic.chat.answers.lookups", "result", "miss").count());
+        assertEquals(0.5, meterRegistry.get("clinic.chat.answers.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void store_ShouldSkipAnswersBuiltFromPersonalOrTimeSensitiveFunctions() {
+        cache.store("Lịch hẹn sắp tới của tôi", "Bạn có lịch hẹn lúc 9:00.", Set.of(ChatToolCache.MY_APPOINTMENTS));
+        cache.store("Lịch làm việc bác sĩ An hôm nay", "Còn trống 14:00.", Set.of(ChatToolCache.DOCTOR_SCHEDULE));
+
+        assertNull(cache.lookup("Lịch hẹn sắp tới của tôi"));
+        assertNull(cache.lookup("Lịch làm việc bác sĩ An hôm nay"));
+    }
+
+    @Test
+    void store_ShouldSkipQuestionsCarryingPersonalDetails() {
+        String answer = "Chào anh Nam, với triệu chứng đau ngực anh nên khám khoa Tim mạch.";
+        cache.store("Tôi tên Nam, tôi bị đau ngực thì khám khoa nào?", answer, Set.of());
+        cache.store("Số điện thoại của tôi là 0912345678, đặt lịch giúp", "Đã ghi nhận 0912345678.", Set.of());
+        cache.store("Email nam@clinic.vn đổi lịch được không", "Được, anh Nam.", Set.of());
+        cache.store("Con tôi bị sốt cao nên khám ở đâu", "Bé nên khám khoa Nhi.", Set.of());
+
+        assertEquals(0.0, meterRegistry.get("clinic.chat.answers.entries").gauge().value());
+        assertTrue(ChatAnswerCache.isPersonal("Tên em là Lan"));
+        assertTrue(ChatAnswerCache.isPersonal("Mình là bệnh nhân cũ"));
+        assertFalse(ChatAnswerCache.isPersonal("Đau ngực thì khám khoa nào?"));
+        assertFalse(ChatAnswerCache.isPersonal("Phòng khám mở cửa mấy giờ?"));
+    }
+
+    @Test
+    void lookup_ShouldExpireAfterTtlAndDropAnswersOfInvalidatedFunctions() {
+        AtomicLong now = new AtomicLong();
+        cache.clock = now::get;
+        cache.store("Phòng khám mở cửa mấy giờ?", HOURS, Set.of());
+        cache.store("Có những chuyên khoa nào?", "Tim mạch, Nhi khoa.", Set.of(ChatToolCache.LIST_SPECIALTIES));
+
+        // Outside a transaction the tool cache notifies listeners right away
+        toolCache.invalidate(ChatToolCache.LIST_SPECIALTIES);
+        assertNull(cache.lookup("Có những chuyên khoa nào?"));
+        assertEquals(HOURS, cache.lookup("Phòng khám mở cửa mấy giờ?"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        assertNull(cache.lookup("Phòng khám mở cửa mấy giờ?"));
+    }
+}
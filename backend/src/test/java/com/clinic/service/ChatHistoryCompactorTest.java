@@ -0,0 +1,96 @@
+package com.clinic.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatHistoryCompactorTest {
+
+    private final ChatHistoryCompactor compactor = new ChatHistoryCompactor(200, 50);
+
+    @Test
+    void compact_ShouldStartWithUserMessage() {
+        List<Map<String, Object>> history = new ArrayList<>();
+        history.add(Map.of("role", "model", "parts", List.of(Map.of("text", "Bad start"))));
+        history.add(text("user", "U0"));
+        history.add(text("model", "M0"));
+
+        compactor.compact(history);
+
+        assertEquals("user", history.get(0).get("role"), "First message must be user");
+        assertEquals(2, history.size());
+    }
+
+    @Test
+    void compact_ShouldDropOldestExchangesUntilWithinBudgetButKeepTheLatest() {
+        List<Map<String, Object>> history = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            history.add(text("user", "Câu hỏi số " + i + " " + "x".repeat(80)));
+            history.add(text("model", "Trả lời số " + i + " " + "y".repeat(80)));
+        }
+
+        compactor.compact(history);
+
+        assertTrue(history.size() < 20);
+        assertEquals(0, history.size() % 2, "Exchanges are dropped whole");
+        assertEquals("user", history.get(0).get("role"));
+        assertTrue(((String) text(history.get(history.size() - 1))).startsWith("Trả lời số 9"));
+        assertTrue(ChatHistoryCompactor.estimateTokens(history) <= 200);
+
+        List<Map<String, Object>> single = new ArrayList<>(List.of(
+                text("user", "z".repeat(2000)), text("model", "ok")));
+        compactor.compact(single);
+        assertEquals(2, single.size(), "The latest exchange is kept even when over budget");
+    }
+
+    @Test
+    void compact_ShouldSummarizeLargeFunctionResponses() {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Map<String, Object>> doctors = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            doctors.add(Map.of("fullName", "Bác sĩ " + i, "bio", "b".repeat(40)));
+        }
+        List<Map<String, Object>> history = new ArrayList<>();
+        history.add(text("user", "Tìm bác sĩ"));
+        history.add(Map.of("role", "model", "parts", List.of(Map.of("functionCall", Map.of("name", "searchDoctors")))));
+        history.add(functionTurn("searchDoctors", mapper.valueToTree(doctors)));
+        history.add(functionTurn("getClinicInfo", Map.of("address", "a".repeat(400))));
+        history.add(text("model", "Có 30 bác sĩ."));
+
+        new ChatHistoryCompactor(10_000, 50).compact(history);
+
+        Map<?, ?> list = result(history.get(2));
+        assertEquals(30, list.get("total"));
+        assertEquals(true, list.get("truncated"));
+        assertFalse(((List<?>) list.get("items")).isEmpty());
+        assertTrue(((List<?>) list.get("items")).size() < 30);
+        assertEquals(ChatHistoryCompactor.OMITTED_NOTE, result(history.get(3)).get("note"));
+
+        // Already summarized results are left alone
+        Map<String, Object> summarized = history.get(2);
+        new ChatHistoryCompactor(10_000, 50).compact(history);
+        assertSame(summarized, history.get(2));
+    }
+
+    private static Map<String, Object> text(String role, String text) {
+        return Map.of("role", role, "parts", List.of(Map.of("text", text)));
+    }
+
+    private static Object text(Map<String, Object> turn) {
+        return ((Map<?, ?>) ((List<?>) turn.get("parts")).get(0)).get("text");
+    }
+
+    private static Map<String, Object> functionTurn(String name, Object result) {
+        return Map.of("role", "function", "parts", List.of(Map.of(
+                "functionResponse", Map.of("name", name, "response", Map.of("result", result)))));
+    }
+
+    private static Map<?, ?> result(Map<String, Object> turn) {
+        Map<?, ?> part = (Map<?, ?>) ((List<?>) turn.get("parts")).get(0);
+        Map<?, ?> response = (Map<?, ?>) ((Map<?, ?>) part.get("functionResponse")).get("response");
+        return (Map<?, ?>) response.get("result");
+    }
+}
@@ -6,12 +6,26 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.clinic.dto.request.ChatRequest;
+import com.clinic.dto.response.ChatResponse;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
 import com.clinic.util.SecurityUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.clinic.repository.*;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
 
+import java.time.LocalDate;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class ChatServiceTest {
 
@@ -22,6 +36,7 @@ class ChatServiceTest {
     @Mock private ChatFunctionService chatFunctionService;
     @Mock private SecurityUtils securityUtils;
     @Mock private ObjectMapper objectMapper;
+    @Mock private GeminiGuard geminiGuard;
 
     @BeforeEach
     void setUp() {
@@ -57,23 +72,187 @@ class ChatServiceTest {
     }
 
     @Test
-    void testTruncateHistory() throws Exception {
-        java.lang.reflect.Method truncateMethod = ChatService.class.getDeclaredMethod("truncateHistory", List.class);
-        truncateMethod.setAccessible(true);
-
-        List<Map<String, Object>> history = new ArrayList<>();
-        // Add 5 turns (10 messages)
-        for (int i = 0; i < 5; i++) {
-            history.add(Map.of("role", "user", "parts", List.of(Map.of("text", "U" + i))));
-            history.add(Map.of("role", "model", "parts", List.of(Map.of("text", "M" + i))));
-        }
-
-        // Set MAX_HISTORY_SIZE is private 20, let's just test the logic with a large one manually if needed
-        // But the first turn must be "user" check is easy
-        history.add(0, Map.of("role", "model", "parts", List.of(Map.of("text", "Bad start"))));
-        
-        truncateMethod.invoke(chatService, history);
-        
-        assertEquals("user", history.get(0).get("role"), "First message must be user");
+    void streamChat_ShouldForwardTokensAndRunFunctionCalls() {
+        UUID userId = UUID.randomUUID();
+        ObjectMapper mapper = new ObjectMapper();
+        List<Map<String, Object>> stored = new ArrayList<>();
+        ChatSessionStore store = id -> new ChatSessionStore.Lease() {
+            @Override
+            public List<Map<String, Object>> history() {
+                return stored;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ChatService service = new ChatService(geminiService, chatFunctionService, securityUtils, mapper, store,
+                geminiGuard, toolCache(mapper), new ChatHistoryCompactor(4000, 600), answerCache());
+
+        when(securityUtils.getCurrentUserId()).thenReturn(Optional.of(userId));
+        when(chatFunctionService.listSpecialties()).thenReturn(List.of(Map.<String, Object>of("name", "Tim mạch")));
+        when(geminiService.streamContent(any(), anyList()))
+                .thenReturn(Flux.just(
+                        mapper.valueToTree(Map.of("functionCall", Map.of("name", "listSpecialties")))))
+                .thenReturn(Flux.just(
+                        mapper.valueToTree(Map.of("text", "Phòng khám có ")),
+                        mapper.valueToTree(Map.of("text", "khoa Tim mạch."))));
+
+        ChatRequest request = new ChatRequest();
+        request.setMessage("Có những chuyên khoa nào?");
+        List<ServerSentEvent<Object>> events = service.streamChat(request)
+                .collectList().block();
+
+        assertEquals(List.of("function", "token", "token", "done"),
+                events.stream().map(ServerSentEvent::event).toList());
+        assertEquals("Phòng khám có khoa Tim mạch.",
+                ((ChatResponse) events.get(3).data()).getMessage());
+        // user, model(functionCall), function, model(text)
+        assertEquals(List.of("user", "model", "function", "model"),
+                stored.stream().map(turn -> turn.get("role")).toList());
+    }
+
+    @Test
+    void streamChat_WhenGeminiFails_ShouldEmitErrorAndDropTurn() {
+        UUID userId = UUID.randomUUID();
+        List<Map<String, Object>> stored = new ArrayList<>();
+        stored.add(Map.of("role", "user", "parts", List.of(Map.of("text", "Hi"))));
+        stored.add(Map.of("role", "model", "parts", List.of(Map.of("text", "Hello"))));
+        ChatSessionStore store = id -> new ChatSessionStore.Lease() {
+            @Override
+            public List<Map<String, Object>> history() {
+                return stored;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ChatService service = new ChatService(geminiService, chatFunctionService, securityUtils,
+                new ObjectMapper(), store, geminiGuard, toolCache(new ObjectMapper()),
+                new ChatHistoryCompactor(4000, 600), answerCache());
+
+        when(securityUtils.getCurrentUserId()).thenReturn(Optional.of(userId));
+        when(geminiService.streamContent(any(), anyList()))
+                .thenReturn(Flux.error(new RuntimeException("AI phản hồi quá lâu.")));
+
+        ChatRequest request = new ChatRequest();
+        request.setMessage("Xin chào");
+        List<ServerSentEvent<Object>> events = service.streamChat(request)
+                .collectList().block();
+
+        assertEquals(1, events.size());
+        assertEquals("error", events.get(0).event());
+        assertEquals(2, stored.size(), "Failed turn must not stay in the history");
+    }
+
+    @Test
+    void streamChat_WhenRateLimited_ShouldEmitErrorWithoutTakingSession() {
+        UUID userId = UUID.randomUUID();
+        ChatSessionStore store = id -> {
+            throw new AssertionError("Session must not be leased");
+        };
+        ChatService service = new ChatService(geminiService, chatFunctionService, securityUtils,
+                new ObjectMapper(), store, geminiGuard, toolCache(new ObjectMapper()),
+                new ChatHistoryCompactor(4000, 600), answerCache());
+
+        when(securityUtils.getCurrentUserId()).thenReturn(Optional.of(userId));
+        doThrow(new AppException(ErrorCode.CHAT_RATE_LIMITED)).when(geminiGuard).checkRate(userId);
+
+        ChatRequest request = new ChatRequest();
+        request.setMessage("Xin chào");
+        List<ServerSentEvent<Object>> events = service.streamChat(request)
+                .collectList().block();
+
+        assertEquals(1, events.size());
+        assertEquals("error", events.get(0).event());
+    }
+
+    @Test
+    void streamChat_ShouldAnswerSimilarQuestionFromAnswerCache() {
+        ObjectMapper mapper = new ObjectMapper();
+        ChatService service = new ChatService(geminiService, chatFunctionService, securityUtils, mapper,
+                id -> new ChatSessionStore.Lease() {
+                    private final List<Map<String, Object>> history = new ArrayList<>();
+
+                    @Override
+                    public List<Map<String, Object>> history() {
+                        return history;
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                }, geminiGuard, toolCache(mapper), new ChatHistoryCompactor(4000, 600), answerCache());
+
+        when(securityUtils.getCurrentUserId()).thenReturn(Optional.of(UUID.randomUUID()));
+        when(geminiService.streamContent(any(), anyList()))
+                .thenReturn(Flux.just(mapper.valueToTree(Map.of("text", "Phòng khám mở cửa từ 7:30 đến 20:30."))));
+
+        ChatRequest first = new ChatRequest();
+        first.setMessage("Phòng khám mở cửa mấy giờ?");
+        service.streamChat(first).collectList().block();
+
+        ChatRequest second = new ChatRequest();
+        second.setMessage("phong kham mo cua may gio vay a");
+        List<ServerSentEvent<Object>> events = service.streamChat(second).collectList().block();
+
+        assertEquals(List.of("token", "done"), events.stream().map(ServerSentEvent::event).toList());
+        assertEquals("Phòng khám mở cửa từ 7:30 đến 20:30.", ((ChatResponse) events.get(1).data()).getMessage());
+        verify(geminiService, times(1)).streamContent(any(), anyList());
+    }
+
+    @Test
+    void streamChat_FollowUpQuestion_ShouldNotBeAnsweredFromAnswerCache() {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Map<String, Object>> conversation = new ArrayList<>();
+        ChatService service = new ChatService(geminiService, chatFunctionService, securityUtils, mapper,
+                id -> new ChatSessionStore.Lease() {
+                    @Override
+                    public List<Map<String, Object>> history() {
+                        return conversation;
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                }, geminiGuard, toolCache(mapper), new ChatHistoryCompactor(4000, 600), answerCache());
+
+        when(securityUtils.getCurrentUserId()).thenReturn(Optional.of(UUID.randomUUID()));
+        when(geminiService.streamContent(any(), anyList()))
+                .thenReturn(Flux.just(mapper.valueToTree(Map.of("text", "Phòng khám mở cửa từ 7:30 đến 20:30."))))
+                .thenReturn(Flux.just(mapper.valueToTree(Map.of("text", "Chủ nhật mở cửa từ 8:00 đến 17:00."))));
+
+        ChatRequest first = new ChatRequest();
+        first.setMessage("Phòng khám mở cửa mấy giờ?");
+        service.streamChat(first).collectList().block();
+
+        // Same words, but in a conversation the answer may depend on the earlier turns
+        ChatRequest followUp = new ChatRequest();
+        followUp.setMessage("Phòng khám mở cửa mấy giờ vậy?");
+        List<ServerSentEvent<Object>> events = service.streamChat(followUp).collectList().block();
+
+        assertEquals("Chủ nhật mở cửa từ 8:00 đến 17:00.", ((ChatResponse) events.get(events.size() - 1).data())
+                .getMessage());
+        verify(geminiService, times(2)).streamContent(any(), anyList());
+    }
+
+    @Test
+    void normalizeArgs_ShouldMapEquivalentCallsToTheSameArguments() {
+        assertEquals(ChatService.normalizeArgs("searchMedicines", Map.of("name", " Para  Cetamol ")),
+                ChatService.normalizeArgs("searchMedicines", Map.of("name", "para cetamol")));
+        // Specialty lookup is an exact match, so its case is kept
+        assertEquals(Map.of("specialtyName", "Tim mạch"),
+                ChatService.normalizeArgs("searchDoctors", Map.of("specialtyName", "Tim mạch ", "doctorName", "")));
+        assertEquals(LocalDate.now().toString(),
+                ChatService.normalizeArgs("getDoctorSchedule", Map.of("doctorId", "ABC")).get("date"));
+    }
+
+    private static ChatToolCache toolCache(ObjectMapper mapper) {
+        return new ChatToolCache(mapper, new SimpleMeterRegistry(), 100, 60, 60, 60, 60, 60, 60);
+    }
+
+    private static ChatAnswerCache answerCache() {
+        return new ChatAnswerCache(toolCache(new ObjectMapper()), new SimpleMeterRegistry(), true, 0.85, 2, 60, 100);
     }
 }
@@ -0,0 +1,87 @@
+package com.clinic.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatToolCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatToolCache cache = new ChatToolCache(new ObjectMapper(), meterRegistry, 100,
+            60, 60, 60, 60, 60, 0);
+
+    @Test
+    void get_ShouldServeRepeatedCallsFromPreSerializedEntry() {
+        AtomicInteger loads = new AtomicInteger();
+        Map<String, Object> args = Map.of("name", "paracetamol");
+
+        ChatToolCache.Result first = cache.get(ChatToolCache.SEARCH_MEDICINES, null, args, () -> {
+            loads.incrementAndGet();
+            return List.of(Map.of("name", "Paracetamol"));
+        });
+        ChatToolCache.Result second = cache.get(ChatToolCache.SEARCH_MEDICINES, null, Map.of("name", "paracetamol"),
+                () -> {
+                    loads.incrementAndGet();
+                    return List.of();
+                });
+
+        assertEquals(1, loads.get());
+        assertSame(first, second);
+        assertEquals("[{\"name\":\"Paracetamol\"}]", second.json());
+        assertEquals("Paracetamol", second.value().get(0).get("name").asText());
+        assertEquals(1.0, meterRegistry.counter("clinic.chat.tools.lookups",
+                "function", ChatToolCache.SEARCH_MEDICINES, "result", "hit").count());
+    }
+
+    @Test
+    void get_ShouldKeepUserScopedResultsApartAndDropOnlyTheInvalidatedUser() {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(ChatToolCache.MY_APPOINTMENTS, alice, Map.of(), () -> List.of("alice-" + loads.incrementAndGet()));
+        ChatToolCache.Result bobs = cache.get(ChatToolCache.MY_APPOINTMENTS, bob, Map.of(),
+                () -> List.of("bob-" + loads.incrementAndGet()));
+        assertEquals("[\"bob-2\"]", bobs.json());
+
+        cache.invalidate(ChatToolCache.MY_APPOINTMENTS, alice);
+
+        ChatToolCache.Result alices = cache.get(ChatToolCache.MY_APPOINTMENTS, alice, Map.of(),
+                () -> List.of("alice-" + loads.incrementAndGet()));
+        assertEquals("[\"alice-3\"]", alices.json());
+        assertSame(bobs, cache.get(ChatToolCache.MY_APPOINTMENTS, bob, Map.of(), List::of));
+    }
+
+    @Test
+    void get_ShouldNotStoreResultLoadedAcrossAnInvalidation() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(ChatToolCache.LIST_SPECIALTIES, null, Map.of(), () -> {
+            loads.incrementAndGet();
+            // A write commits while this load is running
+            cache.invalidate(ChatToolCache.LIST_SPECIALTIES);
+            return List.of("stale");
+        });
+        cache.get(ChatToolCache.LIST_SPECIALTIES, null, Map.of(), () -> List.of("fresh-" + loads.incrementAndGet()));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_ShouldNotCacheFunctionsWithoutTtl() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(ChatToolCache.CLINIC_INFO, null, Map.of(), () -> Map.of("n", loads.incrementAndGet()));
+        cache.get(ChatToolCache.CLINIC_INFO, null, Map.of(), () -> Map.of("n", loads.incrementAndGet()));
+        cache.get("unknownFunction", null, Map.of(), () -> Map.of("n", loads.incrementAndGet()));
+
+        assertEquals(3, loads.get());
+    }
+}
@@ -0,0 +1,53 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.DashboardStatsResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DashboardStatsCacheTest {
+
+    private final DashboardStatsCache cache = new DashboardStatsCache(new SimpleMeterRegistry(), 60);
+
+    @Test
+    void get_ConcurrentPollers_ShouldLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<DashboardStatsResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return cache.get(() -> {
+                    loads.incrementAndGet();
+                    return DashboardStatsResponse.builder().totalUsers(42).build();
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<DashboardStatsResponse> f : futures) {
+            assertEquals(42, f.get(10, TimeUnit.SECONDS).getTotalUsers());
+        }
+        pool.shutdown();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidate_ShouldReloadOnNextGet() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(() -> DashboardStatsResponse.builder().totalUsers(loads.incrementAndGet()).build());
+
+        cache.invalidate();
+        DashboardStatsResponse stats = cache.get(
+                () -> DashboardStatsResponse.builder().totalUsers(loads.incrementAndGet()).build());
+
+        assertEquals(2, stats.getTotalUsers());
+    }
+}
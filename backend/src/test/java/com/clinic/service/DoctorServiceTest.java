@@ -1,5 +1,6 @@
 package com.clinic.service;
 
+import com.clinic.dto.request.DoctorRequest;
 import com.clinic.dto.response.DoctorResponse;
 import com.clinic.entity.Doctor;
 import com.clinic.entity.Specialty;
@@ -7,6 +8,8 @@ import com.clinic.entity.User;
 import com.clinic.entity.enums.RoleName;
 import com.clinic.repository.DoctorRepository;
 import com.clinic.repository.SpecialtyRepository;
+import com.clinic.repository.UserRepository;
+import com.clinic.security.IdentityCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,6 +23,7 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +38,15 @@ class DoctorServiceTest {
     @Mock
     private com.clinic.repository.ReviewRepository reviewRepository;
 
+    @Mock
+    private ChatToolCache chatToolCache;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private IdentityCache identityCache;
+
     @InjectMocks
     private DoctorService doctorService;
 
@@ -62,6 +75,20 @@ class DoctorServiceTest {
         doctor.setSpecialty(specialty);
     }
 
+    @Test
+    void createDoctor_ShouldEvictCachedIdentityOfTheUser() {
+        User user = doctor.getUser();
+        DoctorRequest request = new DoctorRequest();
+        request.setUserId(user.getId());
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(doctorRepository.save(any(Doctor.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        doctorService.createDoctor(request);
+
+        verify(identityCache).evict(user.getId());
+        verify(chatToolCache).invalidate(ChatToolCache.SEARCH_DOCTORS);
+    }
+
     @Test
     void updateDoctorSpecialty_ShouldUpdateSuccessfully() {
         // Arrange
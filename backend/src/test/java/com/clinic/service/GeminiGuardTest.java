@@ -0,0 +1,155 @@
+package com.clinic.service;
+
+import com.clinic.config.GeminiConfig;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Exceptions;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiGuardTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private HttpServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void checkRate_ShouldRejectBurstAboveUserLimitUntilRefilled() {
+        GeminiGuard guard = guard(4, 0, 2, 10, 5);
+        UUID userId = UUID.randomUUID();
+
+        guard.checkRate(userId);
+        guard.checkRate(userId);
+        AppException ex = assertThrows(AppException.class, () -> guard.checkRate(userId));
+        assertEquals(ErrorCode.CHAT_RATE_LIMITED, ex.getErrorCode());
+        // Another user has a bucket of their own
+        guard.checkRate(UUID.randomUUID());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6)); // 12/min → one token every 5s
+        guard.checkRate(userId);
+        assertEquals(1.0, meterRegistry.counter("clinic.gemini.rejections", "reason", "user_rate").count());
+    }
+
+    @Test
+    void call_ShouldOpenCircuitAndProbeAfterOpenDuration() {
+        GeminiGuard guard = guard(4, 0, 5, 4, 2);
+        AtomicInteger upstream = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(GeminiGuard.State.CLOSED, guard.state());
+            assertThrows(RuntimeException.class, () -> guard.call(() -> {
+                upstream.incrementAndGet();
+                // What Mono.block() throws on timeout
+                throw Exceptions.propagate(new TimeoutException());
+            }));
+        }
+        assertEquals(GeminiGuard.State.OPEN, guard.state());
+
+        AppException ex = assertThrows(AppException.class, () -> guard.call(upstream::incrementAndGet));
+        assertEquals(ErrorCode.AI_UNAVAILABLE, ex.getErrorCode());
+        assertEquals(4, upstream.get(), "Open circuit must not reach upstream");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        assertEquals(GeminiGuard.State.HALF_OPEN, guard.state());
+        guard.call(upstream::incrementAndGet);
+        assertEquals(GeminiGuard.State.HALF_OPEN, guard.state());
+        guard.call(upstream::incrementAndGet);
+        assertEquals(GeminiGuard.State.CLOSED, guard.state());
+    }
+
+    @Test
+    void call_ShouldRejectWhenBulkheadAndQueueAreFull() throws Exception {
+        GeminiGuard guard = guard(1, 0, 5, 10, 2);
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> guard.call(() -> {
+            inside.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        holder.start();
+        assertTrue(inside.await(5, TimeUnit.SECONDS));
+
+        AppException ex = assertThrows(AppException.class, () -> guard.call(() -> "x"));
+        assertEquals(ErrorCode.AI_BUSY, ex.getErrorCode());
+        assertEquals(1.0, meterRegistry.counter("clinic.gemini.rejections", "reason", "bulkhead").count());
+
+        release.countDown();
+        holder.join();
+        assertEquals("x", guard.call(() -> "x"));
+        assertEquals(0, guard.queued());
+    }
+
+    @Test
+    void geminiService_ShouldFailFastOnceStubServerKeepsFailing() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            hits.incrementAndGet();
+            byte[] body = "{\"error\":{\"code\":503}}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(503, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        GeminiConfig config = new GeminiConfig();
+        ReflectionTestUtils.setField(config, "apiKey", "test");
+        ReflectionTestUtils.setField(config, "model", "stub");
+        ReflectionTestUtils.setField(config, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        ReflectionTestUtils.setField(config, "timeoutSeconds", 5);
+        ReflectionTestUtils.setField(config, "maxTokens", 64);
+        GeminiGuard guard = guard(2, 0, 5, 4, 1);
+        GeminiService geminiService = new GeminiService(config, WebClient.create(), new ObjectMapper(), guard);
+
+        for (int i = 0; i < 4; i++) {
+            RuntimeException ex = assertThrows(RuntimeException.class, () -> geminiService.chat("Xin chào"));
+            assertFalse(ex instanceof AppException);
+        }
+        assertEquals(4, hits.get());
+
+        AppException ex = assertThrows(AppException.class, () -> geminiService.chat("Xin chào"));
+        assertEquals(ErrorCode.AI_UNAVAILABLE, ex.getErrorCode());
+        assertThrows(AppException.class, () -> geminiService.streamContent(geminiService.compile(null, null), List.of())
+                .blockLast());
+        assertEquals(4, hits.get(), "Open circuit must not reach the stub");
+        assertEquals(4, meterRegistry.timer("clinic.gemini.calls", "outcome", "failure").count());
+    }
+
+    private GeminiGuard guard(int maxConcurrent, int maxQueued, int userBurst, int minimumCalls, int probes) {
+        GeminiGuard guard = new GeminiGuard(meterRegistry, maxConcurrent, maxQueued, 50, userBurst, 12, 100, 100,
+                50, minimumCalls, minimumCalls, 30, probes, 1000);
+        guard.clock = now::get;
+        return guard;
+    }
+}
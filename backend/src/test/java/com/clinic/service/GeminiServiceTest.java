@@ -0,0 +1,105 @@
+package com.clinic.service;
+
+import com.clinic.config.GeminiConfig;
+import com.clinic.support.GeminiStubServer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiServiceTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private GeminiStubServer stub;
+
+    @AfterEach
+    void tearDown() {
+        if (stub != null) {
+            stub.close();
+        }
+    }
+
+    @Test
+    void requestTemplate_ShouldRenderHistoryAfterPrecompiledPrefix() throws Exception {
+        GeminiConfig config = new GeminiConfig();
+        ReflectionTestUtils.setField(config, "maxTokens", 256);
+        GeminiService geminiService = new GeminiService(config, WebClient.create(), mapper,
+                new GeminiGuard(new SimpleMeterRegistry(), 1, 0, 0, 1, 1, 1, 1, 50, 10, 10, 30, 1, 10));
+        List<Map<String, Object>> functions = List.of(Map.of("name", "listSpecialties",
+                "parameters", Map.of("type", "object")));
+
+        GeminiService.RequestTemplate template = geminiService.compile("Bạn là trợ lý \"ClinicPro\"", functions);
+        JsonNode body = mapper.readTree(template.render(mapper,
+                List.of(Map.of("role", "user", "parts", List.of(Map.of("text", "Xin chào")))),
+                Map.of("role", "model", "parts", List.of(Map.of("text", "Chào bạn")))));
+
+        assertEquals("Bạn là trợ lý \"ClinicPro\"",
+                body.at("/system_instruction/parts/0/text").asText());
+        assertEquals("listSpecialties", body.at("/tools/0/function_declarations/0/name").asText());
+        assertEquals(256, body.at("/generationConfig/maxOutputTokens").asInt());
+        assertEquals(2, body.get("contents").size());
+        assertEquals("Chào bạn", body.at("/contents/1/parts/0/text").asText());
+
+        JsonNode empty = mapper.readTree(geminiService.compile(null, null).render(mapper, null, null));
+        assertTrue(empty.get("contents").isEmpty());
+        assertFalse(empty.has("tools"));
+    }
+
+    @Test
+    void chat_ShouldRunFunctionCallingRoundTripAgainstStubServer() throws Exception {
+        stub = GeminiStubServer.start();
+        GeminiService geminiService = geminiService(stub.baseUrl());
+        GeminiService.RequestTemplate template = geminiService.compile("Trợ lý ClinicPro",
+                List.of(Map.of("name", "searchMedicines", "parameters", Map.of("type", "object"))));
+        List<Map<String, Object>> history = new ArrayList<>();
+
+        String first = geminiService.chat("Thuốc paracetamol giá bao nhiêu?", template, history);
+        assertTrue(geminiService.isFunctionCall(first));
+        assertEquals("searchMedicines", geminiService.parseFunctionCall(first).get("name"));
+
+        history.add(Map.of("role", "user", "parts", List.of(Map.of("text", "Thuốc paracetamol giá bao nhiêu?"))));
+        history.add(Map.of("role", "model", "parts", List.of(mapper.readTree(first))));
+        String answer = geminiService.sendFunctionResult("searchMedicines", "[{\"name\":\"Paracetamol\"}]",
+                template, history);
+        assertEquals("Kết quả từ searchMedicines: 1 mục.", answer);
+
+        List<JsonNode> parts = geminiService.streamContent(template,
+                List.of(Map.of("role", "user", "parts", List.of(Map.of("text", "Xin chào"))))).collectList().block();
+        assertTrue(parts.size() > 1, "Text answers are streamed in chunks");
+        assertTrue(parts.stream().map(part -> part.get("text").asText()).collect(Collectors.joining())
+                .contains("\"Xin chào\""));
+        assertEquals(3, stub.requests());
+    }
+
+    @Test
+    void chat_ShouldSurfaceErrorsInjectedByStubServer() throws Exception {
+        stub = GeminiStubServer.start().failureRate(1.0, 429).latency(Duration.ofMillis(20), Duration.ZERO);
+        GeminiService geminiService = geminiService(stub.baseUrl());
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> geminiService.chat("Xin chào"));
+        assertEquals("Đã vượt quá giới hạn gọi API. Vui lòng thử lại sau.", ex.getMessage());
+        assertEquals(1, stub.injectedFailures());
+    }
+
+    private GeminiService geminiService(String baseUrl) {
+        GeminiConfig config = new GeminiConfig();
+        ReflectionTestUtils.setField(config, "apiKey", "test-key");
+        ReflectionTestUtils.setField(config, "model", "gemini-test");
+        ReflectionTestUtils.setField(config, "baseUrl", baseUrl);
+        ReflectionTestUtils.setField(config, "timeoutSeconds", 5);
+        ReflectionTestUtils.setField(config, "maxTokens", 256);
+        return new GeminiService(config, config.geminiWebClient(), mapper,
+                new GeminiGuard(new SimpleMeterRegistry(), 4, 4, 1000, 10, 600, 10, 100, 50, 10, 10, 30, 1, 10));
+    }
+}
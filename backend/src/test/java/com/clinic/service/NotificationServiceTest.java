@@ -0,0 +1,102 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.CursorPageResponse;
+import com.clinic.dto.response.NotificationResponse;
+import com.clinic.entity.enums.NotificationType;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.clinic.repository.NotificationRepository;
+import com.clinic.util.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class NotificationServiceTest {
+
+    @Mock private NotificationRepository notificationRepository;
+    @Mock private SimpMessagingTemplate messagingTemplate;
+    @Mock private NotificationWriter notificationWriter;
+    @Mock private UnreadNotificationCounter unreadCounter;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private NotificationService notificationService;
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        notificationService = new NotificationService(notificationRepository, messagingTemplate, notificationWriter,
+                unreadCounter, transactionManager);
+    }
+
+    @Test
+    void getNotificationsPage_ShouldReturnCursorOfLastRowAndSeekPastIt() {
+        LocalDateTime now = LocalDateTime.of(2026, 10, 17, 9, 30, 15, 123456000);
+        NotificationResponse first = row(now);
+        NotificationResponse second = row(now.minusMinutes(5));
+        NotificationResponse extra = row(now.minusMinutes(10));
+        when(notificationRepository.findListingPage(userId, PageRequest.of(0, 3)))
+                .thenReturn(List.of(first, second, extra));
+
+        CursorPageResponse<NotificationResponse> page = notificationService.getNotificationsPage(userId, null, 2);
+
+        assertEquals(List.of(first, second), page.getItems());
+        assertTrue(page.isHasNext());
+        assertEquals(KeysetCursor.encode(second.getCreatedAt(), second.getId()), page.getNextCursor());
+
+        when(notificationRepository.findListingPageAfter(userId, second.getCreatedAt(), second.getId(),
+                PageRequest.of(0, 3))).thenReturn(List.of(extra));
+
+        CursorPageResponse<NotificationResponse> next = notificationService.getNotificationsPage(userId,
+                page.getNextCursor(), 2);
+
+        assertEquals(List.of(extra), next.getItems());
+        assertFalse(next.isHasNext());
+        assertNull(next.getNextCursor());
+    }
+
+    @Test
+    void getNotificationsPage_WithForeignCursor_ShouldFailWithInvalidCursor() {
+        String cursor = KeysetCursor.encode("yesterday", "not-a-uuid");
+
+        AppException exception = assertThrows(AppException.class,
+                () -> notificationService.getNotificationsPage(userId, cursor, 10));
+
+        assertEquals(ErrorCode.INVALID_CURSOR, exception.getErrorCode());
+    }
+
+    @Test
+    void archiveRead_ShouldMoveBatchesUntilOneComesBackShort() {
+        LocalDateTime before = LocalDateTime.now().minusDays(90);
+        when(notificationRepository.archiveReadBefore(before, 100)).thenReturn(100, 100, 42);
+
+        assertEquals(242, notificationService.archiveRead(before, 100));
+
+        verify(notificationRepository, times(3)).archiveReadBefore(before, 100);
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    private static NotificationResponse row(LocalDateTime createdAt) {
+        return NotificationResponse.builder()
+                .id(UUID.randomUUID())
+                .title("Lịch hẹn đã được xác nhận")
+                .message("Lịch hẹn của bạn đã được bác sĩ xác nhận")
+                .type(NotificationType.APPOINTMENT)
+                .createdAt(createdAt)
+                .build();
+    }
+}
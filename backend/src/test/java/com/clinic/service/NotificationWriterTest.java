@@ -0,0 +1,107 @@
+package com.clinic.service;
+
+import com.clinic.entity.Notification;
+import com.clinic.entity.enums.NotificationType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationWriterTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private SimpMessagingTemplate messagingTemplate;
+    @Mock private UnreadNotificationCounter unreadCounter;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    void drain_ShouldInsertOneCoalescedBatchThenPushAfterCommit() {
+        NotificationWriter writer = writer(10, 0);
+        UUID userId = UUID.randomUUID();
+        UUID appointmentId = UUID.randomUUID();
+        NotificationWriter.Pending reminder = pending(userId, "Nhắc hẹn khám ngày mai", appointmentId);
+
+        writer.enqueue(reminder);
+        writer.enqueue(reminder);
+        writer.enqueue(pending(UUID.randomUUID(), "Lịch hẹn bị hủy", appointmentId));
+
+        assertEquals(2, writer.drain());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Notification>> rows = ArgumentCaptor.forClass(Collection.class);
+        var order = inOrder(transactionManager, jdbcTemplate, messagingTemplate);
+        order.verify(jdbcTemplate).batchUpdate(eq(NotificationWriter.INSERT_SQL), rows.capture(), eq(2), any());
+        order.verify(transactionManager).commit(any());
+        order.verify(messagingTemplate, times(2)).convertAndSendToUser(anyString(), eq("/queue/notifications"),
+                any(Notification.class));
+        assertEquals(2, rows.getValue().size());
+        assertEquals(1.0, meterRegistry.counter("clinic.notifications.coalesced").count());
+        assertEquals(2.0, meterRegistry.summary("clinic.notifications.batch.size").totalAmount());
+        verify(unreadCounter).added(userId, userId + "@clinic.vn", 1);
+    }
+
+    @Test
+    void enqueue_ShouldDropWhenQueueStaysFull() {
+        NotificationWriter writer = writer(1, 0);
+
+        assertTrue(writer.enqueue(pending(UUID.randomUUID(), "A", null)));
+        assertFalse(writer.enqueue(pending(UUID.randomUUID(), "B", null)));
+
+        assertEquals(1.0, meterRegistry.counter("clinic.notifications.dropped", "reason", "queue_full").count());
+        assertEquals(1.0, meterRegistry.get("clinic.notifications.queue.depth").gauge().value());
+    }
+
+    @Test
+    void drain_WhenBatchFails_ShouldWriteRowsOneByOneAndDropOnlyTheBadOne() {
+        NotificationWriter writer = writer(10, 0);
+        UUID deletedUser = UUID.randomUUID();
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any())).thenAnswer(invocation -> {
+            Collection<Notification> rows = invocation.getArgument(1);
+            if (rows.stream().anyMatch(row -> row.getUser().getId().equals(deletedUser))) {
+                throw new DataIntegrityViolationException("fk_notifications_user");
+            }
+            return new int[][] { new int[rows.size()] };
+        });
+
+        writer.enqueue(pending(UUID.randomUUID(), "A", null));
+        writer.enqueue(pending(deletedUser, "B", null));
+        writer.enqueue(pending(UUID.randomUUID(), "C", null));
+
+        assertEquals(2, writer.drain());
+        verify(messagingTemplate, times(2)).convertAndSendToUser(anyString(), anyString(), any(Notification.class));
+        assertEquals(1.0, meterRegistry.counter("clinic.notifications.dropped", "reason", "write_failed").count());
+    }
+
+    private NotificationWriter writer(int capacity, long enqueueTimeoutMs) {
+        return new NotificationWriter(jdbcTemplate, transactionManager, messagingTemplate, unreadCounter,
+                meterRegistry, capacity, 200, 0, enqueueTimeoutMs);
+    }
+
+    private static NotificationWriter.Pending pending(UUID userId, String title, UUID entityId) {
+        return new NotificationWriter.Pending(userId, userId + "@clinic.vn", title, title + " - nội dung",
+                NotificationType.APPOINTMENT, entityId != null ? "APPOINTMENT" : null, entityId);
+    }
+}
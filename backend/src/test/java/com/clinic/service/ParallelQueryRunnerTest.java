@@ -0,0 +1,138 @@
+package com.clinic.service;
+
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ParallelQueryRunnerTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private HikariDataSource dataSource;
+
+    @Mock
+    private HikariPoolMXBean pool;
+
+    private ThreadPoolTaskExecutor executor;
+    private SimpleMeterRegistry meterRegistry;
+    private ParallelQueryRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(8);
+        executor.initialize();
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(dataSource.getHikariPoolMXBean()).thenReturn(pool);
+        runner = new ParallelQueryRunner(executor, transactionManager, dataSource, meterRegistry, 1, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void execute_WithIdleConnections_ShouldRunQueriesConcurrently() {
+        idlePool(10, 0, 0);
+        // Both queries must be in flight together for either to finish
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        ParallelQueryRunner.Batch batch = runner.batch("test");
+        var first = batch.add("first", () -> awaitPeer(bothStarted, threads, 1));
+        var second = batch.add("second", () -> awaitPeer(bothStarted, threads, 2));
+        batch.execute();
+
+        assertEquals(1, first.get());
+        assertEquals(2, second.get());
+        assertEquals(2, threads.size());
+        assertEquals(1, meterRegistry.get("clinic.report.query").tag("query", "first").tag("mode", "parallel")
+                .timer().count());
+        verify(transactionManager, times(2)).getTransaction(argThatIsReadOnlyNew());
+    }
+
+    @Test
+    void execute_WhenPoolUnderPressure_ShouldRunSequentiallyOnCaller() {
+        idlePool(5, 4, 0);
+        Thread caller = Thread.currentThread();
+
+        ParallelQueryRunner.Batch batch = runner.batch("test");
+        var first = batch.add("first", () -> Thread.currentThread() == caller);
+        var second = batch.add("second", () -> Thread.currentThread() == caller);
+        batch.execute();
+
+        assertTrue(first.get());
+        assertTrue(second.get());
+        assertEquals(1, meterRegistry.get("clinic.report.batches").tag("mode", "sequential").counter().count());
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+
+    @Test
+    void execute_WhenQueryExceedsTimeout_ShouldFailWithTimeout() {
+        idlePool(10, 0, 0);
+
+        ParallelQueryRunner.Batch batch = runner.batch("test");
+        batch.add("fast", () -> 1);
+        batch.add("slow", () -> {
+            try {
+                TimeUnit.SECONDS.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 2;
+        });
+
+        AppException ex = assertThrows(AppException.class, batch::execute);
+        assertEquals(ErrorCode.REPORT_QUERY_TIMEOUT, ex.getErrorCode());
+    }
+
+    private void idlePool(int max, int active, int waiting) {
+        when(dataSource.getMaximumPoolSize()).thenReturn(max);
+        when(pool.getActiveConnections()).thenReturn(active);
+        when(pool.getThreadsAwaitingConnection()).thenReturn(waiting);
+    }
+
+    private int awaitPeer(CountDownLatch bothStarted, Set<String> threads, int value) {
+        threads.add(Thread.currentThread().getName());
+        bothStarted.countDown();
+        try {
+            assertTrue(bothStarted.await(2, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+
+    private static TransactionDefinition argThatIsReadOnlyNew() {
+        return org.mockito.ArgumentMatchers.argThat(def -> def.isReadOnly()
+                && def.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+}
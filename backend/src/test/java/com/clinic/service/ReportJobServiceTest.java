@@ -0,0 +1,200 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.ReportJobResponse;
+import com.clinic.entity.ReportJob;
+import com.clinic.entity.enums.ReportJobStatus;
+import com.clinic.entity.enums.ReportJobType;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.clinic.repository.ReportJobRepository;
+import com.clinic.util.SecurityUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReportJobServiceTest {
+
+    @Mock
+    private ReportJobRepository reportJobRepository;
+
+    @Mock
+    private ReportService reportService;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private ThreadPoolTaskExecutor executor;
+
+    @Mock
+    private SecurityUtils securityUtils;
+
+    @TempDir
+    Path storageDir;
+
+    private ReportJobService reportJobService;
+    private final Map<UUID, ReportJob> jobs = new HashMap<>();
+
+    private final LocalDate from = LocalDate.of(2024, 1, 1);
+    private final LocalDate to = LocalDate.of(2024, 12, 31);
+
+    @BeforeEach
+    void setUp() {
+        reportJobService = new ReportJobService(reportJobRepository, reportService, messagingTemplate, executor,
+                securityUtils, storageDir.toString(), 24, 10, 60);
+        lenient().when(reportJobRepository.save(any(ReportJob.class))).thenAnswer(i -> {
+            ReportJob job = i.getArgument(0);
+            if (job.getId() == null) {
+                job.setId(UUID.randomUUID());
+                job.setCreatedAt(LocalDateTime.now());
+            }
+            jobs.put(job.getId(), job);
+            return job;
+        });
+        lenient().when(reportJobRepository.findById(any())).thenAnswer(i -> Optional.ofNullable(jobs.get(i.getArgument(0))));
+    }
+
+    @Test
+    void submit_ShouldRenderArtifactToDiskAndExposeDownload() throws Exception {
+        doAnswer(i -> {
+            i.<OutputStream>getArgument(2).write("xlsx".getBytes());
+            return null;
+        }).when(reportService).exportAppointmentsExcel(eq(from), eq(to), any());
+
+        ReportJobResponse submitted = reportJobService.submit(ReportJobType.APPOINTMENTS_EXCEL, from, to);
+        assertEquals("PENDING", submitted.getStatus());
+        assertFalse(submitted.isDeduplicated());
+
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(task.capture());
+        task.getValue().run();
+
+        ReportJob job = reportJobService.getDownloadableJob(submitted.getId());
+        assertEquals(ReportJobStatus.COMPLETED, job.getStatus());
+        assertEquals("xlsx", Files.readString(Path.of(job.getFilePath())));
+        assertEquals(4L, job.getFileSize());
+        assertNotNull(job.getExpiresAt());
+        assertEquals("/api/reports/jobs/" + job.getId() + "/download",
+                reportJobService.getJob(job.getId()).getDownloadUrl());
+    }
+
+    @Test
+    void submit_WhenSameRequestInFlight_ShouldReturnExistingJob() {
+        ReportJob running = ReportJob.builder().jobType(ReportJobType.SUMMARY_PDF).status(ReportJobStatus.RUNNING)
+                .dateFrom(from).dateTo(to).build();
+        running.setId(UUID.randomUUID());
+        when(reportJobRepository.findReusable(eq(ReportJobType.SUMMARY_PDF), eq(from), eq(to), any(), any()))
+                .thenReturn(List.of(running));
+
+        ReportJobResponse response = reportJobService.submit(ReportJobType.SUMMARY_PDF, from, to);
+
+        assertEquals(running.getId(), response.getId());
+        assertTrue(response.isDeduplicated());
+        verify(reportJobRepository, never()).save(any());
+        verifyNoInteractions(executor);
+    }
+
+    @Test
+    void submit_WhenRenderFails_ShouldMarkJobFailed() throws Exception {
+        doThrow(new IllegalStateException("boom")).when(reportService).exportPaymentsExcel(any(), any(), any());
+
+        ReportJobResponse submitted = reportJobService.submit(ReportJobType.PAYMENTS_EXCEL, from, to);
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(task.capture());
+        task.getValue().run();
+
+        assertEquals("FAILED", reportJobService.getJob(submitted.getId()).getStatus());
+        AppException ex = assertThrows(AppException.class,
+                () -> reportJobService.getDownloadableJob(submitted.getId()));
+        assertEquals(ErrorCode.REPORT_JOB_NOT_READY, ex.getErrorCode());
+        try (var files = Files.list(storageDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void submit_WhenQueueFull_ShouldReject() {
+        doThrow(new TaskRejectedException("full")).when(executor).execute(any(Runnable.class));
+
+        AppException ex = assertThrows(AppException.class,
+                () -> reportJobService.submit(ReportJobType.SUMMARY_EXCEL, from, to));
+
+        assertEquals(ErrorCode.REPORT_JOB_REJECTED, ex.getErrorCode());
+        assertEquals(ReportJobStatus.FAILED, jobs.values().iterator().next().getStatus());
+    }
+
+    @Test
+    void run_WhenFailedAsStaleMeanwhile_ShouldKeepFailureAndDropArtifact() throws Exception {
+        ReportJobResponse submitted = reportJobService.submit(ReportJobType.APPOINTMENTS_EXCEL, from, to);
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(task.capture());
+        // Another node's sweep fails the job while it renders; the late finish loses
+        doAnswer(i -> {
+            i.<OutputStream>getArgument(2).write("xlsx".getBytes());
+            ReportJob stale = ReportJob.builder().jobType(ReportJobType.APPOINTMENTS_EXCEL)
+                    .status(ReportJobStatus.FAILED).errorMessage("Interrupted").dateFrom(from).dateTo(to).build();
+            stale.setId(submitted.getId());
+            jobs.put(stale.getId(), stale);
+            return null;
+        }).when(reportService).exportAppointmentsExcel(eq(from), eq(to), any());
+        when(reportJobRepository.save(argThat(job -> job.getStatus() == ReportJobStatus.COMPLETED)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(ReportJob.class, submitted.getId()));
+
+        task.getValue().run();
+
+        assertEquals("FAILED", reportJobService.getJob(submitted.getId()).getStatus());
+        try (var files = Files.list(storageDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void purgeExpired_ShouldRefreshHeartbeatOfOwnJobsBeforeFailingStaleOnes() {
+        ReportJobResponse submitted = reportJobService.submit(ReportJobType.SUMMARY_PDF, from, to);
+
+        reportJobService.purgeExpired();
+
+        InOrder inOrder = inOrder(reportJobRepository);
+        inOrder.verify(reportJobRepository).touch(eq(Set.of(submitted.getId())), any());
+        inOrder.verify(reportJobRepository).failStale(any(), eq("Interrupted"), any());
+    }
+
+    @Test
+    void submit_WhenAnotherNodeWinsTheInsert_ShouldReturnItsJob() {
+        ReportJob theirs = ReportJob.builder().jobType(ReportJobType.SUMMARY_PDF).status(ReportJobStatus.PENDING)
+                .dateFrom(from).dateTo(to).build();
+        theirs.setId(UUID.randomUUID());
+        when(reportJobRepository.findReusable(eq(ReportJobType.SUMMARY_PDF), eq(from), eq(to), any(), any()))
+                .thenReturn(List.of(), List.of(theirs));
+        when(reportJobRepository.save(any(ReportJob.class)))
+                .thenThrow(new DataIntegrityViolationException("uq_report_jobs_in_flight"));
+
+        ReportJobResponse response = reportJobService.submit(ReportJobType.SUMMARY_PDF, from, to);
+
+        assertEquals(theirs.getId(), response.getId());
+        assertTrue(response.isDeduplicated());
+        verifyNoInteractions(executor);
+    }
+}
@@ -0,0 +1,95 @@
+package com.clinic.service;
+
+import com.clinic.entity.RollupWatermark;
+import com.clinic.repository.AppointmentDailyRollupRepository;
+import com.clinic.repository.PaymentDailyRollupRepository;
+import com.clinic.repository.RollupWatermarkRepository;
+import com.clinic.repository.UserDailyRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReportRollupServiceTest {
+
+    @Mock
+    private AppointmentDailyRollupRepository appointmentRollupRepository;
+
+    @Mock
+    private PaymentDailyRollupRepository paymentRollupRepository;
+
+    @Mock
+    private UserDailyRollupRepository userRollupRepository;
+
+    @Mock
+    private RollupWatermarkRepository watermarkRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ReportRollupService reportRollupService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        reportRollupService = new ReportRollupService(appointmentRollupRepository, paymentRollupRepository,
+                userRollupRepository, watermarkRepository, new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(reportRollupService, "rescanOverlapSeconds", 120L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void refresh_PaidPayment_ShouldRebuildCreatedAndPaidDaysAndAdvanceWatermark() {
+        LocalDateTime lastRun = LocalDateTime.now().minusMinutes(5);
+        RollupWatermark watermark = RollupWatermark.builder().name("PAYMENTS").lastProcessedAt(lastRun).build();
+        when(watermarkRepository.lockByName("PAYMENTS")).thenReturn(Optional.of(watermark));
+        LocalDateTime created = LocalDateTime.of(2026, 3, 1, 10, 0);
+        LocalDateTime paid = LocalDateTime.of(2026, 3, 4, 9, 0);
+        when(paymentRollupRepository.findChangedTimestamps(eq(lastRun.minusSeconds(120)), any()))
+                .thenReturn(List.<Object[]>of(new Object[] { created, paid }, new Object[] { created, null }));
+
+        int rebuilt = reportRollupService.refresh(ReportRollupService.RollupSource.PAYMENTS);
+
+        assertEquals(2, rebuilt);
+        ArgumentCaptor<Collection<LocalDate>> days = ArgumentCaptor.forClass(Collection.class);
+        verify(paymentRollupRepository).deleteDays(days.capture());
+        assertEquals(List.of(created.toLocalDate(), paid.toLocalDate()), List.copyOf(days.getValue()));
+        verify(paymentRollupRepository).insertDays(days.getValue());
+        assertTrue(watermark.getLastProcessedAt().isAfter(lastRun));
+        verify(watermarkRepository).save(watermark);
+        verifyNoInteractions(appointmentRollupRepository, userRollupRepository);
+    }
+
+    @Test
+    void backfill_ShouldRebuildRangeInMonthlyChunks() {
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        LocalDate to = LocalDate.of(2025, 3, 31);
+
+        int days = reportRollupService.backfill(from, to);
+
+        assertEquals(90, days);
+        verify(transactionManager, times(3)).commit(any());
+        verify(appointmentRollupRepository, times(3)).deleteDays(any());
+        verify(appointmentRollupRepository, times(3)).insertDays(any());
+        verify(paymentRollupRepository, times(3)).insertDays(any());
+        verify(userRollupRepository, times(3)).insertDays(any());
+    }
+}
@@ -0,0 +1,137 @@
+package com.clinic.service;
+
+import com.clinic.entity.SlotHold;
+import com.clinic.entity.TimeSlot;
+import com.clinic.exception.AppException;
+import com.clinic.exception.ErrorCode;
+import com.clinic.repository.AppointmentRepository;
+import com.clinic.repository.SlotHoldRepository;
+import com.clinic.repository.TimeSlotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SlotReservationServiceTest {
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private SlotHoldRepository slotHoldRepository;
+
+    @Mock
+    private TimeSlotRepository timeSlotRepository;
+
+    @Mock
+    private SlotOccupancyIndex slotOccupancyIndex;
+
+    @InjectMocks
+    private SlotReservationService slotReservationService;
+
+    private final UUID doctorId = UUID.randomUUID();
+    private final LocalDate date = LocalDate.now().plusDays(1);
+    private TimeSlot slot;
+
+    @BeforeEach
+    void setUp() {
+        slot = TimeSlot.builder().id(7).startTime(LocalTime.of(9, 0)).endTime(LocalTime.of(9, 30))
+                .maxPatients(3).build();
+    }
+
+    @Test
+    void reserve_ThousandsOfParallelBookings_ShouldFillExactlyMaxPatientsSeats() throws Exception {
+        // Committed seats of the slot, as the database would return them
+        List<Integer> seats = new CopyOnWriteArrayList<>();
+        when(appointmentRepository.findActiveSeats(doctorId, date, slot.getStartTime()))
+                .thenAnswer(i -> new ArrayList<>(seats));
+        when(slotHoldRepository.findActiveHolds(eq(doctorId), eq(date), eq(slot.getStartTime()), any()))
+                .thenReturn(List.of());
+
+        int attempts = 2000;
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < attempts; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    return slotReservationService.reserve(doctorId, date, slot, seat -> {
+                        seats.add(seat);
+                        return seat;
+                    });
+                } catch (AppException e) {
+                    // SLOT_BUSY when the lock wait runs out on a slow machine
+                    assertTrue(e.getErrorCode() == ErrorCode.APPOINTMENT_SLOT_TAKEN
+                            || e.getErrorCode() == ErrorCode.APPOINTMENT_SLOT_BUSY, e.getErrorCode().name());
+                    rejected.incrementAndGet();
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(List.of(1, 2, 3), seats.stream().sorted().toList());
+        assertEquals(attempts - 3, rejected.get());
+    }
+
+    @Test
+    void reserve_WhenAnotherNodeTookTheSeat_ShouldReportSlotTaken() {
+        when(appointmentRepository.findActiveSeats(doctorId, date, slot.getStartTime())).thenReturn(List.of());
+        when(slotHoldRepository.findActiveHolds(eq(doctorId), eq(date), eq(slot.getStartTime()), any()))
+                .thenReturn(List.of());
+
+        AppException ex = assertThrows(AppException.class, () -> slotReservationService.reserve(doctorId, date,
+                slot, seat -> {
+                    throw new DataIntegrityViolationException("slot_holds_doctor_id_hold_date_hold_time_seat_no_key");
+                }));
+        assertEquals(ErrorCode.APPOINTMENT_SLOT_TAKEN, ex.getErrorCode());
+    }
+
+    @Test
+    void reserve_WhenSeatHeldByAnotherPatient_ShouldReject() {
+        slot.setMaxPatients(1);
+        SlotHold hold = SlotHold.builder().seatNo(1).expiresAt(LocalDateTime.now().plusMinutes(5)).build();
+        when(appointmentRepository.findActiveSeats(doctorId, date, slot.getStartTime())).thenReturn(List.of());
+        when(slotHoldRepository.findActiveHolds(eq(doctorId), eq(date), eq(slot.getStartTime()), any()))
+                .thenReturn(List.of(hold));
+
+        AppException ex = assertThrows(AppException.class,
+                () -> slotReservationService.reserve(doctorId, date, slot, seat -> seat));
+        assertEquals(ErrorCode.APPOINTMENT_SLOT_TAKEN, ex.getErrorCode());
+    }
+
+    @Test
+    void consumeHold_OfAnotherUser_ShouldBeInvalid() {
+        UUID holdId = UUID.randomUUID();
+        SlotHold hold = SlotHold.builder().userId(UUID.randomUUID()).doctorId(doctorId).timeSlotId(slot.getId())
+                .holdDate(date).holdTime(slot.getStartTime()).seatNo(2)
+                .expiresAt(LocalDateTime.now().plusMinutes(5)).build();
+        when(slotHoldRepository.findById(holdId)).thenReturn(Optional.of(hold));
+
+        AppException ex = assertThrows(AppException.class, () -> slotReservationService.consumeHold(holdId,
+                UUID.randomUUID(), doctorId, date, slot, seat -> seat));
+        assertEquals(ErrorCode.SLOT_HOLD_INVALID, ex.getErrorCode());
+    }
+}
@@ -0,0 +1,95 @@
+package com.clinic.service;
+
+import com.clinic.dto.response.UnreadCountResponse;
+import com.clinic.repository.NotificationRepository;
+import com.clinic.security.CustomUserDetails;
+import com.clinic.security.IdentityCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UnreadNotificationCounterTest {
+
+    @Mock private NotificationRepository notificationRepository;
+    @Mock private SimpMessagingTemplate messagingTemplate;
+    @Mock private IdentityCache identityCache;
+
+    private UnreadNotificationCounter counter;
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        counter = new UnreadNotificationCounter(notificationRepository, messagingTemplate, identityCache,
+                new SimpleMeterRegistry(), 60, 1000);
+        CustomUserDetails identity = mock(CustomUserDetails.class);
+        when(identity.getEmail()).thenReturn("patient@clinic.vn");
+        when(identityCache.getById(userId)).thenReturn(identity);
+    }
+
+    @Test
+    void get_ShouldCountOnceThenFollowWritesAndPushEveryChange() {
+        when(notificationRepository.countByUserIdAndIsReadFalse(userId)).thenReturn(3L);
+
+        assertEquals(3, counter.get(userId));
+        counter.added(userId, "patient@clinic.vn", 2);
+        assertEquals(5, counter.get(userId));
+        counter.read(userId, 1);
+        counter.read(userId, 0);
+        assertEquals(4, counter.get(userId));
+        counter.allRead(userId);
+        assertEquals(0, counter.get(userId));
+
+        verify(notificationRepository, times(1)).countByUserIdAndIsReadFalse(userId);
+        var order = inOrder(messagingTemplate);
+        order.verify(messagingTemplate).convertAndSendToUser("patient@clinic.vn", "/queue/notifications",
+                UnreadCountResponse.of(5));
+        order.verify(messagingTemplate).convertAndSendToUser("patient@clinic.vn", "/queue/notifications",
+                UnreadCountResponse.of(4));
+        order.verify(messagingTemplate).convertAndSendToUser("patient@clinic.vn", "/queue/notifications",
+                UnreadCountResponse.of(0));
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+
+    @Test
+    void added_WhenNotCached_ShouldLoadCountThatAlreadyIncludesTheNewRows() {
+        when(notificationRepository.countByUserIdAndIsReadFalse(userId)).thenReturn(1L);
+
+        counter.added(userId, "patient@clinic.vn", 1);
+
+        assertEquals(1, counter.get(userId));
+        verify(messagingTemplate).convertAndSendToUser("patient@clinic.vn", "/queue/notifications",
+                UnreadCountResponse.of(1));
+    }
+
+    @Test
+    void reconcile_ShouldCorrectDriftButKeepCountsChangedDuringTheQuery() {
+        UUID other = UUID.randomUUID();
+        when(notificationRepository.countByUserIdAndIsReadFalse(userId)).thenReturn(2L);
+        when(notificationRepository.countByUserIdAndIsReadFalse(other)).thenReturn(7L);
+        counter.get(userId);
+        counter.get(other);
+        when(notificationRepository.countUnreadByUserIds(anyCollection())).thenAnswer(invocation -> {
+            // A new notification for the other user commits while the counts are read
+            counter.added(other, "other@clinic.vn", 1);
+            return List.<Object[]>of(new Object[] { userId, 6L }, new Object[] { other, 7L });
+        });
+
+        assertEquals(1, counter.reconcile());
+
+        assertEquals(6, counter.get(userId));
+        assertEquals(8, counter.get(other));
+        verify(messagingTemplate).convertAndSendToUser("patient@clinic.vn", "/queue/notifications",
+                UnreadCountResponse.of(6));
+    }
+}
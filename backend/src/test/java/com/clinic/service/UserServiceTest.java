@@ -10,6 +10,7 @@ import com.clinic.entity.enums.RoleName;
 import com.clinic.repository.DoctorRepository;
 import com.clinic.repository.PatientRepository;
 import com.clinic.repository.UserRepository;
+import com.clinic.security.IdentityCache;
 import com.clinic.repository.SpecialtyRepository;
 import com.clinic.entity.Specialty;
 import org.junit.jupiter.api.BeforeEach;
@@ -44,6 +45,10 @@ class UserServiceTest {
     private PasswordEncoder passwordEncoder;
     @Mock
     private FileService fileService;
+    @Mock
+    private IdentityCache identityCache;
+    @Mock
+    private ChatToolCache chatToolCache;
 
     @InjectMocks
     private UserService userService;
@@ -107,6 +112,8 @@ class UserServiceTest {
         assertEquals("City Y", doctor.getCity());
         assertNotNull(doctor.getSpecialty());
         verify(doctorRepository, times(1)).save(doctor);
+        verify(identityCache).evict(userId);
+        verify(chatToolCache).invalidate(ChatToolCache.SEARCH_DOCTORS);
     }
 
     @Test
@@ -0,0 +1,306 @@
+package com.clinic.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Gemini-compatible HTTP stub for tests and load tests, so chat code can run
+ * without API quota or network access. It serves
+ * {@code models/{model}:generateContent} and
+ * {@code models/{model}:streamGenerateContent?alt=sse}.
+ * <p>
+ * When the last turn is a user message whose text contains a keyword of a
+ * registered function rule, and the request declares that function, the
+ * reply is a {@code functionCall}; after a function response, or when no
+ * rule matches, it is a text answer, streamed in several chunks. Latency,
+ * delay between chunks and the share of failed requests can be changed
+ * while the server runs.
+ * <p>
+ * Embedded: {@code try (GeminiStubServer stub = GeminiStubServer.start())}
+ * and point {@code app.gemini.base-url} at {@link #baseUrl()}. Standalone,
+ * for a locally running backend: run {@link #main} with the test classpath
+ * ({@code mvn exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.clinic.support.GeminiStubServer -Dexec.args="8089 300"})
+ * and start the app with {@code --app.gemini.base-url=http://localhost:8089/}.
+ */
+public final class GeminiStubServer implements AutoCloseable {
+
+    private static final Pattern PATH = Pattern.compile("/models/([^/:]+):(generateContent|streamGenerateContent)");
+    private static final int STREAM_CHUNKS = 4;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, FunctionRule> functionRules = new LinkedHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger functionCalls = new AtomicInteger();
+    private final AtomicInteger injectedFailures = new AtomicInteger();
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration jitter = Duration.ZERO;
+    private volatile Duration chunkDelay = Duration.ZERO;
+    private volatile double failureRate;
+    private volatile int failureStatus = 503;
+
+    private record FunctionRule(String keyword, String name, Map<String, Object> args) {
+    }
+
+    private GeminiStubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "gemini-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        // Mirrors the clinic chatbot's functions
+        onKeyword("chuyên khoa", "listSpecialties", Map.of());
+        onKeyword("bác sĩ", "searchDoctors", Map.of("specialtyName", "Tim mạch"));
+        onKeyword("thuốc", "searchMedicines", Map.of("name", "paracetamol"));
+        onKeyword("lịch hẹn", "getMyAppointments", Map.of());
+        server.start();
+    }
+
+    /**
+     * Starts a stub on a free local port.
+     */
+    public static GeminiStubServer start() throws IOException {
+        return new GeminiStubServer(0);
+    }
+
+    public static GeminiStubServer start(int port) throws IOException {
+        return new GeminiStubServer(port);
+    }
+
+    /**
+     * Value for {@code app.gemini.base-url}, with the trailing slash the
+     * service expects.
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Replies with a call to {@code name} when the user's message contains
+     * {@code keyword} (case-insensitive). Later rules win over earlier ones
+     * for the same keyword.
+     */
+    public synchronized GeminiStubServer onKeyword(String keyword, String name, Map<String, Object> args) {
+        String key = keyword.toLowerCase(Locale.ROOT);
+        functionRules.put(key, new FunctionRule(key, name, args));
+        return this;
+    }
+
+    /**
+     * Delay before the first byte of every response: {@code base} plus a
+     * uniformly random share of {@code jitter}.
+     */
+    public GeminiStubServer latency(Duration base, Duration jitter) {
+        this.latency = base;
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * Delay between streamed chunks.
+     */
+    public GeminiStubServer chunkDelay(Duration chunkDelay) {
+        this.chunkDelay = chunkDelay;
+        return this;
+    }
+
+    /**
+     * Fails this share of requests (0..1) with {@code status} and a
+     * Gemini-style error body.
+     */
+    public GeminiStubServer failureRate(double failureRate, int status) {
+        this.failureRate = failureRate;
+        this.failureStatus = status;
+        return this;
+    }
+
+    public int requests() {
+        return requests.get();
+    }
+
+    public int functionCalls() {
+        return functionCalls.get();
+    }
+
+    public int injectedFailures() {
+        return injectedFailures.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            JsonNode request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = objectMapper.readTree(in);
+            }
+            Matcher path = PATH.matcher(exchange.getRequestURI().getPath());
+            if (!"POST".equals(exchange.getRequestMethod()) || !path.matches()) {
+                send(exchange, 404, error(404, "NOT_FOUND"));
+                return;
+            }
+            if (request == null || !request.path("contents").isArray() || request.path("contents").isEmpty()) {
+                send(exchange, 400, error(400, "INVALID_ARGUMENT"));
+                return;
+            }
+
+            sleep(latency.plusNanos(jitter.isZero() ? 0 : ThreadLocalRandom.current().nextLong(jitter.toNanos())));
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                injectedFailures.incrementAndGet();
+                send(exchange, failureStatus, error(failureStatus, "UNAVAILABLE"));
+                return;
+            }
+
+            Map<String, Object> part = reply(request);
+            if ("generateContent".equals(path.group(2))) {
+                send(exchange, 200, objectMapper.writeValueAsBytes(candidate(part)));
+            } else {
+                stream(exchange, part);
+            }
+        }
+    }
+
+    /**
+     * The single model part answering {@code request}.
+     */
+    private Map<String, Object> reply(JsonNode request) {
+        JsonNode contents = request.get("contents");
+        JsonNode last = contents.get(contents.size() - 1);
+        JsonNode lastPart = last.path("parts").path(0);
+        if ("function".equals(last.path("role").asText())) {
+            JsonNode response = lastPart.path("functionResponse");
+            JsonNode result = response.path("response").path("result");
+            return Map.of("text", "Kết quả từ " + response.path("name").asText() + ": "
+                    + (result.isArray() ? result.size() + " mục." : "đã có thông tin."));
+        }
+
+        String text = lastPart.path("text").asText("");
+        FunctionRule rule = matchRule(text.toLowerCase(Locale.ROOT), declaredFunctions(request));
+        if (rule != null) {
+            functionCalls.incrementAndGet();
+            return Map.of("functionCall", Map.of("name", rule.name(), "args", rule.args()));
+        }
+        return Map.of("text", "Phòng khám ClinicPro xin trả lời câu hỏi \"" + text
+                + "\": vui lòng liên hệ hotline 0123-456-789 để được hỗ trợ thêm.");
+    }
+
+    private synchronized FunctionRule matchRule(String text, Set<String> declared) {
+        for (FunctionRule rule : functionRules.values()) {
+            if (text.contains(rule.keyword()) && declared.contains(rule.name())) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static Set<String> declaredFunctions(JsonNode request) {
+        Set<String> names = new HashSet<>();
+        for (JsonNode tool : request.path("tools")) {
+            for (JsonNode declaration : tool.path("function_declarations")) {
+                names.add(declaration.path("name").asText());
+            }
+        }
+        return names;
+    }
+
+    private void stream(HttpExchange exchange, Map<String, Object> part) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        List<Map<String, Object>> chunks = part.containsKey("text")
+                ? chunks((String) part.get("text")).stream().map(chunk -> Map.<String, Object>of("text", chunk)).toList()
+                : List.of(part);
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i > 0) {
+                sleep(chunkDelay);
+            }
+            out.write("data: ".getBytes(StandardCharsets.UTF_8));
+            out.write(objectMapper.writeValueAsBytes(candidate(chunks.get(i))));
+            out.write("\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private static List<String> chunks(String text) {
+        List<String> chunks = new ArrayList<>();
+        int size = Math.max(1, (text.length() + STREAM_CHUNKS - 1) / STREAM_CHUNKS);
+        for (int start = 0; start < text.length(); start += size) {
+            chunks.add(text.substring(start, Math.min(text.length(), start + size)));
+        }
+        return chunks;
+    }
+
+    private static Map<String, Object> candidate(Map<String, Object> part) {
+        return Map.of("candidates", List.of(Map.of(
+                "content", Map.of("role", "model", "parts", List.of(part)),
+                "finishReason", "STOP")));
+    }
+
+    private byte[] error(int code, String status) throws IOException {
+        return objectMapper.writeValueAsBytes(Map.of("error", Map.of(
+                "code", code, "message", "Injected by GeminiStubServer", "status", status)));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the stub standalone. Arguments: port (default 8089), latency in
+     * milliseconds (default 300), failure rate 0..1 (default 0).
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 300;
+        double failureRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        GeminiStubServer stub = start(port)
+                .latency(Duration.ofMillis(latencyMs), Duration.ofMillis(latencyMs / 2))
+                .chunkDelay(Duration.ofMillis(50))
+                .failureRate(failureRate, 503);
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+        System.out.println("Gemini stub listening, set app.gemini.base-url=" + stub.baseUrl());
+        Thread.currentThread().join();
+    }
+}
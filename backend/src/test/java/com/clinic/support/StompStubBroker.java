@@ -0,0 +1,255 @@
+package com.clinic.support;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal STOMP 1.2 broker over TCP for tests, standing in for the external
+ * broker (RabbitMQ, ActiveMQ) that {@code app.websocket.broker.mode=relay}
+ * talks to. It accepts any login, never sends heart-beats and delivers every
+ * SEND to the subscriptions whose destination is exactly the same, copying
+ * the SEND headers onto the MESSAGE like a real broker. Receipts are
+ * answered; transactions, acks and wildcards are not supported.
+ * <p>
+ * Embedded: {@code try (StompStubBroker broker = StompStubBroker.start())}
+ * and point {@code app.websocket.broker.relay.port} at {@link #port()}.
+ * Standalone, to run several local backend nodes against one broker: run
+ * {@link #main} with the test classpath ({@code mvn exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=com.clinic.support.StompStubBroker
+ * -Dexec.args="61613"}).
+ */
+public final class StompStubBroker implements AutoCloseable {
+
+    private static final Set<String> NOT_COPIED = Set.of("receipt", "content-length", "transaction");
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stomp-stub-broker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicInteger delivered = new AtomicInteger();
+
+    private StompStubBroker(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::accept);
+    }
+
+    /**
+     * Starts on a free port.
+     */
+    public static StompStubBroker start() throws IOException {
+        return start(0);
+    }
+
+    public static StompStubBroker start(int port) throws IOException {
+        return new StompStubBroker(port);
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Open client connections, including the relay's system connection.
+     */
+    public int connections() {
+        return connections.size();
+    }
+
+    /**
+     * MESSAGE frames sent to subscribers so far.
+     */
+    public int delivered() {
+        return delivered.get();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Connection connection = new Connection(serverSocket.accept());
+                connections.add(connection);
+                executor.execute(connection::serve);
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void route(Frame send) {
+        String destination = send.headers.get("destination");
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.destination.equals(destination)) {
+                continue;
+            }
+            Map<String, String> headers = new LinkedHashMap<>();
+            send.headers.forEach((name, value) -> {
+                if (!NOT_COPIED.contains(name)) {
+                    headers.put(name, value);
+                }
+            });
+            headers.put("subscription", subscription.id);
+            headers.put("message-id", String.valueOf(messageIds.incrementAndGet()));
+            if (subscription.connection.send(new Frame("MESSAGE", headers, send.body))) {
+                delivered.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        connections.forEach(Connection::close);
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 61613;
+        StompStubBroker broker = start(port);
+        System.out.println("STOMP stub broker listening on port " + broker.port());
+        Thread.currentThread().join();
+    }
+
+    private record Subscription(Connection connection, String id, String destination) {
+    }
+
+    private record Frame(String command, Map<String, String> headers, byte[] body) {
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        void serve() {
+            try (InputStream in = new BufferedInputStream(socket.getInputStream())) {
+                Frame frame;
+                while ((frame = read(in)) != null) {
+                    if (!handle(frame)) {
+                        break;
+                    }
+                }
+            } catch (IOException ignored) {
+                // Peer went away
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * @return false once the client disconnected
+         */
+        private boolean handle(Frame frame) {
+            Map<String, String> headers = frame.headers;
+            switch (frame.command) {
+                case "CONNECT", "STOMP" -> send(new Frame("CONNECTED",
+                        Map.of("version", "1.2", "heart-beat", "0,0", "server", "stomp-stub-broker"), new byte[0]));
+                case "SUBSCRIBE" -> subscriptions.add(new Subscription(this, headers.get("id"),
+                        headers.get("destination")));
+                case "UNSUBSCRIBE" -> subscriptions.removeIf(s -> s.connection == this
+                        && s.id.equals(headers.get("id")));
+                case "SEND" -> route(frame);
+                default -> {
+                    // ACK, NACK, BEGIN, COMMIT, ABORT: nothing to do
+                }
+            }
+            String receipt = headers.get("receipt");
+            if (receipt != null) {
+                send(new Frame("RECEIPT", Map.of("receipt-id", receipt), new byte[0]));
+            }
+            return !"DISCONNECT".equals(frame.command);
+        }
+
+        synchronized boolean send(Frame frame) {
+            try {
+                StringBuilder head = new StringBuilder(frame.command).append('\n');
+                frame.headers.forEach((name, value) -> head.append(name).append(':').append(value).append('\n'));
+                head.append("content-length:").append(frame.body.length).append("\n\n");
+                out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+                out.write(frame.body);
+                out.write(0);
+                out.flush();
+                return true;
+            } catch (IOException e) {
+                close();
+                return false;
+            }
+        }
+
+        void close() {
+            subscriptions.removeIf(s -> s.connection == this);
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private static Frame read(InputStream in) throws IOException {
+            String command;
+            do {
+                // Blank lines between frames are heart-beats
+                command = readLine(in);
+                if (command == null) {
+                    return null;
+                }
+            } while (command.isEmpty());
+
+            Map<String, String> headers = new LinkedHashMap<>();
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                // Repeated headers: the first one wins
+                headers.putIfAbsent(line.substring(0, colon), line.substring(colon + 1));
+            }
+
+            byte[] body;
+            String contentLength = headers.get("content-length");
+            if (contentLength != null) {
+                body = in.readNBytes(Integer.parseInt(contentLength));
+                in.read(); // NUL
+            } else {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                int b;
+                while ((b = in.read()) > 0) {
+                    buffer.write(b);
+                }
+                body = buffer.toByteArray();
+            }
+            return new Frame(command, headers, body);
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1) {
+                    return null;
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return line.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.clinic.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvWriterTest {
+
+    @Test
+    void field_ShouldQuoteOnlyWhenNeeded() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CsvWriter(out)
+                .header("Name", "Note", "Date")
+                .field("Nguyễn Văn A").field("ho, \"sốt\"\nnhẹ").field(LocalDate.of(2024, 1, 2)).endRow()
+                .field((String) null).field("").field((Object) null).endRow()
+                .flush();
+
+        assertEquals("Name,Note,Date\n"
+                + "Nguyễn Văn A,\"ho, \"\"sốt\"\"\nnhẹ\",2024-01-02\n"
+                + ",,\n", out.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,47 @@
+package com.clinic.util;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ExcelExporterTest {
+
+    @Test
+    void writeRows_ShouldStreamPastRowWindowWithTypedCells() throws Exception {
+        int count = ExcelExporter.ROW_WINDOW * 5;
+        Iterator<Object[]> rows = IntStream.range(0, count)
+                .mapToObj(i -> new Object[] { "P" + i, new BigDecimal("150000"), LocalDate.of(2024, 3, 1),
+                        LocalDateTime.of(2024, 3, 1, 9, 30), null })
+                .iterator();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ExcelExporter.writeRows("Thanh toán", new String[] { "Mã", "Số tiền", "Ngày", "Lúc", "Ghi chú" }, rows, out);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("Thanh toán");
+            assertEquals(count, sheet.getLastRowNum());
+            assertEquals("Mã", sheet.getRow(0).getCell(0).getStringCellValue());
+
+            Row first = sheet.getRow(1);
+            assertEquals("P0", first.getCell(0).getStringCellValue());
+            assertEquals(150000d, first.getCell(1).getNumericCellValue());
+            assertEquals(LocalDate.of(2024, 3, 1), first.getCell(2).getLocalDateTimeCellValue().toLocalDate());
+            assertEquals(CellType.NUMERIC, first.getCell(3).getCellType());
+            assertNull(first.getCell(4));
+            assertEquals("P" + (count - 1), sheet.getRow(count).getCell(0).getStringCellValue());
+        }
+    }
+}
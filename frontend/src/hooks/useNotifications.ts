@@ -2,7 +2,7 @@ import { Client } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
 import { useState, useEffect, useCallback, useRef } from 'react';
 import { useAuth } from '@/contexts/AuthContext';
-import { Notification } from '../types';
+import { Notification, UnreadCountEvent } from '../types';
 import toast from 'react-hot-toast';
 import { notificationService } from '@/services/notificationService';
 
@@ -34,8 +34,15 @@ export const useNotifications = () => {
 
         const client = new Client({
             webSocketFactory: () => new SockJS(SOCKET_URL),
-            connectHeaders: {
-                Authorization: `Bearer ${token}`
+            // Read the token on every (re)connect: the server refuses an expired one
+            beforeConnect: (self) => {
+                const current = localStorage.getItem('access_token');
+                if (!current) {
+                    // Logged out meanwhile: stop reconnecting
+                    void self.deactivate();
+                    return;
+                }
+                self.connectHeaders = { Authorization: `Bearer ${current}` };
             },
             debug: () => {
                 // STOMP Debug
@@ -50,9 +57,16 @@ export const useNotifications = () => {
 
             // Subscribe to user-specific notification queue
             client.subscribe('/user/queue/notifications', (message) => {
-                const newNotification: Notification = JSON.parse(message.body);
+                const payload: Notification | UnreadCountEvent = JSON.parse(message.body);
+
+                // The server pushes the new count after every change, including our own reads
+                if ('event' in payload && payload.event === 'UNREAD_COUNT') {
+                    setUnreadCount(payload.unreadCount);
+                    return;
+                }
+
+                const newNotification = payload as Notification;
                 setNotifications((prev) => [newNotification, ...prev]);
-                setUnreadCount((prev) => prev + 1);
 
                 // Show toast for new notification
                 toast.success(`${newNotification.title}: ${newNotification.message}`, {
@@ -84,7 +98,6 @@ export const useNotifications = () => {
             setNotifications(prev =>
                 prev.map(n => n.id === id ? { ...n, isRead: true } : n)
             );
-            setUnreadCount(prev => Math.max(0, prev - 1));
         } catch (error) {
             console.error('Failed to mark notification as read', error);
         }
@@ -172,6 +172,12 @@ export interface Notification {
 
 export type NotificationType = 'APPOINTMENT' | 'PAYMENT' | 'SYSTEM' | 'REMINDER';
 
+// Pushed on /user/queue/notifications, next to notifications, whenever the unread count changes
+export interface UnreadCountEvent {
+    event: 'UNREAD_COUNT';
+    unreadCount: number;
+}
+
 // Common Types
 export interface Pagination {
     page: number;